@@ -46,6 +46,12 @@ public class AccessToken implements ParametersMap {
 	 *  Optional
 	 */
 	private Collection<String> scopes;
+	/**
+	 * The rendered Authorization header value. Not a token property, and
+	 * racily cached like String.hashCode: concurrent first calls render equal
+	 * strings.
+	 */
+	private transient String authorizationHeader;
 
 	/**
 	 * Initializes an oauth token object from standard properties.
@@ -77,9 +83,10 @@ public class AccessToken implements ParametersMap {
 			throw new IllegalArgumentException("map is null");
 		this.accessToken = (String) map.get("access_token");
 		this.tokenType = (String) map.getOrDefault("token_type", "Bearer");
-		Long val = (Long) map.get("expires_in");
+		Object val = map.get("expires_in");
 		if(val!=null)
-			this.expiresIn = Long.parseLong(String.valueOf(val));
+			// form-encoded payloads carry numbers as strings
+			this.expiresIn = val instanceof Number ? ((Number) val).longValue() : Long.parseLong(String.valueOf(val));
 		this.refreshToken = (String) map.get("refresh_token");
 		this.scopes = (Collection<String>) map.get("scope");
 	}
@@ -87,6 +94,7 @@ public class AccessToken implements ParametersMap {
 	/**
 	 * Returns the "token_type" string in this oauth token.
 	 */
+	@OAuthPayloadProperty("token_type")
 	public final String getTokenType() {
 		return tokenType;
 	}
@@ -94,6 +102,7 @@ public class AccessToken implements ParametersMap {
 	/**
 	 * Returns the "refresh_token" string in this oauth token.
 	 */
+	@OAuthPayloadProperty("refresh_token")
 	public final String getRefreshToken() {
 		return refreshToken;
 	}
@@ -101,6 +110,7 @@ public class AccessToken implements ParametersMap {
 	/**
 	 * Returns the "scope" in this oauth token, modeled as collection of scope strings.
 	 */
+	@OAuthPayloadProperty("scope")
 	public final Collection<String> getScopes() {
 		return scopes;
 	}
@@ -108,6 +118,7 @@ public class AccessToken implements ParametersMap {
 	/**
 	 * Returns the "access_token" string in this oauth token.
 	 */
+	@OAuthPayloadProperty("access_token")
 	public final String getAccessToken() {
 		return accessToken;
 	}
@@ -116,12 +127,29 @@ public class AccessToken implements ParametersMap {
 	 * Returns the "expires_in" number in this access token. This models the duration
 	 * of time the access token is granted for, if the access token expires.
 	 */
+	@OAuthPayloadProperty("expires_in")
 	public final long getExpiresIn() {
 		return expiresIn;
 	}
 	
+	/**
+	 * Returns the value of the Authorization HTTP request header for resource
+	 * requests with this token, e.g. "Bearer mF_9.B5f-4.1JqM". The value is
+	 * rendered on first use and reused afterwards.
+	 */
+	public String authorizationHeader() {
+		String header = this.authorizationHeader;
+		if (header == null) {
+			header = this.tokenType + ' ' + this.accessToken;
+			this.authorizationHeader = header;
+		}
+		return header;
+	}
+	
 	/**
 	 * Checks if scope is one of the configured scopes for this access token.
+	 * This is an O(1) lookup for tokens with {@link ScopeSet} scopes, as
+	 * produced by the databinding providers.
 	 * @param scope
 	 * @return true if the scope is assigned to this token, false otherwise
 	 */
@@ -149,7 +177,7 @@ public class AccessToken implements ParametersMap {
 			propertyMap.put("tokenType", "token_type");
 			propertyMap.put("refreshToken", "refresh_token");
 			propertyMap.put("accessToken", "access_token");
-			propertyMap.put("getExpiresIn", "expires_in");
+			propertyMap.put("expiresIn", "expires_in");
 			propertyMap.put("scopes", "scope");
 			propertyMap = Collections.unmodifiableMap(propertyMap);
 		}
@@ -161,7 +189,7 @@ public class AccessToken implements ParametersMap {
 	 * 
 	 */
 	public Map<String, Object> map() throws Exception {
-		Map<String, Object> grant = BeanUtils.asMap(this, getPropertyMap());
+		Map<String, Object> grant = ParametersMapCodecs.encode(this, getPropertyMap());
 		return grant;
 	}
 
@@ -0,0 +1,454 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+package net.oauth2;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A compact, versioned binary format for {@link AccessToken} and
+ * {@link TemporalAccessToken}, e.g. for token stores, IPC or snapshots.
+ * <p>
+ * Tokens are written to and read from a {@link ByteBuffer} at its position,
+ * with no intermediate objects. Strings are UTF-8 with a varint length
+ * prefix, numbers are varints. Scopes found in the scope dictionary of the
+ * codec are written as their index in it; both sides must use the same
+ * dictionary, in the same order. Other scopes are written as strings. Decoded
+ * scopes are {@link ScopeSet}s. Temporal tokens keep their exact expiration
+ * moment, if known, e.g. from JWT claims.
+ * </p>
+ * Records of the previous format version are still read.
+ * Instances are immutable and thread-safe.
+ */
+public final class AccessTokenBinaryCodec {
+
+	/**
+	 * The format version written in the first byte of each record.
+	 */
+	public static final byte VERSION = 2;
+
+	/**
+	 * The format version with no exact expiration moment in temporal records.
+	 */
+	private static final byte VERSION_1 = 1;
+
+	private static final int FLAG_TEMPORAL = 1;
+	private static final int FLAG_BEARER = 1 << 1;
+	private static final int FLAG_EXPIRES_AT = 1 << 2;
+	private static final ChronoUnit[] UNITS = ChronoUnit.values();
+
+	private final String[] dictionary;
+	private final Map<String, Integer> dictionaryIndex;
+
+	/**
+	 * @param scopeDictionary
+	 *            the well-known scopes to write by index. Optional.
+	 */
+	public AccessTokenBinaryCodec(String... scopeDictionary) {
+		if (scopeDictionary == null)
+			scopeDictionary = new String[0];
+		this.dictionary = Arrays.copyOf(scopeDictionary, scopeDictionary.length);
+		this.dictionaryIndex = new HashMap<>(scopeDictionary.length * 2);
+		for (int i = 0; i < this.dictionary.length; i++) {
+			if (this.dictionary[i] == null)
+				throw new IllegalArgumentException("scopeDictionary contains null");
+			this.dictionaryIndex.putIfAbsent(this.dictionary[i], i);
+		}
+	}
+
+	/**
+	 * @param token
+	 * @return the exact number of bytes token is encoded to.
+	 */
+	public int encodedLength(AccessToken token) {
+		return this.encodedLength(token, null);
+	}
+
+	/**
+	 * @param token
+	 * @return the exact number of bytes token is encoded to.
+	 */
+	public int encodedLength(TemporalAccessToken<?> token) {
+		if (token == null)
+			throw new IllegalArgumentException("token is null");
+		return this.encodedLength(token.token(), token);
+	}
+
+	private int encodedLength(AccessToken token, TemporalAccessToken<?> temporal) {
+		if (token == null)
+			throw new IllegalArgumentException("token is null");
+		int length = 2 + stringLength(token.getAccessToken()) + varLongLength(token.getExpiresIn())
+				+ stringLength(token.getRefreshToken());
+		if (!"Bearer".equals(token.getTokenType()))
+			length += stringLength(token.getTokenType());
+		Collection<String> scopes = token.getScopes();
+		if (scopes == null) {
+			length++;
+		} else {
+			length += varLongLength(scopes.size() + 1);
+			for (String scope : scopes) {
+				Integer index = this.dictionaryIndex.get(scope);
+				length += index != null ? varLongLength(index + 1) : 1 + stringLength(scope);
+			}
+		}
+		if (temporal != null) {
+			length += 1 + instantLength(temporal.validSince());
+			if (temporal.expiresAt() != null)
+				length += instantLength(temporal.expiresAt());
+		}
+		return length;
+	}
+
+	/**
+	 * @param token
+	 * @return a new array with the encoded token
+	 */
+	public byte[] encode(AccessToken token) {
+		ByteBuffer buffer = ByteBuffer.allocate(this.encodedLength(token));
+		this.encode(token, buffer);
+		return buffer.array();
+	}
+
+	/**
+	 * @param token
+	 * @return a new array with the encoded temporal token
+	 */
+	public byte[] encode(TemporalAccessToken<?> token) {
+		ByteBuffer buffer = ByteBuffer.allocate(this.encodedLength(token));
+		this.encode(token, buffer);
+		return buffer.array();
+	}
+
+	/**
+	 * Writes token at the position of buffer and advances it.
+	 * 
+	 * @param token
+	 * @param buffer
+	 * @throws java.nio.BufferOverflowException
+	 *             if buffer has less than {@link #encodedLength(AccessToken)}
+	 *             bytes remaining
+	 */
+	public void encode(AccessToken token, ByteBuffer buffer) {
+		this.encode(token, null, buffer);
+	}
+
+	/**
+	 * Writes token, including the moment since it is valid, at the position of
+	 * buffer and advances it.
+	 * 
+	 * @param token
+	 * @param buffer
+	 * @throws java.nio.BufferOverflowException
+	 *             if buffer has less than
+	 *             {@link #encodedLength(TemporalAccessToken)} bytes remaining
+	 * @throws IllegalArgumentException
+	 *             if the ttl unit of token is not a {@link ChronoUnit}
+	 */
+	public void encode(TemporalAccessToken<?> token, ByteBuffer buffer) {
+		if (token == null)
+			throw new IllegalArgumentException("token is null");
+		if (!(token.ttlUnit() instanceof ChronoUnit))
+			throw new IllegalArgumentException("Unsupported ttl unit: " + token.ttlUnit());
+		this.encode(token.token(), token, buffer);
+	}
+
+	private void encode(AccessToken token, TemporalAccessToken<?> temporal, ByteBuffer buffer) {
+		if (token == null)
+			throw new IllegalArgumentException("token is null");
+		if (buffer == null)
+			throw new IllegalArgumentException("buffer is null");
+		boolean bearer = "Bearer".equals(token.getTokenType());
+		boolean expiresAt = temporal != null && temporal.expiresAt() != null;
+		buffer.put(VERSION);
+		buffer.put((byte) ((temporal != null ? FLAG_TEMPORAL : 0) | (bearer ? FLAG_BEARER : 0)
+				| (expiresAt ? FLAG_EXPIRES_AT : 0)));
+		putString(buffer, token.getAccessToken());
+		if (!bearer)
+			putString(buffer, token.getTokenType());
+		putVarLong(buffer, token.getExpiresIn());
+		putString(buffer, token.getRefreshToken());
+		Collection<String> scopes = token.getScopes();
+		if (scopes == null) {
+			buffer.put((byte) 0);
+		} else {
+			putVarLong(buffer, scopes.size() + 1);
+			for (String scope : scopes) {
+				Integer index = this.dictionaryIndex.get(scope);
+				if (index != null) {
+					putVarLong(buffer, index + 1);
+				} else {
+					buffer.put((byte) 0);
+					putString(buffer, scope);
+				}
+			}
+		}
+		if (temporal != null) {
+			buffer.put((byte) ((ChronoUnit) temporal.ttlUnit()).ordinal());
+			putInstant(buffer, temporal.validSince());
+			if (expiresAt)
+				putInstant(buffer, temporal.expiresAt());
+		}
+	}
+
+	/**
+	 * Reads an {@link AccessToken} at the position of buffer and advances it
+	 * past the record. The validity moment of temporal records is skipped.
+	 * 
+	 * @param buffer
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if the record is of an unsupported version or malformed
+	 */
+	public AccessToken decode(ByteBuffer buffer) {
+		return this.decode(buffer, AccessToken.class);
+	}
+
+	/**
+	 * Reads a token of the given type at the position of buffer and advances it
+	 * past the record. The validity moment of temporal records is skipped.
+	 * Subclasses of {@link AccessToken} are created with their
+	 * {@link TokenFactory}.
+	 * 
+	 * @param buffer
+	 * @param tokenClass
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if the record is of an unsupported version or malformed
+	 */
+	public <T extends AccessToken> T decode(ByteBuffer buffer, Class<T> tokenClass) {
+		try {
+			int flags = readHeader(buffer, tokenClass);
+			T token = this.readToken(buffer, tokenClass, flags);
+			if ((flags & FLAG_TEMPORAL) != 0) {
+				buffer.get();
+				getInstant(buffer);
+				if ((flags & FLAG_EXPIRES_AT) != 0)
+					getInstant(buffer);
+			}
+			return token;
+		} catch (BufferUnderflowException e) {
+			throw new IllegalArgumentException("Truncated binary token record", e);
+		}
+	}
+
+	/**
+	 * Reads a temporal token record of the given token type at the position of
+	 * buffer and advances it past the record.
+	 * 
+	 * @param buffer
+	 * @param tokenClass
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if the record is not a temporal token record, of an
+	 *             unsupported version or malformed
+	 */
+	public <T extends AccessToken> TemporalAccessToken<T> decodeTemporal(ByteBuffer buffer, Class<T> tokenClass) {
+		try {
+			int flags = readHeader(buffer, tokenClass);
+			if ((flags & FLAG_TEMPORAL) == 0)
+				throw new IllegalArgumentException("Not a temporal access token record");
+			T token = this.readToken(buffer, tokenClass, flags);
+			int unit = buffer.get();
+			if (unit < 0 || unit >= UNITS.length)
+				throw new IllegalArgumentException("Unknown ttl unit: " + unit);
+			Instant validSince = getInstant(buffer);
+			if ((flags & FLAG_EXPIRES_AT) != 0)
+				return TemporalAccessToken.exact(token, validSince, getInstant(buffer), UNITS[unit]);
+			return new TemporalAccessToken<>(token, validSince, UNITS[unit]);
+		} catch (BufferUnderflowException e) {
+			throw new IllegalArgumentException("Truncated binary token record", e);
+		}
+	}
+
+	private static int readHeader(ByteBuffer buffer, Class<?> tokenClass) {
+		if (buffer == null)
+			throw new IllegalArgumentException("buffer is null");
+		if (tokenClass == null)
+			throw new IllegalArgumentException("tokenClass is null");
+		byte version = buffer.get();
+		if (version != VERSION && version != VERSION_1)
+			throw new IllegalArgumentException("Unsupported binary token format version: " + version);
+		int flags = buffer.get();
+		if (version == VERSION_1 && (flags & FLAG_EXPIRES_AT) != 0)
+			throw new IllegalArgumentException("Unsupported flags for binary token format version 1: " + flags);
+		return flags;
+	}
+
+	private <T extends AccessToken> T readToken(ByteBuffer buffer, Class<T> tokenClass, int flags) {
+		String accessToken = getString(buffer);
+		String tokenType = (flags & FLAG_BEARER) != 0 ? "Bearer" : getString(buffer);
+		long expiresIn = getVarLong(buffer);
+		String refreshToken = getString(buffer);
+		ScopeSet scopes = null;
+		long count = getVarLong(buffer);
+		if (count < 0)
+			throw new IllegalArgumentException("Malformed scope count " + count);
+		if (count - 1 > buffer.remaining())
+			throw new BufferUnderflowException();
+		if (count > 0) {
+			String[] names = new String[(int) count - 1];
+			for (int i = 0; i < names.length; i++) {
+				long index = getVarLong(buffer);
+				if (index == 0)
+					names[i] = getString(buffer);
+				else if (index > 0 && index <= this.dictionary.length)
+					names[i] = this.dictionary[(int) index - 1];
+				else
+					throw new IllegalArgumentException("Scope index " + (index - 1) + " not in scope dictionary");
+			}
+			scopes = ScopeSet.of(names);
+		}
+		return TokenFactories.token(tokenClass, accessToken, tokenType, expiresIn, refreshToken, scopes);
+	}
+
+	private static void putVarLong(ByteBuffer buffer, long value) {
+		while ((value & ~0x7FL) != 0) {
+			buffer.put((byte) ((value & 0x7F) | 0x80));
+			value >>>= 7;
+		}
+		buffer.put((byte) value);
+	}
+
+	private static long getVarLong(ByteBuffer buffer) {
+		long value = 0;
+		for (int shift = 0; shift < 64; shift += 7) {
+			byte b = buffer.get();
+			value |= (long) (b & 0x7F) << shift;
+			if (b >= 0)
+				return value;
+		}
+		throw new IllegalArgumentException("Malformed varint");
+	}
+
+	private static int varLongLength(long value) {
+		int length = 1;
+		while ((value & ~0x7FL) != 0) {
+			length++;
+			value >>>= 7;
+		}
+		return length;
+	}
+
+	private static void putInstant(ByteBuffer buffer, Instant instant) {
+		putVarLong(buffer, zigZag(instant.getEpochSecond()));
+		putVarLong(buffer, instant.getNano());
+	}
+
+	private static Instant getInstant(ByteBuffer buffer) {
+		long epochSecond = unZigZag(getVarLong(buffer));
+		long nano = getVarLong(buffer);
+		try {
+			return Instant.ofEpochSecond(epochSecond, nano);
+		} catch (DateTimeException | ArithmeticException e) {
+			throw new IllegalArgumentException("Malformed instant", e);
+		}
+	}
+
+	private static int instantLength(Instant instant) {
+		return varLongLength(zigZag(instant.getEpochSecond())) + varLongLength(instant.getNano());
+	}
+
+	private static long zigZag(long value) {
+		return (value << 1) ^ (value >> 63);
+	}
+
+	private static long unZigZag(long value) {
+		return (value >>> 1) ^ -(value & 1);
+	}
+
+	/**
+	 * Strings are written with their UTF-8 length + 1, 0 standing for null.
+	 */
+	private static void putString(ByteBuffer buffer, String s) {
+		if (s == null) {
+			buffer.put((byte) 0);
+			return;
+		}
+		putVarLong(buffer, utf8Length(s) + 1L);
+		int length = s.length();
+		for (int i = 0; i < length; i++) {
+			char c = s.charAt(i);
+			if (c < 0x80) {
+				buffer.put((byte) c);
+			} else if (c < 0x800) {
+				buffer.put((byte) (0xC0 | (c >> 6)));
+				buffer.put((byte) (0x80 | (c & 0x3F)));
+			} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, s.charAt(++i));
+				buffer.put((byte) (0xF0 | (codePoint >> 18)));
+				buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3F)));
+				buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3F)));
+				buffer.put((byte) (0x80 | (codePoint & 0x3F)));
+			} else if (Character.isSurrogate(c)) {
+				buffer.put((byte) '?');
+			} else {
+				buffer.put((byte) (0xE0 | (c >> 12)));
+				buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+				buffer.put((byte) (0x80 | (c & 0x3F)));
+			}
+		}
+	}
+
+	private static int stringLength(String s) {
+		if (s == null)
+			return 1;
+		int length = utf8Length(s);
+		return varLongLength(length + 1L) + length;
+	}
+
+	private static int utf8Length(String s) {
+		int length = s.length();
+		int bytes = length;
+		for (int i = 0; i < length; i++) {
+			char c = s.charAt(i);
+			if (c < 0x80)
+				continue;
+			if (c < 0x800) {
+				bytes++;
+			} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+				bytes += 2;
+				i++;
+			} else if (!Character.isSurrogate(c)) {
+				bytes += 2;
+			}
+		}
+		return bytes;
+	}
+
+	private static String getString(ByteBuffer buffer) {
+		long prefix = getVarLong(buffer);
+		if (prefix == 0)
+			return null;
+		long length = prefix - 1;
+		if (length < 0)
+			throw new IllegalArgumentException("Malformed string length " + length);
+		if (length > buffer.remaining())
+			throw new BufferUnderflowException();
+		int len = (int) length;
+		String s;
+		if (buffer.hasArray()) {
+			// decoded in place from the backing array
+			s = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), len, StandardCharsets.UTF_8);
+			buffer.position(buffer.position() + len);
+		} else {
+			byte[] bytes = new byte[len];
+			buffer.get(bytes);
+			s = new String(bytes, StandardCharsets.UTF_8);
+		}
+		return s;
+	}
+
+}
@@ -23,6 +23,7 @@ public class AccessTokenGrantRequest implements ParametersMap{
 	private final String client_id;
 	private final String client_secret;
 	private Collection<String> scope;
+	private ClientAssertionSupplier clientAssertionSupplier;
 
 	/**
 	 * Initializes grant request from properties.
@@ -40,6 +41,7 @@ public class AccessTokenGrantRequest implements ParametersMap{
 		this.scope = scope;
 	}
 
+	@OAuthPayloadProperty("scope")
 	public Collection<String> getScopes() {
 		return scope;
 	}
@@ -52,18 +54,45 @@ public class AccessTokenGrantRequest implements ParametersMap{
 	 * Returns the grant type of this grant request. It is a string such as "authorization_code" or "client_secret".
 	 * @return
 	 */
+	@OAuthPayloadProperty("grant_type")
 	public String getGrantType() {
 		return grant_type;
 	}
 
+	@OAuthPayloadProperty("client_id")
 	public String getClientId() {
 		return client_id;
 	}
 
+	@OAuthPayloadProperty("client_secret")
 	public String getClientSecret() {
 		return client_secret;
 	}
 
+	/**
+	 * Authenticates the client in this grant request with assertions, e.g.
+	 * "private_key_jwt" signed JWTs, instead of a client secret. Each token
+	 * request built with {@link #requestParameters()} takes a new assertion
+	 * from the supplier.
+	 * 
+	 * @param clientAssertionSupplier the supplier of client assertions, or null to not send any.
+	 * @return this grant request for chaining
+	 */
+	public final AccessTokenGrantRequest clientAssertionSupplier(ClientAssertionSupplier clientAssertionSupplier) {
+		this.clientAssertionSupplier = clientAssertionSupplier;
+		return this;
+	}
+
+	public final ClientAssertionSupplier clientAssertionSupplier() {
+		return this.clientAssertionSupplier;
+	}
+
+	@OAuthPayloadProperty("client_assertion_type")
+	public String getClientAssertionType() {
+		return this.clientAssertionSupplier != null ? this.clientAssertionSupplier.assertionType() : null;
+	}
+
+
 	private static Map<String, String> propertyMap;
 
 	/**
@@ -79,6 +108,7 @@ public class AccessTokenGrantRequest implements ParametersMap{
 			propertyMap.put("clientId", "client_id");
 			propertyMap.put("clientSecret", "client_secret");
 			propertyMap.put("scopes", "scope");
+			propertyMap.put("clientAssertionType", "client_assertion_type");
 			propertyMap = Collections.unmodifiableMap(propertyMap);
 		}
 		return propertyMap;
@@ -86,10 +116,28 @@ public class AccessTokenGrantRequest implements ParametersMap{
 
 	@Override
 	public Map<String, Object> map() throws Exception {
-		Map<String, Object> grant = BeanUtils.asMap(this, getPropertyMap());
+		Map<String, Object> grant = ParametersMapCodecs.encode(this, getPropertyMap());
 		return grant;
 	}
 
+	/**
+	 * Returns the payload parameters of a single token request with this
+	 * grant: those of {@link #map()} and, if this grant request has a client
+	 * assertion supplier, a new "client_assertion" taken from it. Unlike
+	 * {@link #map()}, each invocation uses up an assertion, so transports
+	 * invoke it exactly once for each request they send.
+	 * 
+	 * @return
+	 * @throws Exception
+	 */
+	public Map<String, Object> requestParameters() throws Exception {
+		Map<String, Object> parameters = this.map();
+		ClientAssertionSupplier supplier = this.clientAssertionSupplier;
+		if (supplier != null)
+			parameters.put("client_assertion", supplier.nextAssertion());
+		return parameters;
+	}
+
 	@Override
 	public String toString() {
 		return "AccessTokenGrantRequest [grant_type=" + grant_type + ", client_id=" + client_id + ", client_secret="
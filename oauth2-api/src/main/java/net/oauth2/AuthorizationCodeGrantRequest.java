@@ -29,10 +29,12 @@ public class AuthorizationCodeGrantRequest extends AccessTokenGrantRequest {
 		this.redirectUri = redirectUrl;
 	}
 
+	@OAuthPayloadProperty("redirect_uri")
 	public String getRedirectUri() {
 		return redirectUri;
 	}
 
+	@OAuthPayloadProperty("code")
 	public String getCode() {
 		return code;
 	}
@@ -58,7 +60,7 @@ public class AuthorizationCodeGrantRequest extends AccessTokenGrantRequest {
 	}
 
 	public Map<String, Object> map() throws Exception {
-		Map<String, Object> grant = BeanUtils.asMap(this, getPropertyMap());
+		Map<String, Object> grant = ParametersMapCodecs.encode(this, getPropertyMap());
 		return grant;
 	}
 
@@ -0,0 +1,45 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+package net.oauth2;
+
+/**
+ * Supplies client assertions authenticating the client in grant requests, as
+ * an alternative to client secrets (RFC 7521, RFC 7523 "private_key_jwt").
+ * <p>
+ * An assertion is sent with a single token request only. Implementations
+ * must return a new, unused assertion with each invocation and must be
+ * thread-safe.
+ * </p>
+ * @see AccessTokenGrantRequest#clientAssertionSupplier(ClientAssertionSupplier)
+ */
+@FunctionalInterface
+public interface ClientAssertionSupplier {
+
+	/**
+	 * The "client_assertion_type" of JWT client assertions (RFC 7523).
+	 */
+	String JWT_BEARER = "urn:ietf:params:oauth:client-assertion-type:jwt-bearer";
+
+	/**
+	 * Returns the "client_assertion_type" of the supplied assertions. Defaults
+	 * to {@link #JWT_BEARER}.
+	 * 
+	 * @return
+	 */
+	default String assertionType() {
+		return JWT_BEARER;
+	}
+
+	/**
+	 * Returns the next "client_assertion" to send.
+	 * 
+	 * @return
+	 */
+	String nextAssertion();
+
+}
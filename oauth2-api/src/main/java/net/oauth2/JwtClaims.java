@@ -0,0 +1,211 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+package net.oauth2;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+/**
+ * The validity claims ("exp" and "iat") of an access token that is a JSON Web
+ * Token (RFC 7519).
+ * <p>
+ * Access tokens are opaque to OAuth clients, and this is only a hint for
+ * scheduling: the JWT signature is not verified and only the payload segment
+ * is decoded. Tokens that are not JWTs, or whose payload cannot be read,
+ * decode to null.
+ * </p>
+ */
+public final class JwtClaims {
+
+	private final Instant expiresAt;
+	private final Instant issuedAt;
+
+	JwtClaims(Instant expiresAt, Instant issuedAt) {
+		this.expiresAt = expiresAt;
+		this.issuedAt = issuedAt;
+	}
+
+	/**
+	 * Decodes the payload segment of a JWT access token and reads its "exp"
+	 * and "iat" claims.
+	 * 
+	 * @param accessToken
+	 * @return the claims, or null if accessToken is null, not a JWT or has
+	 *         neither of the claims.
+	 */
+	public static JwtClaims decode(String accessToken) {
+		if (accessToken == null)
+			return null;
+		int first = accessToken.indexOf('.');
+		if (first < 1)
+			return null;
+		int second = accessToken.indexOf('.', first + 1);
+		if (second < 0 || accessToken.indexOf('.', second + 1) > -1)
+			return null;
+		String json;
+		try {
+			byte[] payload = Base64.getUrlDecoder().decode(accessToken.substring(first + 1, second));
+			json = new String(payload, StandardCharsets.UTF_8);
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+		return new Scanner(json).scan();
+	}
+
+	/**
+	 * @return the moment of the "exp" claim, or null if there is none
+	 */
+	public Instant expiresAt() {
+		return this.expiresAt;
+	}
+
+	/**
+	 * @return the moment of the "iat" claim, or null if there is none
+	 */
+	public Instant issuedAt() {
+		return this.issuedAt;
+	}
+
+	@Override
+	public String toString() {
+		return "JwtClaims [expiresAt=" + expiresAt + ", issuedAt=" + issuedAt + "]";
+	}
+
+	/**
+	 * Reads the numeric "exp" and "iat" members of a top-level JSON object and
+	 * skips everything else.
+	 */
+	private static final class Scanner {
+
+		private final String json;
+		private int pos;
+
+		Scanner(String json) {
+			this.json = json;
+		}
+
+		JwtClaims scan() {
+			Instant exp = null;
+			Instant iat = null;
+			this.skipWhitespace();
+			if (!this.consume('{'))
+				return null;
+			this.skipWhitespace();
+			if (this.consume('}'))
+				return null;
+			do {
+				this.skipWhitespace();
+				int nameStart = this.pos + 1;
+				if (!this.skipString())
+					return null;
+				int nameEnd = this.pos - 1;
+				this.skipWhitespace();
+				if (!this.consume(':'))
+					return null;
+				this.skipWhitespace();
+				if (this.isName(nameStart, nameEnd, "exp"))
+					exp = this.numericDate();
+				else if (this.isName(nameStart, nameEnd, "iat"))
+					iat = this.numericDate();
+				else if (!this.skipValue())
+					return null;
+				this.skipWhitespace();
+			} while (this.consume(','));
+			if (!this.consume('}') || (exp == null && iat == null))
+				return null;
+			return new JwtClaims(exp, iat);
+		}
+
+		private boolean isName(int start, int end, String name) {
+			return end - start == name.length() && this.json.regionMatches(start, name, 0, name.length());
+		}
+
+		/**
+		 * NumericDate: seconds since the epoch, possibly fractional. Other
+		 * value types are skipped and yield null.
+		 */
+		private Instant numericDate() {
+			int start = this.pos;
+			if (!this.skipValue())
+				return null;
+			try {
+				String value = this.json.substring(start, this.pos);
+				if (value.indexOf('.') < 0 && value.indexOf('e') < 0 && value.indexOf('E') < 0)
+					return Instant.ofEpochSecond(Long.parseLong(value));
+				double seconds = Double.parseDouble(value);
+				long whole = (long) Math.floor(seconds);
+				return Instant.ofEpochSecond(whole, (long) ((seconds - whole) * 1_000_000_000L));
+			} catch (RuntimeException e) {
+				return null;
+			}
+		}
+
+		private boolean skipValue() {
+			if (this.pos >= this.json.length())
+				return false;
+			char c = this.json.charAt(this.pos);
+			if (c == '"')
+				return this.skipString();
+			if (c == '{' || c == '[') {
+				int depth = 0;
+				while (this.pos < this.json.length()) {
+					c = this.json.charAt(this.pos);
+					if (c == '"') {
+						if (!this.skipString())
+							return false;
+						continue;
+					}
+					if (c == '{' || c == '[')
+						depth++;
+					else if (c == '}' || c == ']')
+						depth--;
+					this.pos++;
+					if (depth == 0)
+						return true;
+				}
+				return false;
+			}
+			int start = this.pos;
+			while (this.pos < this.json.length()) {
+				c = this.json.charAt(this.pos);
+				if (c == ',' || c == '}' || c == ']' || Character.isWhitespace(c))
+					break;
+				this.pos++;
+			}
+			return this.pos > start;
+		}
+
+		private boolean skipString() {
+			if (!this.consume('"'))
+				return false;
+			while (this.pos < this.json.length()) {
+				char c = this.json.charAt(this.pos++);
+				if (c == '\\')
+					this.pos++;
+				else if (c == '"')
+					return true;
+			}
+			return false;
+		}
+
+		private boolean consume(char c) {
+			if (this.pos < this.json.length() && this.json.charAt(this.pos) == c) {
+				this.pos++;
+				return true;
+			}
+			return false;
+		}
+
+		private void skipWhitespace() {
+			while (this.pos < this.json.length() && Character.isWhitespace(this.json.charAt(this.pos)))
+				this.pos++;
+		}
+	}
+
+}
@@ -0,0 +1,52 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+
+package net.oauth2;
+
+import java.util.Map;
+
+/**
+ * Encodes oauth payload objects of type T to a key-value map and back without
+ * introspection. Implementations are generated at compile time for classes with
+ * {@link OAuthPayloadProperty} annotated properties and are discovered with
+ * {@link java.util.ServiceLoader}. See {@link ParametersMapCodecs}.
+ *
+ * @param <T>
+ */
+public interface ParametersMapCodec<T> {
+
+	/**
+	 * Returns the exact class this codec maps.
+	 */
+	Class<T> type();
+
+	/**
+	 * Maps the payload properties of value to their payload keys. Null
+	 * properties are omitted.
+	 *
+	 * @param value
+	 * @return
+	 */
+	Map<String, Object> encode(T value);
+
+	/**
+	 * Returns true if the type can be created from a map of payload
+	 * properties with {@link #decode(Map)}.
+	 */
+	boolean isDecoding();
+
+	/**
+	 * Creates an instance from a map of payload properties, or returns null if
+	 * the type does not support that.
+	 *
+	 * @param map
+	 * @return
+	 */
+	T decode(Map<String, Object> map);
+
+}
@@ -0,0 +1,100 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+
+package net.oauth2;
+
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+import java.util.WeakHashMap;
+
+/**
+ * Registry of the {@link ParametersMapCodec} implementations available on the
+ * class path, with {@link BeanUtils} introspection as fallback for classes
+ * without one.
+ * <p>
+ * Codecs are looked up once per class, in the codecs registered with the class
+ * loader of that class, and cached for the lifetime of the class. The
+ * registered codecs are loaded once per class loader and indexed by type.
+ * </p>
+ */
+public final class ParametersMapCodecs {
+
+	private static final ClassValue<ParametersMapCodec<?>> CODECS = new ClassValue<ParametersMapCodec<?>>() {
+		@Override
+		protected ParametersMapCodec<?> computeValue(Class<?> type) {
+			return index(type.getClassLoader()).get(type);
+		}
+	};
+
+	// softly referenced, as the codecs strongly reference their class loaders;
+	// only needed until each class has been looked up once
+	private static final Map<ClassLoader, SoftReference<Map<Class<?>, ParametersMapCodec<?>>>> INDEXES = new WeakHashMap<>();
+
+	private ParametersMapCodecs() {
+	}
+
+	@SuppressWarnings("rawtypes")
+	private static synchronized Map<Class<?>, ParametersMapCodec<?>> index(ClassLoader loader) {
+		SoftReference<Map<Class<?>, ParametersMapCodec<?>>> ref = INDEXES.get(loader);
+		Map<Class<?>, ParametersMapCodec<?>> index = ref != null ? ref.get() : null;
+		if (index == null) {
+			index = new HashMap<>();
+			Iterator<ParametersMapCodec> codecs = ServiceLoader.load(ParametersMapCodec.class, loader).iterator();
+			while (true) {
+				try {
+					if (!codecs.hasNext())
+						break;
+					ParametersMapCodec<?> codec = codecs.next();
+					index.putIfAbsent(codec.type(), codec);
+				} catch (ServiceConfigurationError e) {
+					// a broken codec registration only costs its type the
+					// introspection fallback
+				}
+			}
+			INDEXES.put(loader, new SoftReference<>(index));
+		}
+		return index;
+	}
+
+	/**
+	 * Returns the codec generated for exactly this type, or null if there is
+	 * none.
+	 *
+	 * @param type
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> ParametersMapCodec<T> forType(Class<T> type) {
+		if (type == null)
+			throw new IllegalArgumentException("type is null");
+		return (ParametersMapCodec<T>) CODECS.get(type);
+	}
+
+	/**
+	 * Maps value with its generated codec if there is one, and by
+	 * {@link BeanUtils#asMap(Object, Map)} introspection otherwise.
+	 *
+	 * @param value
+	 * @param propertyMap
+	 *            the property names mapping to use for introspection
+	 * @return
+	 * @throws Exception
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> Map<String, Object> encode(T value, Map<String, String> propertyMap) throws Exception {
+		ParametersMapCodec<T> codec = (ParametersMapCodec<T>) forType(value.getClass());
+		if (codec != null)
+			return codec.encode(value);
+		return BeanUtils.asMap(value, propertyMap);
+	}
+
+}
@@ -32,10 +32,12 @@ public class PasswordCredentialsGrantRequest extends AccessTokenGrantRequest {
 		this.password = password;
 	}
 	
+	@OAuthPayloadProperty("username")
 	public String getUsername() {
 		return username;
 	}
 	
+	@OAuthPayloadProperty("password")
 	public String getPassword() {
 		return password;
 	}
@@ -61,7 +63,7 @@ public class PasswordCredentialsGrantRequest extends AccessTokenGrantRequest {
 	}
 
 	public Map<String, Object> map() throws Exception {
-		Map<String, Object> grant = BeanUtils.asMap(this, getPropertyMap());
+		Map<String, Object> grant = ParametersMapCodecs.encode(this, getPropertyMap());
 		return grant;
 	}
 
@@ -39,10 +39,12 @@ public class ProtocolError implements ParametersMap{
 	public ProtocolError(Map<String, Object> map) {
 		this.error = (String) map.get("error");
 		this.description = (String) map.get("error_description");
-		this.uri = (URI) map.get("uri");
+		Object uri = map.containsKey("error_uri") ? map.get("error_uri") : map.get("uri");
+		this.uri = uri instanceof String ? URI.create((String) uri) : (URI) uri;
 		this.state = (String) map.get("state");  
 	}
 
+	@OAuthPayloadProperty("error")
 	public String getError() {
 		return error;
 	}
@@ -51,14 +53,17 @@ public class ProtocolError implements ParametersMap{
 		return ProtocolErrorType.parse(this.error);
 	}
 
+	@OAuthPayloadProperty("error_description")
 	public String getDescription() {
 		return description;
 	}
 
+	@OAuthPayloadProperty("error_uri")
 	public URI getUri() {
 		return uri;
 	}
 
+	@OAuthPayloadProperty("state")
 	public String getState() {
 		return state;
 	}
@@ -84,7 +89,7 @@ public class ProtocolError implements ParametersMap{
 	}
 
 	public Map<String, Object> map() throws Exception {
-		Map<String, Object> grant = BeanUtils.asMap(this, getPropertyMap());
+		Map<String, Object> grant = ParametersMapCodecs.encode(this, getPropertyMap());
 		return grant;
 	}
 
@@ -27,6 +27,7 @@ public class RefreshTokenGrantRequest extends AccessTokenGrantRequest {
 		this.refreshToken = refreshToken;
 	}
 
+	@OAuthPayloadProperty("refresh_token")
 	public String getRefreshToken() {
 		return refreshToken;
 	}
@@ -39,7 +40,7 @@ public class RefreshTokenGrantRequest extends AccessTokenGrantRequest {
 		 * scope originally granted by the resource owner.
 		 */
 		if (scopes != null) {
-			Collection<String> granted_scopes = originalTokenRequestGrant.getScopes();
+			Collection<String> granted_scopes = ScopeSet.of(originalTokenRequestGrant.getScopes());
 			if (granted_scopes == null) {
 				throw new IllegalArgumentException(
 						"The requested scope includes scope not originally granted by the resource owner: " + scopes);
@@ -55,6 +56,7 @@ public class RefreshTokenGrantRequest extends AccessTokenGrantRequest {
 
 		RefreshTokenGrantRequest refreshGrant = new RefreshTokenGrantRequest(refreshToken,
 				originalTokenRequestGrant.getClientId(), originalTokenRequestGrant.getClientSecret(), scopes);
+		refreshGrant.clientAssertionSupplier(originalTokenRequestGrant.clientAssertionSupplier());
 		return refreshGrant;
 	}
 
@@ -78,7 +80,7 @@ public class RefreshTokenGrantRequest extends AccessTokenGrantRequest {
 	}
 
 	public Map<String, Object> map() throws Exception {
-		Map<String, Object> grant = BeanUtils.asMap(this, getPropertyMap());
+		Map<String, Object> grant = ParametersMapCodecs.encode(this, getPropertyMap());
 		return grant;
 	}
 
@@ -0,0 +1,339 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+
+package net.oauth2;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An immutable set of OAuth scope strings, backed by a compact bitset over a
+ * global scope registry.
+ * <p>
+ * Each distinct scope string is registered once and assigned a numeric id, so
+ * scope strings are not duplicated across tokens and grants. Instances are
+ * interned too: there is one shared ScopeSet instance per distinct combination
+ * of scopes, which makes {@link #equals(Object)} between two ScopeSets an
+ * identity check. {@link #contains(Object)} is O(1), and
+ * {@link #containsAll(Collection)} with another ScopeSet is a bitwise subset
+ * check.
+ * </p>
+ * The registry is never purged and is intended for the bounded vocabulary of
+ * scopes of an authorization server. It is capped at {@value #MAX_SCOPES}
+ * scopes and {@value #MAX_INSTANCES} instances, so that high-cardinality
+ * scopes cannot grow it without limit. Past the caps, sets are no longer
+ * interned and scopes not registered yet are held as plain strings. Such sets
+ * are compared by value.
+ */
+public final class ScopeSet extends AbstractSet<String> {
+
+	static final int MAX_SCOPES = 1024;
+	static final int MAX_INSTANCES = 16384;
+
+	private static final long[] NO_BITS = new long[0];
+	private static final String[] NO_SCOPES = new String[0];
+
+	private static final Registry REGISTRY = new Registry(MAX_SCOPES, MAX_INSTANCES);
+	public static final ScopeSet EMPTY = REGISTRY.empty;
+
+	private final Registry registry;
+	private final long[] bits;
+	// the scopes past the registry cap, sorted
+	private final String[] unregistered;
+	private final boolean interned;
+	private final int size;
+	private final int hash;
+
+	private ScopeSet(Registry registry, long[] bits, String[] unregistered, boolean interned) {
+		this.registry = registry;
+		this.bits = bits;
+		this.unregistered = unregistered;
+		this.interned = interned;
+		String[] names = registry.names;
+		int size = unregistered.length;
+		int hash = 0;
+		for (int i = 0; i < bits.length; i++) {
+			long word = bits[i];
+			while (word != 0) {
+				int id = (i << 6) + Long.numberOfTrailingZeros(word);
+				hash += names[id].hashCode();
+				size++;
+				word &= word - 1;
+			}
+		}
+		for (String scope : unregistered)
+			hash += scope.hashCode();
+		this.size = size;
+		this.hash = hash;
+	}
+
+	/**
+	 * @param scopes
+	 * @return the ScopeSet instance for the given scopes, shared unless past
+	 *         the registry caps
+	 */
+	public static ScopeSet of(String... scopes) {
+		if (scopes == null)
+			throw new IllegalArgumentException("scopes is null");
+		return REGISTRY.of(Arrays.asList(scopes));
+	}
+
+	/**
+	 * @param scopes
+	 * @return the ScopeSet instance for the given scopes, scopes itself
+	 *         if it is a ScopeSet, or null if scopes is null.
+	 */
+	public static ScopeSet of(Collection<String> scopes) {
+		if (scopes == null)
+			return null;
+		if (scopes instanceof ScopeSet)
+			return (ScopeSet) scopes;
+		return REGISTRY.of(scopes);
+	}
+
+	/**
+	 * Parses a whitespace delimited scope string, such as the value of the
+	 * OAuth "scope" parameter.
+	 *
+	 * @param delimited
+	 * @return the ScopeSet instance for the parsed scopes, or null if
+	 *         delimited is null.
+	 */
+	public static ScopeSet parse(CharSequence delimited) {
+		if (delimited == null)
+			return null;
+		return REGISTRY.parse(delimited);
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		if (!(o instanceof String))
+			return false;
+		Integer id = this.registry.ids.get(o);
+		if (id == null)
+			return this.unregistered.length > 0 && Arrays.binarySearch(this.unregistered, o) >= 0;
+		int word = id >>> 6;
+		return word < this.bits.length && (this.bits[word] & (1L << id)) != 0;
+	}
+
+	@Override
+	public boolean containsAll(Collection<?> c) {
+		if (c instanceof ScopeSet && ((ScopeSet) c).registry == this.registry) {
+			ScopeSet other = (ScopeSet) c;
+			if (other.bits.length > this.bits.length)
+				return false;
+			for (int i = 0; i < other.bits.length; i++) {
+				if ((other.bits[i] & ~this.bits[i]) != 0)
+					return false;
+			}
+			for (String scope : other.unregistered) {
+				if (Arrays.binarySearch(this.unregistered, scope) < 0)
+					return false;
+			}
+			return true;
+		}
+		return super.containsAll(c);
+	}
+
+	@Override
+	public int size() {
+		return this.size;
+	}
+
+	@Override
+	public Iterator<String> iterator() {
+		final String[] names = this.registry.names;
+		return new Iterator<String>() {
+			int word = 0;
+			long remaining = bits.length > 0 ? bits[0] : 0;
+			int next = 0;
+
+			@Override
+			public boolean hasNext() {
+				while (this.remaining == 0 && this.word < bits.length - 1)
+					this.remaining = bits[++this.word];
+				return this.remaining != 0 || this.next < unregistered.length;
+			}
+
+			@Override
+			public String next() {
+				if (!this.hasNext())
+					throw new NoSuchElementException();
+				if (this.remaining == 0)
+					return unregistered[this.next++];
+				int id = (this.word << 6) + Long.numberOfTrailingZeros(this.remaining);
+				this.remaining &= this.remaining - 1;
+				return names[id];
+			}
+		};
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o == this)
+			return true;
+		if (o instanceof ScopeSet && ((ScopeSet) o).registry == this.registry) {
+			ScopeSet other = (ScopeSet) o;
+			if (this.interned && other.interned)
+				return false;
+			return this.hash == other.hash && this.size == other.size && Arrays.equals(this.bits, other.bits)
+					&& Arrays.equals(this.unregistered, other.unregistered);
+		}
+		return super.equals(o);
+	}
+
+	@Override
+	public int hashCode() {
+		return this.hash;
+	}
+
+	/**
+	 * The scope ids and interned instances that ScopeSets are built with.
+	 */
+	static final class Registry {
+
+		private final int maxScopes;
+		private final int maxInstances;
+		private final ConcurrentMap<String, Integer> ids = new ConcurrentHashMap<>();
+		private volatile String[] names = new String[64];
+		private int nextId;
+		private final ConcurrentMap<Key, ScopeSet> instances = new ConcurrentHashMap<>();
+		final ScopeSet empty;
+
+		Registry(int maxScopes, int maxInstances) {
+			this.maxScopes = maxScopes;
+			this.maxInstances = maxInstances;
+			this.empty = this.intern(NO_BITS, null);
+		}
+
+		ScopeSet of(Collection<String> scopes) {
+			long[] bits = NO_BITS;
+			Collection<String> unregistered = null;
+			for (String scope : scopes) {
+				if (scope == null)
+					throw new IllegalArgumentException("scope is null");
+				if (scope.isEmpty())
+					continue;
+				int id = this.id(scope);
+				if (id >= 0)
+					bits = set(bits, id);
+				else {
+					if (unregistered == null)
+						unregistered = new TreeSet<>();
+					unregistered.add(scope);
+				}
+			}
+			return this.intern(bits, unregistered);
+		}
+
+		ScopeSet parse(CharSequence delimited) {
+			long[] bits = NO_BITS;
+			Collection<String> unregistered = null;
+			int length = delimited.length();
+			int start = 0;
+			for (int i = 0; i <= length; i++) {
+				if (i == length || Character.isWhitespace(delimited.charAt(i))) {
+					if (i > start) {
+						String scope = delimited.subSequence(start, i).toString();
+						int id = this.id(scope);
+						if (id >= 0)
+							bits = set(bits, id);
+						else {
+							if (unregistered == null)
+								unregistered = new TreeSet<>();
+							unregistered.add(scope);
+						}
+					}
+					start = i + 1;
+				}
+			}
+			return this.intern(bits, unregistered);
+		}
+
+		private static long[] set(long[] bits, int id) {
+			int word = id >>> 6;
+			if (word >= bits.length)
+				bits = Arrays.copyOf(bits, word + 1);
+			bits[word] |= 1L << id;
+			return bits;
+		}
+
+		/**
+		 * @return the id of scope, or -1 if it is not registered and the
+		 *         registry is full
+		 */
+		private int id(String scope) {
+			Integer id = this.ids.get(scope);
+			if (id != null)
+				return id;
+			synchronized (this.ids) {
+				id = this.ids.get(scope);
+				if (id != null)
+					return id;
+				if (this.nextId == this.maxScopes)
+					return -1;
+				int next = this.nextId++;
+				String[] names = this.names;
+				if (next == names.length)
+					names = Arrays.copyOf(names, names.length * 2);
+				names[next] = scope;
+				this.names = names;
+				this.ids.put(scope, next);
+				return next;
+			}
+		}
+
+		private ScopeSet intern(long[] bits, Collection<String> unregistered) {
+			int length = bits.length;
+			while (length > 0 && bits[length - 1] == 0)
+				length--;
+			if (length != bits.length)
+				bits = Arrays.copyOf(bits, length);
+			if (unregistered != null)
+				return new ScopeSet(this, bits, unregistered.toArray(NO_SCOPES), false);
+			Key key = new Key(bits);
+			ScopeSet set = this.instances.get(key);
+			if (set == null) {
+				if (this.instances.size() >= this.maxInstances)
+					return new ScopeSet(this, bits, NO_SCOPES, false);
+				set = new ScopeSet(this, bits, NO_SCOPES, true);
+				ScopeSet existing = this.instances.putIfAbsent(key, set);
+				if (existing != null)
+					set = existing;
+			}
+			return set;
+		}
+	}
+
+	private static final class Key {
+		private final long[] bits;
+		private final int hash;
+
+		Key(long[] bits) {
+			this.bits = bits;
+			this.hash = Arrays.hashCode(bits);
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			return o instanceof Key && Arrays.equals(this.bits, ((Key) o).bits);
+		}
+	}
+
+}
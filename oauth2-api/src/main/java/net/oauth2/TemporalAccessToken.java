@@ -8,6 +8,7 @@
 
 package net.oauth2;
 
+import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
@@ -25,6 +26,8 @@ public class TemporalAccessToken<T extends AccessToken> {
 	private Instant validSinceMoment;
 	private TemporalUnit ttlUnit;
 	private Duration ttl;
+	private Instant expiresAt;
+	private Clock clock = Clock.systemUTC();
 
 	/**
 	 * Constructs temporal access token wrappers considering the supplied moment as initial moment
@@ -69,6 +72,27 @@ public class TemporalAccessToken<T extends AccessToken> {
 	public TemporalUnit ttlUnit() {
 		return this.ttlUnit;
 	}
+	
+	/**
+	 * Sets the clock providing the current moment for the temporal operations
+	 * of this wrapper and returns its instance for method chaining. Defaults to
+	 * the system UTC clock.
+	 */
+	public TemporalAccessToken<T> clock(Clock clock){
+		if (clock == null)
+			throw new IllegalArgumentException("clock is null");
+		this.clock = clock;
+		return this;
+	}
+	
+	/**
+	 * Returns the clock providing the current moment for the temporal operations
+	 * of this wrapper.
+	 * @return
+	 */
+	public Clock clock() {
+		return this.clock;
+	}
 
 	/**
 	 * Returns the wrapped token instance
@@ -86,6 +110,16 @@ public class TemporalAccessToken<T extends AccessToken> {
 		return this.validSinceMoment;
 	}
 	
+	/**
+	 * Returns the exact moment this token expires when it is known from the
+	 * token itself, e.g. from its JWT "exp" claim, or null when the expiration
+	 * is derived from the <i>expires_in</i> property.
+	 * @return
+	 */
+	public Instant expiresAt(){
+		return this.expiresAt;
+	}
+	
 	/**
 	 * Returns the time-to-live duration in which the token is valid.
 	 * @return
@@ -101,7 +135,7 @@ public class TemporalAccessToken<T extends AccessToken> {
 	public Duration ttlLeft(){
 		if(isExpired())
 			return Duration.ZERO;
-		return Duration.between(Instant.now(), validSinceMoment.plus(ttl));
+		return Duration.between(Instant.now(this.clock), validSinceMoment.plus(ttl));
 	}
 	
 	/**
@@ -132,7 +166,9 @@ public class TemporalAccessToken<T extends AccessToken> {
 	 * @return
 	 */
 	public boolean isExpired(){
-		return isExpired(this.token, this.validSinceMoment, this.ttlUnit);
+		if (this.expiresAt != null)
+			return this.expiresAt.isBefore(Instant.now(this.clock));
+		return isExpired(this.token, this.validSinceMoment, this.ttlUnit, this.clock);
 	}
 	
 	/**
@@ -144,8 +180,21 @@ public class TemporalAccessToken<T extends AccessToken> {
 	 * @return
 	 */
 	public static <T extends AccessToken> boolean isExpired(T token, Instant since, TemporalUnit expireInUnits){
+		return isExpired(token, since, expireInUnits, Clock.systemUTC());
+	}
+	
+	/**
+	 * Static check for tokens whether they are still valid at the current moment
+	 * of the supplied clock if they have been active since the provided moment. 
+	 * @param token
+	 * @param since
+	 * @param expireInUnits
+	 * @param clock
+	 * @return
+	 */
+	public static <T extends AccessToken> boolean isExpired(T token, Instant since, TemporalUnit expireInUnits, Clock clock){
 		Instant expireMoment = since.plus(token.getExpiresIn(), expireInUnits);
-		return expireMoment.isBefore(Instant.now());
+		return expireMoment.isBefore(Instant.now(clock));
 	}
 	
 	/**
@@ -155,13 +204,98 @@ public class TemporalAccessToken<T extends AccessToken> {
 	 * @return
 	 */
 	public static <T extends AccessToken> TemporalAccessToken<T> create(T token){
-		return new TemporalAccessToken<>(token, Instant.now());
+		return create(token, Clock.systemUTC());
+	}
+	
+	/**
+	 * Static object factory defaulting the initial moment of token validitiy to the current moment
+	 * of the supplied clock, which is used also for the temporal operations of the wrapper.
+	 *  
+	 * @param token
+	 * @param clock
+	 * @return
+	 */
+	public static <T extends AccessToken> TemporalAccessToken<T> create(T token, Clock clock){
+		return new TemporalAccessToken<>(token, Instant.now(clock)).clock(clock);
+	}
+
+	/**
+	 * Static object factory for tokens that are valid in an exactly known
+	 * period, e.g. from the claims of a JWT access token. The time-to-live is
+	 * the duration between the two moments instead of the <i>expires_in</i>
+	 * property.
+	 * 
+	 * @param token
+	 * @param validSinceMoment
+	 * @param expiresAt
+	 * @return
+	 * @throws IllegalArgumentException if expiresAt is not after validSinceMoment
+	 */
+	public static <T extends AccessToken> TemporalAccessToken<T> create(T token, Instant validSinceMoment, Instant expiresAt){
+		if (validSinceMoment == null)
+			throw new IllegalArgumentException("validSinceMoment is null");
+		if (expiresAt == null)
+			throw new IllegalArgumentException("expiresAt is null");
+		if (!expiresAt.isAfter(validSinceMoment))
+			throw new IllegalArgumentException("expiresAt " + expiresAt + " is not after validSinceMoment " + validSinceMoment);
+		return exact(token, validSinceMoment, expiresAt, ChronoUnit.SECONDS);
+	}
+
+	/**
+	 * Creates a wrapper with an exactly known expiration moment, which may be
+	 * already past at validSinceMoment, in which case the ttl is zero.
+	 */
+	static <T extends AccessToken> TemporalAccessToken<T> exact(T token, Instant validSinceMoment, Instant expiresAt, TemporalUnit temporalUnit){
+		TemporalAccessToken<T> temporalToken = new TemporalAccessToken<>(token, validSinceMoment, temporalUnit);
+		temporalToken.expiresAt = expiresAt;
+		temporalToken.ttl = expiresAt.isAfter(validSinceMoment) ? Duration.between(validSinceMoment, expiresAt) : Duration.ZERO;
+		return temporalToken;
+	}
+
+	/**
+	 * Static object factory that reads the validity period of JWT access
+	 * tokens from their "exp" and "iat" claims. The claims are instants of the
+	 * server clock, so only the lifetime between them is used: the token is
+	 * valid since the local receivedMoment for exp - iat, and clock skew
+	 * between client and server does not shift its expiration. Without an
+	 * "iat" claim "exp" is taken as is. Either way the validity is capped at
+	 * the <i>expires_in</i> property, if any, in the supplied temporal unit.
+	 * <p>
+	 * Tokens that are not JWTs, have no "exp" claim, or an "exp" claim not
+	 * after their "iat" claim, are valid since receivedMoment for their
+	 * <i>expires_in</i>.
+	 * </p>
+	 * 
+	 * @param token
+	 * @param receivedMoment
+	 * @param temporalUnit
+	 * @return
+	 * @see JwtClaims
+	 */
+	public static <T extends AccessToken> TemporalAccessToken<T> fromJwt(T token, Instant receivedMoment, TemporalUnit temporalUnit){
+		JwtClaims claims = JwtClaims.decode(token.getAccessToken());
+		if (claims == null || claims.expiresAt() == null)
+			return new TemporalAccessToken<>(token, receivedMoment, temporalUnit);
+		Instant expiresAt = claims.expiresAt();
+		if (claims.issuedAt() != null) {
+			if (!expiresAt.isAfter(claims.issuedAt()))
+				return new TemporalAccessToken<>(token, receivedMoment, temporalUnit);
+			expiresAt = receivedMoment.plus(Duration.between(claims.issuedAt(), expiresAt));
+		}
+		if (token.getExpiresIn() > 0) {
+			Instant expiresIn = receivedMoment.plus(token.getExpiresIn(), temporalUnit);
+			if (expiresIn.isBefore(expiresAt))
+				expiresAt = expiresIn;
+		}
+		// may be already expired when received
+		return exact(token, receivedMoment, expiresAt, temporalUnit);
 	}
 
 	@Override
 	public int hashCode() {
 		final int prime = 31;
 		int result = 1;
+		result = prime * result + ((expiresAt == null) ? 0 : expiresAt.hashCode());
 		result = prime * result + ((token == null) ? 0 : token.hashCode());
 		result = prime * result + ((ttl == null) ? 0 : ttl.hashCode());
 		result = prime * result + ((ttlUnit == null) ? 0 : ttlUnit.hashCode());
@@ -179,6 +313,11 @@ public class TemporalAccessToken<T extends AccessToken> {
 			return false;
 		@SuppressWarnings("unchecked")
 		TemporalAccessToken<T> other = (TemporalAccessToken<T>) obj;
+		if (expiresAt == null) {
+			if (other.expiresAt != null)
+				return false;
+		} else if (!expiresAt.equals(other.expiresAt))
+			return false;
 		if (token == null) {
 			if (other.token != null)
 				return false;
@@ -0,0 +1,194 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+package net.oauth2;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Models the "urn:ietf:params:oauth:grant-type:token-exchange" type of oauth
+ * grant requests (RFC 8693), exchanging a subject token, e.g. the token of an
+ * incoming request, for a token for another audience.
+ * 
+ */
+public class TokenExchangeGrantRequest extends AccessTokenGrantRequest {
+
+	public static final String GRANT_TYPE = "urn:ietf:params:oauth:grant-type:token-exchange";
+
+	public static final String ACCESS_TOKEN_TYPE = "urn:ietf:params:oauth:token-type:access_token";
+	public static final String REFRESH_TOKEN_TYPE = "urn:ietf:params:oauth:token-type:refresh_token";
+	public static final String ID_TOKEN_TYPE = "urn:ietf:params:oauth:token-type:id_token";
+	public static final String JWT_TOKEN_TYPE = "urn:ietf:params:oauth:token-type:jwt";
+
+	private final String subjectToken;
+	private final String subjectTokenType;
+	private final String audience;
+	private final String resource;
+	private final String requestedTokenType;
+	private final String actorToken;
+	private final String actorTokenType;
+
+	/**
+	 * Constructs a token exchange grant request from properties.
+	 * 
+	 * @param subjectToken the "subject_token" to exchange. Required.
+	 * @param subjectTokenType the "subject_token_type", e.g. {@link #ACCESS_TOKEN_TYPE}. Required.
+	 * @param audience the "audience" of the requested token. Optional.
+	 * @param resource the "resource" URI where the requested token will be used. Optional.
+	 * @param requestedTokenType the "requested_token_type". Optional.
+	 * @param actorToken the "actor_token" of the acting party in delegation. Optional.
+	 * @param actorTokenType the "actor_token_type". Required with actorToken.
+	 * @param clientId
+	 * @param clientSecret
+	 * @param scopes
+	 */
+	public TokenExchangeGrantRequest(final String subjectToken, final String subjectTokenType, final String audience,
+			final String resource, final String requestedTokenType, final String actorToken,
+			final String actorTokenType, final String clientId, final String clientSecret,
+			final Collection<String> scopes) {
+		super(GRANT_TYPE, clientId, clientSecret, scopes);
+		if (subjectToken == null)
+			throw new IllegalArgumentException("subjectToken is null");
+		if (subjectTokenType == null)
+			throw new IllegalArgumentException("subjectTokenType is null");
+		if (actorToken != null && actorTokenType == null)
+			throw new IllegalArgumentException("actorTokenType is null");
+		this.subjectToken = subjectToken;
+		this.subjectTokenType = subjectTokenType;
+		this.audience = audience;
+		this.resource = resource;
+		this.requestedTokenType = requestedTokenType;
+		this.actorToken = actorToken;
+		this.actorTokenType = actorTokenType;
+	}
+
+	/**
+	 * Constructs a token exchange grant request for an access token subject
+	 * token and a target audience.
+	 * 
+	 * @param subjectToken
+	 * @param audience
+	 * @param clientId
+	 * @param clientSecret
+	 * @param scopes
+	 */
+	public TokenExchangeGrantRequest(final String subjectToken, final String audience, final String clientId,
+			final String clientSecret, final Collection<String> scopes) {
+		this(subjectToken, ACCESS_TOKEN_TYPE, audience, null, null, null, null, clientId, clientSecret, scopes);
+	}
+
+	@OAuthPayloadProperty("subject_token")
+	public String getSubjectToken() {
+		return subjectToken;
+	}
+
+	@OAuthPayloadProperty("subject_token_type")
+	public String getSubjectTokenType() {
+		return subjectTokenType;
+	}
+
+	@OAuthPayloadProperty("audience")
+	public String getAudience() {
+		return audience;
+	}
+
+	@OAuthPayloadProperty("resource")
+	public String getResource() {
+		return resource;
+	}
+
+	@OAuthPayloadProperty("requested_token_type")
+	public String getRequestedTokenType() {
+		return requestedTokenType;
+	}
+
+	@OAuthPayloadProperty("actor_token")
+	public String getActorToken() {
+		return actorToken;
+	}
+
+	@OAuthPayloadProperty("actor_token_type")
+	public String getActorTokenType() {
+		return actorTokenType;
+	}
+
+	private static Map<String, String> propertyMap;
+
+	/**
+	 * Maps Bean introspection property descriptors name to OAuth2 valid payload
+	 * property names.
+	 * 
+	 * @return
+	 */
+	protected static Map<String, String> getPropertyMap() {
+		if (propertyMap == null) {
+			Map<String, String> superMap = AccessTokenGrantRequest.getPropertyMap();
+			propertyMap = new HashMap<>();
+			propertyMap.putAll(superMap);
+			propertyMap.put("subjectToken", "subject_token");
+			propertyMap.put("subjectTokenType", "subject_token_type");
+			propertyMap.put("audience", "audience");
+			propertyMap.put("resource", "resource");
+			propertyMap.put("requestedTokenType", "requested_token_type");
+			propertyMap.put("actorToken", "actor_token");
+			propertyMap.put("actorTokenType", "actor_token_type");
+			propertyMap = Collections.unmodifiableMap(propertyMap);
+		}
+		return propertyMap;
+	}
+
+	@Override
+	public Map<String, Object> map() throws Exception {
+		Map<String, Object> grant = ParametersMapCodecs.encode(this, getPropertyMap());
+		return grant;
+	}
+
+	@Override
+	public String toString() {
+		// tokens are credentials and are not printed
+		return "TokenExchangeGrantRequest [subjectTokenType=" + subjectTokenType + ", audience=" + audience
+				+ ", resource=" + resource + ", requestedTokenType=" + requestedTokenType + ", actorTokenType="
+				+ actorTokenType + ", getScopes()=" + getScopes() + ", getClientId()=" + getClientId() + "]";
+	}
+
+	@Override
+	public int hashCode() {
+		final int prime = 31;
+		int result = super.hashCode();
+		result = prime * result + ((actorToken == null) ? 0 : actorToken.hashCode());
+		result = prime * result + ((actorTokenType == null) ? 0 : actorTokenType.hashCode());
+		result = prime * result + ((audience == null) ? 0 : audience.hashCode());
+		result = prime * result + ((requestedTokenType == null) ? 0 : requestedTokenType.hashCode());
+		result = prime * result + ((resource == null) ? 0 : resource.hashCode());
+		result = prime * result + subjectToken.hashCode();
+		result = prime * result + subjectTokenType.hashCode();
+		return result;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if (this == obj)
+			return true;
+		if (!super.equals(obj))
+			return false;
+		if (getClass() != obj.getClass())
+			return false;
+		TokenExchangeGrantRequest other = (TokenExchangeGrantRequest) obj;
+		return equals(actorToken, other.actorToken) && equals(actorTokenType, other.actorTokenType)
+				&& equals(audience, other.audience) && equals(requestedTokenType, other.requestedTokenType)
+				&& equals(resource, other.resource) && subjectToken.equals(other.subjectToken)
+				&& subjectTokenType.equals(other.subjectTokenType);
+	}
+
+	private static boolean equals(Object a, Object b) {
+		return a == null ? b == null : a.equals(b);
+	}
+
+}
@@ -0,0 +1,161 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+
+package net.oauth2;
+
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Modifier;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Registry of the {@link TokenFactory} for each payload class, shared by the
+ * data binding providers.
+ * <p>
+ * The construction strategy of a class is resolved once and cached for the
+ * lifetime of the class. Classes with a public constructor taking a single Map
+ * argument are created through a lambda spun by {@link LambdaMetafactory}
+ * around that constructor, or through its {@link MethodHandle} if the class is
+ * not accessible to a lambda. Where the constructor cannot be looked up
+ * reflectively, e.g. in native images, the decoder of the generated
+ * {@link ParametersMapCodec} of the class is used.
+ * </p>
+ */
+public final class TokenFactories {
+
+	private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+	private static final MethodType FACTORY_TYPE = MethodType.methodType(TokenFactory.class);
+	private static final MethodType CREATE_TYPE = MethodType.methodType(Object.class, Map.class);
+
+	private static final ClassValue<TokenFactory<?>> FACTORIES = new ClassValue<TokenFactory<?>>() {
+		@Override
+		protected TokenFactory<?> computeValue(Class<?> type) {
+			return resolve(type);
+		}
+	};
+
+	private TokenFactories() {
+	}
+
+	/**
+	 * Returns the factory for exactly this type, or null if there is no way to
+	 * create it from a map of payload properties.
+	 *
+	 * @param type
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T> TokenFactory<T> forType(Class<T> type) {
+		if (type == null)
+			throw new IllegalArgumentException("type is null");
+		return (TokenFactory<T>) FACTORIES.get(type);
+	}
+
+	/**
+	 * Creates an access token of the given type from the standard token
+	 * payload properties. {@link AccessToken} itself is constructed directly,
+	 * subclasses are created with their {@link TokenFactory}.
+	 *
+	 * @param type
+	 * @param accessToken
+	 * @param tokenType
+	 * @param expiresIn
+	 * @param refreshToken
+	 * @param scopes
+	 * @return
+	 */
+	@SuppressWarnings("unchecked")
+	public static <T extends AccessToken> T token(Class<T> type, String accessToken, String tokenType, long expiresIn,
+			String refreshToken, Collection<String> scopes) {
+		if (type == AccessToken.class)
+			return (T) new AccessToken(accessToken, tokenType, expiresIn, refreshToken, scopes);
+		Map<String, Object> parameters = new HashMap<>();
+		if (accessToken != null)
+			parameters.put("access_token", accessToken);
+		if (tokenType != null)
+			parameters.put("token_type", tokenType);
+		parameters.put("expires_in", expiresIn);
+		if (refreshToken != null)
+			parameters.put("refresh_token", refreshToken);
+		if (scopes != null)
+			parameters.put("scope", scopes);
+		return create(type, parameters);
+	}
+
+	/**
+	 * Creates an instance of type with its {@link TokenFactory}.
+	 *
+	 * @param type
+	 * @param parameters
+	 * @return
+	 * @throws IllegalArgumentException
+	 *             if type cannot be created from a map
+	 */
+	public static <T> T create(Class<T> type, Map<String, Object> parameters) {
+		TokenFactory<T> factory = forType(type);
+		T instance = factory != null ? factory.create(parameters) : null;
+		if (instance == null)
+			throw new IllegalArgumentException(
+					"No public constructor with a single Map parameter in " + type.getName());
+		return instance;
+	}
+
+	static TokenFactory<?> resolve(Class<?> type) {
+		if (type.isInterface() || Modifier.isAbstract(type.getModifiers()))
+			return null;
+		MethodHandle constructor = null;
+		try {
+			Constructor<?> c = type.getConstructor(Map.class);
+			c.setAccessible(true);
+			constructor = LOOKUP.unreflectConstructor(c);
+		} catch (NoSuchMethodException | IllegalAccessException | SecurityException e) {
+			ParametersMapCodec<?> codec = ParametersMapCodecs.forType(type);
+			return codec != null && codec.isDecoding() ? codec::decode : null;
+		}
+		if (isLambdaAccessible(type)) {
+			try {
+				return (TokenFactory<?>) LambdaMetafactory.metafactory(LOOKUP, "create", FACTORY_TYPE, CREATE_TYPE,
+						constructor, MethodType.methodType(type, Map.class)).getTarget().invoke();
+			} catch (Throwable e) {
+				// fall back to the method handle
+			}
+		}
+		MethodHandle handle = constructor.asType(CREATE_TYPE);
+		return parameters -> {
+			try {
+				return handle.invokeExact(parameters);
+			} catch (RuntimeException | Error e) {
+				throw e;
+			} catch (Throwable e) {
+				throw new IllegalStateException(e);
+			}
+		};
+	}
+
+	/**
+	 * A lambda spun in this class can only invoke constructors of public
+	 * classes visible to its class loader.
+	 */
+	private static boolean isLambdaAccessible(Class<?> type) {
+		for (Class<?> c = type; c != null; c = c.getEnclosingClass()) {
+			if (!Modifier.isPublic(c.getModifiers()))
+				return false;
+		}
+		try {
+			return Class.forName(type.getName(), false, TokenFactories.class.getClassLoader()) == type;
+		} catch (ClassNotFoundException e) {
+			return false;
+		}
+	}
+
+}
@@ -0,0 +1,30 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+
+package net.oauth2;
+
+import java.util.Map;
+
+/**
+ * Creates oauth payload objects, such as access tokens, from a map of their
+ * payload properties. See {@link TokenFactories} for the factories resolved
+ * for payload classes.
+ *
+ * @param <T>
+ */
+@FunctionalInterface
+public interface TokenFactory<T> {
+
+	/**
+	 * @param parameters
+	 *            payload properties such as "access_token" and "expires_in"
+	 * @return
+	 */
+	T create(Map<String, Object> parameters);
+
+}
@@ -0,0 +1,208 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+package net.oauth2.client;
+
+import java.time.Instant;
+
+/**
+ * Service provider interface for recording metrics of the token lifecycle:
+ * token requests and their HTTP exchanges, renewal retries, observer dispatch,
+ * and the age and remaining validity of tokens in use.
+ * <p>
+ * All hooks have empty default implementations, so that implementations
+ * override only what they record. Instrumented components default to
+ * {@link #NOOP} and consult {@link #isEnabled()} before taking any
+ * measurements, so that disabled metrics cost no clock reads or allocations.
+ * Hooks are invoked concurrently and must not block.
+ * </p>
+ * Client id and grant type arguments identify the grant the event is about
+ * and may be null when unknown.
+ */
+public interface TokenMetrics {
+
+	/**
+	 * Metrics that record nothing. The default of all instrumented components.
+	 */
+	static final TokenMetrics NOOP = new TokenMetrics() {
+		@Override
+		public boolean isEnabled() {
+			return false;
+		}
+	};
+
+	/**
+	 * @return false if this instance records nothing and instrumented
+	 *         components can skip measuring.
+	 */
+	default boolean isEnabled() {
+		return true;
+	}
+
+	/**
+	 * Token providers hand out tokens on every resource request, so they
+	 * measure the age and remaining validity of the tokens for
+	 * {@link #tokenUsed(String, long, long)} only if this is true.
+	 * Implementations that do not override that hook return false. Defaults
+	 * to {@link #isEnabled()}.
+	 * 
+	 * @return true if this instance records the usage of tokens
+	 */
+	default boolean isTokenUsageEnabled() {
+		return this.isEnabled();
+	}
+
+	/**
+	 * A token request to the token service starts. Invoked on the thread that
+	 * then reports its completion with
+	 * {@link #tokenRequest(String, String, long, Throwable)}, so that
+	 * implementations can span the request themselves, e.g. with the duration
+	 * of a recorded event.
+	 * 
+	 * @param clientId
+	 * @param grantType
+	 */
+	default void tokenRequestStarted(String clientId, String grantType) {
+	}
+
+	/**
+	 * A token request to the token service completed. Refreshes are token
+	 * requests with grant type "refresh_token".
+	 * 
+	 * @param clientId
+	 * @param grantType
+	 * @param durationNanos
+	 *            the duration of the request, including retries and failovers
+	 *            of the underlying HTTP client
+	 * @param failure
+	 *            the exception the request failed with, or null on success
+	 */
+	default void tokenRequest(String clientId, String grantType, long durationNanos, Throwable failure) {
+	}
+
+	/**
+	 * A single HTTP exchange with a token service endpoint starts. Invoked on
+	 * the thread that then reports its completion with
+	 * {@link #httpExchange(String, String, long, int, long, long, Throwable)}.
+	 * 
+	 * @param clientId
+	 * @param grantType
+	 */
+	default void httpExchangeStarted(String clientId, String grantType) {
+	}
+
+	/**
+	 * A single HTTP exchange with a token service endpoint completed.
+	 * 
+	 * @param clientId
+	 * @param grantType
+	 * @param durationNanos
+	 * @param failure
+	 *            the exception the exchange failed with, or null on success
+	 */
+	default void httpExchange(String clientId, String grantType, long durationNanos, Throwable failure) {
+	}
+
+	/**
+	 * A single HTTP exchange with a token service endpoint completed. Invoked
+	 * by HTTP clients that know the status and payload sizes of the exchange.
+	 * Delegates to {@link #httpExchange(String, String, long, Throwable)} by
+	 * default.
+	 * 
+	 * @param clientId
+	 * @param grantType
+	 * @param durationNanos
+	 * @param status
+	 *            the HTTP status code, or 0 if no response was received
+	 * @param requestSize
+	 *            the length of the request payload in characters
+	 * @param responseSize
+	 *            the length of the response payload in characters, or 0 if
+	 *            it was not read
+	 * @param failure
+	 *            the exception the exchange failed with, or null on success
+	 */
+	default void httpExchange(String clientId, String grantType, long durationNanos, int status, long requestSize,
+			long responseSize, Throwable failure) {
+		this.httpExchange(clientId, grantType, durationNanos, failure);
+	}
+
+	/**
+	 * A hedge request was sent because the first attempt of a token request
+	 * was slow.
+	 * 
+	 * @param clientId
+	 * @param grantType
+	 */
+	default void hedged(String clientId, String grantType) {
+	}
+
+	/**
+	 * A token request failed over from one token service endpoint to another.
+	 * 
+	 * @param clientId
+	 * @param grantType
+	 */
+	default void failedOver(String clientId, String grantType) {
+	}
+
+	/**
+	 * A failed token renewal is retried.
+	 * 
+	 * @param clientId
+	 * @param backoffNanos
+	 *            the time waited before the retry
+	 */
+	default void renewalRetried(String clientId, long backoffNanos) {
+	}
+
+	/**
+	 * The observers of a token provider were notified of a token change.
+	 * 
+	 * @param clientId
+	 * @param durationNanos
+	 *            the time it took to dispatch the change to all observers
+	 */
+	default void observersNotified(String clientId, long durationNanos) {
+	}
+
+	/**
+	 * A token provider switched to a new token.
+	 * 
+	 * @param clientId
+	 * @param expiresAt
+	 *            the moment the new token expires, or null if it has none
+	 */
+	default void tokenChanged(String clientId, Instant expiresAt) {
+	}
+
+	/**
+	 * A token was handed out for use by a token provider.
+	 * 
+	 * @param clientId
+	 * @param ageNanos
+	 *            the time since the token became valid
+	 * @param ttlLeftNanos
+	 *            the time left until the token expires
+	 */
+	default void tokenUsed(String clientId, long ageNanos, long ttlLeftNanos) {
+	}
+
+	/**
+	 * A resource request interceptor looked up a token to authorize a request
+	 * with.
+	 * 
+	 * @param durationNanos
+	 *            the time it took to obtain the token
+	 * @param authorized
+	 *            false if no token was available and the request was sent
+	 *            without authorization
+	 */
+	default void resourceRequest(long durationNanos, boolean authorized) {
+	}
+
+}
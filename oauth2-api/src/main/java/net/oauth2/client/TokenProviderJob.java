@@ -52,7 +52,10 @@ public interface TokenProviderJob<T extends AccessToken> {
 	 * considered 100% reliable.</li>
 	 * </ol>
 	 * Therefore, it's a good practice to set the scheduled runs as a percentage
-	 * close to 1 rather than exactly 1, e.g. 0.9. <div>The value precision
+	 * close to 1 rather than exactly 1, e.g. 0.9. Implementations that read the
+	 * exact validity period from the token itself, such as the "exp" and "iat"
+	 * claims of JWT access tokens, eliminate the first source of imprecision
+	 * and can use values closer to 1. <div>The value precision
 	 * should be calculated with respect to the actual TTL amount of the access
 	 * token and considering that ultimately it will be rounded to seconds using
 	 * Math.round. Here is a few examples to give you the idea. <div>It is quite
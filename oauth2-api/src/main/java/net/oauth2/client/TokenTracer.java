@@ -0,0 +1,98 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+package net.oauth2.client;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Service provider interface for tracing token operations, e.g. with
+ * OpenTelemetry, to tell whether a slow request waited on a token.
+ * <p>
+ * Spans cover token fetches and refreshes ({@link #FETCH}, {@link #REFRESH}),
+ * the HTTP exchanges with the token service including response parsing
+ * ({@link #HTTP}) and blocking token lookups ({@link #GET}). A span is the
+ * current span of its thread until closed, so spans nest and HTTP clients can
+ * {@link #inject(BiConsumer) inject} its context into the headers of
+ * outgoing token requests.
+ * </p>
+ * Instrumented components default to {@link #NOOP}, which returns the shared
+ * {@link Span#NOOP} span and allocates nothing.
+ */
+public interface TokenTracer {
+
+	static final String FETCH = "oauth2.token.fetch";
+	static final String REFRESH = "oauth2.token.refresh";
+	static final String HTTP = "oauth2.token.http";
+	static final String GET = "oauth2.token.get";
+
+	/**
+	 * A tracer that traces nothing. The default of all instrumented
+	 * components.
+	 */
+	static final TokenTracer NOOP = new TokenTracer() {
+	};
+
+	/**
+	 * Starts a span and makes it the current span of this thread until it is
+	 * closed.
+	 * 
+	 * @param name
+	 *            the span name, e.g. {@link #FETCH}
+	 * @param clientId
+	 *            the client id of the grant, or null if unknown
+	 * @param grantType
+	 *            the grant type, or null if unknown
+	 * @return the started span, to be closed in a finally block by the
+	 *         caller
+	 */
+	default Span start(String name, String clientId, String grantType) {
+		return Span.NOOP;
+	}
+
+	/**
+	 * Writes the context of the current span as headers to an outgoing
+	 * request.
+	 * 
+	 * @param headers
+	 *            receives header names and values
+	 */
+	default void inject(BiConsumer<String, String> headers) {
+	}
+
+	/**
+	 * A started span. Closing ends it and restores the previously current
+	 * span.
+	 */
+	interface Span extends AutoCloseable {
+
+		static final Span NOOP = new Span() {
+		};
+
+		/**
+		 * Marks this span as failed.
+		 * 
+		 * @param failure
+		 */
+		default void error(Throwable failure) {
+		}
+
+		/**
+		 * Sets a numeric attribute, e.g. the HTTP status of an exchange.
+		 * 
+		 * @param key
+		 * @param value
+		 */
+		default void attribute(String key, long value) {
+		}
+
+		@Override
+		default void close() {
+		}
+	}
+
+}
@@ -9,8 +9,6 @@
 package net.oauth2.client.http;
 
 import java.io.IOException;
-import java.lang.reflect.Constructor;
-import java.lang.reflect.InvocationTargetException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -18,7 +16,11 @@ import java.util.Map;
 import java.util.stream.Stream;
 
 import commons.http.WwwFormUrlEncodedCodec;
+import net.oauth2.AccessTokenGrantRequest;
 import net.oauth2.ParametersMap;
+import net.oauth2.ParametersMapCodec;
+import net.oauth2.TokenFactories;
+import net.oauth2.TokenFactory;
 
 /**
  * A www.form-encode codec for oauth payloads posted to OAuth Token Service.  
@@ -66,13 +68,30 @@ public class FormEncodeDataBinding extends WwwFormUrlEncodedCodec {
 	 * @return
 	 */
 	public <T extends ParametersMap> String encode(final T bag, @SuppressWarnings("rawtypes") Map<String, Serializer> serializersMappings) {
-		Map<String, Object> grantRequestFormFrields = null;
+		return this.encodeParameters(parameters(bag), serializersMappings);
+	}
+
+	/**
+	 * Encodes a parameters map grant/token payload www.form-encoded directly to out.
+	 * 
+	 * @param bag
+	 * @param serializersMappings
+	 * @param out
+	 * @throws IOException
+	 */
+	public <T extends ParametersMap> void encode(final T bag, @SuppressWarnings("rawtypes") Map<String, Serializer> serializersMappings, final Appendable out) throws IOException {
+		this.encodeParameters(parameters(bag), serializersMappings, out);
+	}
+
+	private static Map<String, Object> parameters(ParametersMap bag) {
 		try {
-			grantRequestFormFrields = bag.map();
+			// grant requests take their client assertion once per encoded request
+			if (bag instanceof AccessTokenGrantRequest)
+				return ((AccessTokenGrantRequest) bag).requestParameters();
+			return bag.map();
 		} catch (Exception e) {
 			throw new RuntimeException(e);
 		}
-		return this.encodeStream(grantRequestFormFrields.entrySet().stream(), serializersMappings);
 	}
 	
 	// Decoding
@@ -101,7 +120,9 @@ public class FormEncodeDataBinding extends WwwFormUrlEncodedCodec {
 		public static Collection<String> parseDelimitedString(String delimitedString, String delimiterPattern, boolean returnUnmodifiable){
 			if(delimiterPattern == null)
 				delimiterPattern = "\\s+";
-			String[] enumerationArr = delimitedString.split(delimiterPattern);
+			String trimmed = delimitedString.trim();
+			// an empty value is an empty collection, not a collection of one empty string
+			String[] enumerationArr = trimmed.isEmpty() ? new String[0] : trimmed.split(delimiterPattern);
 			Collection<String> list = Stream.of(enumerationArr).collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
 			if(returnUnmodifiable)
 				list = Collections.unmodifiableCollection(list);
@@ -119,7 +140,9 @@ public class FormEncodeDataBinding extends WwwFormUrlEncodedCodec {
 	
 	/**
 	 * Decodes a www.form-encode string into grant/token object of the given targetClass type T.
-	 * Requires a constructor with a single Map<String, ?> parameter.
+	 * Requires a constructor with a single Map<String, ?> parameter, or a generated
+	 * {@link ParametersMapCodec} that decodes with it. The construction strategy is resolved
+	 * once per class by {@link TokenFactories}.
 	 * 
 	 * @param encodedString
 	 * @param targetClass
@@ -127,22 +150,14 @@ public class FormEncodeDataBinding extends WwwFormUrlEncodedCodec {
 	 * @return
 	 * @throws IOException
 	 */
+	@SuppressWarnings("unchecked")
 	public <T> T from(final String encodedString, final Class<T> targetClass, @SuppressWarnings("rawtypes") final Map<String, Deserializer> deserializersMapping) throws IOException{
 		Map<String, ?>  parameters = from(encodedString, deserializersMapping);
 		//TODO: the requirement for constructor with Map argument is implicit and cannot be enforced by interface unfortunately 
-		Constructor<T> constructor;
-		try {
-			constructor = targetClass.getConstructor(Map.class);
-		} catch (NoSuchMethodException | SecurityException e) {
-			throw new IOException(e);
-		}
-		T result = null;
-		try {
-			constructor.setAccessible(true);
-			result = constructor.newInstance(parameters);
-		} catch (InstantiationException | IllegalAccessException | IllegalArgumentException | InvocationTargetException e) {
-			throw new RuntimeException(e);
-		}
+		TokenFactory<T> factory = TokenFactories.forType(targetClass);
+		T result = factory != null ? factory.create((Map<String, Object>) parameters) : null;
+		if (result == null)
+			throw new IOException("No public constructor with a single Map parameter in " + targetClass.getName());
 		return result;
 	}
 	
@@ -0,0 +1,249 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+
+package net.oauth2.client.http;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Formats the HTTP wire exchanges of token service clients for logging,
+ * shared by all transports.
+ * <p>
+ * Values of sensitive form fields and JSON members (client secrets,
+ * passwords, assertions and tokens) and of sensitive headers are redacted,
+ * and bodies are truncated. The formatter builds nothing by itself: transports
+ * guard it with the debug level of their logger and {@link #sample()}, so
+ * formatting costs nothing unless an exchange is actually logged.
+ * </p>
+ * 
+ * <pre>
+ * boolean wire = LOGGER.isDebugEnabled() &amp;&amp; this.wireFormat.sample();
+ * if (wire)
+ * 	LOGGER.debug(this.wireFormat.formatRequest(method, url, headers, body));
+ * </pre>
+ * 
+ * Instances are immutable and thread-safe.
+ */
+public class HttpWireFormatter {
+
+	private static final String NEWLINE = System.getProperty("line.separator");
+
+	static final String REDACTED = "***";
+
+	/**
+	 * The form fields and JSON members redacted by default.
+	 */
+	public static final List<String> SENSITIVE_FIELDS = Arrays.asList("client_secret", "password", "assertion",
+			"client_assertion", "code", "code_verifier", "device_code", "subject_token", "actor_token",
+			"access_token", "refresh_token", "id_token");
+
+	/**
+	 * The headers redacted by default.
+	 */
+	public static final List<String> SENSITIVE_HEADERS = Arrays.asList("Authorization", "Proxy-Authorization",
+			"Cookie", "Set-Cookie");
+
+	private final Pattern formFields;
+	private final Pattern jsonMembers;
+	private final Set<String> headers;
+	private final int maxBodyLength;
+	private final double sampleRate;
+
+	HttpWireFormatter(Collection<String> fields, Collection<String> headers, int maxBodyLength, double sampleRate) {
+		StringBuilder names = new StringBuilder();
+		for (String field : fields) {
+			if (names.length() > 0)
+				names.append('|');
+			names.append(Pattern.quote(field));
+		}
+		this.formFields = Pattern.compile("(^|&)(" + names + ")=[^&]*");
+		this.jsonMembers = Pattern.compile("(\"(?:" + names + ")\"\\s*:\\s*)(?:\"(?:[^\"\\\\]|\\\\.)*\"|[^,}\\]\\s]+)");
+		this.headers = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+		this.headers.addAll(headers);
+		this.maxBodyLength = maxBodyLength;
+		this.sampleRate = sampleRate;
+	}
+
+	public static final class Builder {
+
+		final Set<String> fields = new LinkedHashSet<>(SENSITIVE_FIELDS);
+		final Set<String> headers = new LinkedHashSet<>(SENSITIVE_HEADERS);
+		int maxBodyLength = 1024;
+		double sampleRate = 1;
+
+		public Builder() {
+		}
+
+		/**
+		 * Adds form fields and JSON members to redact in bodies, in addition
+		 * to {@link HttpWireFormatter#SENSITIVE_FIELDS}.
+		 * 
+		 * @param names
+		 * @return this builder for chaining
+		 */
+		public Builder redactFields(String... names) {
+			if (names == null)
+				throw new IllegalArgumentException("names is null");
+			this.fields.addAll(Arrays.asList(names));
+			return this;
+		}
+
+		/**
+		 * Adds headers to redact, in addition to
+		 * {@link HttpWireFormatter#SENSITIVE_HEADERS}.
+		 * 
+		 * @param names
+		 * @return this builder for chaining
+		 */
+		public Builder redactHeaders(String... names) {
+			if (names == null)
+				throw new IllegalArgumentException("names is null");
+			this.headers.addAll(Arrays.asList(names));
+			return this;
+		}
+
+		/**
+		 * The number of characters of a body to log, after redaction. Defaults
+		 * to 1024.
+		 * 
+		 * @param maxBodyLength
+		 * @return this builder for chaining
+		 */
+		public Builder maxBodyLength(int maxBodyLength) {
+			if (maxBodyLength < 0)
+				throw new IllegalArgumentException("maxBodyLength is negative");
+			this.maxBodyLength = maxBodyLength;
+			return this;
+		}
+
+		/**
+		 * The share of exchanges to log, between (0-1]. Defaults to 1, logging
+		 * all exchanges.
+		 * 
+		 * @param sampleRate
+		 * @return this builder for chaining
+		 */
+		public Builder sampleRate(double sampleRate) {
+			if (!(sampleRate > 0) || sampleRate > 1)
+				throw new IllegalArgumentException("sampleRate must be value between (0-1]");
+			this.sampleRate = sampleRate;
+			return this;
+		}
+
+		public HttpWireFormatter build() {
+			return new HttpWireFormatter(new ArrayList<>(this.fields), new ArrayList<>(this.headers),
+					this.maxBodyLength, this.sampleRate);
+		}
+	}
+
+	/**
+	 * Decides whether to log an exchange. Invoke once per exchange, so that its
+	 * request and response are logged together.
+	 * 
+	 * @return true if the exchange is sampled for logging
+	 */
+	public boolean sample() {
+		return this.sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < this.sampleRate;
+	}
+
+	/**
+	 * Formats a request for logging.
+	 * 
+	 * @param method
+	 * @param url
+	 * @param headers
+	 *            the request headers, or null
+	 * @param body
+	 *            the form-encoded or JSON request body, or null
+	 * @return the redacted request
+	 */
+	public String formatRequest(String method, String url, Map<String, ? extends Collection<String>> headers,
+			String body) {
+		StringBuilder log = new StringBuilder();
+		log.append("--> ").append(method).append(' ').append(url).append(NEWLINE);
+		this.appendHeaders(log, headers);
+		log.append(NEWLINE);
+		this.appendBody(log, body);
+		return log.toString();
+	}
+
+	/**
+	 * Formats a response for logging.
+	 * 
+	 * @param statusLine
+	 * @param headers
+	 *            the response headers, or null
+	 * @param body
+	 *            the form-encoded or JSON response body, or null
+	 * @return the redacted response
+	 */
+	public String formatResponse(String statusLine, Map<String, ? extends Collection<String>> headers, String body) {
+		StringBuilder log = new StringBuilder();
+		log.append("<-- ").append(statusLine).append(NEWLINE);
+		this.appendHeaders(log, headers);
+		log.append(NEWLINE);
+		this.appendBody(log, body);
+		return log.toString();
+	}
+
+	/**
+	 * Redacts the values of sensitive form fields and JSON members in a body.
+	 * 
+	 * @param body
+	 * @return the redacted body
+	 */
+	public String redact(String body) {
+		if (body == null || body.isEmpty())
+			return body;
+		Matcher form = this.formFields.matcher(body);
+		if (form.find())
+			body = form.replaceAll("$1$2=" + REDACTED);
+		Matcher json = this.jsonMembers.matcher(body);
+		if (json.find())
+			body = json.replaceAll("$1\"" + REDACTED + "\"");
+		return body;
+	}
+
+	private void appendHeaders(StringBuilder log, Map<String, ? extends Collection<String>> headers) {
+		if (headers == null)
+			return;
+		for (Map.Entry<String, ? extends Collection<String>> header : headers.entrySet()) {
+			if (header.getKey() == null || header.getValue() == null)
+				continue;
+			log.append(header.getKey()).append(':');
+			if (this.headers.contains(header.getKey()))
+				log.append('[').append(REDACTED).append(']');
+			else
+				log.append(header.getValue());
+			log.append(NEWLINE);
+		}
+	}
+
+	private void appendBody(StringBuilder log, String body) {
+		if (body == null || body.trim().isEmpty())
+			return;
+		String redacted = this.redact(body);
+		if (redacted.length() > this.maxBodyLength) {
+			log.append(redacted, 0, this.maxBodyLength).append("...[").append(redacted.length() - this.maxBodyLength)
+					.append(" more chars]");
+		} else
+			log.append(redacted);
+		log.append(NEWLINE);
+	}
+
+}
@@ -15,17 +15,17 @@ import net.oauth2.AccessToken;
  */
 public class ResourceOAuthHeader {
 
-	private static final String HTTP_HEADER_AUTHORIZATION_VALUE_PATTERN = "%s %s";
-	
 	public static final String HTTP_HEADER_NAME_AUTHORIZATION = "Authorization";
 	
 	/**
-	 * Formats a OAuth access token into standard OAuth value for the Authorization HTTP request header
+	 * Formats a OAuth access token into standard OAuth value for the Authorization HTTP request header.
+	 * The value is cached on the token, so that formatting it for every request costs a field read.
 	 * @param token
 	 * @return
+	 * @see AccessToken#authorizationHeader()
 	 */
 	public static String format(AccessToken token){
-		return String.format(HTTP_HEADER_AUTHORIZATION_VALUE_PATTERN, token.getTokenType(), token.getAccessToken());
+		return token.authorizationHeader();
 	}
 
 }
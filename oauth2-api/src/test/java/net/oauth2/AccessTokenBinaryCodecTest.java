@@ -0,0 +1,180 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+package net.oauth2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Arrays;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class AccessTokenBinaryCodecTest {
+
+	public static class CustomToken extends AccessToken {
+		public CustomToken(Map<String, Object> map) {
+			super(map);
+		}
+	}
+
+	private static void assertTokenEquals(AccessToken expected, AccessToken actual) {
+		assertEquals(expected.getAccessToken(), actual.getAccessToken());
+		assertEquals(expected.getTokenType(), actual.getTokenType());
+		assertEquals(expected.getExpiresIn(), actual.getExpiresIn());
+		assertEquals(expected.getRefreshToken(), actual.getRefreshToken());
+		assertEquals(expected.getScopes() == null ? null : ScopeSet.of(expected.getScopes()), actual.getScopes());
+	}
+
+	@Test
+	public void testRoundTrip() {
+		AccessTokenBinaryCodec codec = new AccessTokenBinaryCodec("read", "write");
+		AccessToken token = new AccessToken("2YotnFZFEjr1zCsicMWpAA", "Bearer", 3600, "tGzv3JOkF0XG5Qx2TlKWIA",
+				Arrays.asList("read", "admin", "\u00e9crire"));
+
+		byte[] encoded = codec.encode(token);
+		AccessToken decoded = codec.decode(ByteBuffer.wrap(encoded));
+
+		assertEquals(codec.encodedLength(token), encoded.length);
+		assertTokenEquals(token, decoded);
+		assertSame(ScopeSet.of("read", "admin", "\u00e9crire"), decoded.getScopes());
+	}
+
+	@Test
+	public void testRoundTripNulls() {
+		AccessTokenBinaryCodec codec = new AccessTokenBinaryCodec();
+		AccessToken token = new AccessToken("token", "mac", 0, null, null);
+
+		AccessToken decoded = codec.decode(ByteBuffer.wrap(codec.encode(token)));
+
+		assertTokenEquals(token, decoded);
+		assertNull(decoded.getScopes());
+	}
+
+	@Test
+	public void testTemporalRoundTripDirectBuffer() {
+		AccessTokenBinaryCodec codec = new AccessTokenBinaryCodec("read");
+		AccessToken token = new AccessToken("token", null, 60, null, Arrays.asList("read"));
+		TemporalAccessToken<AccessToken> temporal = new TemporalAccessToken<>(token,
+				Instant.ofEpochSecond(1500000000L, 123456789), ChronoUnit.MINUTES);
+		ByteBuffer buffer = ByteBuffer.allocateDirect(2 * codec.encodedLength(temporal));
+
+		codec.encode(temporal, buffer);
+		codec.encode(temporal, buffer);
+		buffer.flip();
+		TemporalAccessToken<AccessToken> first = codec.decodeTemporal(buffer, AccessToken.class);
+		AccessToken second = codec.decode(buffer);
+
+		assertEquals(0, buffer.remaining());
+		assertTokenEquals(token, first.token());
+		assertEquals(temporal.validSince(), first.validSince());
+		assertEquals(ChronoUnit.MINUTES, first.ttlUnit());
+		assertTokenEquals(token, second);
+	}
+
+	@Test
+	public void testTemporalRoundTripExactExpiry() {
+		AccessTokenBinaryCodec codec = new AccessTokenBinaryCodec();
+		Instant received = Instant.ofEpochSecond(1500000000L, 5);
+		AccessToken token = new AccessToken(
+				JwtClaimsTest.jwt("{\"iat\":1400000000,\"exp\":1400000600}"), null, 3600, null, null);
+		TemporalAccessToken<AccessToken> temporal = TemporalAccessToken.fromJwt(token, received, ChronoUnit.SECONDS);
+		byte[] encoded = codec.encode(temporal);
+
+		TemporalAccessToken<AccessToken> decoded = codec.decodeTemporal(ByteBuffer.wrap(encoded), AccessToken.class);
+
+		assertEquals(codec.encodedLength(temporal), encoded.length);
+		assertTokenEquals(token, decoded.token());
+		assertEquals(received, decoded.validSince());
+		assertEquals(received.plusSeconds(600), decoded.expiresAt());
+		assertEquals(temporal.ttl(), decoded.ttl());
+		assertTokenEquals(token, codec.decode(ByteBuffer.wrap(encoded)));
+	}
+
+	@Test
+	public void testDecodeVersion1() {
+		AccessTokenBinaryCodec codec = new AccessTokenBinaryCodec();
+		TemporalAccessToken<AccessToken> temporal = new TemporalAccessToken<>(
+				new AccessToken("token", null, 60, null, null), Instant.ofEpochSecond(1500000000L));
+		byte[] encoded = codec.encode(temporal);
+		encoded[0] = 1;
+
+		TemporalAccessToken<AccessToken> decoded = codec.decodeTemporal(ByteBuffer.wrap(encoded), AccessToken.class);
+
+		assertTokenEquals(temporal.token(), decoded.token());
+		assertEquals(temporal.validSince(), decoded.validSince());
+		assertEquals(temporal.ttl(), decoded.ttl());
+		assertNull(decoded.expiresAt());
+	}
+
+	@Test
+	public void testDecodeSubclass() {
+		AccessTokenBinaryCodec codec = new AccessTokenBinaryCodec();
+		AccessToken token = new AccessToken("token", null, 60, "refresh", Arrays.asList("a"));
+
+		CustomToken decoded = codec.decode(ByteBuffer.wrap(codec.encode(token)), CustomToken.class);
+
+		assertTokenEquals(token, decoded);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnsupportedVersion() {
+		new AccessTokenBinaryCodec().decode(ByteBuffer.wrap(new byte[] { 99, 0 }));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testTruncated() {
+		AccessTokenBinaryCodec codec = new AccessTokenBinaryCodec();
+		byte[] encoded = codec.encode(new AccessToken("token", null, 60, null, null));
+		codec.decode(ByteBuffer.wrap(encoded, 0, encoded.length - 2));
+	}
+
+	/**
+	 * A bearer token record with access token "a" and a single scope
+	 * written as dictionary index, followed by the given index varint.
+	 */
+	private static ByteBuffer scopeIndexRecord(int... index) {
+		ByteBuffer buffer = ByteBuffer.allocate(7 + index.length);
+		buffer.put(new byte[] { AccessTokenBinaryCodec.VERSION, 2, 2, 'a', 0, 0, 2 });
+		for (int b : index)
+			buffer.put((byte) b);
+		buffer.flip();
+		return buffer;
+	}
+
+	@Test
+	public void testScopeIndex() {
+		assertEquals(ScopeSet.of("write"),
+				new AccessTokenBinaryCodec("read", "write").decode(scopeIndexRecord(2)).getScopes());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCorruptNegativeScopeIndex() {
+		// -1 as unsigned varint
+		new AccessTokenBinaryCodec("read", "write")
+				.decode(scopeIndexRecord(0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0xFF, 0x01));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCorruptScopeIndexBeyondIntRange() {
+		// 2^32 + 1, which would alias index 1 if narrowed to int
+		new AccessTokenBinaryCodec("read", "write").decode(scopeIndexRecord(0x81, 0x80, 0x80, 0x80, 0x10));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNotTemporal() {
+		AccessTokenBinaryCodec codec = new AccessTokenBinaryCodec();
+		codec.decodeTemporal(ByteBuffer.wrap(codec.encode(new AccessToken("token", null, 60, null, null))),
+				AccessToken.class);
+	}
+
+}
@@ -10,6 +10,7 @@ package net.oauth2;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
@@ -21,6 +22,8 @@ import org.junit.Test;
 import org.junit.runner.RunWith;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import net.oauth2.client.http.ResourceOAuthHeader;
+
 @RunWith(MockitoJUnitRunner.class)
 public class AccessTokenTest {
 
@@ -85,6 +88,15 @@ public class AccessTokenTest {
 		String s = token.toString();
 		assertEquals("AccessToken [accessToken=token, tokenType=OAuth, expiresIn=3600, refreshToken=refresh-token, scopes=[a, b, c]]", s);
 	}
+	
+	@Test
+	public void testAuthorizationHeader() {
+		AccessToken token = new AccessToken("token", null, 3600, null, null);
+		String header = token.authorizationHeader();
+		assertEquals("Bearer token", header);
+		assertSame(header, token.authorizationHeader());
+		assertSame(header, ResourceOAuthHeader.format(token));
+	}
 		
 	@After
 	public void after() {
@@ -0,0 +1,54 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+package net.oauth2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+import org.junit.Test;
+
+public class JwtClaimsTest {
+
+	static String jwt(String payload) {
+		Base64.Encoder encoder = Base64.getUrlEncoder().withoutPadding();
+		return encoder.encodeToString("{\"alg\":\"RS256\",\"typ\":\"JWT\"}".getBytes(StandardCharsets.UTF_8)) + "."
+				+ encoder.encodeToString(payload.getBytes(StandardCharsets.UTF_8)) + ".c2lnbmF0dXJl";
+	}
+
+	@Test
+	public void testDecode() {
+		JwtClaims claims = JwtClaims.decode(jwt(
+				"{\"iss\":\"https://as.example.com\",\"aud\":[\"a\",\"b}\"],\"cnf\":{\"x5t\":\"\\\"q\"},\"exp\":1500003600,\"active\":true,\"iat\":1500000000}"));
+
+		assertEquals(Instant.ofEpochSecond(1500003600L), claims.expiresAt());
+		assertEquals(Instant.ofEpochSecond(1500000000L), claims.issuedAt());
+	}
+
+	@Test
+	public void testDecodeFractionalAndMissingIat() {
+		JwtClaims claims = JwtClaims.decode(jwt("{ \"exp\" : 1500003600.5 }"));
+
+		assertEquals(Instant.ofEpochSecond(1500003600L, 500_000_000L), claims.expiresAt());
+		assertNull(claims.issuedAt());
+	}
+
+	@Test
+	public void testDecodeNotJwt() {
+		assertNull(JwtClaims.decode(null));
+		assertNull(JwtClaims.decode("2YotnFZFEjr1zCsicMWpAA"));
+		assertNull(JwtClaims.decode("a.b"));
+		assertNull(JwtClaims.decode("a.!!!.c"));
+		assertNull(JwtClaims.decode(jwt("not json")));
+		assertNull(JwtClaims.decode(jwt("{\"sub\":\"no validity claims\"}")));
+	}
+
+}
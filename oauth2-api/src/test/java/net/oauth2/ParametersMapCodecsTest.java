@@ -0,0 +1,118 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+
+package net.oauth2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.net.URI;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class ParametersMapCodecsTest {
+
+	@Test
+	public void testGeneratedCodecs() {
+		assertNotNull(ParametersMapCodecs.forType(AccessToken.class));
+		assertNotNull(ParametersMapCodecs.forType(ProtocolError.class));
+		assertNotNull(ParametersMapCodecs.forType(ClientCredentialsGrantRequest.class));
+		assertNotNull(ParametersMapCodecs.forType(PasswordCredentialsGrantRequest.class));
+		assertNull(ParametersMapCodecs.forType(String.class));
+	}
+
+	@Test
+	public void testCodecsCached() {
+		assertSame(ParametersMapCodecs.forType(AccessToken.class), ParametersMapCodecs.forType(AccessToken.class));
+		assertSame(AccessToken.class, ParametersMapCodecs.forType(AccessToken.class).type());
+	}
+
+	@Test
+	public void testEncodeGrant() throws Exception {
+		PasswordCredentialsGrantRequest grant = new PasswordCredentialsGrantRequest("user", "pass", "id", null,
+				Arrays.asList("read"));
+		Map<String, Object> expected = new HashMap<>();
+		expected.put("grant_type", "password");
+		expected.put("username", "user");
+		expected.put("password", "pass");
+		expected.put("client_id", "id");
+		expected.put("scope", Arrays.asList("read"));
+		assertEquals(expected, grant.map());
+	}
+
+	@Test
+	public void testEncodeToken() throws Exception {
+		AccessToken token = new AccessToken("token", "Bearer", 3600, null, null);
+		Map<String, Object> map = token.map();
+		assertEquals("token", map.get("access_token"));
+		assertEquals("Bearer", map.get("token_type"));
+		assertEquals(3600L, map.get("expires_in"));
+		assertFalse(map.containsKey("refresh_token"));
+		assertEquals(3, map.size());
+	}
+
+	@Test
+	public void testEncodeError() throws Exception {
+		ProtocolError error = new ProtocolError("invalid_scope", "descr", URI.create("https://example.com/e"), null);
+		Map<String, Object> expected = new HashMap<>();
+		expected.put("error", "invalid_scope");
+		expected.put("error_description", "descr");
+		expected.put("error_uri", URI.create("https://example.com/e"));
+		assertEquals(expected, error.map());
+	}
+
+	@Test
+	public void testDecode() {
+		Map<String, Object> map = new HashMap<>();
+		map.put("access_token", "token");
+		map.put("expires_in", 3600L);
+		AccessToken token = ParametersMapCodecs.forType(AccessToken.class).decode(map);
+		assertEquals("token", token.getAccessToken());
+		assertEquals(3600, token.getExpiresIn());
+		// grants have no map constructor
+		assertFalse(ParametersMapCodecs.forType(ClientCredentialsGrantRequest.class).isDecoding());
+		assertNull(ParametersMapCodecs.forType(ClientCredentialsGrantRequest.class).decode(map));
+	}
+
+	static class CustomGrantRequest extends AccessTokenGrantRequest {
+		CustomGrantRequest() {
+			super("custom", "id", null, null);
+		}
+	}
+
+	@Test
+	public void testInheritedProperties() throws Exception {
+		assertNotNull(ParametersMapCodecs.forType(CustomGrantRequest.class));
+		Map<String, Object> map = new CustomGrantRequest().map();
+		assertEquals("custom", map.get("grant_type"));
+		assertEquals("id", map.get("client_id"));
+		assertEquals(2, map.size());
+	}
+
+	public static class Unannotated {
+		public String getClientName() {
+			return "name";
+		}
+	}
+
+	@Test
+	public void testIntrospectionFallback() throws Exception {
+		assertNull(ParametersMapCodecs.forType(Unannotated.class));
+		Map<String, Object> map = ParametersMapCodecs.encode(new Unannotated(),
+				Collections.singletonMap("clientName", "client_name"));
+		assertEquals(Collections.singletonMap("client_name", "name"), map);
+	}
+
+}
@@ -0,0 +1,131 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+
+package net.oauth2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ScopeSetTest {
+
+	@Test
+	public void testInterned() {
+		ScopeSet scopes = ScopeSet.of("read", "write");
+		assertSame(scopes, ScopeSet.of("write", "read"));
+		assertSame(scopes, ScopeSet.of(Arrays.asList("read", "write", "read")));
+		assertSame(scopes, ScopeSet.parse(" write\tread  "));
+		assertSame(scopes, ScopeSet.of(scopes));
+		assertSame(ScopeSet.EMPTY, ScopeSet.parse(""));
+		assertNotSame(scopes, ScopeSet.of("read"));
+	}
+
+	@Test
+	public void testNull() {
+		assertNull(ScopeSet.of((List<String>) null));
+		assertNull(ScopeSet.parse(null));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testNullScope() {
+		ScopeSet.of("read", null);
+	}
+
+	@Test
+	public void testContains() {
+		ScopeSet scopes = ScopeSet.of("read", "write");
+		assertTrue(scopes.contains("read"));
+		assertFalse(scopes.contains("admin"));
+		assertFalse(scopes.contains(null));
+		assertTrue(scopes.containsAll(ScopeSet.of("write")));
+		assertFalse(scopes.containsAll(ScopeSet.of("write", "admin")));
+		assertTrue(scopes.containsAll(Arrays.asList("read", "write")));
+	}
+
+	@Test
+	public void testSetContract() {
+		ScopeSet scopes = ScopeSet.of("read", "write");
+		HashSet<String> expected = new HashSet<>(Arrays.asList("write", "read"));
+		assertEquals(expected, scopes);
+		assertEquals(scopes, expected);
+		assertEquals(expected.hashCode(), scopes.hashCode());
+		assertEquals(2, scopes.size());
+		assertEquals(expected, new HashSet<>(new ArrayList<>(scopes)));
+		assertFalse(scopes.equals(ScopeSet.of("read")));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void testImmutable() {
+		ScopeSet.of("read").add("write");
+	}
+
+	@Test
+	public void testManyScopes() {
+		List<String> names = new ArrayList<>();
+		for (int i = 0; i < 200; i++)
+			names.add("scope-" + i);
+		ScopeSet scopes = ScopeSet.of(names);
+		assertEquals(200, scopes.size());
+		assertTrue(scopes.contains("scope-199"));
+		assertEquals(new HashSet<>(names), scopes);
+	}
+
+	@Test
+	public void testScopesCap() {
+		ScopeSet.Registry registry = new ScopeSet.Registry(2, 100);
+		ScopeSet registered = registry.of(Arrays.asList("read", "write"));
+		assertSame(registered, registry.parse("write read"));
+
+		// past the cap scopes are held as strings and sets are not interned
+		ScopeSet scopes = registry.parse("admin read audit");
+		ScopeSet same = registry.of(Arrays.asList("audit", "read", "admin"));
+		assertNotSame(scopes, same);
+		assertEquals(scopes, same);
+		assertEquals(scopes.hashCode(), same.hashCode());
+		assertEquals(new HashSet<>(Arrays.asList("read", "admin", "audit")), scopes);
+		assertEquals(scopes, new HashSet<>(Arrays.asList("read", "admin", "audit")));
+		assertEquals(3, scopes.size());
+		assertTrue(scopes.contains("admin"));
+		assertTrue(scopes.contains("read"));
+		assertFalse(scopes.contains("write"));
+		assertFalse(scopes.contains("other"));
+		assertTrue(scopes.containsAll(registry.parse("read admin")));
+		assertFalse(scopes.containsAll(registry.parse("read other")));
+		assertFalse(scopes.containsAll(registered));
+		assertFalse(scopes.equals(registry.parse("admin read")));
+		assertFalse(scopes.equals(registered));
+	}
+
+	@Test
+	public void testInstancesCap() {
+		ScopeSet.Registry registry = new ScopeSet.Registry(100, 2);
+		ScopeSet read = registry.parse("read");
+		assertSame(read, registry.parse("read"));
+
+		// the empty set and read fill the registry
+		ScopeSet write = registry.parse("write");
+		ScopeSet same = registry.parse("write");
+		assertNotSame(write, same);
+		assertEquals(write, same);
+		assertEquals(write.hashCode(), same.hashCode());
+		assertFalse(write.equals(read));
+		assertTrue(registry.parse("read write").containsAll(write));
+		assertSame(read, registry.parse("read"));
+	}
+
+}
@@ -10,8 +10,10 @@ package net.oauth2;
 
 import static org.junit.Assert.*;
 
+import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
+import java.time.ZoneOffset;
 import java.time.temporal.ChronoUnit;
 import java.util.concurrent.TimeUnit;
 
@@ -68,12 +70,13 @@ public class TemporalAccessTokenTest {
 	@Test
 	public void testTtlLeft() {
 		AccessToken token = new AccessToken(null, null, 1500L, null, null);
-		Instant validSince = Instant.now().minus(1, ChronoUnit.SECONDS);
+		Clock clock = Clock.fixed(Instant.now(), ZoneOffset.UTC);
+		Instant validSince = clock.instant().minus(1, ChronoUnit.SECONDS);
 		
-		TemporalAccessToken<AccessToken> ttoken = new TemporalAccessToken<>(token, validSince, ChronoUnit.MILLIS);
+		TemporalAccessToken<AccessToken> ttoken = new TemporalAccessToken<>(token, validSince, ChronoUnit.MILLIS).clock(clock);
 		Duration ttlLeftDuration = ttoken.ttlLeft();
-		//a millisecond or so is lost while processing these lines so comparison is not exact but within limits
-		assertTrue((500 - TimeUnit.MILLISECONDS.convert(ttlLeftDuration.toNanos(), TimeUnit.NANOSECONDS)) < 10);
+		
+		assertEquals(Duration.ofMillis(500), ttlLeftDuration);
 	}
 
 	@Test
@@ -108,5 +111,101 @@ public class TemporalAccessTokenTest {
 		
 		assertFalse(expired);
 	}
+	
+	@Test
+	public void testIsExpiredAgainstClock() {
+		AccessToken token = new AccessToken(null, null, 500L, null, null);
+		Instant validSince = Instant.parse("2017-01-01T00:00:00Z");
+		
+		TemporalAccessToken<AccessToken> ttoken = new TemporalAccessToken<>(token, validSince, ChronoUnit.MILLIS);
+		
+		assertFalse(ttoken.clock(Clock.fixed(validSince.plusMillis(500), ZoneOffset.UTC)).isExpired());
+		assertTrue(ttoken.clock(Clock.fixed(validSince.plusMillis(501), ZoneOffset.UTC)).isExpired());
+		assertEquals(Duration.ZERO, ttoken.ttlLeft());
+	}
+
+	private static AccessToken jwtToken(Instant iat, Instant exp, long expiresIn) {
+		String claims = "{\"exp\":" + exp.getEpochSecond() + (iat != null ? ",\"iat\":" + iat.getEpochSecond() : "") + "}";
+		return new AccessToken(JwtClaimsTest.jwt(claims), null, expiresIn, null, null);
+	}
+
+	@Test
+	public void testFromJwt() {
+		Instant received = Instant.parse("2017-01-01T00:00:00Z");
+		AccessToken token = jwtToken(received, received.plus(1, ChronoUnit.HOURS), 7200L);
+
+		TemporalAccessToken<AccessToken> ttoken = TemporalAccessToken.fromJwt(token, received, ChronoUnit.SECONDS)
+				.clock(Clock.fixed(received.plus(10, ChronoUnit.MINUTES), ZoneOffset.UTC));
+
+		assertEquals(received, ttoken.validSince());
+		assertEquals(received.plus(1, ChronoUnit.HOURS), ttoken.expiresAt());
+		assertEquals(Duration.ofHours(1), ttoken.ttl());
+		assertFalse(ttoken.isExpired());
+		assertEquals(Duration.ofMinutes(50), ttoken.ttlLeft());
+	}
+
+	@Test
+	public void testFromJwtIgnoresClockSkew() {
+		Instant received = Instant.parse("2017-01-01T00:00:00Z");
+		// the server clock is two hours ahead
+		Instant iat = received.plus(2, ChronoUnit.HOURS);
+		AccessToken token = jwtToken(iat, iat.plus(1, ChronoUnit.HOURS), 0L);
+
+		TemporalAccessToken<AccessToken> ttoken = TemporalAccessToken.fromJwt(token, received, ChronoUnit.SECONDS);
+
+		assertEquals(received, ttoken.validSince());
+		assertEquals(received.plus(1, ChronoUnit.HOURS), ttoken.expiresAt());
+	}
+
+	@Test
+	public void testFromJwtCappedAtExpiresIn() {
+		Instant received = Instant.parse("2017-01-01T00:00:00Z");
+		AccessToken token = jwtToken(received, received.plus(1, ChronoUnit.HOURS), 600L);
+
+		TemporalAccessToken<AccessToken> ttoken = TemporalAccessToken.fromJwt(token, received, ChronoUnit.SECONDS);
+
+		assertEquals(received.plus(600, ChronoUnit.SECONDS), ttoken.expiresAt());
+		assertEquals(Duration.ofMinutes(10), ttoken.ttl());
+	}
+
+	@Test
+	public void testFromJwtExpBeforeIat() {
+		Instant received = Instant.parse("2017-01-01T00:00:00Z");
+		AccessToken token = jwtToken(received, received.minus(1, ChronoUnit.HOURS), 60L);
+
+		TemporalAccessToken<AccessToken> ttoken = TemporalAccessToken.fromJwt(token, received, ChronoUnit.SECONDS);
+
+		assertNull(ttoken.expiresAt());
+		assertEquals(Duration.ofSeconds(60), ttoken.ttl());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCreateExpiresAtNotAfterValidSince() {
+		Instant validSince = Instant.parse("2017-01-01T00:00:00Z");
+		TemporalAccessToken.create(new AccessToken("token", null, 60L, null, null), validSince, validSince);
+	}
+
+	@Test
+	public void testFromJwtFallbackToExpiresIn() {
+		AccessToken token = new AccessToken("opaque", null, 60L, null, null);
+		Instant received = Instant.now();
+
+		TemporalAccessToken<AccessToken> ttoken = TemporalAccessToken.fromJwt(token, received, ChronoUnit.SECONDS);
+
+		assertEquals(received, ttoken.validSince());
+		assertNull(ttoken.expiresAt());
+		assertEquals(Duration.ofSeconds(60), ttoken.ttl());
+	}
+
+	@Test
+	public void testExpiredJwt() {
+		Instant exp = Instant.now().minus(1, ChronoUnit.MINUTES);
+		AccessToken token = new AccessToken(JwtClaimsTest.jwt("{\"exp\":" + exp.getEpochSecond() + "}"), null, 3600L, null, null);
+
+		TemporalAccessToken<AccessToken> ttoken = TemporalAccessToken.fromJwt(token, Instant.now(), ChronoUnit.SECONDS);
+
+		assertTrue(ttoken.isExpired());
+		assertEquals(Duration.ZERO, ttoken.ttlLeft());
+	}
 
 }
@@ -0,0 +1,93 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+
+package net.oauth2;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class TokenFactoriesTest {
+
+	public static class CustomToken extends AccessToken {
+		final String idToken;
+
+		public CustomToken(Map<String, Object> map) {
+			super(map);
+			this.idToken = (String) map.get("id_token");
+		}
+	}
+
+	static class PackagePrivateToken extends AccessToken {
+		public PackagePrivateToken(Map<String, Object> map) {
+			super(map);
+		}
+	}
+
+	@Test
+	public void testLambdaFactory() {
+		Map<String, Object> map = new HashMap<>();
+		map.put("access_token", "token");
+		map.put("id_token", "id");
+		TokenFactory<CustomToken> factory = TokenFactories.forType(CustomToken.class);
+		CustomToken token = factory.create(map);
+		assertEquals("token", token.getAccessToken());
+		assertEquals("id", token.idToken);
+		assertSame(factory, TokenFactories.forType(CustomToken.class));
+	}
+
+	@Test
+	public void testMethodHandleFactory() {
+		Map<String, Object> map = new HashMap<>();
+		map.put("access_token", "token");
+		PackagePrivateToken token = TokenFactories.forType(PackagePrivateToken.class).create(map);
+		assertEquals("token", token.getAccessToken());
+	}
+
+	@Test
+	public void testNoFactory() {
+		assertNull(TokenFactories.forType(ClientCredentialsGrantRequest.class));
+		assertNull(TokenFactories.forType(Object.class));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testCreateWithoutFactory() {
+		TokenFactories.create(Object.class, new HashMap<>());
+	}
+
+	@Test
+	public void testConstructorExceptionIsPropagated() {
+		try {
+			TokenFactories.create(ProtocolError.class, null);
+		} catch (NullPointerException e) {
+			return;
+		}
+		throw new AssertionError("NullPointerException expected");
+	}
+
+	@Test
+	public void testToken() {
+		AccessToken token = TokenFactories.token(AccessToken.class, "token", null, 60, null, null);
+		assertSame(AccessToken.class, token.getClass());
+		assertEquals("Bearer", token.getTokenType());
+
+		CustomToken custom = TokenFactories.token(CustomToken.class, "token", "mac", 60, "refresh",
+				ScopeSet.of("read"));
+		assertEquals("mac", custom.getTokenType());
+		assertEquals(60, custom.getExpiresIn());
+		assertEquals("refresh", custom.getRefreshToken());
+		assertTrue(custom.hasScope("read"));
+	}
+
+}
@@ -8,13 +8,17 @@
 
 package net.oauth2.client.http;
 
+import static org.junit.Assert.assertEquals;
+
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 
 import org.junit.Test;
 
+import net.oauth2.AccessToken;
 import net.oauth2.ParametersMap;
 import net.oauth2.client.http.FormEncodeDataBinding.CollectionDeserializer;
 import net.oauth2.client.http.FormEncodeDataBinding.CollectionSerializer;
@@ -99,4 +103,18 @@ public class FormEncodeDataBindingTest {
 		System.out.println(decoded.map());
 	}
 
+	@Test
+	public void testFromGithubStyleToken() throws Exception {
+		FormEncodeDataBinding binding = new FormEncodeDataBinding()
+				.with("scope", new CollectionDeserializer<String>().delimiter("[,\\s]+").unmodifiable(true));
+		String encoded = "access_token=e72e16c7e42f292c6912e7710c838347ae178b4a&scope=repo%2Cgist&token_type=bearer&expires_in=28800";
+
+		AccessToken token = binding.from(encoded, AccessToken.class, null);
+
+		assertEquals("e72e16c7e42f292c6912e7710c838347ae178b4a", token.getAccessToken());
+		assertEquals("bearer", token.getTokenType());
+		assertEquals(28800, token.getExpiresIn());
+		assertEquals(Arrays.asList("repo", "gist"), new ArrayList<>(token.getScopes()));
+	}
+
 }
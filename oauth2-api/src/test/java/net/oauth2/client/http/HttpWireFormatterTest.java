@@ -0,0 +1,94 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+
+package net.oauth2.client.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class HttpWireFormatterTest {
+
+	final HttpWireFormatter wireFormat = new HttpWireFormatter.Builder().build();
+
+	@Test
+	public void testRedactForm() {
+		String redacted = wireFormat.redact("grant_type=password&username=john&password=s3cr%26t&client_id=app&client_secret=abc");
+
+		assertEquals("grant_type=password&username=john&password=***&client_id=app&client_secret=***", redacted);
+	}
+
+	@Test
+	public void testRedactJson() {
+		String redacted = wireFormat.redact(
+				"{\"access_token\": \"eyJ\\\"x\", \"token_type\":\"Bearer\",\"expires_in\":3600,\"refresh_token\":456}");
+
+		assertEquals("{\"access_token\": \"***\", \"token_type\":\"Bearer\",\"expires_in\":3600,\"refresh_token\":\"***\"}",
+				redacted);
+	}
+
+	@Test
+	public void testRedactCustomField() {
+		HttpWireFormatter wireFormat = new HttpWireFormatter.Builder().redactFields("api_key").build();
+
+		assertEquals("api_key=***&code=***", wireFormat.redact("api_key=k&code=c"));
+	}
+
+	@Test
+	public void testFormatRequest() {
+		Map<String, List<String>> headers = new LinkedHashMap<>();
+		headers.put("Content-Type", Collections.singletonList("application/x-www-form-urlencoded"));
+		headers.put("authorization", Collections.singletonList("Basic YXBwOmFiYw=="));
+
+		String log = wireFormat.formatRequest("POST", "https://localhost/token", headers,
+				"grant_type=client_credentials&client_secret=abc");
+
+		assertTrue(log.startsWith("--> POST https://localhost/token"));
+		assertTrue(log.contains("Content-Type:[application/x-www-form-urlencoded]"));
+		assertTrue(log.contains("authorization:[***]"));
+		assertFalse(log.contains("YXBwOmFiYw"));
+		assertTrue(log.contains("grant_type=client_credentials&client_secret=***"));
+	}
+
+	@Test
+	public void testTruncate() {
+		HttpWireFormatter wireFormat = new HttpWireFormatter.Builder().maxBodyLength(10).build();
+		char[] body = new char[30];
+		Arrays.fill(body, 'x');
+
+		String log = wireFormat.formatResponse("HTTP/1.1 200 OK", null, new String(body));
+
+		assertTrue(log.contains("xxxxxxxxxx...[20 more chars]"));
+		assertFalse(log.contains("xxxxxxxxxxx"));
+	}
+
+	@Test
+	public void testSample() {
+		assertTrue(wireFormat.sample());
+		HttpWireFormatter sampled = new HttpWireFormatter.Builder().sampleRate(0.5).build();
+		int hits = 0;
+		for (int i = 0; i < 1000; i++)
+			if (sampled.sample())
+				hits++;
+		assertTrue(hits > 350 && hits < 650);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidSampleRate() {
+		new HttpWireFormatter.Builder().sampleRate(0);
+	}
+
+}
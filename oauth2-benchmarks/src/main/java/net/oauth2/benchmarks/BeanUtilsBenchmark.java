@@ -0,0 +1,56 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+
+package net.oauth2.benchmarks;
+
+import java.beans.IntrospectionException;
+import java.lang.reflect.InvocationTargetException;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.oauth2.AccessTokenGrantRequest;
+import net.oauth2.BeanUtils;
+import net.oauth2.ClientCredentialsGrantRequest;
+
+/**
+ * Introspection of payload objects with {@link BeanUtils#asMap(Object, Map)}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BeanUtilsBenchmark {
+
+	final AccessTokenGrantRequest grant = new ClientCredentialsGrantRequest("s6BhdRkqt3", "7Fjfp0ZBr1KtDRbnfVdmIw",
+			Payloads.SCOPES);
+
+	@Benchmark
+	public Map<String, Object> grantAsMap()
+			throws IntrospectionException, IllegalAccessException, InvocationTargetException {
+		return BeanUtils.asMap(this.grant, null);
+	}
+
+	@Benchmark
+	public Map<String, Object> tokenAsMap()
+			throws IntrospectionException, IllegalAccessException, InvocationTargetException {
+		return BeanUtils.asMap(Payloads.TOKEN, null);
+	}
+
+}
@@ -0,0 +1,85 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+
+package net.oauth2.benchmarks;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the standard JMH command line options. Unless
+ * specified otherwise, it runs them with the GC profiler, recording
+ * allocation rates next to timings, and writes the results as JSON to
+ * <i>jmh-result.json</i> next to the benchmarks jar, i.e. in the build
+ * output directory, to compare against a baseline (e.g. with
+ * https://jmh.morethan.net).
+ * 
+ * <pre>
+ * mvn -f oauth2-parent/pom.xml -pl ../oauth2-benchmarks -am package -DskipTests
+ * java -jar oauth2-benchmarks/target/benchmarks.jar [jmh options] [include-regex]
+ * </pre>
+ */
+public class BenchmarkRunner {
+
+	static final String RESULT_FILE = "jmh-result.json";
+
+	public static void main(String[] args) throws RunnerException, IOException {
+		CommandLineOptions commandLine;
+		try {
+			commandLine = new CommandLineOptions(args);
+		} catch (CommandLineOptionException e) {
+			System.err.println("Error parsing command line: " + e.getMessage());
+			System.exit(1);
+			return;
+		}
+		if (commandLine.shouldHelp()) {
+			commandLine.showHelp();
+			return;
+		}
+		ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+		if (commandLine.getProfilers().isEmpty())
+			options.addProfiler(GCProfiler.class);
+		if (!commandLine.getResultFormat().hasValue())
+			options.resultFormat(ResultFormatType.JSON);
+		if (!commandLine.getResult().hasValue())
+			options.result(resultFile());
+		Runner runner = new Runner(options.build());
+		if (commandLine.shouldList())
+			runner.list();
+		else
+			runner.run();
+	}
+
+	/**
+	 * The result file in the directory of the benchmarks jar, or in the
+	 * working directory when not run from a jar.
+	 */
+	static String resultFile() {
+		try {
+			Path location = Paths.get(BenchmarkRunner.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+			if (Files.isRegularFile(location))
+				return location.resolveSibling(RESULT_FILE).toString();
+		} catch (URISyntaxException | RuntimeException e) {
+			// not a file system location
+		}
+		return RESULT_FILE;
+	}
+
+}
@@ -0,0 +1,152 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+
+package net.oauth2.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+
+import net.oauth2.AccessToken;
+import net.oauth2.ProtocolError;
+import net.oauth2.client.http.DataBindingProvider;
+import net.oauth2.client.http.databinding.SimpleDatabindingProvider;
+import net.oauth2.gson.GsonDataBindingProvider;
+import net.oauth2.jackson.JacksonDataBindingProvider;
+import net.oauth2.jackson.OAuth2ObjectMapper;
+
+/**
+ * Parsing of token and error responses by the {@link DataBindingProvider}s.
+ * The "jackson-map" provider is the baseline for the streaming Jackson
+ * binding: it parses tokens the way the Jackson module did before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DataBindingBenchmark {
+
+	/**
+	 * A token response of a typical identity provider: a JWT access token,
+	 * an opaque refresh token, scopes and vendor-specific members.
+	 */
+	static final String TOKEN = "{\"access_token\":\"" + Payloads.JWT + "\","
+			+ "\"token_type\":\"Bearer\",\"expires_in\":3599,"
+			+ "\"refresh_token\":\"8xLOxBtZp8Oi0B4Qk2pQ9ZrqEv3kAUnoE1lhoxWlKJb7HNmQ\","
+			+ "\"scope\":\"openid profile email offline_access\","
+			+ "\"id_token\":\"" + Payloads.JWT + "\","
+			+ "\"not-before-policy\":0,\"session_state\":\"2c3a5e47-0c3f-4f7e-9a2b-8d7f0c3c9a1e\"}";
+
+	static final String ERROR = "{\"error\":\"invalid_grant\","
+			+ "\"error_description\":\"The provided authorization grant is invalid, expired or revoked\","
+			+ "\"error_uri\":\"https://example.com/docs/errors#invalid_grant\"}";
+
+	@Param({ "simple", "gson", "jackson", "jackson-map" })
+	String provider;
+
+	DataBindingProvider<?> dataBinding;
+
+	@Setup
+	public void setUp() {
+		switch (this.provider) {
+		case "gson":
+			this.dataBinding = new GsonDataBindingProvider();
+			break;
+		case "jackson":
+			this.dataBinding = new JacksonDataBindingProvider();
+			break;
+		case "jackson-map":
+			this.dataBinding = new MapJacksonDataBindingProvider();
+			break;
+		default:
+			this.dataBinding = new SimpleDatabindingProvider();
+		}
+	}
+
+	@Benchmark
+	public AccessToken parseToken() throws IOException {
+		return this.dataBinding.parseToken(TOKEN, AccessToken.class);
+	}
+
+	@Benchmark
+	public ProtocolError parseError() throws IOException {
+		return this.dataBinding.parseError(ERROR, ProtocolError.class);
+	}
+
+	/**
+	 * The Jackson binding before the streaming deserializer: every call
+	 * resolves the deserializer through the mapper, and tokens are read into
+	 * an intermediate HashMap first. The previous implementation failed on
+	 * scope strings, so here they are split after the map is read.
+	 */
+	static final class MapJacksonDataBindingProvider extends JacksonDataBindingProvider {
+
+		MapJacksonDataBindingProvider() {
+			super(new OAuth2ObjectMapper(new ObjectMapper()
+					.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
+					.configure(DeserializationFeature.ACCEPT_EMPTY_STRING_AS_NULL_OBJECT, true))
+							.registerModule(new SimpleModule().addDeserializer(AccessToken.class,
+									new MapAccessTokenDeserializer())));
+		}
+
+		@Override
+		public <T extends AccessToken> T parseToken(String payload, Class<T> tokenType) throws IOException {
+			return this.getMapper().readValue(payload, tokenType);
+		}
+
+		@Override
+		public <T extends ProtocolError> T parseError(String payload, Class<T> errorType) throws IOException {
+			return this.getMapper().readValue(payload, errorType);
+		}
+	}
+
+	static final class MapAccessTokenDeserializer extends StdDeserializer<AccessToken> {
+
+		private static final long serialVersionUID = 1L;
+
+		MapAccessTokenDeserializer() {
+			super(AccessToken.class);
+		}
+
+		@Override
+		public AccessToken deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+			HashMap<String, Object> map = p.readValueAs(new TypeReference<HashMap<String, Object>>() {
+			});
+			Object scope = map.get("scope");
+			if (scope instanceof String)
+				map.put("scope", ((String) scope).isEmpty() ? null
+						: new ArrayList<>(Arrays.asList(((String) scope).split(" "))));
+			return new AccessToken(map);
+		}
+	}
+
+}
@@ -0,0 +1,79 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+
+package net.oauth2.benchmarks;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import commons.http.WwwFormUrlEncodedCodec;
+import net.oauth2.AccessToken;
+import net.oauth2.AccessTokenGrantRequest;
+import net.oauth2.PasswordCredentialsGrantRequest;
+import net.oauth2.client.http.FormEncodeDataBinding;
+import net.oauth2.client.http.FormEncodeDataBinding.CollectionDeserializer;
+import net.oauth2.client.http.FormEncodeDataBinding.CollectionSerializer;
+
+/**
+ * Encoding of grant requests and decoding of form-encoded token responses
+ * with {@link FormEncodeDataBinding} and {@link WwwFormUrlEncodedCodec}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FormEncodingBenchmark {
+
+	/**
+	 * A form-encoded token response, as returned e.g. by Github.
+	 */
+	static final String TOKEN = "access_token=" + Payloads.JWT
+			+ "&token_type=bearer&expires_in=3600&refresh_token=8xLOxBtZp8Oi0B4Qk2pQ9ZrqEv3kAUnoE1lhoxWlKJb7HNmQ"
+			+ "&scope=openid%20profile%20email%20offline_access";
+
+	final AccessTokenGrantRequest grant = new PasswordCredentialsGrantRequest("john.doe@example.com",
+			"p@ss w0rd&=%", "s6BhdRkqt3", "7Fjfp0ZBr1KtDRbnfVdmIw", Payloads.SCOPES);
+
+	final FormEncodeDataBinding encoder = new FormEncodeDataBinding().with("scope",
+			new CollectionSerializer<Collection<String>>());
+
+	final FormEncodeDataBinding decoder = new FormEncodeDataBinding().with("scope",
+			new CollectionDeserializer<Collection<String>>());
+
+	final WwwFormUrlEncodedCodec codec = new WwwFormUrlEncodedCodec();
+
+	@Benchmark
+	public String encodeGrant() {
+		return this.encoder.encode(this.grant, null);
+	}
+
+	@Benchmark
+	public AccessToken decodeToken() throws IOException {
+		return this.decoder.from(TOKEN, AccessToken.class, null);
+	}
+
+	@Benchmark
+	public Map<String, ?> decodeParameters() {
+		return this.codec.from(TOKEN, null);
+	}
+
+}
@@ -0,0 +1,127 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+package net.oauth2.benchmarks;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import net.oauth2.AccessToken;
+import net.oauth2.ClientCredentialsGrantRequest;
+import net.oauth2.client.http.TokenServiceHttpClient;
+import net.oauth2.client.http.apache.httpcomponents.ApacheHttpClientAdapter;
+import net.oauth2.client.http.databinding.SimpleDatabindingProvider;
+import net.oauth2.client.http.javase.HttpsURLConnectionClientAdapter;
+import net.oauth2.client.http.okhttp3.OkHttpClientAdapter;
+import net.oauth2.mock.Latency;
+import net.oauth2.mock.LoadTest;
+import net.oauth2.mock.LoadTestReport;
+import net.oauth2.mock.MockAuthorizationServer;
+import net.oauth2.mock.ServerProfile;
+import okhttp3.Credentials;
+import okhttp3.OkHttpClient;
+
+/**
+ * Runs a {@link LoadTest} for each transport module against an embedded
+ * {@link MockAuthorizationServer} and prints tokens/sec, p50/p99 latency and
+ * the calls to the token endpoint.
+ * 
+ * <pre>
+ * java -cp oauth2-benchmarks/target/benchmarks.jar net.oauth2.benchmarks.LoadTestRunner [options]
+ * 
+ *   --threads M          M threads requesting tokens back to back (default 16)
+ *   --providers N        N auto-renewing token providers instead
+ *   --expires-in S       token validity in seconds (default 1 with providers)
+ *   --seconds S          measurement duration (default 10)
+ *   --warmup S           warm up duration (default 2)
+ *   --profile NAME       standard, github, google or twitter (default standard)
+ *   --latency-ms P50,P99 log-normal server latency
+ *   --error-rate R       share of requests failed with 503 and Retry-After
+ *   --rate-limit R       requests per second permitted by the server
+ *   --transports LIST    comma-separated javase,apache,okhttp3 (default all)
+ * </pre>
+ */
+public class LoadTestRunner {
+
+	static final String CLIENT_ID = "load-test";
+	static final String CLIENT_SECRET = "secret";
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		Map<String, String> options = new HashMap<>();
+		for (int i = 0; i + 1 < args.length; i += 2) {
+			if (!args[i].startsWith("--"))
+				throw new IllegalArgumentException("Unknown option: " + args[i]);
+			options.put(args[i].substring(2), args[i + 1]);
+		}
+		int providers = Integer.parseInt(options.getOrDefault("providers", "0"));
+		int threads = Integer.parseInt(options.getOrDefault("threads", "16"));
+		long seconds = Long.parseLong(options.getOrDefault("seconds", "10"));
+		long warmup = Long.parseLong(options.getOrDefault("warmup", "2"));
+		List<String> transports = Arrays.asList(options.getOrDefault("transports", "javase,apache,okhttp3").split(","));
+
+		ServerProfile.Builder profile = ServerProfile.named(options.getOrDefault("profile", "standard")).toBuilder();
+		if (options.containsKey("expires-in") || providers > 0)
+			profile.expiresIn(Long.parseLong(options.getOrDefault("expires-in", "1")));
+		if (options.containsKey("latency-ms")) {
+			String[] latency = options.get("latency-ms").split(",");
+			long p50 = Long.parseLong(latency[0]);
+			long p99 = latency.length > 1 ? Long.parseLong(latency[1]) : p50;
+			profile.latency(Latency.logNormal(p50, p99, TimeUnit.MILLISECONDS));
+		}
+		if (options.containsKey("error-rate"))
+			profile.errors(Double.parseDouble(options.get("error-rate")), 503, 1);
+		if (options.containsKey("rate-limit"))
+			profile.rateLimit(Long.parseLong(options.get("rate-limit")), TimeUnit.SECONDS, 1);
+
+		// all transports take the JVM default trust store
+		System.setProperty("javax.net.ssl.trustStore", MockAuthorizationServer.trustStoreFile().toString());
+		System.setProperty("javax.net.ssl.trustStorePassword", MockAuthorizationServer.STORE_PASSWORD);
+
+		try (MockAuthorizationServer server = new MockAuthorizationServer.Builder().profile(profile.build())
+				.threads(Math.max(32, Math.max(threads, providers))).build().start()) {
+			System.out.println("Token endpoint: " + server.tokenEndpoint());
+			for (String transport : transports) {
+				LoadTest.Builder test = new LoadTest.Builder().server(server)
+						.client(client(transport, server.baseUrl()))
+						.grant(new ClientCredentialsGrantRequest(CLIENT_ID, CLIENT_SECRET, null))
+						.warmup(warmup, TimeUnit.SECONDS).duration(seconds, TimeUnit.SECONDS);
+				if (providers > 0)
+					test.providers(providers, 0.5);
+				else
+					test.threads(threads);
+				LoadTestReport report = test.build().run();
+				System.out.println(String.format("%-8s %s", transport, report));
+			}
+		}
+	}
+
+	static TokenServiceHttpClient client(String transport, String baseUrl) throws IOException {
+		switch (transport) {
+		case "javase":
+			return new HttpsURLConnectionClientAdapter.Builder().baseUrl(baseUrl)
+					.basicAuthentication(CLIENT_ID, CLIENT_SECRET).mapper(new SimpleDatabindingProvider()).build();
+		case "apache":
+			return new ApacheHttpClientAdapter(new URL(baseUrl), CLIENT_ID, CLIENT_SECRET,
+					new SimpleDatabindingProvider(), AccessToken.class);
+		case "okhttp3":
+			String credentials = Credentials.basic(CLIENT_ID, CLIENT_SECRET);
+			OkHttpClient okHttpClient = new OkHttpClient.Builder().addInterceptor(
+					chain -> chain.proceed(chain.request().newBuilder().header("Authorization", credentials).build()))
+					.build();
+			return new OkHttpClientAdapter<>(baseUrl, okHttpClient, new SimpleDatabindingProvider(),
+					AccessToken.class);
+		default:
+			throw new IllegalArgumentException("Unknown transport: " + transport);
+		}
+	}
+
+}
@@ -0,0 +1,73 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+
+package net.oauth2.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import commons.util.ConcurentObservableMixin;
+import commons.util.Observable;
+import commons.util.ObservableMixin;
+
+/**
+ * Notification of token change observers through {@link ObservableMixin} and
+ * {@link ConcurentObservableMixin}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ObservableBenchmark {
+
+	@Param({ "ObservableMixin", "ConcurentObservableMixin" })
+	String observable;
+
+	@Param({ "1", "8" })
+	int observers;
+
+	Observable<Consumer<Blackhole>> mixin;
+
+	@Setup
+	public void setUp() {
+		this.mixin = "ObservableMixin".equals(this.observable) ? new ObservableMixin<>()
+				: new ConcurentObservableMixin<>();
+		for (int i = 0; i < this.observers; i++) {
+			Integer value = i;
+			this.mixin.attach(blackhole -> blackhole.consume(value));
+		}
+	}
+
+	@Benchmark
+	public void notify(Blackhole blackhole) {
+		this.mixin.notify(observer -> observer.accept(blackhole));
+	}
+
+	@Benchmark
+	@Threads(4)
+	public void notifyContended(Blackhole blackhole) {
+		this.mixin.notify(observer -> observer.accept(blackhole));
+	}
+
+}
@@ -0,0 +1,40 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+
+package net.oauth2.benchmarks;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+import net.oauth2.AccessToken;
+
+/**
+ * Realistic payloads shared by the benchmarks.
+ */
+final class Payloads {
+
+	/**
+	 * A signed JWT of typical size.
+	 */
+	static final String JWT = "eyJhbGciOiJSUzI1NiIsInR5cCI6IkpXVCIsImtpZCI6IjFlOWdkazcifQ."
+			+ "eyJpc3MiOiJodHRwczovL2lkcC5leGFtcGxlLmNvbSIsInN1YiI6IjI0ODI4OTc2MTAwMSIsImF1ZCI6InM2QmhkUmtxdDMiLCJu"
+			+ "b25jZSI6Im4tMFM2X1d6QTJNaiIsImV4cCI6MTMxMTI4MTk3MCwiaWF0IjoxMzExMjgwOTcwLCJzY29wZSI6Im9wZW5pZCBwcm9m"
+			+ "aWxlIGVtYWlsIn0."
+			+ "ggW8hZ1EuVLuxNuuIJKX_V8a_OMXzR0EHR9R6jgdqrOOF4daGU96Sr_P6qJp6IcmD3HP99Obi1PRs-cwh3LO-p146waJ8IhehcwL7"
+			+ "F09JdijmBqkvPeB2T9CJNqeGpe-gccMg4vfKjkM8FcGvnzZUN4_KSP0aAp1tOJ1zZwgjxqGByKHiOtX7TpdQyHE5lcMiKPXfEIQIL"
+			+ "VqJOTrOVYqlF2HV1BLeN-WFEA";
+
+	static final Collection<String> SCOPES = Arrays.asList("openid", "profile", "email", "offline_access");
+
+	static final AccessToken TOKEN = new AccessToken(JWT, "Bearer", 3600L,
+			"8xLOxBtZp8Oi0B4Qk2pQ9ZrqEv3kAUnoE1lhoxWlKJb7HNmQ", SCOPES);
+
+	private Payloads() {
+	}
+
+}
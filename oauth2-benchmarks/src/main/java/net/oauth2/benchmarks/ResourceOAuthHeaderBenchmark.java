@@ -0,0 +1,62 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+
+package net.oauth2.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.oauth2.AccessToken;
+import net.oauth2.client.http.ResourceOAuthHeader;
+
+/**
+ * Formatting of the Authorization header of every resource request. The
+ * header is cached on the token, so {@code format} should cost about as much
+ * as the {@code fieldRead} baseline. {@code stringFormat} is how it was
+ * formatted before, and {@code render} is the one time cost per token.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResourceOAuthHeaderBenchmark {
+
+	AccessToken token = Payloads.TOKEN;
+
+	@Benchmark
+	public String format() {
+		return ResourceOAuthHeader.format(this.token);
+	}
+
+	@Benchmark
+	public String fieldRead() {
+		return this.token.getAccessToken();
+	}
+
+	@Benchmark
+	public String stringFormat() {
+		return String.format("%s %s", this.token.getTokenType(), this.token.getAccessToken());
+	}
+
+	@Benchmark
+	public String render() {
+		return this.token.getTokenType() + ' ' + this.token.getAccessToken();
+	}
+
+}
@@ -0,0 +1,57 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+
+package net.oauth2.benchmarks;
+
+import java.net.URI;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.google.gson.Gson;
+
+import net.oauth2.ProtocolError;
+import net.oauth2.gson.GsonDataBindingProvider;
+
+/**
+ * Writing of tokens and errors as JSON by the streaming Gson type adapters,
+ * the counterpart of {@link DataBindingBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SerializationBenchmark {
+
+	static final ProtocolError ERROR = new ProtocolError("invalid_grant",
+			"The provided authorization grant is invalid, expired or revoked",
+			URI.create("https://example.com/docs/errors#invalid_grant"), null);
+
+	final Gson gson = new GsonDataBindingProvider().raw();
+
+	@Benchmark
+	public String writeToken() {
+		return this.gson.toJson(Payloads.TOKEN);
+	}
+
+	@Benchmark
+	public String writeError() {
+		return this.gson.toJson(ERROR);
+	}
+
+}
@@ -0,0 +1,96 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+
+package net.oauth2.benchmarks;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import net.oauth2.AccessToken;
+import net.oauth2.client.AutoRenewingTokenProvider;
+import net.oauth2.client.OAuth2ProtocolException;
+import net.oauth2.client.TokenService;
+
+/**
+ * {@link AutoRenewingTokenProvider#get()} contended by 1 to 64 threads, the
+ * call on the path of every resource request.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TokenProviderBenchmark {
+
+	AutoRenewingTokenProvider<AccessToken> provider;
+
+	@Setup
+	public void setUp() {
+		this.provider = new AutoRenewingTokenProvider<>(new TokenService() {
+			@SuppressWarnings("unchecked")
+			@Override
+			public <T extends AccessToken> T fetch() throws OAuth2ProtocolException, IOException {
+				return (T) Payloads.TOKEN;
+			}
+
+			@SuppressWarnings("unchecked")
+			@Override
+			public <T extends AccessToken> T refresh(String refreshTokenString)
+					throws OAuth2ProtocolException, IOException {
+				return (T) Payloads.TOKEN;
+			}
+		});
+		// the token is valid for an hour, no renewal runs during measurement
+		this.provider.start(Payloads.TOKEN, Instant.now());
+	}
+
+	@TearDown
+	public void tearDown() {
+		this.provider.stop(false);
+	}
+
+	@Benchmark
+	@Threads(1)
+	public AccessToken get_1() {
+		return this.provider.get();
+	}
+
+	@Benchmark
+	@Threads(4)
+	public AccessToken get_4() {
+		return this.provider.get();
+	}
+
+	@Benchmark
+	@Threads(16)
+	public AccessToken get_16() {
+		return this.provider.get();
+	}
+
+	@Benchmark
+	@Threads(64)
+	public AccessToken get_64() {
+		return this.provider.get();
+	}
+
+}
@@ -8,28 +8,26 @@
 package net.oauth2.client.http.apache.httpcomponents;
 
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
 import java.net.URL;
-import java.net.URLEncoder;
-import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
-import org.apache.http.Consts;
+import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
-import org.apache.http.NameValuePair;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.CredentialsProvider;
-import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.HttpClientBuilder;
-import org.apache.http.message.BasicNameValuePair;
 import org.apache.http.util.EntityUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -38,8 +36,11 @@ import net.oauth2.AccessToken;
 import net.oauth2.AccessTokenGrantRequest;
 import net.oauth2.ProtocolError;
 import net.oauth2.client.OAuth2ProtocolException;
+import net.oauth2.client.TokenMetrics;
+import net.oauth2.client.TokenTracer;
 import net.oauth2.client.http.DataBindingProvider;
 import net.oauth2.client.http.FormEncodeDataBinding;
+import net.oauth2.client.http.HttpWireFormatter;
 import net.oauth2.client.http.TokenServiceHttpClient;
 
 /**
@@ -50,27 +51,93 @@ public class ApacheHttpClientAdapter implements TokenServiceHttpClient {
 	
 	protected static final Logger LOGGER = LoggerFactory.getLogger(ApacheHttpClientAdapter.class);
 	
+	private static final FormEncodeDataBinding grantRequestFormEncoder = new FormEncodeDataBinding()
+			.with("scope", new FormEncodeDataBinding.CollectionSerializer<Collection<String>>());
+	
 	private URL baseUrl;
 	private CloseableHttpClient httpclient;
 	
 	private DataBindingProvider<?> dataBindingProvider;
 	@SuppressWarnings("rawtypes")
 	private Class tokenClass;
+	private TokenMetrics metrics = TokenMetrics.NOOP;
+	private TokenTracer tracer = TokenTracer.NOOP;
+	private HttpWireFormatter wireFormat = new HttpWireFormatter.Builder().build();
 
 	@SuppressWarnings("unchecked")
 	public <T extends AccessToken> ApacheHttpClientAdapter(URL baseUrl, String username, String password, DataBindingProvider<?> dataBindingProvider, Class<T> tokenClass) {
 		this.baseUrl = baseUrl;
-		CredentialsProvider credsProvider = new BasicCredentialsProvider();
-		credsProvider.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(username, password));
-		this.httpclient = HttpClientBuilder.create().setDefaultCredentialsProvider(credsProvider).build();
+		HttpClientBuilder httpClientBuilder = HttpClientBuilder.create();
+		// no basic authentication for clients authenticating in the payload, e.g. with client assertions
+		if (username != null) {
+			CredentialsProvider credsProvider = new BasicCredentialsProvider();
+			credsProvider.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(username, password));
+			httpClientBuilder.setDefaultCredentialsProvider(credsProvider);
+		}
+		this.httpclient = httpClientBuilder.build();
 		this.dataBindingProvider = dataBindingProvider;
 		if (tokenClass == null)
 			tokenClass = (Class<T>) AccessToken.class;
 		this.tokenClass = tokenClass;
 	}
 
+	/**
+	 * Records the latency and failures of the HTTP exchanges of this adapter
+	 * with the supplied metrics.
+	 * 
+	 * @param metrics
+	 * @return this instance for chaining
+	 */
+	public ApacheHttpClientAdapter metrics(TokenMetrics metrics) {
+		if (metrics == null)
+			throw new IllegalArgumentException("metrics is null");
+		this.metrics = metrics;
+		return this;
+	}
+
+	/**
+	 * Traces the token requests of this adapter with the supplied tracer and
+	 * propagates the trace context in their headers.
+	 * 
+	 * @param tracer
+	 * @return this instance for chaining
+	 */
+	public ApacheHttpClientAdapter tracer(TokenTracer tracer) {
+		if (tracer == null)
+			throw new IllegalArgumentException("tracer is null");
+		this.tracer = tracer;
+		return this;
+	}
+
+	/**
+	 * Configures the redaction, truncation and sampling of the wire log of
+	 * this adapter. The exchanges are logged at debug level.
+	 * 
+	 * @param wireFormat
+	 * @return this instance for chaining
+	 */
+	public ApacheHttpClientAdapter wireFormat(HttpWireFormatter wireFormat) {
+		if (wireFormat == null)
+			throw new IllegalArgumentException("wireFormat is null");
+		this.wireFormat = wireFormat;
+		return this;
+	}
+
 	@Override
 	public <T extends AccessToken> T post(String urlPath, AccessTokenGrantRequest grantRequest) throws IOException {
+		TokenTracer.Span span = this.tracer.start(TokenTracer.HTTP, grantRequest.getClientId(),
+				grantRequest.getGrantType());
+		try {
+			return this.exchange(urlPath, grantRequest, span);
+		} catch (IOException | RuntimeException e) {
+			span.error(e);
+			throw e;
+		} finally {
+			span.close();
+		}
+	}
+
+	private <T extends AccessToken> T exchange(String urlPath, AccessTokenGrantRequest grantRequest, TokenTracer.Span span) throws IOException {
 		//construct request path
 		URL url = null;
 		if(urlPath!=null)
@@ -79,10 +146,10 @@ public class ApacheHttpClientAdapter implements TokenServiceHttpClient {
 			url = this.baseUrl;
 		
 		//encode grant for www.form-encode entity payload
-		List<NameValuePair> formPayload = formEncodeGrant(grantRequest);
+		String formPayload = formEncodeGrant(grantRequest);
 
 		//http communication
-		String responsePayload = this.httpPostForm(url, formPayload);
+		String responsePayload = this.httpPostForm(url, formPayload, grantRequest, span);
 		
 		//bind object payload to java object model 
 		@SuppressWarnings("unchecked")
@@ -91,14 +158,43 @@ public class ApacheHttpClientAdapter implements TokenServiceHttpClient {
 		return token;
 	}
 	
-	private String httpPostForm(URL url, List<NameValuePair> formPayload) throws IOException, OAuth2ProtocolException {
-		UrlEncodedFormEntity entity = new UrlEncodedFormEntity(formPayload, Consts.UTF_8);
+	private String httpPostForm(URL url, String formPayload, AccessTokenGrantRequest grantRequest, TokenTracer.Span span) throws IOException, OAuth2ProtocolException {
+		StringEntity entity = new StringEntity(formPayload, ContentType.APPLICATION_FORM_URLENCODED);
 
 		HttpPost httpPostMethod = new HttpPost(url.toExternalForm());
 		httpPostMethod.setEntity(entity);
+		this.tracer.inject(httpPostMethod::setHeader);
+		// formatting the exchange is costly, decide once per exchange
+		boolean wire = LOGGER.isDebugEnabled() && this.wireFormat.sample();
+		if (wire)
+			LOGGER.debug(this.wireFormat.formatRequest(httpPostMethod.getMethod(), httpPostMethod.getURI().toString(),
+					headers(httpPostMethod.getAllHeaders()), formPayload));
 		
-		HttpResponse response = this.httpclient.execute(httpPostMethod);
-		
+		boolean measured = this.metrics.isEnabled();
+		long start = measured ? System.nanoTime() : 0L;
+		if (measured)
+			this.metrics.httpExchangeStarted(grantRequest.getClientId(), grantRequest.getGrantType());
+		int status = 0;
+		Throwable failure = null;
+		String responsePayload = null;
+		try {
+			HttpResponse response = this.httpclient.execute(httpPostMethod);
+			status = response.getStatusLine().getStatusCode();
+			span.attribute("http.response.status_code", status);
+			responsePayload = this.readResponse(response, wire);
+		} catch (IOException | RuntimeException e) {
+			failure = e;
+			throw e;
+		} finally {
+			if (measured)
+				this.metrics.httpExchange(grantRequest.getClientId(), grantRequest.getGrantType(),
+						System.nanoTime() - start, status, formPayload.length(),
+						responsePayload != null ? responsePayload.length() : 0, failure);
+		}
+		return responsePayload;
+	}
+
+	private String readResponse(HttpResponse response, boolean wire) throws IOException {
 		String responsePayload = null;
 		try {
 		    HttpEntity responseEntity = response.getEntity();
@@ -109,6 +205,9 @@ public class ApacheHttpClientAdapter implements TokenServiceHttpClient {
 		        } else {
 		        	//TODO: as per apache guidelines for secure handling of large responses (although we don't expect large response here)
 		        }
+				if (wire)
+					LOGGER.debug(this.wireFormat.formatResponse(response.getStatusLine().toString(),
+							headers(response.getAllHeaders()), responsePayload));
 		        //Protocol errors should be in the range [400-500). OAuth2 is just too permissive to reliably infer if it's protocol or other error based on the code...
 				if (response.getStatusLine().getStatusCode() > 399) {
 		        	this.handleProtocolError(response,  responsePayload);
@@ -122,40 +221,20 @@ public class ApacheHttpClientAdapter implements TokenServiceHttpClient {
 		return responsePayload;
 	}
 	
-	private static List<NameValuePair> formEncodeGrant(AccessTokenGrantRequest grant){
-		final List<NameValuePair> formparams = new ArrayList<NameValuePair>();
+	private static Map<String, List<String>> headers(Header[] headers) {
+		Map<String, List<String>> map = new LinkedHashMap<>();
+		for (Header header : headers)
+			map.computeIfAbsent(header.getName(), name -> new ArrayList<>()).add(header.getValue());
+		return map;
+	}
+
+	private static String formEncodeGrant(AccessTokenGrantRequest grant){
 		try {
-			grant.map()
-			.entrySet().stream().forEach((e)->{
-				String key = e.getKey();
-				String val = null;
-				if (e.getValue() != null) {
-					if(String.class.isAssignableFrom(e.getValue().getClass())){
-						val = (String) e.getValue();
-					} else {
-						if(key == "scope"){
-							@SuppressWarnings("unchecked")
-							Collection<String> scopes = (Collection<String>) e.getValue();
-							val = FormEncodeDataBinding.CollectionSerializer.formatToDelimitedString(scopes);
-						} else {
-							throw new RuntimeException("Unsupported type for form encoding: " + e.getValue().getClass());
-						}
-					}
-					try {
-						if(val!=null){
-							val = URLEncoder.encode(val, StandardCharsets.UTF_8.name());
-							formparams.add(new BasicNameValuePair(key, val));
-						}
-					} catch (UnsupportedEncodingException uee) {
-						/* ignore */
-						throw new RuntimeException(uee);
-					}				
-				}
-			});
+			// percent-encoded once, here. The entity posts the string as is.
+			return grantRequestFormEncoder.encode(grant, null);
 		} catch (Exception e) {
 			throw new IllegalArgumentException("Cannot encode this AccessTokenGrantRequest to application/x-www-form-urlencoded string", e);
 		}
-		return formparams;
 	}
 
 	private void handleProtocolError(HttpResponse response, String responsePayload) throws IOException{
@@ -15,20 +15,32 @@ import org.apache.http.HttpRequestInterceptor;
 import org.apache.http.protocol.HttpContext;
 
 import net.oauth2.AccessToken;
+import net.oauth2.client.TokenMetrics;
 import net.oauth2.client.TokenProvider;
 import net.oauth2.client.http.ResourceOAuthHeader;
 
 public class OAuthResourceRequestInterceptor<T extends AccessToken> implements HttpRequestInterceptor {
 		
 	TokenProvider tokenProvider;
+	TokenMetrics metrics;
 	
 	public OAuthResourceRequestInterceptor(TokenProvider tokenProvider) {
+		this(tokenProvider, TokenMetrics.NOOP);
+	}
+
+	public OAuthResourceRequestInterceptor(TokenProvider tokenProvider, TokenMetrics metrics) {
+		if (metrics == null)
+			throw new IllegalArgumentException("metrics is null");
 		this.tokenProvider = tokenProvider;
+		this.metrics = metrics;
 	}
 
 	@Override
 	public void process(HttpRequest request, HttpContext context) throws HttpException, IOException {
+		long start = this.metrics.isEnabled() ? System.nanoTime() : 0L;
 		T token = tokenProvider.get();
+		if (this.metrics.isEnabled())
+			this.metrics.resourceRequest(System.nanoTime() - start, token != null);
 		String headerValue = ResourceOAuthHeader.format(token);
 		request.addHeader(ResourceOAuthHeader.HTTP_HEADER_NAME_AUTHORIZATION, headerValue);
 	}
@@ -25,9 +25,12 @@ import net.oauth2.AccessToken;
 import net.oauth2.AccessTokenGrantRequest;
 import net.oauth2.ProtocolError;
 import net.oauth2.client.OAuth2ProtocolException;
+import net.oauth2.client.TokenMetrics;
+import net.oauth2.client.TokenTracer;
 import net.oauth2.client.http.DataBindingProvider;
 import net.oauth2.client.http.FormEncodeDataBinding;
 import net.oauth2.client.http.FormEncodeDataBinding.CollectionSerializer;
+import net.oauth2.client.http.HttpWireFormatter;
 import net.oauth2.client.http.TokenServiceHttpClient;
 import net.oauth2.client.http.javase.conn.AuthenticationAdapter;
 import net.oauth2.client.http.javase.conn.BasicAuthenticationAdapter;
@@ -47,6 +50,8 @@ public class HttpsURLConnectionClientAdapter implements TokenServiceHttpClient {
 	@SuppressWarnings("rawtypes")
 	private final Class tokenClass;
 	private final DataBindingProvider<?> dataBindingProvider;
+	private TokenMetrics metrics = TokenMetrics.NOOP;
+	private TokenTracer tracer = TokenTracer.NOOP;
 	
 	private static final FormEncodeDataBinding grantRequestFormEncoder = new FormEncodeDataBinding()
 			.with("scope", new CollectionSerializer<Collection<String>>());//TODO
@@ -69,6 +74,8 @@ public class HttpsURLConnectionClientAdapter implements TokenServiceHttpClient {
 		Proxy proxy;
 		DataBindingProvider<?> dataBindingProvider;
 		Class<?> tokenClass;
+		TokenMetrics metrics;
+		TokenTracer tracer;
 
 		public Builder() {
 		}
@@ -85,6 +92,20 @@ public class HttpsURLConnectionClientAdapter implements TokenServiceHttpClient {
 			return this;
 		}
 
+		/**
+		 * Configures the redaction, truncation and sampling of the wire log of
+		 * this adapter. The exchanges are logged at debug level.
+		 * 
+		 * @param wireFormat
+		 * @return this builder for chaining
+		 */
+		public Builder wireFormat(HttpWireFormatter wireFormat) {
+			if (wireFormat == null)
+				throw new IllegalArgumentException("wireFormat is null");
+			this.logFormatter = new HttpLoggingFormatter(wireFormat);
+			return this;
+		}
+
 		public Builder basicAuthentication(String username, String password) {
 			if (this.connectionFactory != null)
 				throw new IllegalStateException("connectionFactory has already been set");
@@ -119,6 +140,20 @@ public class HttpsURLConnectionClientAdapter implements TokenServiceHttpClient {
 			return this;
 		}
 
+		public Builder metrics(TokenMetrics metrics) {
+			if (metrics == null)
+				throw new IllegalArgumentException("metrics is null");
+			this.metrics = metrics;
+			return this;
+		}
+
+		public Builder tracer(TokenTracer tracer) {
+			if (tracer == null)
+				throw new IllegalArgumentException("tracer is null");
+			this.tracer = tracer;
+			return this;
+		}
+
 		@SuppressWarnings("unchecked")
 		public <T extends AccessToken> HttpsURLConnectionClientAdapter build() throws MalformedURLException {
 			if (this.baseSeviceUrl == null)
@@ -132,13 +167,59 @@ public class HttpsURLConnectionClientAdapter implements TokenServiceHttpClient {
 			if (this.tokenClass == null)
 				this.tokenClass = (Class<T>) AccessToken.class;
 
-			return new HttpsURLConnectionClientAdapter(this.baseSeviceUrl, this.connectionFactory, this.logFormatter,
-					this.dataBindingProvider, (Class<T>) this.tokenClass);
+			HttpsURLConnectionClientAdapter adapter = new HttpsURLConnectionClientAdapter(this.baseSeviceUrl,
+					this.connectionFactory, this.logFormatter, this.dataBindingProvider, (Class<T>) this.tokenClass);
+			if (this.metrics != null)
+				adapter.metrics(this.metrics);
+			if (this.tracer != null)
+				adapter.tracer(this.tracer);
+			return adapter;
 		}
 	}
 
+	/**
+	 * Records the latency and failures of the HTTP exchanges of this adapter
+	 * with the supplied metrics.
+	 * 
+	 * @param metrics
+	 * @return this instance for chaining
+	 */
+	public HttpsURLConnectionClientAdapter metrics(TokenMetrics metrics) {
+		if (metrics == null)
+			throw new IllegalArgumentException("metrics is null");
+		this.metrics = metrics;
+		return this;
+	}
+
+	/**
+	 * Traces the token requests of this adapter with the supplied tracer and
+	 * propagates the trace context in their headers.
+	 * 
+	 * @param tracer
+	 * @return this instance for chaining
+	 */
+	public HttpsURLConnectionClientAdapter tracer(TokenTracer tracer) {
+		if (tracer == null)
+			throw new IllegalArgumentException("tracer is null");
+		this.tracer = tracer;
+		return this;
+	}
+
 	@Override
 	public <T extends AccessToken> T post(String urlPath, AccessTokenGrantRequest grantRequest) throws IOException, OAuth2ProtocolException {
+		TokenTracer.Span span = this.tracer.start(TokenTracer.HTTP, grantRequest.getClientId(),
+				grantRequest.getGrantType());
+		try {
+			return this.exchange(urlPath, grantRequest, span);
+		} catch (IOException | RuntimeException e) {
+			span.error(e);
+			throw e;
+		} finally {
+			span.close();
+		}
+	}
+
+	private <T extends AccessToken> T exchange(String urlPath, AccessTokenGrantRequest grantRequest, TokenTracer.Span span) throws IOException, OAuth2ProtocolException {
 		// construct request path
 		URL url = null;
 		if (urlPath != null)
@@ -151,9 +232,10 @@ public class HttpsURLConnectionClientAdapter implements TokenServiceHttpClient {
 
 		// get a new connection
 		HttpsURLConnection connection = this.connectionFactory.connection(url);
+		this.tracer.inject(connection::setRequestProperty);
 
 		// http communication
-		String responsePayload = this.httpPostForm(connection, formPayload);
+		String responsePayload = this.httpPostForm(connection, formPayload, grantRequest, span);
 
 		// bind object payload to java object model
 		@SuppressWarnings("unchecked")
@@ -162,19 +244,29 @@ public class HttpsURLConnectionClientAdapter implements TokenServiceHttpClient {
 		return token;
 	}
 
-	private String httpPostForm(HttpsURLConnection connection, String formPayload) throws OAuth2ProtocolException, IOException {
+	private String httpPostForm(HttpsURLConnection connection, String formPayload, AccessTokenGrantRequest grantRequest, TokenTracer.Span span) throws OAuth2ProtocolException, IOException {
 		OutputStream out = null;
 		InputStream in = null;
 		String response = "";
 		String errorDetails = "";
+		boolean measured = this.metrics.isEnabled();
+		long start = measured ? System.nanoTime() : 0L;
+		if (measured)
+			this.metrics.httpExchangeStarted(grantRequest.getClientId(), grantRequest.getGrantType());
+		int httpCode = 0;
+		Throwable failure = null;
+		// formatting the exchange is costly, decide once per exchange
+		boolean wire = LOGGER.isDebugEnabled() && this.logFormat.sample();
 		try {
 			// Post payload
-			LOGGER.debug(logFormat.formatRequest(connection, formPayload));
+			if (wire)
+				LOGGER.debug(this.logFormat.formatRequest(connection, formPayload));
 			out = connection.getOutputStream();
 			IOs.produce(out, formPayload);
 
 			// Get Response
-			int httpCode = connection.getResponseCode();
+			httpCode = connection.getResponseCode();
+			span.attribute("http.response.status_code", httpCode);
 			if (httpCode < 400) { 
 				// handle success
 				in = connection.getInputStream();
@@ -190,6 +282,9 @@ public class HttpsURLConnectionClientAdapter implements TokenServiceHttpClient {
 				}
 				this.handleProtocolError(httpCode, errorDetails, contentType);
 			}
+		} catch (IOException | RuntimeException e) {
+			failure = e;
+			throw e;
 		} finally {
 			if (out != null)
 				try {
@@ -204,7 +299,12 @@ public class HttpsURLConnectionClientAdapter implements TokenServiceHttpClient {
 					/* ignore */}
 			if (connection != null)
 				connection.disconnect();
-			LOGGER.debug(logFormat.formatResponse(connection, response, errorDetails));
+			if (wire)
+				LOGGER.debug(this.logFormat.formatResponse(connection, response, errorDetails));
+			if (measured)
+				this.metrics.httpExchange(grantRequest.getClientId(), grantRequest.getGrantType(),
+						System.nanoTime() - start, httpCode, formPayload.length(),
+						response.length() + errorDetails.length(), failure);
 		}
 		return response;
 	}
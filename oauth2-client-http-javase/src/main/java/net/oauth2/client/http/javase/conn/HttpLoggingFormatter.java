@@ -10,71 +10,48 @@ package net.oauth2.client.http.javase.conn;
 import java.io.IOException;
 import java.net.HttpURLConnection;
 import java.util.List;
-import java.util.Map;
 
 import javax.net.ssl.HttpsURLConnection;
 
+import net.oauth2.client.http.HttpWireFormatter;
+
+/**
+ * Formats the wire exchanges of {@link HttpsURLConnection}s for logging with
+ * a {@link HttpWireFormatter}, redacting credentials and tokens and truncating
+ * bodies.
+ */
 public class HttpLoggingFormatter {
-	
-	private static final String NEWLINE = System.getProperty("line.separator");
 
-	public HttpLoggingFormatter() {
+	private final HttpWireFormatter wireFormat;
 
+	public HttpLoggingFormatter() {
+		this(new HttpWireFormatter.Builder().build());
 	}
 
-	public String formatRequest(HttpsURLConnection connection, String requestPayload) {
-		StringBuilder log = new StringBuilder();
-		log.append("--> ");
-
-		final String requestLine = connection.getRequestMethod() + " " + connection.getURL().toString();
-		log.append(requestLine);
-		log.append(NEWLINE);
-		
-		final String requestHeaders = headers(connection.getRequestProperties());
-		log.append(requestHeaders);
-		log.append(NEWLINE);
-
-		if (requestPayload != null && requestPayload.trim().length() > 0) {
-			log.append(requestPayload);
-		}
-
-		return log.toString();
+	public HttpLoggingFormatter(HttpWireFormatter wireFormat) {
+		if (wireFormat == null)
+			throw new IllegalArgumentException("wireFormat is null");
+		this.wireFormat = wireFormat;
 	}
 
-	public String formatResponse(HttpsURLConnection connection, String responsePayload, String errorDetails) {
-		StringBuilder log = new StringBuilder();
-		log.append("<-- ");
-
-		final String responseStatusLine = getStatusLine(connection);
-		log.append(responseStatusLine);
-		log.append(NEWLINE);
-
-		final String responseHeaders = headers(connection.getHeaderFields());
-		log.append(responseHeaders);
-		log.append(NEWLINE);
-
-		if (responsePayload != null && responsePayload.trim().length() > 0) {
-			log.append(responsePayload);
-			log.append(NEWLINE);
-		}
-
-		if (errorDetails != null && errorDetails.trim().length() > 0) {
-			log.append(errorDetails);
-			log.append(NEWLINE);
-		}
+	/**
+	 * @return true if an exchange is sampled for logging
+	 * @see HttpWireFormatter#sample()
+	 */
+	public boolean sample() {
+		return this.wireFormat.sample();
+	}
 
-		return log.toString();
+	public String formatRequest(HttpsURLConnection connection, String requestPayload) {
+		return this.wireFormat.formatRequest(connection.getRequestMethod(), connection.getURL().toString(),
+				connection.getRequestProperties(), requestPayload);
 	}
 
-	private String headers(final Map<String, List<String>> headers) {
-		final StringBuilder headersList = new StringBuilder();
-		for (final Map.Entry<String, List<String>> header : headers.entrySet()) {
-			if (header.getKey() == null || header.getValue() == null) {
-				continue;
-			}
-			headersList.append(header.getKey()).append(":").append(header.getValue().toString()).append(NEWLINE);
-		}
-		return headersList.toString();
+	public String formatResponse(HttpsURLConnection connection, String responsePayload, String errorDetails) {
+		String payload = responsePayload;
+		if (errorDetails != null && errorDetails.trim().length() > 0)
+			payload = payload != null && payload.trim().length() > 0 ? payload + errorDetails : errorDetails;
+		return this.wireFormat.formatResponse(getStatusLine(connection), connection.getHeaderFields(), payload);
 	}
 
 	private String getStatusLine(final HttpURLConnection connection) {
@@ -10,6 +10,7 @@ package net.oauth2.client.http.okhttp3;
 import java.io.IOException;
 
 import net.oauth2.AccessToken;
+import net.oauth2.client.TokenMetrics;
 import net.oauth2.client.TokenProvider;
 import net.oauth2.client.http.ResourceOAuthHeader;
 import okhttp3.Interceptor;
@@ -26,15 +27,26 @@ import okhttp3.Response;
 public class OAuthResourceRequestInterceptor<T extends AccessToken> implements Interceptor {
 
 	TokenProvider tokenProvider;
+	TokenMetrics metrics;
 	
 	public OAuthResourceRequestInterceptor(TokenProvider tokenProvider) {
+		this(tokenProvider, TokenMetrics.NOOP);
+	}
+
+	public OAuthResourceRequestInterceptor(TokenProvider tokenProvider, TokenMetrics metrics) {
+		if (metrics == null)
+			throw new IllegalArgumentException("metrics is null");
 		this.tokenProvider = tokenProvider;
+		this.metrics = metrics;
 	}
 
 	@Override
 	public Response intercept(Chain chain) throws IOException {
 		Request request = chain.request();
+		long start = this.metrics.isEnabled() ? System.nanoTime() : 0L;
 		T token = tokenProvider.get();
+		if (this.metrics.isEnabled())
+			this.metrics.resourceRequest(System.nanoTime() - start, token != null);
 		if (token != null) {
 			String headerValue = ResourceOAuthHeader.format(token);
 			request = chain.request().newBuilder()
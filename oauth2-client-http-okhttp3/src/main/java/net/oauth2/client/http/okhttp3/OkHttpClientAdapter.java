@@ -18,9 +18,12 @@ import net.oauth2.AccessTokenGrantRequest;
 import net.oauth2.ProtocolError;
 import net.oauth2.RefreshTokenGrantRequest;
 import net.oauth2.client.OAuth2ProtocolException;
+import net.oauth2.client.TokenMetrics;
+import net.oauth2.client.TokenTracer;
 import net.oauth2.client.http.DataBindingProvider;
 import net.oauth2.client.http.FormEncodeDataBinding;
 import net.oauth2.client.http.FormEncodeDataBinding.CollectionSerializer;
+import net.oauth2.client.http.HttpWireFormatter;
 import net.oauth2.client.http.TokenServiceHttpClient;
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
@@ -41,6 +44,9 @@ public class OkHttpClientAdapter<T extends AccessToken> implements TokenServiceH
 	protected OkHttpClient okHttpClient;
 	private DataBindingProvider<?> dataBindingProvider;
 	private Class<T> accessTokenClass;
+	private TokenMetrics metrics = TokenMetrics.NOOP;
+	private TokenTracer tracer = TokenTracer.NOOP;
+	private HttpWireFormatter wireFormat = new HttpWireFormatter.Builder().build();
 
 	private static final FormEncodeDataBinding grantRequestFormEncoder = new FormEncodeDataBinding()
 			.with("scope", new CollectionSerializer<Collection<String>>());//TODO
@@ -60,12 +66,67 @@ public class OkHttpClientAdapter<T extends AccessToken> implements TokenServiceH
 		this.accessTokenClass = accessTokenClass;
 	}
 
-	public static final MediaType WWW_FORM_ENCODED = MediaType.parse("application/x-www-form-encoded");
+	public static final MediaType WWW_FORM_ENCODED = MediaType.parse("application/x-www-form-urlencoded");
 	public static final MediaType JSON = MediaType.parse("*/json");
 
-	@SuppressWarnings("unchecked")
+	/**
+	 * Records the latency and failures of the HTTP exchanges of this adapter
+	 * with the supplied metrics.
+	 * 
+	 * @param metrics
+	 * @return this instance for chaining
+	 */
+	public OkHttpClientAdapter<T> metrics(TokenMetrics metrics) {
+		if (metrics == null)
+			throw new IllegalArgumentException("metrics is null");
+		this.metrics = metrics;
+		return this;
+	}
+
+	/**
+	 * Traces the token requests of this adapter with the supplied tracer and
+	 * propagates the trace context in their headers.
+	 * 
+	 * @param tracer
+	 * @return this instance for chaining
+	 */
+	public OkHttpClientAdapter<T> tracer(TokenTracer tracer) {
+		if (tracer == null)
+			throw new IllegalArgumentException("tracer is null");
+		this.tracer = tracer;
+		return this;
+	}
+
+	/**
+	 * Configures the redaction, truncation and sampling of the wire log of
+	 * this adapter. The exchanges are logged at debug level.
+	 * 
+	 * @param wireFormat
+	 * @return this instance for chaining
+	 */
+	public OkHttpClientAdapter<T> wireFormat(HttpWireFormatter wireFormat) {
+		if (wireFormat == null)
+			throw new IllegalArgumentException("wireFormat is null");
+		this.wireFormat = wireFormat;
+		return this;
+	}
+
 	@Override
 	public T post(String urlPath, AccessTokenGrantRequest grantRequest) throws IOException {
+		TokenTracer.Span span = this.tracer.start(TokenTracer.HTTP, grantRequest.getClientId(),
+				grantRequest.getGrantType());
+		try {
+			return this.exchange(urlPath, grantRequest, span);
+		} catch (IOException | RuntimeException e) {
+			span.error(e);
+			throw e;
+		} finally {
+			span.close();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private T exchange(String urlPath, AccessTokenGrantRequest grantRequest, TokenTracer.Span span) throws IOException {
 		// construct request path
 		if (urlPath == null)
 			urlPath = DEFAULT_PATH;
@@ -76,19 +137,53 @@ public class OkHttpClientAdapter<T extends AccessToken> implements TokenServiceH
 		
 		//http comm
 		RequestBody body = RequestBody.create(WWW_FORM_ENCODED, payload);
-		Request request = new Request.Builder().url(requestUrl).post(body).build();
-		
-		Response response = this.okHttpClient.newCall(request).execute();
+		Request.Builder requestBuilder = new Request.Builder().url(requestUrl).post(body);
+		this.tracer.inject(requestBuilder::header);
+		Request request = requestBuilder.build();
+		// formatting the exchange is costly, decide once per exchange
+		boolean wire = LOGGER.isDebugEnabled() && this.wireFormat.sample();
+		if (wire)
+			LOGGER.debug(this.wireFormat.formatRequest(request.method(), request.url().toString(),
+					request.headers().toMultimap(), payload));
 		
-		T token = null;
-		if(response.isSuccessful()){
-			String responsePayload = response.body().string();
-			// bind object payload to java object model
-			token = (T) this.dataBindingProvider.parseToken(responsePayload, this.accessTokenClass);
-		} else {
-			this.handleProtocolError(response, "");
+		boolean measured = this.metrics.isEnabled();
+		long start = measured ? System.nanoTime() : 0L;
+		if (measured)
+			this.metrics.httpExchangeStarted(grantRequest.getClientId(), grantRequest.getGrantType());
+		int status = 0;
+		int responseSize = 0;
+		Throwable failure = null;
+		String responsePayload = null;
+		try {
+			Response response = this.okHttpClient.newCall(request).execute();
+			status = response.code();
+			span.attribute("http.response.status_code", status);
+			if(response.isSuccessful()){
+				responsePayload = response.body().string();
+				responseSize = responsePayload.length();
+				if (wire)
+					this.logResponse(response, responsePayload);
+			} else {
+				// the error body is consumed by the protocol error handling
+				if (wire)
+					this.logResponse(response, null);
+				this.handleProtocolError(response, "");
+			}
+		} catch (IOException | RuntimeException e) {
+			failure = e;
+			throw e;
+		} finally {
+			if (measured)
+				this.metrics.httpExchange(grantRequest.getClientId(), grantRequest.getGrantType(),
+						System.nanoTime() - start, status, payload.length(), responseSize, failure);
 		}
-		return token;
+		// bind object payload to java object model
+		return (T) this.dataBindingProvider.parseToken(responsePayload, this.accessTokenClass);
+	}
+
+	private void logResponse(Response response, String responsePayload) {
+		LOGGER.debug(this.wireFormat.formatResponse(response.protocol() + " " + response.code() + " " + response.message(),
+				response.headers().toMultimap(), responsePayload));
 	}
 
 	protected void handleProtocolError(Response response, String operationName) throws IOException {
@@ -132,7 +132,7 @@ public class RetrofitTokenService<S extends TokenEndpoint, T extends AccessToken
 
 		Map<String, Object> grantRequestFormFrields = null;
 		try {
-			grantRequestFormFrields = this.grant.map();
+			grantRequestFormFrields = this.grant.requestParameters();
 		} catch (Exception e) {
 			throw new IOException(e);
 		}
@@ -170,7 +170,7 @@ public class RetrofitTokenService<S extends TokenEndpoint, T extends AccessToken
 		LOGGER.trace("Refreshing Access Token");
 		Map<String, Object> grantRequestFormFrields = null;
 		try {
-			grantRequestFormFrields = this.refreshTokenGrantRequest.map();
+			grantRequestFormFrields = this.refreshTokenGrantRequest.requestParameters();
 		} catch (Exception e) {
 			throw new IOException(e);
 		}
@@ -8,14 +8,18 @@
 package net.oauth2.client;
 
 import java.io.IOException;
+import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.time.temporal.TemporalUnit;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -57,12 +61,19 @@ public class AutoRenewingTokenProvider<T extends AccessToken>
 	private RetryPolicy retryPolicy;
 	private Observable<TokenChangeObserver<T>> observable;
 
-	TokenRenewTask tokenRenewTask;
-	ScheduledFuture<?> future;
+	volatile TokenRenewTask tokenRenewTask;
+	volatile ScheduledFuture<?> future;
+	private volatile boolean paused;
+	private volatile long periodMillis;
 	private TemporalUnit tokenExpireInTimeUnits = ChronoUnit.SECONDS;// used by
 																		// java.time.Instance
-	private double delayModifier = 0.9;
+	private volatile double delayModifier = 0.9;
 	private boolean strictlyRefresh = false;
+	private boolean jwtExpiry = false;
+	private TokenMetrics metrics = TokenMetrics.NOOP;
+	private String metricsClientId;
+	private Clock clock = Clock.systemUTC();
+	TokenProviderStats stats = new TokenProviderStats();
 
 	public AutoRenewingTokenProvider(final TokenService tokenService, ScheduledExecutorService executor,
 			RetryPolicy retryPolicy, Observable<TokenChangeObserver<T>> observable, boolean strictlyRefresh) {
@@ -90,7 +101,11 @@ public class AutoRenewingTokenProvider<T extends AccessToken>
 	class TokenRenewTask implements Runnable {
 
 		private final AutoRenewingTokenProvider<T> svc;
-		TemporalAccessToken<T> token;
+		volatile TemporalAccessToken<T> token;
+		private final AtomicBoolean running = new AtomicBoolean();
+		// the initial token until its observers are notified
+		private final AtomicReference<TemporalAccessToken<T>> unpublished;
+		private final CountDownLatch published = new CountDownLatch(1);
 
 		TokenRenewTask(AutoRenewingTokenProvider<T> svc, TemporalAccessToken<T> token) {
 			this.svc = svc;
@@ -98,14 +113,70 @@ public class AutoRenewingTokenProvider<T extends AccessToken>
 			if (token.token().getRefreshToken() == null && this.svc.strictlyRefresh())
 				throw new IllegalArgumentException(
 						"Cannot start refresh token timer without a valid token with refresh_token value when set to strictly refresh");
+			this.unpublished = new AtomicReference<>(token);
 		}
 
+		/**
+		 * Notifies the observers of the initial token of this task, unless
+		 * another thread has taken that over already. Invoked by the provider
+		 * once it has released its monitor, and by the first renewal, and never
+		 * waits for either.
+		 */
+		void publish() {
+			TemporalAccessToken<T> initialToken = this.unpublished.getAndSet(null);
+			if (initialToken == null)
+				return;
+			try {
+				this.svc.fireTokenUpdate(initialToken, null);
+			} finally {
+				this.published.countDown();
+			}
+		}
+
+		/**
+		 * A {@link AutoRenewingTokenProvider#refresh()} on a multi-thread
+		 * scheduler can start a renewal while the previous one is still
+		 * running. The overlapping renewal is skipped, since the running one
+		 * renews the token anyway, so renewals and the statistics they write
+		 * have a single writer without blocking on the round-trip.
+		 */
 		@Override
 		public void run() {
+			if (!this.running.compareAndSet(false, true)) {
+				LOGGER.debug("Token renewal already running, skipped");
+				return;
+			}
+			try {
+				this.renewToken();
+			} finally {
+				this.running.set(false);
+			}
+		}
+
+		private void renewToken() {
+			this.publish();
+			// the provider may still be publishing the initial token, which
+			// goes to the observers before its renewals
+			try {
+				this.published.await();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
 			TemporalAccessToken<T> newToken = null;
 			int retries = 0;
 			RetryPolicy retryPolicy = this.svc.getRetryPolicy();
+			TokenMetrics metrics = this.svc.metrics;
+			boolean measured = metrics != null && metrics.isEnabled();
+			TokenProviderStats stats = this.svc.stats;
+			long backoffNanos = 0L;
 			while (newToken == null && retries > -1 && retries < retryPolicy.maxRetries()) {
+				if (retries > 0) {
+					if (measured)
+						metrics.renewalRetried(this.svc.metricsClientId, backoffNanos);
+					if (stats != null)
+						stats.retried();
+				}
 				retries++;
 				try {
 					newToken = this.svc.renew(this.token);
@@ -117,18 +188,31 @@ public class AutoRenewingTokenProvider<T extends AccessToken>
 						this.token = newToken;
 						this.svc.fireTokenUpdate(this.token, previousToken);
 					}
+					if (stats != null) {
+						if (newToken != null)
+							stats.renewed(Instant.now(this.svc.clock));
+						else
+							stats.failed();
+					}
 				} catch (IOException e) {
 					LOGGER.error("Token refresh task failed", e);
+					if (stats != null)
+						stats.failed();
 					if (retryPolicy.onException(e)) {
+						long sleepStart = measured ? System.nanoTime() : 0L;
 						try {
 							TimeUnit.MILLISECONDS.sleep(retryPolicy.periodBetweenRetries());
 						} catch (InterruptedException ie) {
 						}
+						if (measured)
+							backoffNanos = System.nanoTime() - sleepStart;
 					} else {
 						break;
 					}
 				}
 			}
+			if (stats != null && !this.svc.paused)
+				stats.scheduled(Instant.now(this.svc.clock).plusMillis(this.svc.periodMillis));
 		}
 
 		TemporalAccessToken<T> getToken() {
@@ -141,16 +225,96 @@ public class AutoRenewingTokenProvider<T extends AccessToken>
 		String refreshToken = token.token().getRefreshToken();
 		// automatically fallback to fetch new token if refreshToken is null,
 		// unless instructed otherwise
+		long start = System.nanoTime();
 		if (refreshToken == null && !strictlyRefresh())
 			newToken = this.getTokenService().fetch();
 		if (newToken == null)
 			newToken = this.getTokenService().refresh(refreshToken);
+		this.stats.fetched(System.nanoTime() - start);
 		if (newToken == null)
 			return null;
-		TemporalAccessToken<T> temporalToken = new TemporalAccessToken<>(newToken, Instant.now(), this.tokenExpireInTemporalUnit());
+		TemporalAccessToken<T> temporalToken = this.temporal(newToken, Instant.now(this.clock));
 		return temporalToken;
 	}
 
+	/**
+	 * Wraps a token received at the supplied moment, reading its validity from
+	 * its JWT claims if so configured.
+	 */
+	TemporalAccessToken<T> temporal(T token, Instant receivedMoment) {
+		// render the Authorization header once here, off the path of the
+		// resource requests, and publish it with the token
+		token.authorizationHeader();
+		if (this.jwtExpiry)
+			return TemporalAccessToken.fromJwt(token, receivedMoment, this.tokenExpireInTemporalUnit()).clock(this.clock);
+		return new TemporalAccessToken<>(token, receivedMoment, this.tokenExpireInTemporalUnit()).clock(this.clock);
+	}
+
+	/**
+	 * Instructs this provider to take the validity of JWT access tokens from
+	 * their "exp" and "iat" claims, instead of counting <i>expires_in</i> from
+	 * the moment they were received. The lifetime between the claims is
+	 * counted from the moment of receipt, so that clock skew to the server
+	 * does not shift it. Renewals are then scheduled against the exact
+	 * lifetime and need a smaller safety margin in {@link #schedule(double)}.
+	 * Tokens that are not JWTs fall back to <i>expires_in</i>. Designed for
+	 * chaining.
+	 * 
+	 * @param jwtExpiry
+	 * @return owning instance for chaining.
+	 */
+	public AutoRenewingTokenProvider<T> jwtExpiry(boolean jwtExpiry) {
+		this.jwtExpiry = jwtExpiry;
+		return this;
+	}
+
+	boolean jwtExpiry() {
+		return this.jwtExpiry;
+	}
+
+	/**
+	 * Records renewal retries, the time to notify observers and the age and
+	 * remaining validity of the tokens handed out by this provider with the
+	 * supplied metrics. Designed for chaining.
+	 * 
+	 * @param metrics
+	 * @param clientId
+	 *            the client id to tag the metrics of this provider with
+	 * @return owning instance for chaining.
+	 */
+	public AutoRenewingTokenProvider<T> metrics(TokenMetrics metrics, String clientId) {
+		if (metrics == null)
+			throw new IllegalArgumentException("metrics is null");
+		this.metrics = metrics;
+		this.metricsClientId = clientId;
+		return this;
+	}
+
+	/**
+	 * Sets the clock this provider takes the current moment from, for the
+	 * validity of the tokens it receives and for its statistics. Defaults to
+	 * the system UTC clock. Together with a scheduler running in the same
+	 * time, e.g. a {@link commons.time.VirtualScheduler} and its clock, it
+	 * makes the renewals of this provider deterministic. Designed for
+	 * chaining.
+	 * 
+	 * @param clock
+	 * @return owning instance for chaining.
+	 */
+	public AutoRenewingTokenProvider<T> clock(Clock clock) {
+		if (clock == null)
+			throw new IllegalArgumentException("clock is null");
+		this.clock = clock;
+		return this;
+	}
+
+	/**
+	 * @return the clock this provider takes the current moment from
+	 */
+	public Clock clock() {
+		return this.clock;
+	}
+
 	public AutoRenewingTokenProvider<T> strictlyRefresh(boolean strictlyRefresh) {
 		this.strictlyRefresh = strictlyRefresh;
 		return this;
@@ -168,14 +332,30 @@ public class AutoRenewingTokenProvider<T extends AccessToken>
 		return this.retryPolicy;
 	}
 
+	/**
+	 * Provides the live renewal statistics of this provider.
+	 * 
+	 * @return the statistics of this provider
+	 */
+	public TokenProviderStats stats() {
+		return this.stats;
+	}
+
 	void fireTokenUpdate(final TemporalAccessToken<T> token, final TemporalAccessToken<T> previous) {
+		Instant expiresAt = token != null ? token.validSince().plus(token.ttl()) : null;
+		this.stats.tokenChanged(expiresAt);
+		if (this.metrics.isEnabled())
+			this.metrics.tokenChanged(this.metricsClientId, expiresAt);
 		// Notify the list of registered listeners
 		if (this.observable != null) {
+			long start = this.metrics.isEnabled() ? System.nanoTime() : 0L;
 			try {
 				this.observable.notify((listener) -> listener.tokenChanged(token, previous));
 			} catch (Throwable t) {
 				LOGGER.error("Change listener error", t);
 			}
+			if (this.metrics.isEnabled())
+				this.metrics.observersNotified(this.metricsClientId, System.nanoTime() - start);
 		}
 	}
 
@@ -209,18 +389,32 @@ public class AutoRenewingTokenProvider<T extends AccessToken>
 		return this;
 	}
 
-	double delayModifier() {
+	/**
+	 * @return the delay between renewals as percentage of the token TTL
+	 * @see #schedule(double)
+	 */
+	public double delayModifier() {
 		return this.delayModifier;
 	}
 
 	@Override
 	public Duration estimatedRepetitionsDelay() {
-		T token = this.get();
-		if (token == null)
+		// not get(), which records the token as used
+		TokenRenewTask task = this.tokenRenewTask;
+		TemporalAccessToken<T> temporalToken = task != null ? task.getToken() : null;
+		if (temporalToken == null)
 			throw new IllegalStateException("No token to estimate for");
+		T token = temporalToken.token();
+		if (temporalToken.expiresAt() != null) {
+			// exact validity period, e.g. from JWT claims
+			long ttlMillis = temporalToken.ttl().toMillis();
+			if (ttlMillis < 1)
+				throw new IllegalArgumentException("The token has no valid validity period: " + temporalToken.ttl());
+			return Duration.ofMillis(Math.round(ttlMillis * this.delayModifier));
+		}
 		if (token.getExpiresIn() < 1)
 			throw new IllegalArgumentException("The token has no valid expires_in property: " + token.getExpiresIn());
-		TemporalUnit ttlUnit = this.tokenRenewTask.getToken().ttlUnit();
+		TemporalUnit ttlUnit = temporalToken.ttlUnit();
 		long delay = Math.round(token.getExpiresIn() * this.delayModifier);
 		Duration delayDuraiton = Duration.of(delay, ttlUnit);
 		return delayDuraiton;
@@ -272,21 +466,98 @@ public class AutoRenewingTokenProvider<T extends AccessToken>
 	 */
 	@Override
 	public ScheduledFuture<?> start() throws IOException {
-		if (this.isActive())
+		return this.start(0L);
+	}
+
+	/**
+	 * Fetches the initial token with the TokenService of this provider and
+	 * starts the token refresh background job.
+	 *
+	 * @param initialDelayMillis
+	 *            the delay of the first renewal, or -1 for the estimated
+	 *            repetitions delay counted from the moment the token is valid
+	 * @return
+	 * @throws IllegalStateException
+	 *             if a job has already been started
+	 */
+	ScheduledFuture<?> start(long initialDelayMillis) throws IOException {
+		if (this.isActive() || this.paused)
 			throw new IllegalStateException("Already started");
 
 		// fetching from a remote service will inevitably pose some delay so we
 		// defensively choose to count the fetch time from the very start.
+		long start = System.nanoTime();
 		T newToken = this.getTokenService().fetch();
+		this.stats.fetched(System.nanoTime() - start);
 		if (newToken == null)
 			throw new IllegalStateException("The token fetched from this TokenService is null");
-		TemporalAccessToken<T> accessToken = new TemporalAccessToken<>(newToken, Instant.now(), this.tokenExpireInTemporalUnit());
-		this.fireTokenUpdate(accessToken, null);
+		return this.start(this.temporal(newToken, Instant.now(this.clock)), initialDelayMillis);
+	}
+
+	/**
+	 * Starts the token refresh background job with a token fetched from the
+	 * TokenService of this provider elsewhere instead of fetching one. The first
+	 * renewal is scheduled when the token is due for it, not immediately.
+	 * 
+	 * @param newToken
+	 *            the freshly fetched token
+	 * @param fetchMoment
+	 *            the moment the token was received
+	 * @return
+	 * @throws IllegalStateException
+	 *             if a job has already been started
+	 */
+	public ScheduledFuture<?> start(T newToken, Instant fetchMoment) {
+		if (newToken == null)
+			throw new IllegalArgumentException("newToken is null");
+		if (fetchMoment == null)
+			throw new IllegalArgumentException("fetchMoment is null");
+		return this.start(this.temporal(newToken, fetchMoment), -1L);
+	}
 
-		this.tokenRenewTask = new TokenRenewTask(this, accessToken);
+	/**
+	 * Publishes the initial token and schedules its renewal.
+	 * 
+	 * @param initialDelayMillis
+	 *            the delay of the first renewal, or -1 for the estimated
+	 *            repetitions delay counted from the moment the token is valid
+	 */
+	private ScheduledFuture<?> start(TemporalAccessToken<T> accessToken, long initialDelayMillis) {
+		TokenRenewTask task;
+		ScheduledFuture<?> future;
+		synchronized (this) {
+			// checked again, concurrent starts may have passed the check
+			// before the fetch
+			if (this.isActive() || this.paused)
+				throw new IllegalStateException("Already started");
+			task = new TokenRenewTask(this, accessToken);
+			this.tokenRenewTask = task;
+			future = this.scheduleRenewals(initialDelayMillis);
+		}
+		// outside of the monitor, so that observers can call back into this
+		// provider, and never behind a renewal that is due immediately
+		task.publish();
+		return future;
+	}
+
+	/**
+	 * Schedules the renewal of the token of the current renew task.
+	 * 
+	 * @param initialDelayMillis
+	 *            the delay of the first renewal, or -1 for the estimated
+	 *            repetitions delay counted from the moment the token is valid
+	 */
+	private ScheduledFuture<?> scheduleRenewals(long initialDelayMillis) {
 		long delayMillis = this.estimatedRepetitionsDelay().toMillis();
-		this.future = this.schedulerExecutor.scheduleWithFixedDelay(this.tokenRenewTask, 0L, delayMillis,
-				TimeUnit.MILLISECONDS);
+		if (initialDelayMillis < 0) {
+			long elapsedMillis = Duration.between(this.tokenRenewTask.getToken().validSince(), Instant.now(this.clock))
+					.toMillis();
+			initialDelayMillis = Math.max(delayMillis - elapsedMillis, 0L);
+		}
+		this.periodMillis = delayMillis;
+		this.stats.scheduled(Instant.now(this.clock).plusMillis(initialDelayMillis));
+		this.future = this.schedulerExecutor.scheduleWithFixedDelay(this.tokenRenewTask, initialDelayMillis,
+				delayMillis, TimeUnit.MILLISECONDS);
 		return this.future;
 	}
 
@@ -294,13 +565,66 @@ public class AutoRenewingTokenProvider<T extends AccessToken>
 		return this.future != null && !this.future.isDone();
 	}
 
+	/**
+	 * Suspends the renewals of an active provider without shutting down its
+	 * scheduler, until {@link #resume()}. The current token is still
+	 * provided meanwhile. Does nothing if the provider is not active.
+	 */
+	public synchronized void pause() {
+		if (!this.isActive())
+			return;
+		this.future.cancel(false);
+		this.paused = true;
+		this.stats.scheduled(null);
+	}
+
+	/**
+	 * Resumes the renewals of a provider suspended with {@link #pause()}. The
+	 * next renewal is scheduled when the current token is due for it, which
+	 * is immediately if it is overdue. Does nothing if the provider is not
+	 * paused.
+	 */
+	public synchronized void resume() {
+		if (!this.paused)
+			return;
+		this.paused = false;
+		this.scheduleRenewals(-1L);
+	}
+
+	/**
+	 * @return true if the renewals of this provider are paused
+	 */
+	public boolean isPaused() {
+		return this.paused;
+	}
+
+	/**
+	 * Renews the token of a started provider now, instead of waiting for its
+	 * scheduled renewal. The renewals of an active provider are rescheduled
+	 * from this one on. A paused provider renews once and stays paused. A
+	 * renewal that is already running is not repeated.
+	 * 
+	 * @throws IllegalStateException
+	 *             if the provider has not been started
+	 */
+	public synchronized void refresh() {
+		if (this.tokenRenewTask == null || this.future == null)
+			throw new IllegalStateException("Not started");
+		if (this.paused) {
+			this.schedulerExecutor.execute(this.tokenRenewTask);
+			return;
+		}
+		this.future.cancel(false);
+		this.scheduleRenewals(0L);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
 	 * @see net.oauth2.client.ScheduledRefreshing#stop(boolean)
 	 */
 	@Override
-	public void stop(boolean graceful) {
+	public synchronized void stop(boolean graceful) {
 		// silently ignore if executor not started
 		if (this.future != null) {
 			if (graceful)
@@ -309,6 +633,8 @@ public class AutoRenewingTokenProvider<T extends AccessToken>
 				this.schedulerExecutor.shutdownNow();
 			this.future = null;
 		}
+		this.paused = false;
+		this.stats.scheduled(null);
 	}
 
 	/*
@@ -318,22 +644,24 @@ public class AutoRenewingTokenProvider<T extends AccessToken>
 	 */
 	@Override
 	public ScheduledFuture<?> resume(T token, Instant fetchMoment, boolean refetchIfExpired) {
-		if (this.isActive())
-			throw new IllegalStateException("Already started");
-		if (token == null)
-			throw new IllegalArgumentException("Cannot resume with token null");
-		// fetching from a remote service will inevitably pose some delay so we
-		// defensively choose to count the fetch time from the very start.
-		TemporalAccessToken<T> _token = new TemporalAccessToken<>(token, fetchMoment);
-		if (_token.isExpired() && !refetchIfExpired)
-			throw new IllegalStateException("Cannot resume an expired token");
-		this.fireTokenUpdate(_token, null);
-
-		this.tokenRenewTask = new TokenRenewTask(this, _token);
-		long delayMillis = this.estimatedRepetitionsDelay().toMillis();
-		this.future = this.schedulerExecutor.scheduleWithFixedDelay(this.tokenRenewTask,
-				_token.ttlLeft(ChronoUnit.MILLIS), delayMillis, TimeUnit.MILLISECONDS);
-		return this.future;
+		TokenRenewTask task;
+		ScheduledFuture<?> future;
+		synchronized (this) {
+			if (this.isActive() || this.paused)
+				throw new IllegalStateException("Already started");
+			if (token == null)
+				throw new IllegalArgumentException("Cannot resume with token null");
+			// fetching from a remote service will inevitably pose some delay so
+			// we defensively choose to count the fetch time from the very start.
+			TemporalAccessToken<T> _token = this.temporal(token, fetchMoment);
+			if (_token.isExpired() && !refetchIfExpired)
+				throw new IllegalStateException("Cannot resume an expired token");
+			task = new TokenRenewTask(this, _token);
+			this.tokenRenewTask = task;
+			future = this.scheduleRenewals(Math.max(_token.ttlLeft(ChronoUnit.MILLIS), 0L));
+		}
+		task.publish();
+		return future;
 	}
 
 	public void suspend(final boolean graceful) {
@@ -353,9 +681,17 @@ public class AutoRenewingTokenProvider<T extends AccessToken>
 	@SuppressWarnings("unchecked")
 	@Override
 	public T get() {
-		if (this.tokenRenewTask == null || this.tokenRenewTask.getToken() == null)
+		TokenRenewTask task = this.tokenRenewTask;
+		TemporalAccessToken<T> token = task != null ? task.getToken() : null;
+		if (token == null)
 			return null;
-		return this.tokenRenewTask.getToken().token();
+		if (this.metrics.isTokenUsageEnabled()) {
+			Instant now = Instant.now(this.clock);
+			long ageNanos = Duration.between(token.validSince(), now).toNanos();
+			long ttlLeftNanos = Duration.between(now, token.validSince().plus(token.ttl())).toNanos();
+			this.metrics.tokenUsed(this.metricsClientId, ageNanos, Math.max(ttlLeftNanos, 0L));
+		}
+		return token.token();
 	}
 
 	/*
@@ -0,0 +1,300 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+package net.oauth2.client;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Starts many {@link AutoRenewingTokenProvider}s at once, e.g. one per tenant
+ * at application startup, fetching their initial tokens in parallel.
+ * <p>
+ * At most {@code concurrency} fetches are in flight at any time, and fetches
+ * can additionally be limited to a rate per second to spare the token
+ * service. Each provider fetches its initial token itself, with its statistics
+ * and metrics, and schedules its first renewal when the token is due for it.
+ * Providers that are already started or paused are skipped. The total time is
+ * about the fetch latency times the number of providers divided by the
+ * concurrency. Failures of single providers do not stop the others and are
+ * reported in the {@link Result}.
+ * </p>
+ */
+public class BulkTokenProviderStarter {
+
+	protected static final Logger LOGGER = LoggerFactory.getLogger(BulkTokenProviderStarter.class);
+
+	/**
+	 * Receives the progress of a bulk start after each provider has been
+	 * started or has failed. Invoked concurrently from the fetching threads.
+	 * The total excludes the skipped providers. Exceptions thrown by the
+	 * listener are logged and do not affect the bulk start.
+	 */
+	@FunctionalInterface
+	public interface ProgressListener {
+		void onProgress(int started, int failed, int total);
+	}
+
+	private final int concurrency;
+	private final double permitsPerSecond;
+	private final ExecutorService executor;
+	private final ProgressListener listener;
+	private final LongSupplier nanoClock = System::nanoTime;
+
+	BulkTokenProviderStarter(Builder builder) {
+		this.concurrency = builder.concurrency;
+		this.permitsPerSecond = builder.permitsPerSecond;
+		this.executor = builder.executor;
+		this.listener = builder.listener;
+	}
+
+	public static final class Builder {
+
+		int concurrency = 16;
+		double permitsPerSecond;
+		ExecutorService executor;
+		ProgressListener listener;
+
+		public Builder() {
+		}
+
+		/**
+		 * The maximum number of concurrent token fetches. Defaults to 16.
+		 * 
+		 * @param concurrency
+		 * @return this builder for chaining
+		 */
+		public Builder concurrency(int concurrency) {
+			if (concurrency < 1)
+				throw new IllegalArgumentException("concurrency must be positive");
+			this.concurrency = concurrency;
+			return this;
+		}
+
+		/**
+		 * The maximum number of token fetches started per second. Unlimited
+		 * by default.
+		 * 
+		 * @param permitsPerSecond
+		 * @return this builder for chaining
+		 */
+		public Builder rateLimit(double permitsPerSecond) {
+			if (!(permitsPerSecond > 0))
+				throw new IllegalArgumentException("permitsPerSecond must be positive");
+			this.permitsPerSecond = permitsPerSecond;
+			return this;
+		}
+
+		/**
+		 * The executor to fetch tokens with. Defaults to a thread pool of
+		 * {@code concurrency} threads for the duration of each bulk start.
+		 * 
+		 * @param executor
+		 * @return this builder for chaining
+		 */
+		public Builder executor(ExecutorService executor) {
+			if (executor == null)
+				throw new IllegalArgumentException("executor is null");
+			this.executor = executor;
+			return this;
+		}
+
+		public Builder progressListener(ProgressListener listener) {
+			if (listener == null)
+				throw new IllegalArgumentException("listener is null");
+			this.listener = listener;
+			return this;
+		}
+
+		public BulkTokenProviderStarter build() {
+			return new BulkTokenProviderStarter(this);
+		}
+	}
+
+	/**
+	 * The outcome of a bulk start.
+	 */
+	public static final class Result {
+
+		private final int total;
+		private final int started;
+		private final int skipped;
+		private final Map<AutoRenewingTokenProvider<?>, Exception> failures;
+
+		Result(int total, int started, int skipped, Map<AutoRenewingTokenProvider<?>, Exception> failures) {
+			this.total = total;
+			this.started = started;
+			this.skipped = skipped;
+			this.failures = Collections.unmodifiableMap(failures);
+		}
+
+		public int total() {
+			return this.total;
+		}
+
+		public int started() {
+			return this.started;
+		}
+
+		/**
+		 * @return the number of providers that were already started or paused
+		 */
+		public int skipped() {
+			return this.skipped;
+		}
+
+		/**
+		 * @return the providers that could not be started, with the cause
+		 */
+		public Map<AutoRenewingTokenProvider<?>, Exception> failures() {
+			return this.failures;
+		}
+
+		public boolean isComplete() {
+			return this.started + this.skipped == this.total;
+		}
+
+		@Override
+		public String toString() {
+			return "Result [total=" + total + ", started=" + started + ", skipped=" + skipped + ", failed="
+					+ failures.size() + "]";
+		}
+	}
+
+	/**
+	 * Fetches the initial tokens of the providers in parallel and starts
+	 * them. Blocks until all providers are started or have failed. Providers
+	 * that are already started or paused are skipped.
+	 * 
+	 * @param providers
+	 * @return
+	 * @throws InterruptedException
+	 *             if interrupted while waiting. Pending fetches are cancelled.
+	 */
+	public Result start(Collection<? extends AutoRenewingTokenProvider<?>> providers) throws InterruptedException {
+		if (providers == null)
+			throw new IllegalArgumentException("providers is null");
+		final List<AutoRenewingTokenProvider<?>> pending = new ArrayList<>(providers.size());
+		for (AutoRenewingTokenProvider<?> provider : providers) {
+			if (!provider.isActive() && !provider.isPaused())
+				pending.add(provider);
+		}
+		final int skipped = providers.size() - pending.size();
+		final int total = pending.size();
+		final boolean ownExecutor = this.executor == null;
+		final ExecutorService executor = ownExecutor ? Executors.newFixedThreadPool(this.concurrency, r -> {
+			Thread thread = new Thread(r, "token-provider-bulk-start");
+			thread.setDaemon(true);
+			return thread;
+		}) : this.executor;
+		final Semaphore inflight = new Semaphore(this.concurrency);
+		final RateLimiter rateLimiter = this.permitsPerSecond > 0 ? new RateLimiter(this.permitsPerSecond, this.nanoClock) : null;
+		final CountDownLatch done = new CountDownLatch(total);
+		final AtomicInteger started = new AtomicInteger();
+		final Map<AutoRenewingTokenProvider<?>, Exception> failures = Collections.synchronizedMap(new LinkedHashMap<>());
+		final List<Future<?>> futures = new ArrayList<>(total);
+		try {
+			for (AutoRenewingTokenProvider<?> provider : pending) {
+				// bounds the fetches in flight also on shared executors
+				inflight.acquire();
+				try {
+					futures.add(executor.submit(() -> {
+						try {
+							if (rateLimiter != null)
+								rateLimiter.acquire();
+							// first renewal when the fetched token is due for it
+							provider.start(-1L);
+							started.incrementAndGet();
+						} catch (InterruptedException e) {
+							Thread.currentThread().interrupt();
+							failures.put(provider, e);
+						} catch (Exception e) {
+							LOGGER.warn("Starting token provider failed", e);
+							failures.put(provider, e);
+						} finally {
+							inflight.release();
+							try {
+								if (this.listener != null)
+									this.listener.onProgress(started.get(), failures.size(), total);
+							} catch (RuntimeException e) {
+								LOGGER.warn("Progress listener failed", e);
+							} finally {
+								done.countDown();
+							}
+						}
+					}));
+				} catch (RuntimeException e) {
+					inflight.release();
+					throw e;
+				}
+			}
+			done.await();
+		} catch (InterruptedException e) {
+			for (Future<?> future : futures)
+				future.cancel(true);
+			throw e;
+		} finally {
+			if (ownExecutor)
+				executor.shutdownNow();
+		}
+		synchronized (failures) {
+			return new Result(providers.size(), started.get(), skipped, new LinkedHashMap<>(failures));
+		}
+	}
+
+	/**
+	 * Spaces out permits evenly at the configured rate.
+	 */
+	static final class RateLimiter {
+
+		private final long intervalNanos;
+		private final LongSupplier nanoClock;
+		private long next;
+		private boolean initialized;
+
+		RateLimiter(double permitsPerSecond, LongSupplier nanoClock) {
+			this.intervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond);
+			this.nanoClock = nanoClock;
+		}
+
+		/**
+		 * @return the nanoseconds to wait for the reserved permit
+		 */
+		synchronized long reserve() {
+			long now = this.nanoClock.getAsLong();
+			if (!this.initialized || now - this.next > 0) {
+				this.next = now;
+				this.initialized = true;
+			}
+			long wait = this.next - now;
+			this.next += this.intervalNanos;
+			return wait;
+		}
+
+		void acquire() throws InterruptedException {
+			long wait = this.reserve();
+			if (wait > 0)
+				TimeUnit.NANOSECONDS.sleep(wait);
+		}
+	}
+
+}
@@ -16,6 +16,7 @@ import org.slf4j.LoggerFactory;
 import net.oauth2.AccessToken;
 import net.oauth2.AccessTokenGrantRequest;
 import net.oauth2.RefreshTokenGrantRequest;
+import net.oauth2.ScopeSet;
 import net.oauth2.client.http.TokenServiceHttpClient;
 
 /**
@@ -29,8 +30,11 @@ public class OAuthTokenServiceDelegate<T extends AccessToken> implements TokenSe
 	
 	private AccessTokenGrantRequest grant;
 	private TokenServiceHttpClient client;
-	private RefreshTokenGrantRequest refreshTokenGrantRequest;
+	// replaced by the renewal thread, read by the next one
+	private volatile RefreshTokenGrantRequest refreshTokenGrantRequest;
 	private String pathToTokenEndpoint;
+	private TokenMetrics metrics = TokenMetrics.NOOP;
+	private TokenTracer tracer = TokenTracer.NOOP;
 	
 	public OAuthTokenServiceDelegate(final AccessTokenGrantRequest grant, TokenServiceHttpClient client, String pathToTokenEndpoint) {
 		this.grant = grant;
@@ -48,12 +52,40 @@ public class OAuthTokenServiceDelegate<T extends AccessToken> implements TokenSe
 		return LOGGER;
 	}
 
+	/**
+	 * Records the latency and failures of the token requests sent by this
+	 * delegate with the supplied metrics. Designed for chaining.
+	 * 
+	 * @param metrics
+	 * @return this instance for chaining
+	 */
+	public OAuthTokenServiceDelegate<T> metrics(TokenMetrics metrics) {
+		if (metrics == null)
+			throw new IllegalArgumentException("metrics is null");
+		this.metrics = metrics;
+		return this;
+	}
+
+	/**
+	 * Traces the token requests sent by this delegate with the supplied
+	 * tracer. Designed for chaining.
+	 * 
+	 * @param tracer
+	 * @return this instance for chaining
+	 */
+	public OAuthTokenServiceDelegate<T> tracer(TokenTracer tracer) {
+		if (tracer == null)
+			throw new IllegalArgumentException("tracer is null");
+		this.tracer = tracer;
+		return this;
+	}
+
 	@SuppressWarnings("unchecked")
 	@Override
 	public T fetch() throws IOException, OAuth2ProtocolException {
 		this.getLogger().trace("Fetching Access Token");
 		
-		T accessToken = (T) this.client.post(this.pathToTokenEndpoint, this.grant);
+		T accessToken = this.post(this.grant, TokenTracer.FETCH);
 		
 		if(accessToken != null){
 			String refreshTokenString = accessToken.getRefreshToken();
@@ -76,12 +108,13 @@ public class OAuthTokenServiceDelegate<T extends AccessToken> implements TokenSe
 		if (refreshToken == null)
 			throw new IllegalArgumentException("refreshToken is null");
 		
-		if (this.refreshTokenGrantRequest == null)
+		RefreshTokenGrantRequest refreshTokenGrantRequest = this.refreshTokenGrantRequest;
+		if (refreshTokenGrantRequest == null)
 			throw new IllegalStateException("No refresh token grant initialized. Either authroization server does not support refreshing tokens or fetchToken was never invoked on this instance prior ot invoking refresh.");
 		
 		this.getLogger().trace("Refreshing Access Token");
 		
-		T token = this.client.post(this.pathToTokenEndpoint, this.refreshTokenGrantRequest);
+		T token = this.post(refreshTokenGrantRequest, TokenTracer.REFRESH);
 		
 		if(token != null){
 			Collection<String> scopes = token.getScopes();
@@ -89,9 +122,11 @@ public class OAuthTokenServiceDelegate<T extends AccessToken> implements TokenSe
 			if(refreshTokenString == null)
 				refreshTokenString = refreshToken;
 			else{
-				 /*If a new refresh token is issued, the refresh token scope MUST be identical to that of the refresh token included by the client in the request.*/
-				if(this.refreshTokenGrantRequest.getScopes()!=scopes && (this.refreshTokenGrantRequest.getScopes().size()!= scopes.size() || !this.refreshTokenGrantRequest.getScopes().containsAll(scopes)))
-					throw new IllegalStateException("The new refresh token scope'"+scopes+"' is not identical to that of the refresh token included by the client in the request: " + this.refreshTokenGrantRequest.getScopes());
+				 /*If a new refresh token is issued, the refresh token scope MUST be identical to that of the refresh token included by the client in the request.
+				  An omitted scope is identical to the requested one. Interned ScopeSets are compared by identity.*/
+				Collection<String> requestedScopes = refreshTokenGrantRequest.getScopes();
+				if(requestedScopes!=scopes && scopes!=null && (requestedScopes==null || !ScopeSet.of(requestedScopes).equals(ScopeSet.of(scopes))))
+					throw new IllegalStateException("The new refresh token scope'"+scopes+"' is not identical to that of the refresh token included by the client in the request: " + requestedScopes);
 			}
 
 			RefreshTokenGrantRequest newRefreshGrant = RefreshTokenGrantRequest.renew(this.grant, refreshTokenString, scopes);
@@ -105,6 +140,27 @@ public class OAuthTokenServiceDelegate<T extends AccessToken> implements TokenSe
 		return token;
 	}
 	
+	private T post(AccessTokenGrantRequest grant, String operation) throws OAuth2ProtocolException, IOException {
+		boolean measured = this.metrics.isEnabled();
+		long start = measured ? System.nanoTime() : 0L;
+		if (measured)
+			this.metrics.tokenRequestStarted(grant.getClientId(), grant.getGrantType());
+		Throwable failure = null;
+		TokenTracer.Span span = this.tracer.start(operation, grant.getClientId(), grant.getGrantType());
+		try {
+			return this.client.post(this.pathToTokenEndpoint, grant);
+		} catch (IOException | RuntimeException e) {
+			failure = e;
+			span.error(e);
+			throw e;
+		} finally {
+			span.close();
+			if (measured)
+				this.metrics.tokenRequest(grant.getClientId(), grant.getGrantType(), System.nanoTime() - start,
+						failure);
+		}
+	}
+
 	void setRefreshTokenGrantRequest(RefreshTokenGrantRequest refreshGrant){
 		this.refreshTokenGrantRequest  = refreshGrant;		
 	}
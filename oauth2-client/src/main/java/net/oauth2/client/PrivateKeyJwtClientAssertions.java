@@ -0,0 +1,386 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+package net.oauth2.client;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.RSAPrivateKey;
+import java.time.Clock;
+import java.util.Base64;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.oauth2.AccessTokenGrantRequest;
+import net.oauth2.ClientAssertionSupplier;
+
+/**
+ * Supplies "private_key_jwt" client assertions (RFC 7523, section 2.2), signed
+ * with RS256 or ES256 depending on the private key.
+ * <p>
+ * Signing is done ahead of time: a small pool of short-lived assertions, each
+ * with a unique "jti", is kept filled by a background task, so that token
+ * requests do not wait on signing. Assertions are discarded once they have
+ * used up between a quarter and half of their lifetime in the pool, staggered
+ * so that the assertions signed together are not all replaced at once. Only
+ * when the pool runs dry is an assertion signed in the requesting thread.
+ * </p>
+ * Use with any grant request and transport through
+ * {@link AccessTokenGrantRequest#clientAssertionSupplier(ClientAssertionSupplier)}.
+ * Instances are thread-safe. Close them to stop the background task.
+ */
+public class PrivateKeyJwtClientAssertions implements ClientAssertionSupplier, AutoCloseable {
+
+	protected static final Logger LOGGER = LoggerFactory.getLogger(PrivateKeyJwtClientAssertions.class);
+
+	private static final Base64.Encoder BASE64URL = Base64.getUrlEncoder().withoutPadding();
+
+	private final String clientId;
+	private final String audience;
+	private final PrivateKey privateKey;
+	private final String signatureAlgorithm;
+	private final boolean ecdsa;
+	private final String encodedHeader;
+	private final long lifetimeMillis;
+	private final Clock clock;
+	private final BlockingQueue<Assertion> pool;
+	private final AtomicBoolean refilling = new AtomicBoolean();
+	private final ScheduledExecutorService executor;
+	private final boolean ownExecutor;
+	private final ScheduledFuture<?> refillJob;
+
+	PrivateKeyJwtClientAssertions(Builder builder) {
+		this.clientId = builder.clientId;
+		this.audience = builder.audience;
+		this.privateKey = builder.privateKey;
+		this.ecdsa = builder.privateKey instanceof ECPrivateKey;
+		this.signatureAlgorithm = this.ecdsa ? "SHA256withECDSA" : "SHA256withRSA";
+		StringBuilder header = new StringBuilder("{\"alg\":\"").append(this.ecdsa ? "ES256" : "RS256")
+				.append("\",\"typ\":\"JWT\"");
+		if (builder.keyId != null)
+			appendMember(header.append(','), "kid", builder.keyId);
+		this.encodedHeader = BASE64URL.encodeToString(header.append('}').toString().getBytes(StandardCharsets.UTF_8));
+		this.lifetimeMillis = builder.lifetimeMillis;
+		this.clock = builder.clock;
+		this.pool = new ArrayBlockingQueue<>(builder.poolSize);
+		this.ownExecutor = builder.executor == null;
+		this.executor = this.ownExecutor ? Executors.newSingleThreadScheduledExecutor(r -> {
+			Thread thread = new Thread(r, "private-key-jwt-signer");
+			thread.setDaemon(true);
+			return thread;
+		}) : builder.executor;
+		// replaces aging assertions in the pool well before they are discarded
+		long refillPeriod = Math.max(this.lifetimeMillis / 4, 1);
+		this.refillJob = this.executor.scheduleWithFixedDelay(this::refillNow, 0, refillPeriod, TimeUnit.MILLISECONDS);
+	}
+
+	public static final class Builder {
+
+		String clientId;
+		String audience;
+		PrivateKey privateKey;
+		String keyId;
+		long lifetimeMillis = TimeUnit.SECONDS.toMillis(60);
+		int poolSize = 4;
+		ScheduledExecutorService executor;
+		Clock clock = Clock.systemUTC();
+
+		public Builder() {
+		}
+
+		/**
+		 * The client id, used as issuer and subject of the assertions.
+		 * 
+		 * @param clientId
+		 * @return this builder for chaining
+		 */
+		public Builder clientId(String clientId) {
+			if (clientId == null)
+				throw new IllegalArgumentException("clientId is null");
+			this.clientId = clientId;
+			return this;
+		}
+
+		/**
+		 * The audience of the assertions, usually the URL of the token
+		 * endpoint.
+		 * 
+		 * @param audience
+		 * @return this builder for chaining
+		 */
+		public Builder audience(String audience) {
+			if (audience == null)
+				throw new IllegalArgumentException("audience is null");
+			this.audience = audience;
+			return this;
+		}
+
+		/**
+		 * An RSA key, for RS256 signatures, or an EC key on the P-256 curve,
+		 * for ES256 signatures.
+		 * 
+		 * @param privateKey
+		 * @return this builder for chaining
+		 */
+		public Builder privateKey(PrivateKey privateKey) {
+			if (privateKey == null)
+				throw new IllegalArgumentException("privateKey is null");
+			if (privateKey instanceof ECPrivateKey) {
+				if (((ECPrivateKey) privateKey).getParams().getCurve().getField().getFieldSize() != 256)
+					throw new IllegalArgumentException("EC keys must be on the P-256 curve for ES256");
+			} else if (!(privateKey instanceof RSAPrivateKey)) {
+				throw new IllegalArgumentException("Unsupported key algorithm: " + privateKey.getAlgorithm());
+			}
+			this.privateKey = privateKey;
+			return this;
+		}
+
+		/**
+		 * The "kid" header of the assertions, identifying the key to the
+		 * authorization server. Optional.
+		 * 
+		 * @param keyId
+		 * @return this builder for chaining
+		 */
+		public Builder keyId(String keyId) {
+			this.keyId = keyId;
+			return this;
+		}
+
+		/**
+		 * The lifetime of each assertion from the moment it is signed.
+		 * Defaults to 60 seconds.
+		 * 
+		 * @param lifetime
+		 * @param unit
+		 * @return this builder for chaining
+		 */
+		public Builder lifetime(long lifetime, TimeUnit unit) {
+			if (unit == null)
+				throw new IllegalArgumentException("unit is null");
+			if (unit.toSeconds(lifetime) < 2)
+				throw new IllegalArgumentException("lifetime must be at least 2 seconds");
+			this.lifetimeMillis = unit.toMillis(lifetime);
+			return this;
+		}
+
+		/**
+		 * The number of pre-signed assertions to keep. Defaults to 4.
+		 * 
+		 * @param poolSize
+		 * @return this builder for chaining
+		 */
+		public Builder poolSize(int poolSize) {
+			if (poolSize < 1)
+				throw new IllegalArgumentException("poolSize must be positive");
+			this.poolSize = poolSize;
+			return this;
+		}
+
+		/**
+		 * The executor signing assertions in the background. Defaults to a
+		 * dedicated daemon thread, shut down on {@link #close()}.
+		 * 
+		 * @param executor
+		 * @return this builder for chaining
+		 */
+		public Builder executor(ScheduledExecutorService executor) {
+			if (executor == null)
+				throw new IllegalArgumentException("executor is null");
+			this.executor = executor;
+			return this;
+		}
+
+		public Builder clock(Clock clock) {
+			if (clock == null)
+				throw new IllegalArgumentException("clock is null");
+			this.clock = clock;
+			return this;
+		}
+
+		public PrivateKeyJwtClientAssertions build() {
+			if (this.clientId == null)
+				throw new IllegalStateException("clientId is required but never invoked");
+			if (this.audience == null)
+				throw new IllegalStateException("audience is required but never invoked");
+			if (this.privateKey == null)
+				throw new IllegalStateException("privateKey is required but never invoked");
+			return new PrivateKeyJwtClientAssertions(this);
+		}
+	}
+
+	/**
+	 * Returns a pre-signed assertion from the pool, or signs one if the pool
+	 * is empty.
+	 * 
+	 * @throws IllegalStateException
+	 *             if signing fails
+	 */
+	@Override
+	public String nextAssertion() {
+		long now = this.clock.millis();
+		Assertion assertion;
+		while ((assertion = this.pool.poll()) != null) {
+			if (assertion.isFresh(now)) {
+				this.refill();
+				return assertion.jwt;
+			}
+		}
+		this.refill();
+		LOGGER.debug("No pre-signed client assertion available. Signing one");
+		try {
+			return this.sign(now);
+		} catch (GeneralSecurityException e) {
+			throw new IllegalStateException("Signing client assertion failed", e);
+		}
+	}
+
+	/**
+	 * Requests a background refill of the pool, unless one is pending.
+	 */
+	private void refill() {
+		if (this.refilling.compareAndSet(false, true)) {
+			try {
+				this.executor.execute(this::refillNow);
+			} catch (RejectedExecutionException e) {
+				this.refilling.set(false);
+			}
+		}
+	}
+
+	void refillNow() {
+		try {
+			long now = this.clock.millis();
+			this.pool.removeIf(assertion -> !assertion.isFresh(now));
+			int capacity = this.pool.size() + this.pool.remainingCapacity();
+			long halfLifetime = this.lifetimeMillis / 2;
+			for (int i = 0; this.pool.remainingCapacity() > 0; i++) {
+				// each assertion is stamped when it is signed, and retired
+				// earlier the later it is signed in this refill
+				long signedAt = this.clock.millis();
+				long freshUntil = signedAt + halfLifetime - halfLifetime / 2 * i / capacity;
+				if (!this.pool.offer(new Assertion(this.sign(signedAt), freshUntil)))
+					break;
+			}
+		} catch (GeneralSecurityException | RuntimeException e) {
+			LOGGER.error("Signing client assertions failed", e);
+		} finally {
+			this.refilling.set(false);
+		}
+	}
+
+	String sign(long nowMillis) throws GeneralSecurityException {
+		long iat = nowMillis / 1000;
+		StringBuilder claims = new StringBuilder(256).append('{');
+		appendMember(claims, "iss", this.clientId).append(',');
+		appendMember(claims, "sub", this.clientId).append(',');
+		appendMember(claims, "aud", this.audience).append(',');
+		appendMember(claims, "jti", UUID.randomUUID().toString()).append(',');
+		claims.append("\"iat\":").append(iat).append(",\"exp\":").append(iat + this.lifetimeMillis / 1000).append('}');
+		String signingInput = this.encodedHeader + '.'
+				+ BASE64URL.encodeToString(claims.toString().getBytes(StandardCharsets.UTF_8));
+		// Signature instances are not thread-safe
+		Signature signature = Signature.getInstance(this.signatureAlgorithm);
+		signature.initSign(this.privateKey);
+		signature.update(signingInput.getBytes(StandardCharsets.US_ASCII));
+		byte[] signed = signature.sign();
+		if (this.ecdsa)
+			signed = derToJose(signed, 32);
+		return signingInput + '.' + BASE64URL.encodeToString(signed);
+	}
+
+	/**
+	 * Converts a DER encoded ECDSA signature to the fixed length R|S
+	 * concatenation of JWS (RFC 7518, section 3.4).
+	 */
+	static byte[] derToJose(byte[] der, int length) throws GeneralSecurityException {
+		if (der.length < 8 || der[0] != 0x30)
+			throw new GeneralSecurityException("Invalid DER ECDSA signature");
+		int offset = (der[1] & 0x80) != 0 ? 2 + (der[1] & 0x7F) : 2;
+		byte[] jose = new byte[2 * length];
+		for (int i = 0; i < 2; i++) {
+			if (offset + 2 > der.length || der[offset] != 0x02)
+				throw new GeneralSecurityException("Invalid DER ECDSA signature");
+			int intLength = der[offset + 1];
+			int start = offset + 2;
+			offset = start + intLength;
+			if (offset > der.length)
+				throw new GeneralSecurityException("Invalid DER ECDSA signature");
+			// strip the sign padding, left-pad to length
+			while (intLength > length && der[start] == 0) {
+				start++;
+				intLength--;
+			}
+			if (intLength > length)
+				throw new GeneralSecurityException("Invalid DER ECDSA signature");
+			System.arraycopy(der, start, jose, (i + 1) * length - intLength, intLength);
+		}
+		return jose;
+	}
+
+	private static StringBuilder appendMember(StringBuilder json, String name, String value) {
+		json.append('"').append(name).append("\":\"");
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\')
+				json.append('\\').append(c);
+			else if (c < 0x20)
+				json.append(String.format("\\u%04x", (int) c));
+			else
+				json.append(c);
+		}
+		return json.append('"');
+	}
+
+	int pooled() {
+		return this.pool.size();
+	}
+
+	/**
+	 * Stops refilling the pool in the background and shuts down the default
+	 * executor. Subsequent assertions are signed on demand.
+	 */
+	@Override
+	public void close() {
+		this.refillJob.cancel(false);
+		if (this.ownExecutor)
+			this.executor.shutdownNow();
+	}
+
+	private static final class Assertion {
+
+		final String jwt;
+		final long freshUntil;
+
+		Assertion(String jwt, long freshUntil) {
+			this.jwt = jwt;
+			this.freshUntil = freshUntil;
+		}
+
+		/**
+		 * An assertion is handed out at most in the first half of its
+		 * lifetime, leaving the rest to cover transmission and clock skew.
+		 */
+		boolean isFresh(long now) {
+			return now < this.freshUntil;
+		}
+	}
+
+}
@@ -19,18 +19,41 @@ import net.oauth2.AccessToken;
 public class SimpleTokenProvider implements TokenProvider{
 
 	private final TokenService tokenService;
+	private TokenTracer tracer = TokenTracer.NOOP;
 	
 	public SimpleTokenProvider(TokenService tokenService) {
 		this.tokenService = tokenService;
 	}
+
+	/**
+	 * Traces the time callers of {@link #get()} wait for a token with the
+	 * supplied tracer. Designed for chaining.
+	 * 
+	 * @param tracer
+	 * @return this instance for chaining
+	 */
+	public SimpleTokenProvider tracer(TokenTracer tracer) {
+		if (tracer == null)
+			throw new IllegalArgumentException("tracer is null");
+		this.tracer = tracer;
+		return this;
+	}
 	
 	/**
 	 * Fetches a Token from a TokenService upon each invocation.  
 	 */
 	@Override
 	public <T extends AccessToken> T get() throws OAuth2ProtocolException, IOException {
-		T token = tokenService.fetch();
-		return token;
+		TokenTracer.Span span = this.tracer.start(TokenTracer.GET, null, null);
+		try {
+			T token = tokenService.fetch();
+			return token;
+		} catch (IOException | RuntimeException e) {
+			span.error(e);
+			throw e;
+		} finally {
+			span.close();
+		}
 	}
 	
 }
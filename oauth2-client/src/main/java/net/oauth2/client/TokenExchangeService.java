@@ -0,0 +1,378 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+package net.oauth2.client;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.oauth2.AccessToken;
+import net.oauth2.ClientAssertionSupplier;
+import net.oauth2.ScopeSet;
+import net.oauth2.TokenExchangeGrantRequest;
+import net.oauth2.client.http.TokenServiceHttpClient;
+
+/**
+ * Exchanges subject tokens for tokens for other audiences (RFC 8693), e.g. in
+ * a gateway exchanging the token of each incoming request for a token for the
+ * downstream service, and caches the exchanged tokens.
+ * <p>
+ * Exchanged tokens are cached by subject token, audience and scopes until
+ * shortly before they expire. Subject tokens are kept in the cache only as
+ * their SHA-256 digest. Concurrent exchanges of the same key are coalesced
+ * into a single request to the token service, and the number of cached tokens
+ * is bounded with least-recently-used eviction. Tokens with no
+ * <i>expires_in</i> are not cached.
+ * </p>
+ * 
+ * @param <T>
+ *            the type of the exchanged tokens
+ */
+public class TokenExchangeService<T extends AccessToken> {
+
+	protected static final Logger LOGGER = LoggerFactory.getLogger(TokenExchangeService.class);
+
+	private final TokenServiceHttpClient client;
+	private final String path;
+	private final String clientId;
+	private final String clientSecret;
+	private final ClientAssertionSupplier clientAssertionSupplier;
+	private final long expiryMarginNanos;
+	private final Map<Key, Entry<T>> cache;
+	private final ConcurrentHashMap<Key, CompletableFuture<T>> inflight = new ConcurrentHashMap<>();
+	private final LongSupplier nanoClock;
+
+	TokenExchangeService(Builder builder) {
+		this.client = builder.client;
+		this.path = builder.path;
+		this.clientId = builder.clientId;
+		this.clientSecret = builder.clientSecret;
+		this.clientAssertionSupplier = builder.clientAssertionSupplier;
+		this.expiryMarginNanos = builder.expiryMarginNanos;
+		this.nanoClock = builder.nanoClock;
+		final int maxEntries = builder.maxEntries;
+		this.cache = new LinkedHashMap<Key, Entry<T>>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key, Entry<T>> eldest) {
+				return this.size() > maxEntries;
+			}
+		};
+	}
+
+	public static final class Builder {
+
+		TokenServiceHttpClient client;
+		String path = TokenServiceHttpClient.DEFAULT_PATH;
+		String clientId;
+		String clientSecret;
+		ClientAssertionSupplier clientAssertionSupplier;
+		long expiryMarginNanos = TimeUnit.SECONDS.toNanos(30);
+		int maxEntries = 10_000;
+		LongSupplier nanoClock = System::nanoTime;
+
+		public Builder() {
+		}
+
+		public Builder client(TokenServiceHttpClient client) {
+			if (client == null)
+				throw new IllegalArgumentException("client is null");
+			this.client = client;
+			return this;
+		}
+
+		/**
+		 * The URL path to the token service. Defaults to
+		 * {@link TokenServiceHttpClient#DEFAULT_PATH}.
+		 * 
+		 * @param path
+		 * @return this builder for chaining
+		 */
+		public Builder path(String path) {
+			if (path == null)
+				throw new IllegalArgumentException("path is null");
+			this.path = path;
+			return this;
+		}
+
+		/**
+		 * The credentials of the client performing the exchange, if the token
+		 * service requires them in the payload.
+		 * 
+		 * @param clientId
+		 * @param clientSecret
+		 * @return this builder for chaining
+		 */
+		public Builder clientCredentials(String clientId, String clientSecret) {
+			this.clientId = clientId;
+			this.clientSecret = clientSecret;
+			return this;
+		}
+
+		/**
+		 * Authenticates the client performing the exchange with client
+		 * assertions.
+		 * 
+		 * @param clientAssertionSupplier
+		 * @return this builder for chaining
+		 */
+		public Builder clientAssertions(ClientAssertionSupplier clientAssertionSupplier) {
+			this.clientAssertionSupplier = clientAssertionSupplier;
+			return this;
+		}
+
+		/**
+		 * How long before their expiry cached tokens are no longer handed
+		 * out. Defaults to 30 seconds.
+		 * 
+		 * @param margin
+		 * @param unit
+		 * @return this builder for chaining
+		 */
+		public Builder expiryMargin(long margin, TimeUnit unit) {
+			if (margin < 0 || unit == null)
+				throw new IllegalArgumentException("margin must not be negative and unit not null");
+			this.expiryMarginNanos = unit.toNanos(margin);
+			return this;
+		}
+
+		/**
+		 * The maximum number of cached tokens. Defaults to 10000.
+		 * 
+		 * @param maxEntries
+		 * @return this builder for chaining
+		 */
+		public Builder maxEntries(int maxEntries) {
+			if (maxEntries < 1)
+				throw new IllegalArgumentException("maxEntries must be positive");
+			this.maxEntries = maxEntries;
+			return this;
+		}
+
+		/**
+		 * The source of the nanosecond time to expire cached tokens with.
+		 * Defaults to {@link System#nanoTime()}.
+		 * 
+		 * @param nanoClock
+		 * @return this builder for chaining
+		 */
+		public Builder nanoClock(LongSupplier nanoClock) {
+			if (nanoClock == null)
+				throw new IllegalArgumentException("nanoClock is null");
+			this.nanoClock = nanoClock;
+			return this;
+		}
+
+		public <T extends AccessToken> TokenExchangeService<T> build() {
+			if (this.client == null)
+				throw new IllegalStateException("client is required but never invoked");
+			return new TokenExchangeService<>(this);
+		}
+	}
+
+	/**
+	 * Exchanges an access token for a token for the given audience and scopes,
+	 * or returns a cached one.
+	 * 
+	 * @param subjectToken
+	 * @param audience
+	 * @param scopes
+	 * @return
+	 * @throws IOException
+	 * @throws OAuth2ProtocolException
+	 */
+	public T exchange(String subjectToken, String audience, Collection<String> scopes)
+			throws IOException, OAuth2ProtocolException {
+		return this.exchange(subjectToken, TokenExchangeGrantRequest.ACCESS_TOKEN_TYPE, audience, scopes);
+	}
+
+	/**
+	 * Exchanges a subject token for a token for the given audience and
+	 * scopes, or returns a cached one.
+	 * 
+	 * @param subjectToken
+	 * @param subjectTokenType
+	 * @param audience
+	 * @param scopes
+	 * @return
+	 * @throws IOException
+	 * @throws OAuth2ProtocolException
+	 */
+	public T exchange(String subjectToken, String subjectTokenType, String audience, Collection<String> scopes)
+			throws IOException, OAuth2ProtocolException {
+		if (subjectToken == null)
+			throw new IllegalArgumentException("subjectToken is null");
+		if (subjectTokenType == null)
+			throw new IllegalArgumentException("subjectTokenType is null");
+		ScopeSet scopeSet = ScopeSet.of(scopes);
+		Key key = new Key(digest(subjectToken, subjectTokenType), audience, scopeSet);
+		T token = this.cached(key);
+		if (token != null)
+			return token;
+
+		CompletableFuture<T> exchange = new CompletableFuture<>();
+		CompletableFuture<T> pending = this.inflight.putIfAbsent(key, exchange);
+		if (pending != null)
+			return await(pending);
+		try {
+			// the cache may have been filled while this thread was not looking
+			token = this.cached(key);
+			if (token == null) {
+				token = this.post(subjectToken, subjectTokenType, audience, scopeSet);
+				this.store(key, token);
+			}
+			exchange.complete(token);
+			return token;
+		} catch (Throwable e) {
+			// including errors, or the coalesced exchanges would wait forever
+			exchange.completeExceptionally(e);
+			throw e;
+		} finally {
+			this.inflight.remove(key, exchange);
+		}
+	}
+
+	private T post(String subjectToken, String subjectTokenType, String audience, ScopeSet scopes)
+			throws IOException {
+		TokenExchangeGrantRequest grant = new TokenExchangeGrantRequest(subjectToken, subjectTokenType, audience,
+				null, null, null, null, this.clientId, this.clientSecret, scopes);
+		grant.clientAssertionSupplier(this.clientAssertionSupplier);
+		LOGGER.trace("Exchanging token for audience {}", audience);
+		return this.client.post(this.path, grant);
+	}
+
+	private T cached(Key key) {
+		Entry<T> entry;
+		synchronized (this.cache) {
+			entry = this.cache.get(key);
+			if (entry == null)
+				return null;
+			if (this.nanoClock.getAsLong() - entry.usableUntil >= 0) {
+				this.cache.remove(key);
+				return null;
+			}
+		}
+		return entry.token;
+	}
+
+	private void store(Key key, T token) {
+		if (token == null || token.getExpiresIn() < 1)
+			return;
+		long lifetime = TimeUnit.SECONDS.toNanos(token.getExpiresIn()) - this.expiryMarginNanos;
+		if (lifetime <= 0)
+			return;
+		Entry<T> entry = new Entry<>(token, this.nanoClock.getAsLong() + lifetime);
+		synchronized (this.cache) {
+			this.cache.put(key, entry);
+		}
+	}
+
+	private static <T> T await(CompletableFuture<T> pending) throws IOException {
+		try {
+			return pending.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while waiting for token exchange", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new IOException(cause);
+		}
+	}
+
+	private static byte[] digest(String subjectToken, String subjectTokenType) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(subjectTokenType.getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+			return digest.digest(subjectToken.getBytes(StandardCharsets.UTF_8));
+		} catch (NoSuchAlgorithmException e) {
+			// SHA-256 is required in every Java platform
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * Removes all cached tokens.
+	 */
+	public void invalidateAll() {
+		synchronized (this.cache) {
+			this.cache.clear();
+		}
+	}
+
+	int size() {
+		synchronized (this.cache) {
+			return this.cache.size();
+		}
+	}
+
+	static final class Key {
+
+		private final byte[] subjectDigest;
+		private final String audience;
+		private final ScopeSet scopes;
+		private final int hash;
+
+		Key(byte[] subjectDigest, String audience, ScopeSet scopes) {
+			this.subjectDigest = subjectDigest;
+			this.audience = audience;
+			this.scopes = scopes;
+			int hash = Arrays.hashCode(subjectDigest);
+			hash = 31 * hash + (audience == null ? 0 : audience.hashCode());
+			hash = 31 * hash + (scopes == null ? 0 : scopes.hashCode());
+			this.hash = hash;
+		}
+
+		@Override
+		public int hashCode() {
+			return this.hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key))
+				return false;
+			Key other = (Key) o;
+			return Objects.equals(this.scopes, other.scopes) && Arrays.equals(this.subjectDigest, other.subjectDigest)
+					&& (this.audience == null ? other.audience == null : this.audience.equals(other.audience));
+		}
+	}
+
+	static final class Entry<T> {
+
+		final T token;
+		final long usableUntil;
+
+		Entry(T token, long usableUntil) {
+			this.token = token;
+			this.usableUntil = usableUntil;
+		}
+	}
+
+}
@@ -0,0 +1,125 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+
+package net.oauth2.client;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live renewal statistics of an {@link AutoRenewingTokenProvider}, e.g. for
+ * exposing them to operators over JMX.
+ * <p>
+ * Counters are {@link LongAdder}s and the rest are volatile snapshots written
+ * by the renewal job only, which never runs twice at the same time. Reading
+ * them never contends with renewal.
+ * </p>
+ */
+public final class TokenProviderStats {
+
+	private final LongAdder renewals = new LongAdder();
+	private final LongAdder failures = new LongAdder();
+	private final LongAdder retries = new LongAdder();
+	private volatile long lastFetchLatencyNanos = -1L;
+	private volatile int consecutiveFailures;
+	private volatile Instant lastRenewal;
+	private volatile Instant nextRenewal;
+	private volatile Instant expiresAt;
+
+	TokenProviderStats() {
+	}
+
+	void fetched(long latencyNanos) {
+		this.lastFetchLatencyNanos = latencyNanos;
+	}
+
+	void renewed(Instant moment) {
+		this.renewals.increment();
+		this.consecutiveFailures = 0;
+		this.lastRenewal = moment;
+	}
+
+	void failed() {
+		this.failures.increment();
+		// single writer: the renewal job
+		this.consecutiveFailures = this.consecutiveFailures + 1;
+	}
+
+	void retried() {
+		this.retries.increment();
+	}
+
+	void scheduled(Instant nextRenewal) {
+		this.nextRenewal = nextRenewal;
+	}
+
+	void tokenChanged(Instant expiresAt) {
+		this.expiresAt = expiresAt;
+	}
+
+	/**
+	 * @return the number of successful renewals
+	 */
+	public long renewals() {
+		return this.renewals.sum();
+	}
+
+	/**
+	 * @return the number of failed renewal attempts
+	 */
+	public long failures() {
+		return this.failures.sum();
+	}
+
+	/**
+	 * @return the number of renewal attempts retried by the retry policy
+	 */
+	public long retries() {
+		return this.retries.sum();
+	}
+
+	/**
+	 * @return the number of renewal attempts failed since the last successful
+	 *         one
+	 */
+	public int consecutiveFailures() {
+		return this.consecutiveFailures;
+	}
+
+	/**
+	 * @return the latency of the last token fetch or refresh in nanoseconds,
+	 *         or -1 if none completed yet
+	 */
+	public long lastFetchLatencyNanos() {
+		return this.lastFetchLatencyNanos;
+	}
+
+	/**
+	 * @return the moment of the last successful renewal, or null
+	 */
+	public Instant lastRenewal() {
+		return this.lastRenewal;
+	}
+
+	/**
+	 * @return the moment the next renewal is scheduled for, or null if none
+	 *         is scheduled
+	 */
+	public Instant nextRenewal() {
+		return this.nextRenewal;
+	}
+
+	/**
+	 * @return the moment the current token expires, or null if there is no
+	 *         token
+	 */
+	public Instant expiresAt() {
+		return this.expiresAt;
+	}
+
+}
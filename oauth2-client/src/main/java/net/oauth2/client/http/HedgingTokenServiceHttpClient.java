@@ -0,0 +1,467 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+
+package net.oauth2.client.http;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.oauth2.AccessToken;
+import net.oauth2.AccessTokenGrantRequest;
+import net.oauth2.client.OAuth2ProtocolException;
+import net.oauth2.client.TokenMetrics;
+
+/**
+ * A {@link TokenServiceHttpClient} decorator that hedges token requests to cut
+ * tail latency. If the first attempt has not answered within a configurable
+ * percentile of the recently observed latency, a second identical request is
+ * sent and the first successful response is taken.
+ * <p>
+ * Only grant types for which the authorization server tolerates duplicate
+ * issuance are hedged (by default {@code client_credentials} only). Single-use
+ * grants, such as authorization codes or rotating refresh tokens, must not be
+ * configured as hedgeable. The number of hedge requests in flight at any time
+ * is capped to avoid adding load to an already slow server.
+ * </p>
+ * <p>
+ * Requests that can be hedged run on an executor, so that the caller can wait
+ * for the first of two attempts. All other requests, and requests the
+ * executor rejects, run unhedged on the calling thread.
+ * </p>
+ */
+public class HedgingTokenServiceHttpClient implements TokenServiceHttpClient, AutoCloseable {
+
+	protected static final Logger LOGGER = LoggerFactory.getLogger(HedgingTokenServiceHttpClient.class);
+
+	private final TokenServiceHttpClient delegate;
+	private final ExecutorService executor;
+	private final boolean ownExecutor;
+	private final Set<String> hedgeableGrantTypes;
+	private final Semaphore hedgesInFlight;
+	private final LatencyWindow latencies;
+	private final double percentile;
+	private final long initialDelayNanos;
+	private final long minDelayNanos;
+	private final TokenMetrics metrics;
+
+	HedgingTokenServiceHttpClient(TokenServiceHttpClient delegate, ExecutorService executor, boolean ownExecutor,
+			Set<String> hedgeableGrantTypes, int maxHedgesInFlight, int windowSize, double percentile,
+			long initialDelayNanos, long minDelayNanos, TokenMetrics metrics) {
+		this.delegate = delegate;
+		this.executor = executor;
+		this.ownExecutor = ownExecutor;
+		this.hedgeableGrantTypes = hedgeableGrantTypes;
+		this.hedgesInFlight = new Semaphore(maxHedgesInFlight);
+		this.latencies = new LatencyWindow(windowSize);
+		this.percentile = percentile;
+		this.initialDelayNanos = initialDelayNanos;
+		this.minDelayNanos = minDelayNanos;
+		this.metrics = metrics;
+	}
+
+	public static final class Builder {
+
+		TokenServiceHttpClient delegate;
+		ExecutorService executor;
+		Set<String> hedgeableGrantTypes = Collections.singleton("client_credentials");
+		int maxHedgesInFlight = 2;
+		int windowSize = 128;
+		double percentile = 0.95;
+		long initialDelayNanos;
+		long minDelayNanos = TimeUnit.MILLISECONDS.toNanos(10);
+		TokenMetrics metrics = TokenMetrics.NOOP;
+
+		public Builder() {
+		}
+
+		public Builder delegate(TokenServiceHttpClient delegate) {
+			if (delegate == null)
+				throw new IllegalArgumentException("delegate is null");
+			this.delegate = delegate;
+			return this;
+		}
+
+		/**
+		 * The executor running the primary and hedge requests. Defaults to a
+		 * pool of daemon threads, shut down on {@link #close()}, with two
+		 * threads per hedge request allowed in flight: one for the primary
+		 * and one for the hedge request.
+		 *
+		 * @param executor
+		 * @return this builder for chaining
+		 */
+		public Builder executor(ExecutorService executor) {
+			if (executor == null)
+				throw new IllegalArgumentException("executor is null");
+			this.executor = executor;
+			return this;
+		}
+
+		/**
+		 * The grant types (e.g. "client_credentials", "password") for which
+		 * the authorization server allows duplicate token issuance and which
+		 * are therefore safe to hedge.
+		 *
+		 * @param grantTypes
+		 * @return this builder for chaining
+		 */
+		public Builder hedgeableGrantTypes(String... grantTypes) {
+			if (grantTypes == null)
+				throw new IllegalArgumentException("grantTypes is null");
+			this.hedgeableGrantTypes = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(grantTypes)));
+			return this;
+		}
+
+		/**
+		 * Caps the number of hedge requests that may be in flight at the same
+		 * time across all callers. Zero disables hedging.
+		 *
+		 * @param maxHedgesInFlight
+		 * @return this builder for chaining
+		 */
+		public Builder maxHedgesInFlight(int maxHedgesInFlight) {
+			if (maxHedgesInFlight < 0)
+				throw new IllegalArgumentException("maxHedgesInFlight must not be negative");
+			this.maxHedgesInFlight = maxHedgesInFlight;
+			return this;
+		}
+
+		/**
+		 * The percentile of recently observed latency after which a hedge
+		 * request is sent, as a value between (0-1).
+		 *
+		 * @param percentile
+		 * @return this builder for chaining
+		 */
+		public Builder percentile(double percentile) {
+			if (!(percentile > 0) || !(percentile < 1))
+				throw new IllegalArgumentException("percentile must be value between (0-1)");
+			this.percentile = percentile;
+			return this;
+		}
+
+		/**
+		 * The number of most recent successful request latencies used to
+		 * estimate the hedge delay.
+		 *
+		 * @param windowSize
+		 * @return this builder for chaining
+		 */
+		public Builder window(int windowSize) {
+			if (windowSize < 1)
+				throw new IllegalArgumentException("windowSize must be positive");
+			this.windowSize = windowSize;
+			return this;
+		}
+
+		/**
+		 * The hedge delay used until enough latency samples are collected.
+		 * Zero (the default) disables hedging until then.
+		 *
+		 * @param delay
+		 * @param unit
+		 * @return this builder for chaining
+		 */
+		public Builder initialDelay(long delay, TimeUnit unit) {
+			if (delay < 0 || unit == null)
+				throw new IllegalArgumentException("delay must not be negative and unit not null");
+			this.initialDelayNanos = unit.toNanos(delay);
+			return this;
+		}
+
+		/**
+		 * The lower bound of the hedge delay, guarding against hedging every
+		 * request to a very fast server.
+		 *
+		 * @param delay
+		 * @param unit
+		 * @return this builder for chaining
+		 */
+		public Builder minDelay(long delay, TimeUnit unit) {
+			if (delay < 0 || unit == null)
+				throw new IllegalArgumentException("delay must not be negative and unit not null");
+			this.minDelayNanos = unit.toNanos(delay);
+			return this;
+		}
+
+		/**
+		 * Records the hedge requests sent with the supplied metrics.
+		 *
+		 * @param metrics
+		 * @return this builder for chaining
+		 */
+		public Builder metrics(TokenMetrics metrics) {
+			if (metrics == null)
+				throw new IllegalArgumentException("metrics is null");
+			this.metrics = metrics;
+			return this;
+		}
+
+		public HedgingTokenServiceHttpClient build() {
+			if (this.delegate == null)
+				throw new IllegalStateException("delegate is required but never invoked");
+			boolean ownExecutor = this.executor == null;
+			ExecutorService executor = this.executor;
+			if (ownExecutor)
+				// no queue: when all threads are busy, requests run unhedged
+				executor = new ThreadPoolExecutor(0, Math.max(1, 2 * this.maxHedgesInFlight), 60L, TimeUnit.SECONDS,
+						new SynchronousQueue<>(), runnable -> {
+							Thread thread = new Thread(runnable, "oauth2-hedging");
+							thread.setDaemon(true);
+							return thread;
+						});
+			return new HedgingTokenServiceHttpClient(this.delegate, executor, ownExecutor, this.hedgeableGrantTypes,
+					this.maxHedgesInFlight, this.windowSize, this.percentile, this.initialDelayNanos,
+					this.minDelayNanos, this.metrics);
+		}
+	}
+
+	@Override
+	public <T extends AccessToken> T post(String path, AccessTokenGrantRequest payload)
+			throws IOException, OAuth2ProtocolException {
+		if (payload == null || !this.hedgeableGrantTypes.contains(payload.getGrantType()))
+			return this.postUnhedged(path, payload);
+		long hedgeDelay = this.hedgeDelayNanos();
+		if (hedgeDelay <= 0 || this.hedgesInFlight.availablePermits() < 1)
+			return this.postUnhedged(path, payload);
+
+		CompletionService<T> completion = new ExecutorCompletionService<>(this.executor);
+		Attempt<T> primaryAttempt = new Attempt<>(path, payload, false);
+		Future<T> primary;
+		try {
+			primary = completion.submit(primaryAttempt);
+		} catch (RejectedExecutionException e) {
+			LOGGER.debug("Hedging executor saturated or shut down. Sending token request unhedged");
+			return this.postUnhedged(path, payload);
+		}
+		Attempt<T> hedgeAttempt = null;
+		Future<T> hedge = null;
+		try {
+			Future<T> done = completion.poll(hedgeDelay, TimeUnit.NANOSECONDS);
+			if (done == null && this.hedgesInFlight.tryAcquire()) {
+				LOGGER.debug("No token response after {}ms. Sending hedge request",
+						TimeUnit.NANOSECONDS.toMillis(hedgeDelay));
+				hedgeAttempt = new Attempt<>(path, payload, true);
+				try {
+					hedge = completion.submit(hedgeAttempt);
+					this.metrics.hedged(payload.getClientId(), payload.getGrantType());
+				} catch (RejectedExecutionException e) {
+					hedgeAttempt = null;
+					this.hedgesInFlight.release();
+					LOGGER.debug("Hedging executor saturated or shut down. Hedge request not sent");
+				}
+			}
+			if (done == null)
+				done = completion.take();
+			ExecutionException failure = null;
+			int pending = hedge == null ? 1 : 2;
+			while (true) {
+				try {
+					return done.get();
+				} catch (ExecutionException e) {
+					// a protocol error is a definitive answer from the server
+					if (e.getCause() instanceof OAuth2ProtocolException)
+						throw e;
+					if (failure == null)
+						failure = e;
+					if (--pending < 1)
+						throw failure;
+					done = completion.take();
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while waiting for token response");
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException)
+				throw (IOException) cause;
+			if (cause instanceof RuntimeException)
+				throw (RuntimeException) cause;
+			if (cause instanceof Error)
+				throw (Error) cause;
+			throw new IOException(cause);
+		} finally {
+			primaryAttempt.abandon(primary);
+			if (hedge != null)
+				hedgeAttempt.abandon(hedge);
+		}
+	}
+
+	private <T extends AccessToken> T postUnhedged(String path, AccessTokenGrantRequest payload)
+			throws IOException, OAuth2ProtocolException {
+		long start = System.nanoTime();
+		try {
+			return this.delegate.post(path, payload);
+		} finally {
+			this.latencies.record(System.nanoTime() - start);
+		}
+	}
+
+	/**
+	 * Shuts down the default executor. Subsequent requests are sent unhedged.
+	 * A supplied executor is left to its owner.
+	 */
+	@Override
+	public void close() {
+		if (this.ownExecutor)
+			this.executor.shutdownNow();
+	}
+
+	/**
+	 * A single request to the delegate. Its latency is recorded exactly once,
+	 * either when the delegate answers (successfully or not) or, if the
+	 * attempt is abandoned while still running, as the time it has been
+	 * waiting so far. A hedge attempt releases its in-flight permit exactly
+	 * once, when it stops running or when it is cancelled before it started.
+	 */
+	private final class Attempt<T extends AccessToken> implements Callable<T> {
+
+		private static final int NEW = 0;
+		private static final int RUNNING = 1;
+		private static final int DONE = 2;
+
+		private final String path;
+		private final AccessTokenGrantRequest payload;
+		private final boolean hedge;
+		private final AtomicInteger state = new AtomicInteger(NEW);
+		private final AtomicBoolean recorded = new AtomicBoolean();
+		private volatile long start;
+
+		Attempt(String path, AccessTokenGrantRequest payload, boolean hedge) {
+			this.path = path;
+			this.payload = payload;
+			this.hedge = hedge;
+		}
+
+		@Override
+		public T call() throws Exception {
+			this.start = System.nanoTime();
+			if (!this.state.compareAndSet(NEW, RUNNING))
+				return null;
+			try {
+				return HedgingTokenServiceHttpClient.this.delegate.post(this.path, this.payload);
+			} finally {
+				this.record();
+				this.state.set(DONE);
+				if (this.hedge)
+					HedgingTokenServiceHttpClient.this.hedgesInFlight.release();
+			}
+		}
+
+		void abandon(Future<T> future) {
+			future.cancel(true);
+			if (this.state.compareAndSet(NEW, DONE)) {
+				if (this.hedge)
+					HedgingTokenServiceHttpClient.this.hedgesInFlight.release();
+			} else {
+				this.record();
+			}
+		}
+
+		private void record() {
+			if (this.recorded.compareAndSet(false, true))
+				HedgingTokenServiceHttpClient.this.latencies.record(System.nanoTime() - this.start);
+		}
+	}
+
+	/**
+	 * Computes the current delay after which a hedge request is sent.
+	 *
+	 * @return the delay in nanoseconds, or zero if no hedge should be sent.
+	 */
+	long hedgeDelayNanos() {
+		long delay = this.latencies.percentile(this.percentile);
+		if (delay < 0)
+			return this.initialDelayNanos;
+		return Math.max(delay, this.minDelayNanos);
+	}
+
+	/**
+	 * @return the number of hedge requests that may currently be sent.
+	 */
+	int availableHedges() {
+		return this.hedgesInFlight.availablePermits();
+	}
+
+	/**
+	 * @return the number of latency samples currently in the window.
+	 */
+	int latencySamples() {
+		return this.latencies.size();
+	}
+
+	/**
+	 * A fixed size ring buffer of the most recent latency samples, kept
+	 * alongside a sorted copy so that percentiles are read without sorting.
+	 */
+	static final class LatencyWindow {
+
+		private final long[] samples;
+		private final long[] sorted;
+		private int next;
+		private int count;
+
+		LatencyWindow(int size) {
+			this.samples = new long[size];
+			this.sorted = new long[size];
+		}
+
+		synchronized void record(long nanos) {
+			if (this.count == this.samples.length) {
+				int evicted = Arrays.binarySearch(this.sorted, 0, this.count, this.samples[this.next]);
+				System.arraycopy(this.sorted, evicted + 1, this.sorted, evicted, this.count - evicted - 1);
+				this.count--;
+			}
+			int idx = Arrays.binarySearch(this.sorted, 0, this.count, nanos);
+			if (idx < 0)
+				idx = -idx - 1;
+			System.arraycopy(this.sorted, idx, this.sorted, idx + 1, this.count - idx);
+			this.sorted[idx] = nanos;
+			this.count++;
+			this.samples[this.next] = nanos;
+			this.next = (this.next + 1) % this.samples.length;
+		}
+
+		/**
+		 * @return the latency at the given percentile, or -1 while fewer
+		 *         than the minimal number of samples is recorded.
+		 */
+		synchronized long percentile(double percentile) {
+			if (this.count < Math.min(this.samples.length, 10))
+				return -1;
+			int idx = (int) Math.ceil(percentile * this.count) - 1;
+			return this.sorted[Math.max(0, Math.min(idx, this.count - 1))];
+		}
+
+		synchronized int size() {
+			return this.count;
+		}
+	}
+
+}
@@ -0,0 +1,375 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+
+package net.oauth2.client.http;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.oauth2.AccessToken;
+import net.oauth2.AccessTokenGrantRequest;
+import net.oauth2.client.OAuth2ProtocolException;
+import net.oauth2.client.TokenMetrics;
+
+/**
+ * A {@link TokenServiceHttpClient} that routes token requests across several
+ * equivalent token service endpoints (e.g. regional deployments sharing the
+ * same client credentials). Each endpoint is represented by its own,
+ * single-URL {@link TokenServiceHttpClient}.
+ * <p>
+ * The client tracks an exponentially weighted moving average (EWMA) of the
+ * latency and error rate of each endpoint and sends each request to the best
+ * scoring one. If that fails with a transport error the request fails over to
+ * the next best endpoint immediately. An endpoint that fails repeatedly is
+ * ejected from routing and probed with exponential backoff until it recovers.
+ * A probe is a copy of a token request, sent in the background on the probe
+ * executor while the request itself goes to the healthy endpoints, so it
+ * never waits for the timeout of a dead endpoint. Only a successful probe
+ * restores an endpoint. While all endpoints are ejected, probes are part of
+ * the requests. OAuth protocol errors are definitive responses and are not
+ * failed over.
+ * </p>
+ */
+public class MultiEndpointTokenServiceHttpClient implements TokenServiceHttpClient {
+
+	protected static final Logger LOGGER = LoggerFactory.getLogger(MultiEndpointTokenServiceHttpClient.class);
+
+	private final List<Endpoint> endpoints;
+	private final double alpha;
+	private final int ejectAfterFailures;
+	private final long probeIntervalNanos;
+	private final long maxProbeIntervalNanos;
+	private final TokenMetrics metrics;
+	private final Executor probeExecutor;
+	private final LongSupplier nanoClock;
+
+	MultiEndpointTokenServiceHttpClient(Builder builder) {
+		List<Endpoint> endpoints = new ArrayList<>(builder.clients.size());
+		for (TokenServiceHttpClient client : builder.clients)
+			endpoints.add(new Endpoint(client));
+		this.endpoints = Collections.unmodifiableList(endpoints);
+		this.alpha = builder.alpha;
+		this.ejectAfterFailures = builder.ejectAfterFailures;
+		this.probeIntervalNanos = builder.probeIntervalNanos;
+		this.maxProbeIntervalNanos = builder.maxProbeIntervalNanos;
+		this.metrics = builder.metrics;
+		this.probeExecutor = builder.probeExecutor;
+		this.nanoClock = builder.nanoClock;
+	}
+
+	public static final class Builder {
+
+		final List<TokenServiceHttpClient> clients = new ArrayList<>();
+		double alpha = 0.3;
+		int ejectAfterFailures = 3;
+		long probeIntervalNanos = TimeUnit.SECONDS.toNanos(1);
+		long maxProbeIntervalNanos = TimeUnit.SECONDS.toNanos(30);
+		TokenMetrics metrics = TokenMetrics.NOOP;
+		Executor probeExecutor = ForkJoinPool.commonPool();
+		LongSupplier nanoClock = System::nanoTime;
+
+		public Builder() {
+		}
+
+		/**
+		 * Adds a token service endpoint. The order of endpoints is the
+		 * preference order until latency statistics are available.
+		 *
+		 * @param client
+		 *            a client configured with the base URL of one endpoint
+		 * @return this builder for chaining
+		 */
+		public Builder endpoint(TokenServiceHttpClient client) {
+			if (client == null)
+				throw new IllegalArgumentException("client is null");
+			this.clients.add(client);
+			return this;
+		}
+
+		/**
+		 * The EWMA smoothing factor between (0-1]. Higher values favor recent
+		 * observations.
+		 *
+		 * @param alpha
+		 * @return this builder for chaining
+		 */
+		public Builder smoothing(double alpha) {
+			if (!(alpha > 0) || alpha > 1)
+				throw new IllegalArgumentException("alpha must be value between (0-1]");
+			this.alpha = alpha;
+			return this;
+		}
+
+		/**
+		 * The number of consecutive failures after which an endpoint is
+		 * ejected from routing.
+		 *
+		 * @param failures
+		 * @return this builder for chaining
+		 */
+		public Builder ejectAfter(int failures) {
+			if (failures < 1)
+				throw new IllegalArgumentException("failures must be positive");
+			this.ejectAfterFailures = failures;
+			return this;
+		}
+
+		/**
+		 * The initial and maximal interval between probes of an ejected
+		 * endpoint. The interval doubles after each failed probe.
+		 *
+		 * @param initial
+		 * @param max
+		 * @param unit
+		 * @return this builder for chaining
+		 */
+		public Builder probeInterval(long initial, long max, TimeUnit unit) {
+			if (initial < 1 || max < initial || unit == null)
+				throw new IllegalArgumentException("intervals must be positive, max not less than initial and unit not null");
+			this.probeIntervalNanos = unit.toNanos(initial);
+			this.maxProbeIntervalNanos = unit.toNanos(max);
+			return this;
+		}
+
+		/**
+		 * Records the failovers between endpoints with the supplied metrics.
+		 *
+		 * @param metrics
+		 * @return this builder for chaining
+		 */
+		public Builder metrics(TokenMetrics metrics) {
+			if (metrics == null)
+				throw new IllegalArgumentException("metrics is null");
+			this.metrics = metrics;
+			return this;
+		}
+
+		/**
+		 * The executor to send the probes of ejected endpoints with. There is
+		 * at most one probe per endpoint at a time. Defaults to the common
+		 * fork join pool.
+		 *
+		 * @param probeExecutor
+		 * @return this builder for chaining
+		 */
+		public Builder probeExecutor(Executor probeExecutor) {
+			if (probeExecutor == null)
+				throw new IllegalArgumentException("probeExecutor is null");
+			this.probeExecutor = probeExecutor;
+			return this;
+		}
+
+		/**
+		 * The source of the nanosecond time to measure latencies and probe
+		 * intervals with. Defaults to {@link System#nanoTime()}.
+		 *
+		 * @param nanoClock
+		 * @return this builder for chaining
+		 */
+		public Builder nanoClock(LongSupplier nanoClock) {
+			if (nanoClock == null)
+				throw new IllegalArgumentException("nanoClock is null");
+			this.nanoClock = nanoClock;
+			return this;
+		}
+
+		public MultiEndpointTokenServiceHttpClient build() {
+			if (this.clients.isEmpty())
+				throw new IllegalStateException("endpoint is required but never invoked");
+			return new MultiEndpointTokenServiceHttpClient(this);
+		}
+	}
+
+	@Override
+	public <T extends AccessToken> T post(String path, AccessTokenGrantRequest payload)
+			throws IOException, OAuth2ProtocolException {
+		IOException failure = null;
+		List<Endpoint> probes = new ArrayList<>(1);
+		List<Endpoint> route = this.route(probes);
+		for (Endpoint probe : probes)
+			this.probe(probe, path, payload);
+		for (int i = 0; i < route.size(); i++) {
+			Endpoint endpoint = route.get(i);
+			long start = this.nanoClock.getAsLong();
+			try {
+				T token = endpoint.client.post(path, payload);
+				this.onSuccess(endpoint, this.nanoClock.getAsLong() - start);
+				return token;
+			} catch (OAuth2ProtocolException e) {
+				// the endpoint is up and answered; not a reason to fail over
+				this.onSuccess(endpoint, this.nanoClock.getAsLong() - start);
+				throw e;
+			} catch (IOException | RuntimeException e) {
+				this.onFailure(endpoint);
+				LOGGER.warn("Token request to endpoint {} failed. Failing over", this.endpoints.indexOf(endpoint), e);
+				if (i + 1 < route.size() && payload != null)
+					this.metrics.failedOver(payload.getClientId(), payload.getGrantType());
+				IOException ex = e instanceof IOException ? (IOException) e : new IOException(e);
+				if (failure == null)
+					failure = ex;
+				else
+					failure.addSuppressed(ex);
+			}
+		}
+		throw failure;
+	}
+
+	/**
+	 * Sends a copy of a token request to an ejected endpoint in the
+	 * background. The token is discarded; the outcome only decides whether the
+	 * endpoint is restored.
+	 */
+	private void probe(Endpoint endpoint, String path, AccessTokenGrantRequest payload) {
+		try {
+			this.probeExecutor.execute(() -> {
+				long start = this.nanoClock.getAsLong();
+				try {
+					endpoint.client.post(path, payload);
+					this.onSuccess(endpoint, this.nanoClock.getAsLong() - start);
+				} catch (OAuth2ProtocolException e) {
+					this.onSuccess(endpoint, this.nanoClock.getAsLong() - start);
+				} catch (IOException | RuntimeException e) {
+					this.onFailure(endpoint);
+					LOGGER.debug("Probe of token service endpoint {} failed", this.endpoints.indexOf(endpoint), e);
+				}
+			});
+		} catch (RejectedExecutionException e) {
+			LOGGER.warn("Probe of token service endpoint {} rejected", this.endpoints.indexOf(endpoint), e);
+			synchronized (endpoint) {
+				endpoint.probing = false;
+			}
+		}
+	}
+
+	/**
+	 * Orders the endpoints for a request: healthy endpoints by score, then the
+	 * ejected endpoints as a last resort. Ejected endpoints due for a probe
+	 * are added to the supplied probes instead, to be probed in the
+	 * background, unless no endpoint is healthy: then they go first.
+	 */
+	List<Endpoint> route(List<Endpoint> probes) {
+		long now = this.nanoClock.getAsLong();
+		List<Endpoint> ejected = new ArrayList<>(1);
+		Endpoint[] healthy = new Endpoint[this.endpoints.size()];
+		double[] scores = new double[healthy.length];
+		int count = 0;
+		for (Endpoint endpoint : this.endpoints) {
+			synchronized (endpoint) {
+				if (!endpoint.ejected) {
+					// insertion sort on a snapshot of the score; the list of
+					// endpoints is short and scores change concurrently
+					double score = endpoint.score();
+					int i = count++;
+					while (i > 0 && scores[i - 1] > score) {
+						healthy[i] = healthy[i - 1];
+						scores[i] = scores[i - 1];
+						i--;
+					}
+					healthy[i] = endpoint;
+					scores[i] = score;
+				} else if (!endpoint.probing && now - endpoint.nextProbe >= 0) {
+					endpoint.probing = true;
+					probes.add(endpoint);
+				} else
+					ejected.add(endpoint);
+			}
+		}
+		List<Endpoint> route = new ArrayList<>(this.endpoints.size());
+		if (count == 0) {
+			// nothing better to try; a recovered endpoint is noticed at once
+			route.addAll(probes);
+			probes.clear();
+		}
+		for (int i = 0; i < count; i++)
+			route.add(healthy[i]);
+		route.addAll(ejected);
+		return route;
+	}
+
+	void onSuccess(Endpoint endpoint, long latencyNanos) {
+		synchronized (endpoint) {
+			endpoint.latency = endpoint.samples == 0 ? latencyNanos
+					: this.alpha * latencyNanos + (1 - this.alpha) * endpoint.latency;
+			endpoint.errorRate = (1 - this.alpha) * endpoint.errorRate;
+			endpoint.samples++;
+			endpoint.consecutiveFailures = 0;
+			if (endpoint.ejected)
+				LOGGER.info("Token service endpoint {} recovered", this.endpoints.indexOf(endpoint));
+			endpoint.ejected = false;
+			endpoint.probing = false;
+			endpoint.probeInterval = this.probeIntervalNanos;
+		}
+	}
+
+	void onFailure(Endpoint endpoint) {
+		synchronized (endpoint) {
+			endpoint.errorRate = this.alpha + (1 - this.alpha) * endpoint.errorRate;
+			endpoint.consecutiveFailures++;
+			if (endpoint.ejected) {
+				if (endpoint.probing) {
+					endpoint.probing = false;
+					endpoint.probeInterval = Math.min(endpoint.probeInterval * 2, this.maxProbeIntervalNanos);
+					endpoint.nextProbe = this.nanoClock.getAsLong() + endpoint.probeInterval;
+				}
+			} else if (endpoint.consecutiveFailures >= this.ejectAfterFailures) {
+				LOGGER.warn("Token service endpoint {} ejected after {} consecutive failures",
+						this.endpoints.indexOf(endpoint), endpoint.consecutiveFailures);
+				endpoint.ejected = true;
+				endpoint.probeInterval = this.probeIntervalNanos;
+				endpoint.nextProbe = this.nanoClock.getAsLong() + endpoint.probeInterval;
+			}
+		}
+	}
+
+	List<Endpoint> endpoints() {
+		return this.endpoints;
+	}
+
+	/**
+	 * Routing statistics of a single token service endpoint.
+	 */
+	static final class Endpoint {
+
+		final TokenServiceHttpClient client;
+		double latency;
+		double errorRate;
+		long samples;
+		int consecutiveFailures;
+		boolean ejected;
+		boolean probing;
+		long probeInterval;
+		long nextProbe;
+
+		Endpoint(TokenServiceHttpClient client) {
+			this.client = client;
+		}
+
+		/**
+		 * The expected cost of a request to this endpoint: its average
+		 * latency, inflated by the likelihood of having to fail over.
+		 */
+		synchronized double score() {
+			return this.latency / Math.max(1 - this.errorRate, 0.01);
+		}
+
+		synchronized boolean isEjected() {
+			return this.ejected;
+		}
+	}
+
+}
@@ -0,0 +1,434 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+
+package net.oauth2.client.http.databinding;
+
+import java.util.ArrayList;
+import java.util.Collection;
+
+/**
+ * A minimal, single-pass JSON tokenizer reading the members of a top-level JSON
+ * object directly from the payload string by index.
+ * <p>
+ * Member names are matched in place against a set of known names, and values
+ * of unknown members, including nested objects and arrays, are skipped without
+ * being materialized. Only the values the caller asks for are allocated.
+ * </p>
+ * Not thread-safe. A tokenizer instance is meant to parse a single payload.
+ */
+final class JsonTokenizer {
+
+	private static final int MAX_DEPTH = 64;
+
+	private final String json;
+	private final int end;
+	private int pos;
+	private boolean escaped;
+	private boolean firstMember = true;
+
+	JsonTokenizer(String json) {
+		if (json == null)
+			throw new IllegalArgumentException("json is null");
+		this.json = json;
+		this.end = json.length();
+	}
+
+	/**
+	 * Consumes the opening brace of the top-level JSON object.
+	 */
+	void beginObject() {
+		this.skipWhitespace();
+		if (this.pos >= this.end || this.json.charAt(this.pos) != '{')
+			throw new IllegalArgumentException("Expecting json object as top-level entry");
+		this.pos++;
+	}
+
+	/**
+	 * Advances to the next member of the top-level object and matches its name
+	 * against the given names without allocating it.
+	 *
+	 * @param names
+	 *            the member names of interest
+	 * @return the index of the matched name in names, -1 for an unknown member
+	 *         or -2 when the end of the object is reached.
+	 */
+	int nextMember(String[] names) {
+		this.skipWhitespace();
+		if (this.peek() == '}') {
+			this.pos++;
+			this.skipWhitespace();
+			if (this.pos < this.end)
+				throw this.malformed("Unexpected content after top-level object");
+			return -2;
+		}
+		if (!this.firstMember) {
+			this.expect(',', "Expected ',' or '}'");
+			this.skipWhitespace();
+		}
+		this.firstMember = false;
+		if (this.peek() != '"')
+			throw this.malformed("Expected member name");
+		int start = ++this.pos;
+		int close = this.scanString();
+		int match = -1;
+		if (!this.escaped) {
+			int length = close - start;
+			for (int i = 0; i < names.length; i++) {
+				if (names[i].length() == length && this.json.regionMatches(start, names[i], 0, length)) {
+					match = i;
+					break;
+				}
+			}
+		} else {
+			String name = this.decode(start, close);
+			for (int i = 0; i < names.length; i++) {
+				if (names[i].equals(name)) {
+					match = i;
+					break;
+				}
+			}
+		}
+		this.pos = close + 1;
+		this.skipWhitespace();
+		this.expect(':', "Expected ':'");
+		return match;
+	}
+
+	/**
+	 * @return the next value as string, or null for a JSON null.
+	 */
+	String nextString() {
+		this.skipWhitespace();
+		if (this.readNull())
+			return null;
+		if (this.peek() != '"')
+			throw this.malformed("Expected string");
+		int start = ++this.pos;
+		int close = this.scanString();
+		this.pos = close + 1;
+		return this.decode(start, close);
+	}
+
+	/**
+	 * Reads a JSON number, or a string containing a number, as long.
+	 * Fractions are truncated. Numbers outside of the long range are rejected.
+	 *
+	 * @return the next value as long, or 0 for a JSON null.
+	 */
+	long nextLong() {
+		this.skipWhitespace();
+		if (this.readNull())
+			return 0;
+		int start;
+		int stop;
+		if (this.peek() == '"') {
+			start = ++this.pos;
+			stop = this.scanString();
+			this.pos = stop + 1;
+		} else {
+			start = this.pos;
+			this.scanLiteral();
+			stop = this.pos;
+		}
+		// accumulated negatively, as the negative range is the larger one
+		long value = 0;
+		int i = start;
+		boolean negative = i < stop && this.json.charAt(i) == '-';
+		if (negative)
+			i++;
+		long limit = negative ? Long.MIN_VALUE : -Long.MAX_VALUE;
+		boolean overflow = false;
+		int digits = i;
+		for (; i < stop; i++) {
+			char c = this.json.charAt(i);
+			if (c < '0' || c > '9')
+				break;
+			int digit = c - '0';
+			if (value < limit / 10 || value * 10 < limit + digit)
+				overflow = true;
+			else
+				value = value * 10 - digit;
+		}
+		if (i == digits || (i < stop && !this.isNumber(start, stop)))
+			throw new IllegalArgumentException(
+					"Malformed JSON. Not a number: " + this.json.substring(start, stop) + " at position " + start);
+		if (i < stop) {
+			double fractional = Double.parseDouble(this.json.substring(start, stop));
+			if (fractional >= 0x1p63 || fractional < -0x1p63)
+				throw this.outOfRange(start, stop);
+			return (long) fractional;
+		}
+		if (overflow)
+			throw this.outOfRange(start, stop);
+		return negative ? value : -value;
+	}
+
+	private IllegalArgumentException outOfRange(int start, int stop) {
+		return new IllegalArgumentException(
+				"Malformed JSON. Number out of range: " + this.json.substring(start, stop) + " at position " + start);
+	}
+
+	/**
+	 * Reads a space-delimited string, or an array of strings, as a collection of
+	 * strings.
+	 *
+	 * @return the next value as collection, or null for a JSON null.
+	 */
+	Collection<String> nextDelimitedStrings() {
+		this.skipWhitespace();
+		if (this.readNull())
+			return null;
+		Collection<String> values = new ArrayList<>();
+		if (this.peek() == '[') {
+			this.pos++;
+			this.skipWhitespace();
+			if (this.peek() == ']') {
+				this.pos++;
+				return values;
+			}
+			while (true) {
+				String value = this.nextString();
+				if (value != null)
+					values.add(value);
+				this.skipWhitespace();
+				if (this.peek() == ']') {
+					this.pos++;
+					return values;
+				}
+				this.expect(',', "Expected ',' or ']'");
+			}
+		}
+		String delimited = this.nextString();
+		int length = delimited.length();
+		int start = 0;
+		for (int i = 0; i <= length; i++) {
+			if (i == length || Character.isWhitespace(delimited.charAt(i))) {
+				if (i > start)
+					values.add(delimited.substring(start, i));
+				start = i + 1;
+			}
+		}
+		return values;
+	}
+
+	/**
+	 * Skips the next value, including nested objects and arrays, without
+	 * materializing it.
+	 */
+	void skipValue() {
+		this.skipValue(0);
+	}
+
+	private void skipValue(int depth) {
+		if (depth > MAX_DEPTH)
+			throw this.malformed("Nesting too deep");
+		this.skipWhitespace();
+		char c = this.peek();
+		if (c == '"') {
+			this.pos++;
+			this.pos = this.scanString() + 1;
+		} else if (c == '{' || c == '[') {
+			char close = c == '{' ? '}' : ']';
+			this.pos++;
+			this.skipWhitespace();
+			if (this.peek() == close) {
+				this.pos++;
+				return;
+			}
+			while (true) {
+				if (c == '{') {
+					this.skipWhitespace();
+					if (this.peek() != '"')
+						throw this.malformed("Expected member name");
+					this.pos++;
+					this.pos = this.scanString() + 1;
+					this.skipWhitespace();
+					this.expect(':', "Expected ':'");
+				}
+				this.skipValue(depth + 1);
+				this.skipWhitespace();
+				if (this.peek() == close) {
+					this.pos++;
+					return;
+				}
+				this.expect(',', "Expected ',' or '" + close + "'");
+			}
+		} else {
+			int start = this.pos;
+			this.scanLiteral();
+			if (!this.isLiteral(start, "true") && !this.isLiteral(start, "false") && !this.isLiteral(start, "null")
+					&& !this.isNumber(start, this.pos))
+				throw new IllegalArgumentException("Malformed JSON. Unexpected value at position " + start);
+		}
+	}
+
+	private boolean readNull() {
+		if (this.json.startsWith("null", this.pos)) {
+			int start = this.pos;
+			this.scanLiteral();
+			if (this.pos - start == 4)
+				return true;
+			this.pos = start;
+		}
+		return false;
+	}
+
+	/**
+	 * Advances pos past the characters of a literal (number, true, false,
+	 * null).
+	 */
+	private void scanLiteral() {
+		while (this.pos < this.end) {
+			char c = this.json.charAt(this.pos);
+			if ((c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || c == '-' || c == '+'
+					|| c == '.')
+				this.pos++;
+			else
+				break;
+		}
+	}
+
+	private boolean isLiteral(int start, String literal) {
+		return this.pos - start == literal.length() && this.json.startsWith(literal, start);
+	}
+
+	private boolean isNumber(int start, int stop) {
+		int i = start;
+		if (i < stop && this.json.charAt(i) == '-')
+			i++;
+		int intStart = i;
+		while (i < stop && Character.isDigit(this.json.charAt(i)))
+			i++;
+		if (i == intStart)
+			return false;
+		if (i < stop && this.json.charAt(i) == '.') {
+			int fracStart = ++i;
+			while (i < stop && Character.isDigit(this.json.charAt(i)))
+				i++;
+			if (i == fracStart)
+				return false;
+		}
+		if (i < stop && (this.json.charAt(i) == 'e' || this.json.charAt(i) == 'E')) {
+			i++;
+			if (i < stop && (this.json.charAt(i) == '+' || this.json.charAt(i) == '-'))
+				i++;
+			int expStart = i;
+			while (i < stop && Character.isDigit(this.json.charAt(i)))
+				i++;
+			if (i == expStart)
+				return false;
+		}
+		return i == stop;
+	}
+
+	/**
+	 * Finds the closing quote of a string starting at pos and records whether
+	 * the string contains escape sequences.
+	 *
+	 * @return the index of the closing quote
+	 */
+	private int scanString() {
+		this.escaped = false;
+		int i = this.pos;
+		while (i < this.end) {
+			char c = this.json.charAt(i);
+			if (c == '"')
+				return i;
+			if (c == '\\') {
+				this.escaped = true;
+				i++;
+			}
+			i++;
+		}
+		throw new IllegalArgumentException("Malformed JSON. Unterminated string at position " + (this.pos - 1));
+	}
+
+	/**
+	 * Returns the string value between start (inclusive) and close
+	 * (exclusive) of the string last scanned, resolving escape sequences if
+	 * any.
+	 */
+	private String decode(int start, int close) {
+		if (!this.escaped)
+			return this.json.substring(start, close);
+		int escape = this.json.indexOf('\\', start);
+		StringBuilder sb = new StringBuilder(close - start);
+		sb.append(this.json, start, escape);
+		for (int i = escape; i < close; i++) {
+			char c = this.json.charAt(i);
+			if (c != '\\') {
+				sb.append(c);
+				continue;
+			}
+			char e = this.json.charAt(++i);
+			switch (e) {
+			case '"':
+			case '\\':
+			case '/':
+				sb.append(e);
+				break;
+			case 'b':
+				sb.append('\b');
+				break;
+			case 'f':
+				sb.append('\f');
+				break;
+			case 'n':
+				sb.append('\n');
+				break;
+			case 'r':
+				sb.append('\r');
+				break;
+			case 't':
+				sb.append('\t');
+				break;
+			case 'u':
+				if (i + 4 >= close)
+					throw new IllegalArgumentException("Malformed JSON. Invalid unicode escape at position " + (i - 1));
+				try {
+					sb.append((char) Integer.parseInt(this.json.substring(i + 1, i + 5), 16));
+				} catch (NumberFormatException nfe) {
+					throw new IllegalArgumentException("Malformed JSON. Invalid unicode escape at position " + (i - 1),
+							nfe);
+				}
+				i += 4;
+				break;
+			default:
+				throw new IllegalArgumentException("Malformed JSON. Invalid escape at position " + (i - 1));
+			}
+		}
+		return sb.toString();
+	}
+
+	private void skipWhitespace() {
+		while (this.pos < this.end) {
+			char c = this.json.charAt(this.pos);
+			if (c == ' ' || c == '\n' || c == '\r' || c == '\t')
+				this.pos++;
+			else
+				break;
+		}
+	}
+
+	private char peek() {
+		if (this.pos >= this.end)
+			throw this.malformed("Unexpected end of input");
+		return this.json.charAt(this.pos);
+	}
+
+	private void expect(char c, String message) {
+		if (this.peek() != c)
+			throw this.malformed(message);
+		this.pos++;
+	}
+
+	private IllegalArgumentException malformed(String message) {
+		return new IllegalArgumentException("Malformed JSON. " + message + " at position " + this.pos);
+	}
+
+}
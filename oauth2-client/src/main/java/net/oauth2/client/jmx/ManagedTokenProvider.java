@@ -0,0 +1,128 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+
+package net.oauth2.client.jmx;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import net.oauth2.client.AutoRenewingTokenProvider;
+import net.oauth2.client.TokenProviderStats;
+
+/**
+ * Exposes an {@link AutoRenewingTokenProvider} and its
+ * {@link TokenProviderStats} as {@link TokenProviderMXBean}.
+ */
+final class ManagedTokenProvider implements TokenProviderMXBean {
+
+	private final String name;
+	private final AutoRenewingTokenProvider<?> provider;
+
+	ManagedTokenProvider(String name, AutoRenewingTokenProvider<?> provider) {
+		this.name = name;
+		this.provider = provider;
+	}
+
+	AutoRenewingTokenProvider<?> provider() {
+		return this.provider;
+	}
+
+	@Override
+	public String getName() {
+		return this.name;
+	}
+
+	@Override
+	public boolean isActive() {
+		return this.provider.isActive();
+	}
+
+	@Override
+	public boolean isPaused() {
+		return this.provider.isPaused();
+	}
+
+	@Override
+	public String getNextRenewal() {
+		Instant next = this.provider.stats().nextRenewal();
+		return next != null ? next.toString() : null;
+	}
+
+	@Override
+	public String getLastRenewal() {
+		Instant last = this.provider.stats().lastRenewal();
+		return last != null ? last.toString() : null;
+	}
+
+	@Override
+	public double getLastFetchLatencyMillis() {
+		long latency = this.provider.stats().lastFetchLatencyNanos();
+		return latency < 0 ? -1 : latency / (double) TimeUnit.MILLISECONDS.toNanos(1);
+	}
+
+	@Override
+	public int getConsecutiveFailures() {
+		return this.provider.stats().consecutiveFailures();
+	}
+
+	@Override
+	public long getRenewals() {
+		return this.provider.stats().renewals();
+	}
+
+	@Override
+	public long getFailures() {
+		return this.provider.stats().failures();
+	}
+
+	@Override
+	public long getRetries() {
+		return this.provider.stats().retries();
+	}
+
+	@Override
+	public long getTtlLeftMillis() {
+		Instant expiresAt = this.provider.stats().expiresAt();
+		if (expiresAt == null)
+			return -1;
+		return Math.max(Duration.between(Instant.now(this.provider.clock()), expiresAt).toMillis(), 0L);
+	}
+
+	@Override
+	public double getDelayModifier() {
+		return this.provider.delayModifier();
+	}
+
+	@Override
+	public void setDelayModifier(double delayModifier) {
+		synchronized (this.provider) {
+			this.provider.schedule(delayModifier);
+			if (this.provider.isActive()) {
+				this.provider.pause();
+				this.provider.resume();
+			}
+		}
+	}
+
+	@Override
+	public void refresh() {
+		this.provider.refresh();
+	}
+
+	@Override
+	public void pause() {
+		this.provider.pause();
+	}
+
+	@Override
+	public void resume() {
+		this.provider.resume();
+	}
+
+}
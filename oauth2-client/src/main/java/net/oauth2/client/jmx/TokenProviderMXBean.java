@@ -0,0 +1,82 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+
+package net.oauth2.client.jmx;
+
+import net.oauth2.client.AutoRenewingTokenProvider;
+
+/**
+ * Management interface of a single {@link AutoRenewingTokenProvider}
+ * registered with a {@link TokenProviderRegistry}.
+ */
+public interface TokenProviderMXBean {
+
+	String getName();
+
+	boolean isActive();
+
+	boolean isPaused();
+
+	/**
+	 * @return the ISO-8601 instant of the next scheduled renewal, or null if
+	 *         none is scheduled
+	 */
+	String getNextRenewal();
+
+	/**
+	 * @return the ISO-8601 instant of the last successful renewal, or null
+	 */
+	String getLastRenewal();
+
+	/**
+	 * @return the latency of the last token fetch or refresh in milliseconds,
+	 *         or -1 if none completed yet
+	 */
+	double getLastFetchLatencyMillis();
+
+	int getConsecutiveFailures();
+
+	long getRenewals();
+
+	long getFailures();
+
+	long getRetries();
+
+	/**
+	 * @return the time left until the current token expires in milliseconds,
+	 *         0 if it is expired or -1 if there is no token
+	 */
+	long getTtlLeftMillis();
+
+	double getDelayModifier();
+
+	/**
+	 * Changes the delay between renewals as percentage of the token TTL. An
+	 * active provider is rescheduled accordingly.
+	 * 
+	 * @param delayModifier
+	 *            value between (0-1]
+	 */
+	void setDelayModifier(double delayModifier);
+
+	/**
+	 * Renews the token now.
+	 */
+	void refresh();
+
+	/**
+	 * Suspends the renewals of the provider.
+	 */
+	void pause();
+
+	/**
+	 * Resumes the renewals of a paused provider.
+	 */
+	void resume();
+
+}
@@ -0,0 +1,305 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+
+package net.oauth2.client.jmx;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.MalformedObjectNameException;
+import javax.management.ObjectName;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import net.oauth2.client.AutoRenewingTokenProvider;
+
+/**
+ * An optional JMX management surface for {@link AutoRenewingTokenProvider}s.
+ * <p>
+ * Each registered provider is exposed as {@link TokenProviderMXBean} named
+ * <i>&lt;domain&gt;:type=TokenProvider,registry=&lt;registry&gt;,name=&lt;name&gt;</i>
+ * and the registry itself as {@link TokenProviderRegistryMXBean} named
+ * <i>&lt;domain&gt;:type=TokenProviderRegistry,name=&lt;registry&gt;</i>,
+ * aggregating the statistics of all providers and operating on all of them at
+ * once. The attributes are read from the {@link net.oauth2.client.TokenProviderStats} of the
+ * providers and reading them never contends with their renewals.
+ * </p>
+ * Providers are not registered automatically. Closing the registry
+ * unregisters all of its MBeans, without stopping the providers.
+ */
+public class TokenProviderRegistry implements TokenProviderRegistryMXBean, AutoCloseable {
+
+	protected static final Logger LOGGER = LoggerFactory.getLogger(TokenProviderRegistry.class);
+
+	public static final String DEFAULT_DOMAIN = "net.oauth2";
+
+	private final MBeanServer server;
+	private final String domain;
+	private final String name;
+	private final ObjectName objectName;
+	private final Map<String, ManagedTokenProvider> providers = new ConcurrentHashMap<>();
+
+	TokenProviderRegistry(MBeanServer server, String domain, String name) {
+		this.server = server;
+		this.domain = domain;
+		this.name = name;
+		this.objectName = toObjectName(domain + ":type=TokenProviderRegistry,name=" + ObjectName.quote(name));
+		try {
+			this.server.registerMBean(this, this.objectName);
+		} catch (JMException e) {
+			throw new IllegalStateException("Failed to register " + this.objectName, e);
+		}
+	}
+
+	public static final class Builder {
+
+		MBeanServer server;
+		String domain = DEFAULT_DOMAIN;
+		String name = "default";
+
+		public Builder() {
+		}
+
+		/**
+		 * The MBean server to register with. Defaults to the platform MBean
+		 * server.
+		 * 
+		 * @param server
+		 * @return this builder for chaining
+		 */
+		public Builder server(MBeanServer server) {
+			if (server == null)
+				throw new IllegalArgumentException("server is null");
+			this.server = server;
+			return this;
+		}
+
+		/**
+		 * The domain of the MBean object names. Defaults to
+		 * {@value TokenProviderRegistry#DEFAULT_DOMAIN}.
+		 * 
+		 * @param domain
+		 * @return this builder for chaining
+		 */
+		public Builder domain(String domain) {
+			if (domain == null)
+				throw new IllegalArgumentException("domain is null");
+			this.domain = domain;
+			return this;
+		}
+
+		/**
+		 * The name of the registry, distinguishing several registries in the
+		 * same domain. Defaults to "default".
+		 * 
+		 * @param name
+		 * @return this builder for chaining
+		 */
+		public Builder name(String name) {
+			if (name == null)
+				throw new IllegalArgumentException("name is null");
+			this.name = name;
+			return this;
+		}
+
+		/**
+		 * Builds the registry and registers its MBean.
+		 * 
+		 * @return the registry
+		 * @throws IllegalStateException
+		 *             if the registry MBean could not be registered, e.g.
+		 *             because a registry with the same name exists
+		 */
+		public TokenProviderRegistry build() {
+			MBeanServer server = this.server != null ? this.server : ManagementFactory.getPlatformMBeanServer();
+			return new TokenProviderRegistry(server, this.domain, this.name);
+		}
+	}
+
+	/**
+	 * Registers the MBean of a token provider.
+	 * 
+	 * @param name
+	 *            the name of the provider, unique within this registry
+	 * @param provider
+	 * @return this registry for chaining
+	 * @throws IllegalStateException
+	 *             if a provider with the same name is registered or the MBean
+	 *             could not be registered
+	 */
+	public TokenProviderRegistry register(String name, AutoRenewingTokenProvider<?> provider) {
+		if (name == null)
+			throw new IllegalArgumentException("name is null");
+		if (provider == null)
+			throw new IllegalArgumentException("provider is null");
+		ManagedTokenProvider managed = new ManagedTokenProvider(name, provider);
+		if (this.providers.putIfAbsent(name, managed) != null)
+			throw new IllegalStateException("Provider already registered: " + name);
+		ObjectName objectName = this.objectName(name);
+		try {
+			this.server.registerMBean(managed, objectName);
+		} catch (JMException e) {
+			this.providers.remove(name, managed);
+			throw new IllegalStateException("Failed to register " + objectName, e);
+		}
+		return this;
+	}
+
+	/**
+	 * Unregisters the MBean of a token provider. Does nothing if no provider
+	 * with this name is registered.
+	 * 
+	 * @param name
+	 * @return this registry for chaining
+	 */
+	public TokenProviderRegistry unregister(String name) {
+		if (this.providers.remove(name) != null)
+			this.unregister(this.objectName(name));
+		return this;
+	}
+
+	/**
+	 * The object name of the MBean of a token provider.
+	 * 
+	 * @param name
+	 *            the name the provider was registered with
+	 * @return the object name
+	 */
+	public ObjectName objectName(String name) {
+		return toObjectName(this.domain + ":type=TokenProvider,registry=" + ObjectName.quote(this.name) + ",name="
+				+ ObjectName.quote(name));
+	}
+
+	/**
+	 * @return the object name of the MBean of this registry
+	 */
+	public ObjectName objectName() {
+		return this.objectName;
+	}
+
+	private static ObjectName toObjectName(String name) {
+		try {
+			return new ObjectName(name);
+		} catch (MalformedObjectNameException e) {
+			throw new IllegalArgumentException(e);
+		}
+	}
+
+	private void unregister(ObjectName objectName) {
+		try {
+			this.server.unregisterMBean(objectName);
+		} catch (JMException e) {
+			LOGGER.warn("Failed to unregister {}", objectName, e);
+		}
+	}
+
+	@Override
+	public void close() {
+		for (String name : this.providers.keySet())
+			this.unregister(name);
+		this.unregister(this.objectName);
+	}
+
+	@Override
+	public String[] getProviderNames() {
+		return this.providers.keySet().toArray(new String[0]);
+	}
+
+	@Override
+	public int getProviderCount() {
+		return this.providers.size();
+	}
+
+	@Override
+	public int getActiveCount() {
+		int count = 0;
+		for (ManagedTokenProvider provider : this.providers.values())
+			if (provider.isActive())
+				count++;
+		return count;
+	}
+
+	@Override
+	public int getPausedCount() {
+		int count = 0;
+		for (ManagedTokenProvider provider : this.providers.values())
+			if (provider.isPaused())
+				count++;
+		return count;
+	}
+
+	@Override
+	public long getTotalRenewals() {
+		long total = 0L;
+		for (ManagedTokenProvider provider : this.providers.values())
+			total += provider.getRenewals();
+		return total;
+	}
+
+	@Override
+	public long getTotalFailures() {
+		long total = 0L;
+		for (ManagedTokenProvider provider : this.providers.values())
+			total += provider.getFailures();
+		return total;
+	}
+
+	@Override
+	public int getMaxConsecutiveFailures() {
+		int max = 0;
+		for (ManagedTokenProvider provider : this.providers.values())
+			max = Math.max(max, provider.getConsecutiveFailures());
+		return max;
+	}
+
+	@Override
+	public long getMinTtlLeftMillis() {
+		long min = -1L;
+		for (ManagedTokenProvider provider : this.providers.values()) {
+			long ttlLeft = provider.getTtlLeftMillis();
+			if (ttlLeft >= 0 && (min < 0 || ttlLeft < min))
+				min = ttlLeft;
+		}
+		return min;
+	}
+
+	/**
+	 * Renews the tokens of all started providers now. Providers that are not
+	 * started, or are stopped meanwhile, are skipped.
+	 */
+	@Override
+	public void refreshAll() {
+		for (Map.Entry<String, ManagedTokenProvider> entry : this.providers.entrySet()) {
+			ManagedTokenProvider provider = entry.getValue();
+			if (provider.isActive() || provider.isPaused()) {
+				try {
+					provider.refresh();
+				} catch (IllegalStateException e) {
+					LOGGER.debug("Skipped refresh of stopped provider {}", entry.getKey(), e);
+				}
+			}
+		}
+	}
+
+	@Override
+	public void pauseAll() {
+		for (ManagedTokenProvider provider : this.providers.values())
+			provider.pause();
+	}
+
+	@Override
+	public void resumeAll() {
+		for (ManagedTokenProvider provider : this.providers.values())
+			provider.resume();
+	}
+
+}
@@ -0,0 +1,47 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+
+package net.oauth2.client.jmx;
+
+/**
+ * Management interface aggregating all token providers registered with a
+ * {@link TokenProviderRegistry}.
+ */
+public interface TokenProviderRegistryMXBean {
+
+	String[] getProviderNames();
+
+	int getProviderCount();
+
+	int getActiveCount();
+
+	int getPausedCount();
+
+	long getTotalRenewals();
+
+	long getTotalFailures();
+
+	/**
+	 * @return the highest number of consecutive renewal failures among the
+	 *         providers
+	 */
+	int getMaxConsecutiveFailures();
+
+	/**
+	 * @return the shortest time left until a token of the providers expires
+	 *         in milliseconds, or -1 if none has a token
+	 */
+	long getMinTtlLeftMillis();
+
+	void refreshAll();
+
+	void pauseAll();
+
+	void resumeAll();
+
+}
@@ -13,23 +13,31 @@ import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.anyLong;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.spy;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.time.Duration;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.time.temporal.TemporalAmount;
+import java.util.Base64;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import org.junit.After;
 import org.junit.Test;
@@ -40,6 +48,8 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.runners.MockitoJUnitRunner;
 
+import commons.time.VirtualScheduler;
+import commons.util.ObservableMixin;
 import net.oauth2.AccessToken;
 import net.oauth2.TemporalAccessToken;
 
@@ -68,7 +78,7 @@ public class AutoRenewingTokenProviderTest {
 		given(trs.tokenRenewTask.getToken()).willReturn(expectedTemporalToken);
 		AccessToken token = trs.get();
 		assertEquals(expectedTemporalToken.token(), token);
-		verify(tokenRenewTask, times(2)).getToken();
+		verify(tokenRenewTask, times(1)).getToken();
 	}
 	
 	@Test
@@ -91,6 +101,148 @@ public class AutoRenewingTokenProviderTest {
 		assertTrue(delayDuration.compareTo(Duration.ofSeconds(1L)) == 0);
 	}
 	
+	@Test
+	public void testDelayDurationFromExactValidity()  {
+		AutoRenewingTokenProvider<AccessToken> trs = new AutoRenewingTokenProvider<>(this.tokenService).schedule(0.5);
+		Instant validSince = Instant.now();
+		TemporalAccessToken<AccessToken> expectedTemporalToken = TemporalAccessToken
+				.create(new AccessToken(null, null, 0L, null, null), validSince, validSince.plusSeconds(10));
+		trs.tokenRenewTask = this.tokenRenewTask; 
+		trs.future = this.future;
+		given(trs.tokenRenewTask.getToken()).willReturn(expectedTemporalToken);		
+		Duration delayDuration = trs.estimatedRepetitionsDelay();
+		assertEquals(Duration.ofSeconds(5), delayDuration);
+	}
+
+	@Test
+	public void testTokenUsageMetrics()  {
+		TokenMetrics metrics = Mockito.mock(TokenMetrics.class);
+		given(metrics.isEnabled()).willReturn(true);
+		given(metrics.isTokenUsageEnabled()).willReturn(true);
+		AutoRenewingTokenProvider<AccessToken> trs = new AutoRenewingTokenProvider<>(this.tokenService).metrics(metrics, "client");
+		trs.tokenRenewTask = this.tokenRenewTask; 
+		given(trs.tokenRenewTask.getToken()).willReturn(TemporalAccessToken.create(new AccessToken(null, null, 10L, null, null)));
+
+		// scheduling does not count as use
+		trs.estimatedRepetitionsDelay();
+		verify(metrics, never()).tokenUsed(anyString(), anyLong(), anyLong());
+		trs.get();
+		verify(metrics, times(1)).tokenUsed(eq("client"), anyLong(), anyLong());
+
+		given(metrics.isTokenUsageEnabled()).willReturn(false);
+		trs.get();
+		verify(metrics, times(1)).tokenUsed(anyString(), anyLong(), anyLong());
+	}
+
+	@Test
+	public void testRenewalsSerialized() throws Exception {
+		AtomicInteger inflight = new AtomicInteger();
+		AtomicInteger maxInflight = new AtomicInteger();
+		given(this.tokenService.refresh(anyString())).willAnswer(invocation -> {
+			maxInflight.accumulateAndGet(inflight.incrementAndGet(), Math::max);
+			try {
+				TimeUnit.MILLISECONDS.sleep(50);
+			} finally {
+				inflight.decrementAndGet();
+			}
+			return new AccessToken("refreshed", null, 3600L, "refresh-token", null);
+		});
+		AutoRenewingTokenProvider<AccessToken> trs = new AutoRenewingTokenProvider<>(this.tokenService, this.scheduler,
+				new NoRetryPolicy(), new ObservableMixin<TokenChangeObserver<AccessToken>>(), false);
+		trs.start(new AccessToken("fetched", null, 3600L, "refresh-token", null), Instant.now());
+
+		Thread renewal = new Thread(trs.tokenRenewTask);
+		renewal.start();
+		while (inflight.get() == 0)
+			Thread.sleep(1);
+		// a renewal started by refresh() while the scheduled one still runs
+		long start = System.nanoTime();
+		trs.tokenRenewTask.run();
+		long skippedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+		renewal.join();
+
+		// skipped without waiting for the running renewal
+		assertTrue("Took " + skippedMillis + "ms", skippedMillis < 40);
+		assertEquals(1, maxInflight.get());
+		assertEquals(1L, trs.stats().renewals());
+		verify(this.tokenService, times(1)).refresh("refresh-token");
+	}
+
+	@Test
+	public void testObserversNotifiedOutsideMonitor() throws Exception {
+		AutoRenewingTokenProvider<AccessToken> trs = new AutoRenewingTokenProvider<>(this.tokenService, this.scheduler,
+				new NoRetryPolicy(), new ObservableMixin<TokenChangeObserver<AccessToken>>(), false);
+		AtomicReference<Throwable> failure = new AtomicReference<>();
+		AtomicInteger notifications = new AtomicInteger();
+		trs.attach((newToken, oldToken) -> {
+			notifications.incrementAndGet();
+			// an observer handing off to a thread that needs the provider
+			try {
+				CompletableFuture.runAsync(trs::pause).get(2, TimeUnit.SECONDS);
+			} catch (Exception e) {
+				failure.set(e);
+			}
+		});
+
+		trs.start(new AccessToken("fetched", null, 3600L, "refresh-token", null), Instant.now());
+		trs.stop(false);
+		trs.resume(new AccessToken("resumed", null, 3600L, "refresh-token", null), Instant.now(), false);
+		// published once, not again by the renewal
+		trs.tokenRenewTask.publish();
+
+		assertNull(failure.get());
+		assertEquals(2, notifications.get());
+	}
+
+	@Test
+	public void testStartDoesNotWaitForRenewal() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		given(this.tokenService.refresh(anyString())).willAnswer(invocation -> {
+			release.await();
+			return new AccessToken("refreshed", null, 3600L, "refresh-token", null);
+		});
+		ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1);
+		AutoRenewingTokenProvider<AccessToken> trs = new AutoRenewingTokenProvider<>(this.tokenService, executor,
+				new NoRetryPolicy(), new ObservableMixin<TokenChangeObserver<AccessToken>>(), false)
+				.attach(tokenChangeObserver);
+		try {
+			// expired, so the renewal is due immediately and blocks in refresh
+			long start = System.nanoTime();
+			trs.resume(new AccessToken("expired", null, 60L, "refresh-token", null), Instant.now().minusSeconds(120),
+					true);
+			long resumeMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			verify(this.tokenService, Mockito.timeout(2000)).refresh("refresh-token");
+			assertTrue("Took " + resumeMillis + "ms", resumeMillis < 1000);
+
+			release.countDown();
+			verify(tokenChangeObserver, Mockito.timeout(2000).times(2)).tokenChanged(
+					tokenChangeNewTokenObserverCaptor.capture(), tokenChangeOldTokenObserverCaptor.capture());
+			// the initial token is published before its renewal
+			assertEquals("expired", tokenChangeNewTokenObserverCaptor.getAllValues().get(0).token().getAccessToken());
+			assertNull(tokenChangeOldTokenObserverCaptor.getAllValues().get(0));
+			assertEquals("refreshed", tokenChangeNewTokenObserverCaptor.getAllValues().get(1).token().getAccessToken());
+		} finally {
+			release.countDown();
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testJwtExpiry()  {
+		AutoRenewingTokenProvider<AccessToken> trs = new AutoRenewingTokenProvider<>(this.tokenService).jwtExpiry(true);
+		String payload = Base64.getUrlEncoder().withoutPadding()
+				.encodeToString("{\"iat\":1500000000,\"exp\":1500000600}".getBytes(StandardCharsets.UTF_8));
+		AccessToken token = new AccessToken("e30." + payload + ".sig", null, 3600L, null, null);
+
+		Instant received = Instant.now();
+		TemporalAccessToken<AccessToken> temporalToken = trs.temporal(token, received);
+
+		// the lifetime from the claims, anchored to the local receive moment
+		assertEquals(received, temporalToken.validSince());
+		assertEquals(received.plus(Duration.ofMinutes(10)), temporalToken.expiresAt());
+		assertEquals(Duration.ofMinutes(10), temporalToken.ttl());
+	}
+	
 /*	@Test
 	public void testDelayDurationWhileNotStarted() {
 		AutoRenewingTokenProvider<AccessToken> trs = new AutoRenewingTokenProvider<>(this.tokenService);
@@ -362,18 +514,19 @@ public class AutoRenewingTokenProviderTest {
 		given(this.tokenService.fetch()).willReturn(fetchedToken.token());
 		final TemporalAccessToken<AccessToken> refreshedToken = TemporalAccessToken.create(new AccessToken("refreshed",null,10L,"refresh_token",null)).ttlUnit(ChronoUnit.MILLIS);
 		given(this.tokenService.refresh(anyString())).willReturn(refreshedToken.token());
+		// virtual time, so that the number of renewals does not depend on the load of the machine
+		VirtualScheduler scheduler = new VirtualScheduler(Instant.now());
 		
-		AutoRenewingTokenProvider<AccessToken> provider = new AutoRenewingTokenProvider<>(this.tokenService)
+		AutoRenewingTokenProvider<AccessToken> provider = new AutoRenewingTokenProvider<>(this.tokenService, scheduler,
+				new NoRetryPolicy(), new ObservableMixin<TokenChangeObserver<AccessToken>>(), false)
+				.clock(scheduler.clock())
 				.schedule(0.9)
 				.strictlyRefresh(true)
-				.setRetryPolicy(new NoRetryPolicy())
 				.tokenExpireInTemporalUnit(ChronoUnit.MILLIS)
 				.attach(tokenChangeObserver);
 		
 		provider.start();
-		try {
-			TimeUnit.MILLISECONDS.sleep(20);
-		} catch (InterruptedException e) {}
+		scheduler.advance(10, TimeUnit.MILLISECONDS);
 		provider.stop(true);
 		
 		verify(tokenChangeObserver,times(3)).tokenChanged(tokenChangeNewTokenObserverCaptor.capture(), tokenChangeOldTokenObserverCaptor.capture());
@@ -0,0 +1,185 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+package net.oauth2.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.After;
+import org.junit.Test;
+
+import commons.util.ObservableMixin;
+import net.oauth2.AccessToken;
+
+public class BulkTokenProviderStarterTest {
+
+	final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+	final List<AutoRenewingTokenProvider<AccessToken>> providers = new ArrayList<>();
+
+	@After
+	public void tearDown() {
+		this.scheduler.shutdownNow();
+	}
+
+	private TokenService tokenService(long latencyMillis, AtomicInteger inflight, AtomicInteger maxInflight)
+			throws IOException {
+		TokenService tokenService = mock(TokenService.class);
+		given(tokenService.fetch()).willAnswer(invocation -> {
+			maxInflight.accumulateAndGet(inflight.incrementAndGet(), Math::max);
+			try {
+				TimeUnit.MILLISECONDS.sleep(latencyMillis);
+			} finally {
+				inflight.decrementAndGet();
+			}
+			return new AccessToken("token", "Bearer", 3600, null, null);
+		});
+		return tokenService;
+	}
+
+	private AutoRenewingTokenProvider<AccessToken> provider(TokenService tokenService) {
+		AutoRenewingTokenProvider<AccessToken> provider = new AutoRenewingTokenProvider<>(tokenService, this.scheduler,
+				new NoRetryPolicy(), new ObservableMixin<>(), false);
+		this.providers.add(provider);
+		return provider;
+	}
+
+	@Test
+	public void testBoundedConcurrency() throws Exception {
+		AtomicInteger inflight = new AtomicInteger();
+		AtomicInteger maxInflight = new AtomicInteger();
+		List<TokenService> tokenServices = new ArrayList<>();
+		for (int i = 0; i < 20; i++) {
+			TokenService tokenService = this.tokenService(50, inflight, maxInflight);
+			tokenServices.add(tokenService);
+			this.provider(tokenService);
+		}
+		AtomicInteger progress = new AtomicInteger();
+		BulkTokenProviderStarter starter = new BulkTokenProviderStarter.Builder().concurrency(5)
+				.progressListener((started, failed, total) -> progress.incrementAndGet()).build();
+
+		long start = System.nanoTime();
+		BulkTokenProviderStarter.Result result = starter.start(this.providers);
+		long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+		assertTrue(result.isComplete());
+		assertEquals(20, result.started());
+		assertEquals(20, progress.get());
+		assertTrue("Expected 2 to 5 concurrent fetches but were " + maxInflight.get(),
+				maxInflight.get() > 1 && maxInflight.get() <= 5);
+		// four rounds of 50ms, well below the 1000ms of 20 sequential fetches
+		assertTrue("Elapsed " + elapsedMillis + "ms", elapsedMillis >= 200 && elapsedMillis < 800);
+		for (AutoRenewingTokenProvider<AccessToken> provider : this.providers)
+			assertTrue(provider.isActive());
+		// the fetched token is handed over and not fetched again
+		TimeUnit.MILLISECONDS.sleep(50);
+		for (TokenService tokenService : tokenServices) {
+			verify(tokenService, times(1)).fetch();
+			verify(tokenService, never()).refresh(null);
+		}
+	}
+
+	@Test
+	public void testPartialFailures() throws Exception {
+		AtomicInteger inflight = new AtomicInteger();
+		AtomicInteger maxInflight = new AtomicInteger();
+		TokenService failing = mock(TokenService.class);
+		given(failing.fetch()).willThrow(new IOException("unavailable"));
+		TokenService empty = mock(TokenService.class);
+		this.provider(this.tokenService(0, inflight, maxInflight));
+		AutoRenewingTokenProvider<AccessToken> failingProvider = this.provider(failing);
+		AutoRenewingTokenProvider<AccessToken> emptyProvider = this.provider(empty);
+		this.provider(this.tokenService(0, inflight, maxInflight));
+
+		BulkTokenProviderStarter.Result result = new BulkTokenProviderStarter.Builder().concurrency(2).build()
+				.start(this.providers);
+
+		assertFalse(result.isComplete());
+		assertEquals(4, result.total());
+		assertEquals(2, result.started());
+		assertEquals(2, result.failures().size());
+		assertEquals(IOException.class, result.failures().get(failingProvider).getClass());
+		assertEquals(IllegalStateException.class, result.failures().get(emptyProvider).getClass());
+		assertFalse(failingProvider.isActive());
+	}
+
+	@Test(timeout = 5000)
+	public void testFailingProgressListener() throws Exception {
+		AtomicInteger inflight = new AtomicInteger();
+		AtomicInteger maxInflight = new AtomicInteger();
+		for (int i = 0; i < 3; i++)
+			this.provider(this.tokenService(0, inflight, maxInflight));
+		BulkTokenProviderStarter starter = new BulkTokenProviderStarter.Builder().concurrency(2)
+				.progressListener((started, failed, total) -> {
+					throw new IllegalStateException("listener failure");
+				}).build();
+
+		BulkTokenProviderStarter.Result result = starter.start(this.providers);
+
+		assertTrue(result.isComplete());
+		assertEquals(3, result.started());
+	}
+
+	@Test
+	public void testSkipsStartedProviders() throws Exception {
+		AtomicInteger inflight = new AtomicInteger();
+		AtomicInteger maxInflight = new AtomicInteger();
+		TokenService active = this.tokenService(0, inflight, maxInflight);
+		AutoRenewingTokenProvider<AccessToken> activeProvider = this.provider(active);
+		activeProvider.start(-1L);
+		TokenService idle = this.tokenService(0, inflight, maxInflight);
+		AutoRenewingTokenProvider<AccessToken> idleProvider = this.provider(idle);
+		AtomicInteger progressTotal = new AtomicInteger();
+		BulkTokenProviderStarter starter = new BulkTokenProviderStarter.Builder()
+				.progressListener((started, failed, total) -> progressTotal.set(total)).build();
+
+		BulkTokenProviderStarter.Result result = starter.start(this.providers);
+
+		assertTrue(result.isComplete());
+		assertEquals(2, result.total());
+		assertEquals(1, result.started());
+		assertEquals(1, result.skipped());
+		assertEquals(1, progressTotal.get());
+		assertTrue(idleProvider.isActive());
+		verify(active, times(1)).fetch();
+		verify(idle, times(1)).fetch();
+		// fetched by the provider itself, and renewed when the token is due
+		assertTrue(idleProvider.stats().lastFetchLatencyNanos() >= 0);
+		assertTrue(idleProvider.stats().nextRenewal().isAfter(Instant.now().plusSeconds(3000)));
+	}
+
+	@Test
+	public void testRateLimiterSpacesPermits() {
+		AtomicLong clock = new AtomicLong();
+		BulkTokenProviderStarter.RateLimiter limiter = new BulkTokenProviderStarter.RateLimiter(10, clock::get);
+
+		assertEquals(0, limiter.reserve());
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(100), limiter.reserve());
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(200), limiter.reserve());
+		// idle time is not accumulated as burst
+		clock.set(TimeUnit.SECONDS.toNanos(5));
+		assertEquals(0, limiter.reserve());
+		assertEquals(TimeUnit.MILLISECONDS.toNanos(100), limiter.reserve());
+	}
+
+}
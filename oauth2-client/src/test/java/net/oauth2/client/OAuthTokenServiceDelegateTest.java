@@ -9,6 +9,11 @@ package net.oauth2.client;
 
 import static org.junit.Assert.*;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Matchers.isNull;
+import static org.mockito.Matchers.same;
+import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.only;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyNoMoreInteractions;
@@ -252,4 +257,45 @@ public class OAuthTokenServiceDelegateTest {
 		verifyNoMoreInteractions(client);
 	}
 
+	@Test
+	public void testMetrics() throws OAuth2ProtocolException, IOException {
+		AccessTokenGrantRequest grant = new AccessTokenGrantRequest("testtype", "testclient", "testsecret", null);
+		IOException failure = new IOException("unavailable");
+		given(client.post("token", grant)).willReturn(new AccessToken("123", "bearer", 123L, null, null))
+				.willThrow(failure);
+		TokenMetrics metrics = mock(TokenMetrics.class);
+		given(metrics.isEnabled()).willReturn(true);
+
+		OAuthTokenServiceDelegate<AccessToken> svc = new OAuthTokenServiceDelegate<>(grant, client).metrics(metrics);
+		svc.fetch();
+		try {
+			svc.fetch();
+			fail("IOException expected");
+		} catch (IOException e) {
+		}
+
+		verify(metrics).tokenRequest(eq("testclient"), eq("testtype"), anyLong(), isNull(Throwable.class));
+		verify(metrics).tokenRequest(eq("testclient"), eq("testtype"), anyLong(), same(failure));
+	}
+
+	@Test
+	public void testTracer() throws OAuth2ProtocolException, IOException {
+		AccessTokenGrantRequest grant = new AccessTokenGrantRequest("testtype", "testclient", "testsecret", null);
+		IOException failure = new IOException("unavailable");
+		given(client.post("token", grant)).willThrow(failure);
+		TokenTracer tracer = mock(TokenTracer.class);
+		TokenTracer.Span span = mock(TokenTracer.Span.class);
+		given(tracer.start(TokenTracer.FETCH, "testclient", "testtype")).willReturn(span);
+
+		OAuthTokenServiceDelegate<AccessToken> svc = new OAuthTokenServiceDelegate<>(grant, client).tracer(tracer);
+		try {
+			svc.fetch();
+			fail("IOException expected");
+		} catch (IOException e) {
+		}
+
+		verify(span).error(failure);
+		verify(span).close();
+	}
+
 }
@@ -0,0 +1,212 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+package net.oauth2.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.BDDMockito.willReturn;
+import static org.mockito.Mockito.mock;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.ECGenParameterSpec;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+
+import net.oauth2.ClientAssertionSupplier;
+import net.oauth2.ClientCredentialsGrantRequest;
+import net.oauth2.RefreshTokenGrantRequest;
+import net.oauth2.client.http.FormEncodeDataBinding;
+
+public class PrivateKeyJwtClientAssertionsTest {
+
+	static final class MutableClock extends Clock {
+		final AtomicLong millis = new AtomicLong(System.currentTimeMillis());
+
+		@Override
+		public ZoneId getZone() {
+			return ZoneOffset.UTC;
+		}
+
+		@Override
+		public Clock withZone(ZoneId zone) {
+			return this;
+		}
+
+		@Override
+		public Instant instant() {
+			return Instant.ofEpochMilli(this.millis.get());
+		}
+	}
+
+	private static String part(String jwt, int index) {
+		return new String(Base64.getUrlDecoder().decode(jwt.split("\\.")[index]), StandardCharsets.UTF_8);
+	}
+
+	private static boolean verify(String jwt, PublicKey key, String algorithm) throws Exception {
+		int dot = jwt.lastIndexOf('.');
+		byte[] signature = Base64.getUrlDecoder().decode(jwt.substring(dot + 1));
+		if (algorithm.endsWith("ECDSA"))
+			signature = joseToDer(signature);
+		Signature verifier = Signature.getInstance(algorithm);
+		verifier.initVerify(key);
+		verifier.update(jwt.substring(0, dot).getBytes(StandardCharsets.US_ASCII));
+		return verifier.verify(signature);
+	}
+
+	private static byte[] joseToDer(byte[] jose) {
+		byte[][] ints = new byte[2][];
+		for (int i = 0; i < 2; i++) {
+			byte[] n = new java.math.BigInteger(1, java.util.Arrays.copyOfRange(jose, i * 32, (i + 1) * 32))
+					.toByteArray();
+			ints[i] = n;
+		}
+		int length = 4 + ints[0].length + ints[1].length;
+		byte[] der = new byte[2 + length];
+		der[0] = 0x30;
+		der[1] = (byte) length;
+		int offset = 2;
+		for (byte[] n : ints) {
+			der[offset++] = 0x02;
+			der[offset++] = (byte) n.length;
+			System.arraycopy(n, 0, der, offset, n.length);
+			offset += n.length;
+		}
+		return der;
+	}
+
+	private static void awaitPool(PrivateKeyJwtClientAssertions assertions, int size) throws InterruptedException {
+		for (int i = 0; i < 500 && assertions.pooled() < size; i++)
+			TimeUnit.MILLISECONDS.sleep(10);
+	}
+
+	@Test
+	public void testRS256() throws Exception {
+		KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+		generator.initialize(2048);
+		KeyPair keyPair = generator.generateKeyPair();
+		try (PrivateKeyJwtClientAssertions assertions = new PrivateKeyJwtClientAssertions.Builder().clientId("client")
+				.audience("https://as.example.com/token").privateKey(keyPair.getPrivate()).keyId("k1").build()) {
+			awaitPool(assertions, 4);
+			assertEquals(4, assertions.pooled());
+
+			String jwt = assertions.nextAssertion();
+
+			assertEquals("{\"alg\":\"RS256\",\"typ\":\"JWT\",\"kid\":\"k1\"}", part(jwt, 0));
+			String claims = part(jwt, 1);
+			assertTrue(claims, claims.startsWith(
+					"{\"iss\":\"client\",\"sub\":\"client\",\"aud\":\"https://as.example.com/token\",\"jti\":\""));
+			assertTrue(verify(jwt, keyPair.getPublic(), "SHA256withRSA"));
+		}
+	}
+
+	@Test
+	public void testES256UniqueAssertions() throws Exception {
+		KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+		generator.initialize(new ECGenParameterSpec("secp256r1"));
+		KeyPair keyPair = generator.generateKeyPair();
+		try (PrivateKeyJwtClientAssertions assertions = new PrivateKeyJwtClientAssertions.Builder().clientId("client")
+				.audience("aud").privateKey(keyPair.getPrivate()).poolSize(1).build()) {
+			String first = assertions.nextAssertion();
+			String second = assertions.nextAssertion();
+
+			assertNotEquals(part(first, 1), part(second, 1));
+			assertTrue(part(first, 0).startsWith("{\"alg\":\"ES256\""));
+			assertTrue(verify(first, keyPair.getPublic(), "SHA256withECDSA"));
+			assertTrue(verify(second, keyPair.getPublic(), "SHA256withECDSA"));
+		}
+	}
+
+	@Test
+	public void testStaleAssertionsAreNotUsed() throws Exception {
+		KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+		generator.initialize(new ECGenParameterSpec("secp256r1"));
+		MutableClock clock = new MutableClock();
+		try (PrivateKeyJwtClientAssertions assertions = new PrivateKeyJwtClientAssertions.Builder().clientId("client")
+				.audience("aud").privateKey(generator.generateKeyPair().getPrivate()).lifetime(1, TimeUnit.HOURS)
+				.clock(clock).build()) {
+			awaitPool(assertions, 4);
+			long signedAt = clock.millis() / 1000;
+			clock.millis.addAndGet(TimeUnit.MINUTES.toMillis(31));
+
+			String jwt = assertions.nextAssertion();
+
+			assertFalse(part(jwt, 1).contains("\"iat\":" + signedAt + ","));
+		}
+	}
+
+	@Test
+	public void testPooledAssertionsRetireStaggered() throws Exception {
+		KeyPairGenerator generator = KeyPairGenerator.getInstance("EC");
+		generator.initialize(new ECGenParameterSpec("secp256r1"));
+		MutableClock clock = new MutableClock();
+		// refills run only when invoked by the test
+		ScheduledExecutorService executor = mock(ScheduledExecutorService.class);
+		willReturn(mock(ScheduledFuture.class)).given(executor).scheduleWithFixedDelay(any(Runnable.class), anyLong(),
+				anyLong(), any(TimeUnit.class));
+		try (PrivateKeyJwtClientAssertions assertions = new PrivateKeyJwtClientAssertions.Builder().clientId("client")
+				.audience("aud").privateKey(generator.generateKeyPair().getPrivate()).lifetime(1, TimeUnit.HOURS)
+				.executor(executor).clock(clock).build()) {
+			assertions.refillNow();
+			long firstSignedAt = clock.millis() / 1000;
+			// the four assertions are fresh for 30, 26.25, 22.5 and 18.75 minutes
+			clock.millis.addAndGet(TimeUnit.MINUTES.toMillis(20));
+			assertions.refillNow();
+			long secondSignedAt = clock.millis() / 1000;
+
+			assertEquals(4, assertions.pooled());
+			for (int i = 0; i < 3; i++)
+				assertTrue(part(assertions.nextAssertion(), 1).contains("\"iat\":" + firstSignedAt + ","));
+			assertTrue(part(assertions.nextAssertion(), 1).contains("\"iat\":" + secondSignedAt + ","));
+		}
+	}
+
+	@Test
+	public void testGrantRequestEncoding() throws Exception {
+		AtomicInteger taken = new AtomicInteger();
+		ClientAssertionSupplier supplier = () -> "assertion" + taken.incrementAndGet();
+		ClientCredentialsGrantRequest grant = new ClientCredentialsGrantRequest("client", null, null);
+		assertSame(grant, grant.clientAssertionSupplier(supplier));
+
+		Map<String, Object> parameters = grant.map();
+
+		// mapping the grant request does not use up assertions
+		assertEquals(ClientAssertionSupplier.JWT_BEARER, parameters.get("client_assertion_type"));
+		assertNull(parameters.get("client_assertion"));
+		assertNull(parameters.get("client_secret"));
+		assertEquals(0, taken.get());
+
+		assertEquals("assertion1", grant.requestParameters().get("client_assertion"));
+		String encoded = new FormEncodeDataBinding().encode(grant, null);
+		assertTrue(encoded, encoded.contains("client_assertion=assertion2"));
+		RefreshTokenGrantRequest refresh = RefreshTokenGrantRequest.renew(grant, "refresh", null);
+		assertEquals("assertion3", refresh.requestParameters().get("client_assertion"));
+		assertEquals(3, taken.get());
+	}
+
+}
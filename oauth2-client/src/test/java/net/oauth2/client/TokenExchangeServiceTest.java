@@ -0,0 +1,204 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+package net.oauth2.client;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import net.oauth2.AccessToken;
+import net.oauth2.AccessTokenGrantRequest;
+import net.oauth2.TokenExchangeGrantRequest;
+import net.oauth2.client.http.TokenServiceHttpClient;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TokenExchangeServiceTest {
+
+	@Mock
+	TokenServiceHttpClient client;
+
+	final AtomicLong clock = new AtomicLong();
+
+	private TokenExchangeService<AccessToken> service(int maxEntries) {
+		return new TokenExchangeService.Builder().client(client).clientCredentials("gateway", "secret")
+				.expiryMargin(30, TimeUnit.SECONDS).maxEntries(maxEntries).nanoClock(clock::get).build();
+	}
+
+	@Test
+	public void testExchangeGrant() throws Exception {
+		given(client.post(anyString(), any(AccessTokenGrantRequest.class)))
+				.willReturn(new AccessToken("exchanged", null, 300, null, null));
+
+		service(10).exchange("subject", "https://api.example.com", Arrays.asList("read"));
+
+		ArgumentCaptor<AccessTokenGrantRequest> grant = ArgumentCaptor.forClass(AccessTokenGrantRequest.class);
+		verify(client).post(eq("token"), grant.capture());
+		Map<String, Object> parameters = grant.getValue().map();
+		assertEquals(TokenExchangeGrantRequest.GRANT_TYPE, parameters.get("grant_type"));
+		assertEquals("subject", parameters.get("subject_token"));
+		assertEquals(TokenExchangeGrantRequest.ACCESS_TOKEN_TYPE, parameters.get("subject_token_type"));
+		assertEquals("https://api.example.com", parameters.get("audience"));
+		assertEquals("gateway", parameters.get("client_id"));
+	}
+
+	@Test
+	public void testCachedUntilShortlyBeforeExpiry() throws Exception {
+		AccessToken first = new AccessToken("first", null, 300, null, null);
+		AccessToken second = new AccessToken("second", null, 300, null, null);
+		given(client.post(anyString(), any(AccessTokenGrantRequest.class))).willReturn(first, second);
+		TokenExchangeService<AccessToken> service = service(10);
+
+		assertSame(first, service.exchange("subject", "aud", Arrays.asList("a", "b")));
+		assertSame(first, service.exchange("subject", "aud", Arrays.asList("b", "a")));
+		clock.addAndGet(TimeUnit.SECONDS.toNanos(269));
+		assertSame(first, service.exchange("subject", "aud", Arrays.asList("a", "b")));
+		clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+		assertSame(second, service.exchange("subject", "aud", Arrays.asList("a", "b")));
+
+		verify(client, times(2)).post(anyString(), any(AccessTokenGrantRequest.class));
+	}
+
+	@Test
+	public void testKeyedBySubjectAudienceAndScopes() throws Exception {
+		given(client.post(anyString(), any(AccessTokenGrantRequest.class)))
+				.willAnswer(invocation -> new AccessToken("t", null, 300, null, null));
+		TokenExchangeService<AccessToken> service = service(10);
+
+		AccessToken token = service.exchange("subject", "aud", null);
+		assertNotSame(token, service.exchange("other", "aud", null));
+		assertNotSame(token, service.exchange("subject", "other", null));
+		assertNotSame(token, service.exchange("subject", "aud", Arrays.asList("a")));
+
+		assertEquals(4, service.size());
+	}
+
+	@Test
+	public void testLruEviction() throws Exception {
+		given(client.post(anyString(), any(AccessTokenGrantRequest.class)))
+				.willAnswer(invocation -> new AccessToken("t", null, 300, null, null));
+		TokenExchangeService<AccessToken> service = service(2);
+
+		AccessToken a = service.exchange("a", "aud", null);
+		service.exchange("b", "aud", null);
+		service.exchange("a", "aud", null);
+		service.exchange("c", "aud", null);
+
+		assertEquals(2, service.size());
+		assertSame(a, service.exchange("a", "aud", null));
+		verify(client, times(3)).post(anyString(), any(AccessTokenGrantRequest.class));
+	}
+
+	@Test
+	public void testNotCachedWithoutExpiresIn() throws Exception {
+		given(client.post(anyString(), any(AccessTokenGrantRequest.class)))
+				.willAnswer(invocation -> new AccessToken("t", null, 0, null, null));
+		TokenExchangeService<AccessToken> service = service(10);
+
+		service.exchange("subject", "aud", null);
+		service.exchange("subject", "aud", null);
+
+		verify(client, times(2)).post(anyString(), any(AccessTokenGrantRequest.class));
+	}
+
+	@Test
+	public void testConcurrentExchangesCoalesced() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		AtomicInteger calls = new AtomicInteger();
+		given(client.post(anyString(), any(AccessTokenGrantRequest.class))).willAnswer(invocation -> {
+			calls.incrementAndGet();
+			release.await(5, TimeUnit.SECONDS);
+			return new AccessToken("t", null, 300, null, null);
+		});
+		TokenExchangeService<AccessToken> service = service(10);
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<AccessToken>> results = new ArrayList<>();
+			for (int i = 0; i < 8; i++)
+				results.add(executor.submit(() -> service.exchange("subject", "aud", null)));
+			TimeUnit.MILLISECONDS.sleep(100);
+			release.countDown();
+			AccessToken token = results.get(0).get(5, TimeUnit.SECONDS);
+			for (Future<AccessToken> result : results)
+				assertSame(token, result.get(5, TimeUnit.SECONDS));
+			assertEquals(1, calls.get());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testFailureIsPropagatedAndNotCached() throws Exception {
+		given(client.post(anyString(), any(AccessTokenGrantRequest.class))).willThrow(new IOException("down"))
+				.willReturn(new AccessToken("t", null, 300, null, null));
+		TokenExchangeService<AccessToken> service = service(10);
+
+		try {
+			service.exchange("subject", "aud", null);
+			fail("IOException expected");
+		} catch (IOException e) {
+			assertEquals("down", e.getMessage());
+		}
+		assertEquals("t", service.exchange("subject", "aud", null).getAccessToken());
+	}
+
+	@Test
+	public void testErrorIsPropagatedToCoalescedExchanges() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		given(client.post(anyString(), any(AccessTokenGrantRequest.class))).willAnswer(invocation -> {
+			release.await(5, TimeUnit.SECONDS);
+			throw new AssertionError("broken");
+		});
+		TokenExchangeService<AccessToken> service = service(10);
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<AccessToken>> results = new ArrayList<>();
+			for (int i = 0; i < 4; i++)
+				results.add(executor.submit(() -> service.exchange("subject", "aud", null)));
+			TimeUnit.MILLISECONDS.sleep(100);
+			release.countDown();
+			for (Future<AccessToken> result : results) {
+				try {
+					result.get(5, TimeUnit.SECONDS);
+					fail("AssertionError expected");
+				} catch (ExecutionException e) {
+					assertEquals("broken", e.getCause().getMessage());
+				}
+			}
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+}
@@ -82,6 +82,8 @@ public class TokenRenewTaskTest {
 		verify(this.noRetryPolicy).maxRetries();
 		verify(this.refreshingTokenProvider).renew(any());
 		verify(this.refreshingTokenProvider).fireTokenUpdate(eq(temporalRefreshedToken), eq(temporalToken));
+		// the initial token, not published by a provider yet
+		verify(this.refreshingTokenProvider).fireTokenUpdate(temporalToken, null);
 		verifyNoMoreInteractions(this.refreshingTokenProvider, this.noRetryPolicy, this.tokenService);
 	}
 
@@ -125,6 +127,8 @@ public class TokenRenewTaskTest {
 		verify(this.refreshingTokenProvider).renew(any());		
 		verify(this.noRetryPolicy).onException(any(IOException.class));
 		verify(this.noRetryPolicy).maxRetries();
+		// the initial token, not published by a provider yet
+		verify(this.refreshingTokenProvider).fireTokenUpdate(temporalToken, null);
 
 		verifyNoMoreInteractions(this.refreshingTokenProvider, this.tokenService, this.noRetryPolicy);
 	}
@@ -158,6 +162,8 @@ public class TokenRenewTaskTest {
 		verify(this.minimialRetryPolicy, times(4)).maxRetries();
 		verify(this.minimialRetryPolicy, times(3)).onException(any(IOException.class));
 		verify(this.minimialRetryPolicy, times(3)).periodBetweenRetries();
+		// the initial token, not published by a provider yet
+		verify(this.refreshingTokenProvider).fireTokenUpdate(temporalToken, null);
 		verifyNoMoreInteractions(this.refreshingTokenProvider, this.tokenService, this.minimialRetryPolicy);
 	}
 	
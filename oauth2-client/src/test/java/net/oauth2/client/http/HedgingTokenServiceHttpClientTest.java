@@ -0,0 +1,253 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+
+package net.oauth2.client.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+import net.oauth2.AccessToken;
+import net.oauth2.AccessTokenGrantRequest;
+import net.oauth2.ClientCredentialsGrantRequest;
+import net.oauth2.PasswordCredentialsGrantRequest;
+
+@RunWith(MockitoJUnitRunner.class)
+public class HedgingTokenServiceHttpClientTest {
+
+	@Mock
+	TokenServiceHttpClient delegate;
+
+	final AccessToken slowToken = new AccessToken("slow", "Bearer", 3600, null, null);
+	final AccessToken fastToken = new AccessToken("fast", "Bearer", 3600, null, null);
+
+	/**
+	 * The first invocation answers after {@code firstDelayMillis}, all
+	 * subsequent invocations answer immediately.
+	 */
+	private Answer<AccessToken> slowFirst(long firstDelayMillis) {
+		AtomicInteger calls = new AtomicInteger();
+		return invocation -> {
+			if (calls.getAndIncrement() == 0) {
+				TimeUnit.MILLISECONDS.sleep(firstDelayMillis);
+				return slowToken;
+			}
+			return fastToken;
+		};
+	}
+
+	@Test
+	public void testHedgeTakesFirstSuccess() throws IOException {
+		given(delegate.post(anyString(), any(AccessTokenGrantRequest.class))).willAnswer(slowFirst(2000));
+		HedgingTokenServiceHttpClient client = new HedgingTokenServiceHttpClient.Builder().delegate(delegate)
+				.initialDelay(20, TimeUnit.MILLISECONDS).build();
+
+		AccessToken token = client.post("token", new ClientCredentialsGrantRequest("id", "secret", null));
+
+		assertSame(fastToken, token);
+		verify(delegate, times(2)).post(anyString(), any(AccessTokenGrantRequest.class));
+		// the abandoned slow primary is recorded too, not only the winner
+		assertEquals(2, client.latencySamples());
+		assertEquals(2, client.availableHedges());
+	}
+
+	@Test
+	public void testHedgePermitsReturnedWhenHedgesCancelledBeforeStart() throws IOException {
+		given(delegate.post(anyString(), any(AccessTokenGrantRequest.class))).willAnswer(invocation -> {
+			TimeUnit.MILLISECONDS.sleep(50);
+			return slowToken;
+		});
+		PrimaryOnlyExecutor executor = new PrimaryOnlyExecutor();
+		HedgingTokenServiceHttpClient client = new HedgingTokenServiceHttpClient.Builder().delegate(delegate)
+				.executor(executor).initialDelay(5, TimeUnit.MILLISECONDS).maxHedgesInFlight(1).build();
+
+		for (int i = 0; i < 5; i++) {
+			AccessToken token = client.post("token", new ClientCredentialsGrantRequest("id", "secret", null));
+			assertSame(slowToken, token);
+			assertEquals(1, client.availableHedges());
+		}
+		// every post sent a hedge, none of which ever started
+		assertEquals(5, executor.held.size());
+		verify(delegate, times(5)).post(anyString(), any(AccessTokenGrantRequest.class));
+	}
+
+	/**
+	 * Runs every other submitted task (the primary attempts) and holds back
+	 * the rest (the hedges) so that they are cancelled before they start.
+	 */
+	static final class PrimaryOnlyExecutor extends AbstractExecutorService {
+
+		final AtomicInteger submitted = new AtomicInteger();
+		final List<Runnable> held = new CopyOnWriteArrayList<>();
+
+		@Override
+		public void execute(Runnable command) {
+			if (submitted.getAndIncrement() % 2 == 0)
+				new Thread(command).start();
+			else
+				held.add(command);
+		}
+
+		@Override
+		public void shutdown() {
+		}
+
+		@Override
+		public List<Runnable> shutdownNow() {
+			return Collections.emptyList();
+		}
+
+		@Override
+		public boolean isShutdown() {
+			return false;
+		}
+
+		@Override
+		public boolean isTerminated() {
+			return false;
+		}
+
+		@Override
+		public boolean awaitTermination(long timeout, TimeUnit unit) {
+			return true;
+		}
+	}
+
+	@Test
+	public void testNoHedgeForNonHedgeableGrantType() throws IOException {
+		given(delegate.post(anyString(), any(AccessTokenGrantRequest.class))).willAnswer(slowFirst(100));
+		HedgingTokenServiceHttpClient client = new HedgingTokenServiceHttpClient.Builder().delegate(delegate)
+				.initialDelay(10, TimeUnit.MILLISECONDS).build();
+
+		AccessToken token = client.post("token", new PasswordCredentialsGrantRequest("u", "p", "id", "secret", null));
+
+		assertSame(slowToken, token);
+		verify(delegate, times(1)).post(anyString(), any(AccessTokenGrantRequest.class));
+	}
+
+	@Test
+	public void testNoHedgeWhenCapped() throws IOException {
+		given(delegate.post(anyString(), any(AccessTokenGrantRequest.class))).willAnswer(slowFirst(100));
+		HedgingTokenServiceHttpClient client = new HedgingTokenServiceHttpClient.Builder().delegate(delegate)
+				.initialDelay(10, TimeUnit.MILLISECONDS).maxHedgesInFlight(0).build();
+
+		AccessToken token = client.post("token", new ClientCredentialsGrantRequest("id", "secret", null));
+
+		assertSame(slowToken, token);
+		verify(delegate, times(1)).post(anyString(), any(AccessTokenGrantRequest.class));
+	}
+
+	@Test
+	public void testNoHedgeBeforeSamplesWithoutInitialDelay() throws IOException {
+		given(delegate.post(anyString(), any(AccessTokenGrantRequest.class))).willAnswer(slowFirst(100));
+		HedgingTokenServiceHttpClient client = new HedgingTokenServiceHttpClient.Builder().delegate(delegate).build();
+
+		AccessToken token = client.post("token", new ClientCredentialsGrantRequest("id", "secret", null));
+
+		assertSame(slowToken, token);
+		verify(delegate, times(1)).post(anyString(), any(AccessTokenGrantRequest.class));
+	}
+
+	@Test
+	public void testUnhedgedAfterClose() throws IOException {
+		given(delegate.post(anyString(), any(AccessTokenGrantRequest.class))).willAnswer(slowFirst(100));
+		HedgingTokenServiceHttpClient client = new HedgingTokenServiceHttpClient.Builder().delegate(delegate)
+				.initialDelay(10, TimeUnit.MILLISECONDS).build();
+		client.close();
+
+		AccessToken token = client.post("token", new ClientCredentialsGrantRequest("id", "secret", null));
+
+		assertSame(slowToken, token);
+		verify(delegate, times(1)).post(anyString(), any(AccessTokenGrantRequest.class));
+		assertEquals(1, client.latencySamples());
+		assertEquals(2, client.availableHedges());
+	}
+
+	@Test
+	public void testUnhedgedWhenHedgeRejected() throws IOException {
+		given(delegate.post(anyString(), any(AccessTokenGrantRequest.class))).willAnswer(slowFirst(100));
+		ExecutorService executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.SECONDS, new SynchronousQueue<>());
+		try {
+			HedgingTokenServiceHttpClient client = new HedgingTokenServiceHttpClient.Builder().delegate(delegate)
+					.executor(executor).initialDelay(10, TimeUnit.MILLISECONDS).build();
+
+			AccessToken token = client.post("token", new ClientCredentialsGrantRequest("id", "secret", null));
+
+			assertSame(slowToken, token);
+			verify(delegate, times(1)).post(anyString(), any(AccessTokenGrantRequest.class));
+			assertEquals(2, client.availableHedges());
+			client.close();
+			assertFalse(executor.isShutdown());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	@Test
+	public void testBothAttemptsFail() throws IOException {
+		given(delegate.post(anyString(), any(AccessTokenGrantRequest.class))).willAnswer(invocation -> {
+			TimeUnit.MILLISECONDS.sleep(50);
+			throw new IOException("unavailable");
+		});
+		HedgingTokenServiceHttpClient client = new HedgingTokenServiceHttpClient.Builder().delegate(delegate)
+				.initialDelay(10, TimeUnit.MILLISECONDS).build();
+
+		try {
+			client.post("token", new ClientCredentialsGrantRequest("id", "secret", null));
+			fail("IOException expected");
+		} catch (IOException e) {
+			assertEquals("unavailable", e.getMessage());
+		}
+		verify(delegate, times(2)).post(anyString(), any(AccessTokenGrantRequest.class));
+	}
+
+	@Test
+	public void testHedgeDelayFromPercentile() throws IOException {
+		HedgingTokenServiceHttpClient client = new HedgingTokenServiceHttpClient.Builder().delegate(delegate)
+				.percentile(0.9).minDelay(0, TimeUnit.MILLISECONDS).build();
+		assertEquals(0, client.hedgeDelayNanos());
+
+		HedgingTokenServiceHttpClient.LatencyWindow window = new HedgingTokenServiceHttpClient.LatencyWindow(100);
+		for (int i = 1; i <= 100; i++)
+			window.record(i);
+
+		assertEquals(90, window.percentile(0.9));
+		assertEquals(99, window.percentile(0.99));
+
+		// evicting the oldest samples keeps the percentile over the window
+		for (int i = 101; i <= 150; i++)
+			window.record(i);
+		assertEquals(100, window.size());
+		assertEquals(140, window.percentile(0.9));
+		assertEquals(51, window.percentile(0.01));
+	}
+
+}
@@ -0,0 +1,199 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+
+package net.oauth2.client.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import net.oauth2.AccessToken;
+import net.oauth2.AccessTokenGrantRequest;
+import net.oauth2.ClientCredentialsGrantRequest;
+import net.oauth2.ProtocolError;
+import net.oauth2.client.OAuth2ProtocolException;
+
+@RunWith(MockitoJUnitRunner.class)
+public class MultiEndpointTokenServiceHttpClientTest {
+
+	@Mock
+	TokenServiceHttpClient primary;
+	@Mock
+	TokenServiceHttpClient secondary;
+
+	final AccessToken token = new AccessToken("token", "Bearer", 3600, null, null);
+	final AccessTokenGrantRequest grant = new ClientCredentialsGrantRequest("id", "secret", null);
+	final AtomicLong clock = new AtomicLong();
+	MultiEndpointTokenServiceHttpClient client;
+
+	@Before
+	public void setUp() {
+		this.client = new MultiEndpointTokenServiceHttpClient.Builder().endpoint(primary).endpoint(secondary)
+				.ejectAfter(2).probeInterval(1, 4, TimeUnit.SECONDS).probeExecutor(Runnable::run)
+				.nanoClock(clock::get).build();
+	}
+
+	@Test
+	public void testFailoverWithinRequest() throws IOException {
+		given(primary.post(anyString(), any(AccessTokenGrantRequest.class))).willThrow(new IOException("down"));
+		given(secondary.post(anyString(), any(AccessTokenGrantRequest.class))).willReturn(token);
+
+		AccessToken result = client.post("token", grant);
+
+		assertSame(token, result);
+		verify(primary, times(1)).post("token", grant);
+		verify(secondary, times(1)).post("token", grant);
+	}
+
+	@Test
+	public void testProtocolErrorIsNotFailedOver() throws IOException {
+		given(primary.post(anyString(), any(AccessTokenGrantRequest.class)))
+				.willThrow(new OAuth2ProtocolException(new ProtocolError("invalid_client", null, null, null)));
+
+		try {
+			client.post("token", grant);
+			fail("OAuth2ProtocolException expected");
+		} catch (OAuth2ProtocolException e) {
+		}
+		verify(secondary, never()).post(anyString(), any(AccessTokenGrantRequest.class));
+	}
+
+	@Test
+	public void testAllEndpointsFail() throws IOException {
+		given(primary.post(anyString(), any(AccessTokenGrantRequest.class))).willThrow(new IOException("primary"));
+		given(secondary.post(anyString(), any(AccessTokenGrantRequest.class))).willThrow(new IOException("secondary"));
+
+		try {
+			client.post("token", grant);
+			fail("IOException expected");
+		} catch (IOException e) {
+			assertEquals("primary", e.getMessage());
+			assertEquals(1, e.getSuppressed().length);
+		}
+	}
+
+	@Test
+	public void testEjectAndProbe() throws IOException {
+		given(primary.post(anyString(), any(AccessTokenGrantRequest.class))).willThrow(new IOException("down"));
+		given(secondary.post(anyString(), any(AccessTokenGrantRequest.class))).willReturn(token);
+
+		client.post("token", grant);
+		client.post("token", grant);
+		assertTrue(client.endpoints().get(0).isEjected());
+
+		// ejected endpoint is skipped until due for a probe
+		client.post("token", grant);
+		verify(primary, times(2)).post("token", grant);
+
+		// failed probe doubles the probe interval
+		clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+		client.post("token", grant);
+		verify(primary, times(3)).post("token", grant);
+		clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+		client.post("token", grant);
+		verify(primary, times(3)).post("token", grant);
+
+		// successful probe restores the endpoint
+		Mockito.reset(primary);
+		given(primary.post(anyString(), any(AccessTokenGrantRequest.class))).willReturn(token);
+		clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+		client.post("token", grant);
+		verify(primary, times(1)).post("token", grant);
+		verify(secondary, times(6)).post("token", grant);
+		assertFalse(client.endpoints().get(0).isEjected());
+	}
+
+	@Test
+	public void testProbeDoesNotDelayRequest() throws IOException {
+		List<Runnable> probes = new ArrayList<>();
+		MultiEndpointTokenServiceHttpClient client = new MultiEndpointTokenServiceHttpClient.Builder()
+				.endpoint(primary).endpoint(secondary).ejectAfter(1).probeInterval(1, 4, TimeUnit.SECONDS)
+				.probeExecutor(probes::add).nanoClock(clock::get).build();
+		given(primary.post(anyString(), any(AccessTokenGrantRequest.class))).willThrow(new IOException("down"));
+		given(secondary.post(anyString(), any(AccessTokenGrantRequest.class))).willReturn(token);
+		client.post("token", grant);
+		assertTrue(client.endpoints().get(0).isEjected());
+
+		// the due probe is sent aside while the request goes to the healthy endpoint
+		Mockito.reset(primary);
+		given(primary.post(anyString(), any(AccessTokenGrantRequest.class))).willReturn(token);
+		clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+		assertSame(token, client.post("token", grant));
+		verify(primary, never()).post(anyString(), any(AccessTokenGrantRequest.class));
+		assertEquals(1, probes.size());
+
+		// one probe at a time
+		client.post("token", grant);
+		assertEquals(1, probes.size());
+		assertTrue(client.endpoints().get(0).isEjected());
+
+		probes.get(0).run();
+		verify(primary, times(1)).post("token", grant);
+		assertFalse(client.endpoints().get(0).isEjected());
+	}
+
+	@Test
+	public void testProbeInlineWhenAllEjected() throws IOException {
+		List<Runnable> probes = new ArrayList<>();
+		MultiEndpointTokenServiceHttpClient client = new MultiEndpointTokenServiceHttpClient.Builder()
+				.endpoint(primary).ejectAfter(1).probeInterval(1, 4, TimeUnit.SECONDS).probeExecutor(probes::add)
+				.nanoClock(clock::get).build();
+		given(primary.post(anyString(), any(AccessTokenGrantRequest.class))).willThrow(new IOException("down"));
+		try {
+			client.post("token", grant);
+			fail("IOException expected");
+		} catch (IOException e) {
+		}
+
+		Mockito.reset(primary);
+		given(primary.post(anyString(), any(AccessTokenGrantRequest.class))).willReturn(token);
+		clock.addAndGet(TimeUnit.SECONDS.toNanos(1));
+		assertSame(token, client.post("token", grant));
+		assertTrue(probes.isEmpty());
+		assertFalse(client.endpoints().get(0).isEjected());
+	}
+
+	@Test
+	public void testRoutesToFastestEndpoint() throws IOException {
+		MultiEndpointTokenServiceHttpClient client = new MultiEndpointTokenServiceHttpClient.Builder()
+				.endpoint(primary).endpoint(secondary).ejectAfter(5).build();
+		client.onSuccess(client.endpoints().get(0), 200);
+		client.onSuccess(client.endpoints().get(1), 100);
+
+		assertSame(secondary, client.route(new ArrayList<>()).get(0).client);
+
+		// error rate outweighs the lower latency
+		client.onFailure(client.endpoints().get(1));
+		client.onFailure(client.endpoints().get(1));
+		client.onFailure(client.endpoints().get(1));
+
+		assertSame(primary, client.route(new ArrayList<>()).get(0).client);
+	}
+
+}
@@ -8,17 +8,20 @@
 package net.oauth2.client.http.databinding;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.IOException;
-import java.util.Collection;
-import java.util.Collections;
-import java.util.LinkedList;
+import java.net.URI;
+import java.util.Map;
 
 import org.junit.Test;
 
 import net.oauth2.AccessToken;
 import net.oauth2.ProtocolError;
 import net.oauth2.ProtocolErrorType;
+import net.oauth2.ScopeSet;
 
 public class SimpleDatabindingProviderTest {
 
@@ -31,9 +34,29 @@ public class SimpleDatabindingProviderTest {
 		assertEquals("bearer", token.getTokenType());
 		assertEquals(123L, token.getExpiresIn());
 		assertEquals("test_refresh_token", token.getRefreshToken());
-		Collection<String> scopes = new LinkedList<String>(); 
-		Collections.addAll(scopes, "read", "write");
-		assertEquals(scopes, token.getScopes());
+		assertEquals(ScopeSet.of("read", "write"), token.getScopes());
+	}
+
+	@Test
+	public void testParseTokenEmptyScope() throws IOException {
+		SimpleDatabindingProvider p = new SimpleDatabindingProvider();
+		assertEquals(ScopeSet.EMPTY, p.parseToken("{\"access_token\": \"test_token\", \"scope\": \"\"}", AccessToken.class).getScopes());
+		assertNull(p.parseToken("{\"access_token\": \"test_token\"}", AccessToken.class).getScopes());
+	}
+
+	public static class CustomToken extends AccessToken {
+		public CustomToken(Map<String, Object> map) {
+			super(map);
+		}
+	}
+
+	@Test
+	public void testParseTokenSubclass() throws IOException {
+		String tokenJSON = "{\"access_token\": \"test_token\", \"expires_in\": 123, \"scope\": \"read\"}";
+		CustomToken token = new SimpleDatabindingProvider().parseToken(tokenJSON, CustomToken.class);
+		assertEquals("test_token", token.getAccessToken());
+		assertEquals(123L, token.getExpiresIn());
+		assertEquals(ScopeSet.of("read"), token.getScopes());
 	}
 	
 	@Test
@@ -42,6 +65,7 @@ public class SimpleDatabindingProviderTest {
 		SimpleDatabindingProvider p = new SimpleDatabindingProvider();
 		try{
 			p.parseToken(tokenJSON, AccessToken.class);		
+			fail("IllegalArgumentException expected");
 		} catch (IllegalArgumentException e){
 			assertEquals("Expecting json object as top-level entry", e.getMessage());
 		}
@@ -53,19 +77,58 @@ public class SimpleDatabindingProviderTest {
 		SimpleDatabindingProvider p = new SimpleDatabindingProvider();
 		try{
 			p.parseToken(tokenJSON, AccessToken.class);		
+			fail("IllegalArgumentException expected");
 		} catch (IllegalArgumentException e){
-			assertEquals("Malformed JSON. Missing \":\" at \"a\" 1", e.getMessage());
+			assertEquals("Malformed JSON. Expected ':' at position 5", e.getMessage());
 		}
 	}
 	
 	@Test
-	public void testParseTokenJsonArrayValuesNotSupported() throws IOException {
-		String tokenJSON = "{\"a\": []}";
+	public void testParseTokenUnknownNestedValuesSkipped() throws IOException {
+		String tokenJSON = "{\"a\": [], \"access_token\": \"test_token\", \"b\": {\"c\": [1, 2.5e3, true, null, {\"d\": \"}]\"}]}, \"e\": false}";
+		SimpleDatabindingProvider p = new SimpleDatabindingProvider();
+		AccessToken token = p.parseToken(tokenJSON, AccessToken.class);
+		assertEquals("test_token", token.getAccessToken());
+		assertEquals("Bearer", token.getTokenType());
+	}
+
+	@Test
+	public void testParseTokenValuesWithDelimitersAndEscapes() throws IOException {
+		String tokenJSON = "{\"access_token\": \"a:b,c\\\"d\\\\e\\u0041\", \"scope\": [\"read\", \"write\"], \"expires_in\": \"3600\"}";
+		SimpleDatabindingProvider p = new SimpleDatabindingProvider();
+		AccessToken token = p.parseToken(tokenJSON, AccessToken.class);
+		assertEquals("a:b,c\"d\\eA", token.getAccessToken());
+		assertEquals(3600L, token.getExpiresIn());
+		assertEquals(ScopeSet.of("read", "write"), token.getScopes());
+	}
+
+	@Test
+	public void testParseTokenJsonMalformedExpiresIn() throws IOException {
+		String tokenJSON = "{\"expires_in\": 1a}";
 		SimpleDatabindingProvider p = new SimpleDatabindingProvider();
 		try{
-			p.parseToken(tokenJSON, AccessToken.class);		
+			p.parseToken(tokenJSON, AccessToken.class);
+			fail("IllegalArgumentException expected");
 		} catch (IllegalArgumentException e){
-			assertEquals("Unsuported type. Arrays are not supported: []", e.getMessage());
+			assertEquals("Malformed JSON. Not a number: 1a at position 15", e.getMessage());
+		}
+	}
+
+	@Test
+	public void testParseTokenExpiresInLongRange() throws IOException {
+		SimpleDatabindingProvider p = new SimpleDatabindingProvider();
+		assertEquals(Long.MAX_VALUE,
+				p.parseToken("{\"expires_in\": 9223372036854775807}", AccessToken.class).getExpiresIn());
+		assertEquals(Long.MIN_VALUE,
+				p.parseToken("{\"expires_in\": -9223372036854775808}", AccessToken.class).getExpiresIn());
+		String[] outOfRange = { "9223372036854775808", "-9223372036854775809", "\"99999999999999999999\"", "1e19" };
+		for (String value : outOfRange) {
+			try {
+				p.parseToken("{\"expires_in\": " + value + "}", AccessToken.class);
+				fail("IllegalArgumentException expected for " + value);
+			} catch (IllegalArgumentException e) {
+				assertTrue(e.getMessage(), e.getMessage().startsWith("Malformed JSON. Number out of range: "));
+			}
 		}
 	}
 	
@@ -75,8 +138,9 @@ public class SimpleDatabindingProviderTest {
 		SimpleDatabindingProvider p = new SimpleDatabindingProvider();
 		try{
 			p.parseToken(tokenJSON, AccessToken.class);		
+			fail("IllegalArgumentException expected");
 		} catch (IllegalArgumentException e){
-			assertEquals("malformed JSON. Strings must start with \".", e.getMessage());
+			assertEquals("Malformed JSON. Expected ',' or '}' at position 7", e.getMessage());
 		}
 	}
 	
@@ -86,8 +150,9 @@ public class SimpleDatabindingProviderTest {
 		SimpleDatabindingProvider p = new SimpleDatabindingProvider();
 		try{
 			p.parseToken(tokenJSON, AccessToken.class);		
+			fail("IllegalArgumentException expected");
 		} catch (IllegalArgumentException e){
-			assertEquals("Malformed JSON. Not a number: 1a", e.getMessage());
+			assertEquals("Malformed JSON. Unexpected value at position 6", e.getMessage());
 		}
 	}
 	
@@ -97,8 +162,9 @@ public class SimpleDatabindingProviderTest {
 		SimpleDatabindingProvider p = new SimpleDatabindingProvider();
 		try{
 			p.parseToken(tokenJSON, AccessToken.class);		
+			fail("IllegalArgumentException expected");
 		} catch (IllegalArgumentException e){
-			assertEquals("malformed JSON. Starts with \" but is missing the end \": \"1", e.getMessage());
+			assertEquals("Malformed JSON. Unterminated string at position 6", e.getMessage());
 		}
 	}
 	
@@ -108,8 +174,9 @@ public class SimpleDatabindingProviderTest {
 		SimpleDatabindingProvider p = new SimpleDatabindingProvider();
 		try{
 			p.parseToken(tokenJSON, AccessToken.class);		
+			fail("IllegalArgumentException expected");
 		} catch (IllegalArgumentException e){
-			assertEquals("Malformed JSON. Too many  \":\" at \"a\": 1: The \":\" character is not supported within keys and values by this parser.", e.getMessage());
+			assertEquals("Malformed JSON. Expected ',' or '}' at position 7", e.getMessage());
 		}
 	}
 
@@ -124,6 +191,16 @@ public class SimpleDatabindingProviderTest {
 		assertEquals("login", err.getState());
 	}
 
+	@Test
+	public void testParseErrorUri() throws IOException {
+		SimpleDatabindingProvider p = new SimpleDatabindingProvider();
+		String errstr = "{ \"error\": \"invalid_scope\", \"error_uri\": \"https://example.com/errors?code=1,2\"}";
+		ProtocolError err = p.parseError(errstr, ProtocolError.class);
+		assertEquals(ProtocolErrorType.InvalidScope, err.getErrorType());
+		assertEquals(URI.create("https://example.com/errors?code=1,2"), err.getUri());
+		assertNull(err.getDescription());
+	}
+
 
 	@Test(expected=UnsupportedOperationException.class)
 	public void testRaw() {
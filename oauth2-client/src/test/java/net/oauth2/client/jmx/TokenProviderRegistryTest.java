@@ -0,0 +1,172 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+
+package net.oauth2.client.jmx;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+
+import java.io.IOException;
+import java.time.Instant;
+
+import javax.management.Attribute;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.runners.MockitoJUnitRunner;
+
+import net.oauth2.AccessToken;
+import net.oauth2.client.AutoRenewingTokenProvider;
+import net.oauth2.client.TokenService;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TokenProviderRegistryTest {
+
+	@Mock
+	TokenService tokenService;
+
+	MBeanServer server;
+	TokenProviderRegistry registry;
+	AutoRenewingTokenProvider<AccessToken> provider;
+
+	@Before
+	public void setUp() throws IOException {
+		given(this.tokenService.refresh(anyString()))
+				.willReturn(new AccessToken("refreshed", null, 3600L, "refresh-token", null));
+		this.server = MBeanServerFactory.newMBeanServer();
+		this.registry = new TokenProviderRegistry.Builder().server(this.server).build();
+		this.provider = new AutoRenewingTokenProvider<>(this.tokenService);
+	}
+
+	@After
+	public void tearDown() {
+		this.registry.close();
+		this.provider.stop(false);
+	}
+
+	@Test
+	public void testProviderAttributes() throws Exception {
+		this.provider.start(new AccessToken("fetched", null, 3600L, "refresh-token", null), Instant.now());
+		this.registry.register("client", this.provider);
+		ObjectName name = this.registry.objectName("client");
+
+		assertEquals(Boolean.TRUE, this.server.getAttribute(name, "Active"));
+		assertEquals(Boolean.FALSE, this.server.getAttribute(name, "Paused"));
+		assertEquals(0.9, (Double) this.server.getAttribute(name, "DelayModifier"), 0);
+		assertEquals(0, this.server.getAttribute(name, "ConsecutiveFailures"));
+		assertEquals(-1.0, (Double) this.server.getAttribute(name, "LastFetchLatencyMillis"), 0);
+		long ttlLeft = (Long) this.server.getAttribute(name, "TtlLeftMillis");
+		assertTrue(ttlLeft > 3500_000L && ttlLeft <= 3600_000L);
+		Instant next = Instant.parse((String) this.server.getAttribute(name, "NextRenewal"));
+		assertTrue(next.isAfter(Instant.now().plusSeconds(3000)));
+	}
+
+	@Test
+	public void testPauseResumeRefresh() throws Exception {
+		this.provider.start(new AccessToken("fetched", null, 3600L, "refresh-token", null), Instant.now());
+		this.registry.register("client", this.provider);
+		ObjectName name = this.registry.objectName("client");
+
+		this.server.invoke(name, "pause", null, null);
+		assertTrue(this.provider.isPaused());
+		assertFalse(this.provider.isActive());
+		assertNull(this.server.getAttribute(name, "NextRenewal"));
+
+		this.server.invoke(name, "resume", null, null);
+		assertFalse(this.provider.isPaused());
+		assertTrue(this.provider.isActive());
+		assertNotNull(this.server.getAttribute(name, "NextRenewal"));
+
+		this.server.invoke(name, "refresh", null, null);
+		verify(this.tokenService, timeout(2000)).refresh("refresh-token");
+		for (int i = 0; i < 100 && this.provider.stats().renewals() == 0; i++)
+			Thread.sleep(20);
+		assertEquals("refreshed", this.provider.get().getAccessToken());
+		assertEquals(1L, this.server.getAttribute(name, "Renewals"));
+		assertTrue((Double) this.server.getAttribute(name, "LastFetchLatencyMillis") >= 0);
+	}
+
+	@Test
+	public void testDelayModifier() throws Exception {
+		this.provider.start(new AccessToken("fetched", null, 3600L, "refresh-token", null), Instant.now());
+		this.registry.register("client", this.provider);
+
+		this.server.setAttribute(this.registry.objectName("client"), new Attribute("DelayModifier", 0.5));
+
+		assertEquals(0.5, this.provider.delayModifier(), 0);
+		assertTrue(this.provider.isActive());
+		Instant next = this.provider.stats().nextRenewal();
+		assertTrue(next.isBefore(Instant.now().plusSeconds(1801)));
+	}
+
+	@Test
+	public void testRegistryAggregates() throws Exception {
+		AutoRenewingTokenProvider<AccessToken> idle = new AutoRenewingTokenProvider<>(this.tokenService);
+		this.provider.start(new AccessToken("fetched", null, 3600L, "refresh-token", null), Instant.now());
+		this.registry.register("client", this.provider).register("idle", idle);
+		ObjectName name = this.registry.objectName();
+
+		assertEquals(2, this.server.getAttribute(name, "ProviderCount"));
+		assertEquals(1, this.server.getAttribute(name, "ActiveCount"));
+		assertTrue((Long) this.server.getAttribute(name, "MinTtlLeftMillis") > 3500_000L);
+
+		this.server.invoke(name, "pauseAll", null, null);
+		assertEquals(1, this.server.getAttribute(name, "PausedCount"));
+		this.server.invoke(name, "resumeAll", null, null);
+		assertEquals(0, this.server.getAttribute(name, "PausedCount"));
+		assertEquals(1, this.server.getAttribute(name, "ActiveCount"));
+
+		this.registry.unregister("idle");
+		assertFalse(this.server.isRegistered(this.registry.objectName("idle")));
+		assertEquals(1, this.server.getAttribute(name, "ProviderCount"));
+	}
+
+	@SuppressWarnings("unchecked")
+	@Test
+	public void testRefreshAllSkipsStoppedProviders() throws Exception {
+		AutoRenewingTokenProvider<AccessToken> stopping = mock(AutoRenewingTokenProvider.class);
+		given(stopping.isActive()).willReturn(true);
+		willThrow(new IllegalStateException("Not started")).given(stopping).refresh();
+		this.provider.start(new AccessToken("fetched", null, 3600L, "refresh-token", null), Instant.now());
+		this.registry.register("stopping", stopping).register("client", this.provider);
+
+		this.server.invoke(this.registry.objectName(), "refreshAll", null, null);
+
+		verify(stopping).refresh();
+		verify(this.tokenService, timeout(2000)).refresh("refresh-token");
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testDuplicateName() {
+		this.registry.register("client", this.provider).register("client", this.provider);
+	}
+
+	@Test
+	public void testClose() {
+		this.registry.register("client", this.provider);
+		this.registry.close();
+		assertFalse(this.server.isRegistered(this.registry.objectName("client")));
+		assertFalse(this.server.isRegistered(this.registry.objectName()));
+	}
+
+}
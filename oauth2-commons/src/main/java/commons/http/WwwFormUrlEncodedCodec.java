@@ -7,14 +7,17 @@
  */
 package commons.http;
 
-import java.io.UnsupportedEncodingException;
-import java.net.URLDecoder;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.BiConsumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -42,6 +45,12 @@ public class WwwFormUrlEncodedCodec {
 		return this;
 	}
 
+	/**
+	 * @deprecated no longer used. Serializers are looked up per parameter by
+	 *             {@link #encodeParameters(Map, Map, Appendable)}, without
+	 *             merging the mappings.
+	 */
+	@Deprecated
 	@SuppressWarnings("rawtypes")
 	protected Map<String,Serializer> resolveSerializerMappings(Map<String, Serializer> serializersMappings) {
 		//resolve mappings to use. We start with globals if any, then override them with specifically provided as argument in this method if any
@@ -57,6 +66,11 @@ public class WwwFormUrlEncodedCodec {
 		return mappings;
 	}
 
+	/**
+	 * @deprecated mutates the entry and does not percent-encode. Use
+	 *             {@link #encodeParameters(Map, Map, Appendable)}.
+	 */
+	@Deprecated
 	@SuppressWarnings("unchecked")
 	protected Entry<String, Object> encodeEntry(final Entry<String, Object> entry, @SuppressWarnings("rawtypes") final Map<String,Serializer> mappings) {
 		String encodedValue = null;
@@ -86,17 +100,134 @@ public class WwwFormUrlEncodedCodec {
 	 * @return
 	 */
 	public String encodeStream(final Stream<Entry<String, Object>> stream, @SuppressWarnings("rawtypes") Map<String, Serializer> serializersMappings) {
-		@SuppressWarnings("rawtypes")
-		final Map<String,Serializer> mappings = resolveSerializerMappings(serializersMappings); 
-		String encoded = stream.filter(parameterEntry -> parameterEntry.getValue() != null)
-		.map(parameterEntry -> {
-			return encodeEntry(parameterEntry, mappings);
-		})
-		.map((entry) -> {
-			return entry.getKey() + "=" + entry.getValue();
-		})
-		.collect(Collectors.joining("&"));		
-		return encoded;
+		final StringBuilder sb = new StringBuilder(128);
+		stream.forEachOrdered(parameter -> {
+			try {
+				this.encodeParameter(parameter.getKey(), parameter.getValue(), serializersMappings, sb.length() == 0, sb);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		});
+		return sb.toString();
+	}
+
+	/**
+	 * Transforms a map of parameters into a www.form-encoded string.
+	 * 
+	 * @param parameters
+	 * @param serializersMappings serializers overriding the globally registered ones for this invocation. Optional.
+	 * @return
+	 */
+	public String encodeParameters(final Map<String, ?> parameters, @SuppressWarnings("rawtypes") Map<String, Serializer> serializersMappings) {
+		StringBuilder sb = new StringBuilder(parameters.size() * 32);
+		try {
+			this.encodeParameters(parameters, serializersMappings, sb);
+		} catch (IOException e) {
+			// StringBuilder does not throw
+			throw new UncheckedIOException(e);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Writes a map of parameters www.form-encoded to out, in a single pass and
+	 * with no intermediate objects. Parameters with null values are skipped.
+	 * Values are serialized with the serializer mapped to their key, if any,
+	 * or with toString otherwise. Keys and values are percent-encoded as UTF-8.
+	 * 
+	 * @param parameters
+	 * @param serializersMappings serializers overriding the globally registered ones for this invocation. Optional.
+	 * @param out
+	 * @throws IOException
+	 */
+	public void encodeParameters(final Map<String, ?> parameters, @SuppressWarnings("rawtypes") Map<String, Serializer> serializersMappings, final Appendable out) throws IOException {
+		if (parameters == null)
+			throw new IllegalArgumentException("parameters is null");
+		if (out == null)
+			throw new IllegalArgumentException("out is null");
+		boolean first = true;
+		for (Map.Entry<String, ?> parameter : parameters.entrySet()) {
+			if (this.encodeParameter(parameter.getKey(), parameter.getValue(), serializersMappings, first, out))
+				first = false;
+		}
+	}
+
+	/**
+	 * Appends a single key=value pair, preceded by '&' unless first.
+	 * 
+	 * @return false if the parameter was skipped for its null value
+	 */
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	private boolean encodeParameter(String key, Object value, Map<String, Serializer> serializersMappings, boolean first, Appendable out) throws IOException {
+		if (value == null)
+			return false;
+		// invocation specific serializers override global ones
+		Serializer serializer = serializersMappings != null ? serializersMappings.get(key) : null;
+		if (serializer == null)
+			serializer = this.globalSerializerMappings.get(key);
+		CharSequence encodedValue = serializer != null ? serializer.serialize(value) : null;
+		if (encodedValue == null)
+			encodedValue = value instanceof CharSequence ? (CharSequence) value : value.toString();
+		if (!first)
+			out.append('&');
+		percentEncode(key, out);
+		out.append('=');
+		percentEncode(encodedValue, out);
+		return true;
+	}
+
+	private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+	/**
+	 * Percent-encodes s as UTF-8 for application/x-www-form-urlencoded
+	 * payloads, with the same output as {@link java.net.URLEncoder}, in a
+	 * single pass. Runs of characters that need no encoding are appended as
+	 * they are.
+	 * 
+	 * @param s
+	 * @param out
+	 * @throws IOException
+	 */
+	public static void percentEncode(final CharSequence s, final Appendable out) throws IOException {
+		int length = s.length();
+		int start = 0;
+		for (int i = 0; i < length; i++) {
+			char c = s.charAt(i);
+			if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '-' || c == '.'
+					|| c == '_' || c == '*')
+				continue;
+			if (i > start)
+				out.append(s, start, i);
+			start = i + 1;
+			if (c == ' ') {
+				out.append('+');
+			} else if (c < 0x80) {
+				appendEscaped(c, out);
+			} else if (c < 0x800) {
+				appendEscaped(0xC0 | (c >> 6), out);
+				appendEscaped(0x80 | (c & 0x3F), out);
+			} else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+				int codePoint = Character.toCodePoint(c, s.charAt(++i));
+				start = i + 1;
+				appendEscaped(0xF0 | (codePoint >> 18), out);
+				appendEscaped(0x80 | ((codePoint >> 12) & 0x3F), out);
+				appendEscaped(0x80 | ((codePoint >> 6) & 0x3F), out);
+				appendEscaped(0x80 | (codePoint & 0x3F), out);
+			} else if (Character.isSurrogate(c)) {
+				// unpaired surrogates are not encodable and replaced like in URLEncoder
+				appendEscaped('?', out);
+			} else {
+				appendEscaped(0xE0 | (c >> 12), out);
+				appendEscaped(0x80 | ((c >> 6) & 0x3F), out);
+				appendEscaped(0x80 | (c & 0x3F), out);
+			}
+		}
+		if (length > start)
+			out.append(s, start, length);
+	}
+
+	private static void appendEscaped(int b, Appendable out) throws IOException {
+		out.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
 	}
 
 	public WwwFormUrlEncodedCodec() {
@@ -133,17 +264,104 @@ public class WwwFormUrlEncodedCodec {
 	public Stream<Tuple> decodeStream(final String encodedString) {
 		if(encodedString == null)
 			throw new IllegalArgumentException();
-		String decodedString = null;
-		try {
-			decodedString = URLDecoder.decode(encodedString, StandardCharsets.UTF_8.name());
-		} catch (UnsupportedEncodingException e) { throw new RuntimeException(e);}
-		return Stream.of(decodedString.split("&"))
-		.map((entry)->{ 
-			String[] kv = entry.split("=");
-			return new Tuple(kv[0], kv[1]);
-		});
+		List<Tuple> tuples = new ArrayList<>();
+		decode(encodedString, (key, value) -> tuples.add(new Tuple(key, value)));
+		return tuples.stream();
+	}
+
+	/**
+	 * Scans a www.form-encoded string once and passes each key-value pair, in
+	 * order, to consumer. Keys and values are percent-decoded as UTF-8 each on
+	 * its own, after the pair has been split, so that encoded '&amp;' and '='
+	 * are preserved. A key without '=' has an empty value. Empty pairs are
+	 * skipped.
+	 * 
+	 * @param encoded
+	 * @param consumer
+	 * @throws IllegalArgumentException if a percent escape is malformed
+	 */
+	public static void decode(final CharSequence encoded, final BiConsumer<String, String> consumer) {
+		if (encoded == null)
+			throw new IllegalArgumentException("encoded is null");
+		if (consumer == null)
+			throw new IllegalArgumentException("consumer is null");
+		int length = encoded.length();
+		int start = 0;
+		while (start < length) {
+			int end = start;
+			int separator = -1;
+			for (; end < length; end++) {
+				char c = encoded.charAt(end);
+				if (c == '&')
+					break;
+				if (c == '=' && separator < 0)
+					separator = end;
+			}
+			if (end > start) {
+				if (separator < 0)
+					consumer.accept(percentDecode(encoded, start, end), "");
+				else
+					consumer.accept(percentDecode(encoded, start, separator), percentDecode(encoded, separator + 1, end));
+			}
+			start = end + 1;
+		}
 	}
 
+	/**
+	 * Percent-decodes the characters of s between start (inclusive) and end
+	 * (exclusive) as UTF-8, with '+' decoded as space. Ranges without escapes
+	 * are returned as they are.
+	 * 
+	 * @throws IllegalArgumentException if a percent escape is malformed
+	 */
+	public static String percentDecode(final CharSequence s, final int start, final int end) {
+		int i = start;
+		while (i < end) {
+			char c = s.charAt(i);
+			if (c == '%' || c == '+')
+				break;
+			i++;
+		}
+		if (i == end)
+			return s.subSequence(start, end).toString();
+		StringBuilder sb = new StringBuilder(end - start);
+		sb.append(s, start, i);
+		byte[] bytes = null;
+		while (i < end) {
+			char c = s.charAt(i);
+			if (c == '+') {
+				sb.append(' ');
+				i++;
+			} else if (c == '%') {
+				// a run of escapes is decoded together, as it may encode a multi-byte sequence
+				if (bytes == null)
+					bytes = new byte[(end - i) / 3];
+				int count = 0;
+				while (i < end && s.charAt(i) == '%') {
+					if (i + 2 >= end)
+						throw new IllegalArgumentException("Incomplete percent escape at position " + i);
+					int hi = Character.digit(s.charAt(i + 1), 16);
+					int lo = Character.digit(s.charAt(i + 2), 16);
+					if (hi < 0 || lo < 0)
+						throw new IllegalArgumentException("Illegal hex characters in percent escape at position " + i);
+					bytes[count++] = (byte) ((hi << 4) | lo);
+					i += 3;
+				}
+				sb.append(new String(bytes, 0, count, StandardCharsets.UTF_8));
+			} else {
+				sb.append(c);
+				i++;
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * @deprecated no longer used. Deserializers are looked up per parameter by
+	 *             {@link #from(String, Map, Map)}, without merging the
+	 *             mappings.
+	 */
+	@Deprecated
 	@SuppressWarnings("rawtypes")
 	protected Map<String,Deserializer> resolveDeserializerMappings(Map<String, Deserializer> deserializersMappings) {
 		//resolve mappings to use. We start with globals if any, then override them with specifically provided as argument in this method if any
@@ -159,6 +377,10 @@ public class WwwFormUrlEncodedCodec {
 		return mappings;
 	}
 
+	/**
+	 * @deprecated no longer used. Use {@link #from(String, Map, Map)}.
+	 */
+	@Deprecated
 	protected Object decodeEntry(Tuple tuple, @SuppressWarnings("rawtypes") final Map<String, Deserializer> deserializersMappings) {
 		Object result = deserializersMappings.entrySet().stream()
 							.filter(entry -> tuple.getKey().equals(entry.getKey()))
@@ -174,13 +396,33 @@ public class WwwFormUrlEncodedCodec {
 	}
 
 	public Map<String, ?> from(final String encodedString, @SuppressWarnings("rawtypes") final Map<String, Deserializer> deserializersMappings) {
-		@SuppressWarnings("rawtypes")
-		final Map<String, Deserializer> mappings = resolveDeserializerMappings(deserializersMappings);
-		Map<String, ?> parameters = this.decodeStream(encodedString)
-		.collect(Collectors.toMap(Tuple::getKey, (tuple)-> {
-			return decodeEntry(tuple, mappings);
-		}));
+		if(encodedString == null)
+			throw new IllegalArgumentException();
+		Map<String, Object> parameters = new HashMap<>();
+		this.from(encodedString, deserializersMappings, parameters);
 		return parameters;
 	}
 
+	/**
+	 * Decodes a www.form-encoded string into the parameters map. Values are
+	 * deserialized with the deserializer mapped to their key, if any, or kept
+	 * as strings otherwise. A repeated key overrides earlier ones.
+	 * 
+	 * @param encodedString
+	 * @param deserializersMappings deserializers overriding the globally registered ones for this invocation. Optional.
+	 * @param parameters the map to put the decoded parameters in
+	 */
+	@SuppressWarnings("rawtypes")
+	public void from(final String encodedString, final Map<String, Deserializer> deserializersMappings, final Map<String, Object> parameters) {
+		if (parameters == null)
+			throw new IllegalArgumentException("parameters is null");
+		decode(encodedString, (key, value) -> {
+			Deserializer deserializer = deserializersMappings != null ? deserializersMappings.get(key) : null;
+			if (deserializer == null)
+				deserializer = this.globalDeseralizerMappings.get(key);
+			Object result = deserializer != null ? deserializer.deserialize(value) : null;
+			parameters.put(key, result != null ? result : value);
+		});
+	}
+
 }
\ No newline at end of file
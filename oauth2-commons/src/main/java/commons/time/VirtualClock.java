@@ -0,0 +1,117 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+package commons.time;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+
+/**
+ * A {@link Clock} whose time moves only when told to, for deterministic tests
+ * and simulations of time dependent code. Clocks derived with
+ * {@link #withZone(ZoneId)} share the time of this clock.
+ * <p>
+ * Thread-safe.
+ * </p>
+ * 
+ * @see VirtualScheduler
+ */
+public final class VirtualClock extends Clock {
+
+	/**
+	 * The current time, shared with the clocks derived in other zones
+	 */
+	private static final class Time {
+		volatile Instant now;
+	}
+
+	private final Time time;
+	private final ZoneId zone;
+
+	/**
+	 * @param start
+	 *            the initial time of this clock
+	 */
+	public VirtualClock(Instant start) {
+		this(start, ZoneOffset.UTC);
+	}
+
+	public VirtualClock(Instant start, ZoneId zone) {
+		if (start == null)
+			throw new IllegalArgumentException("start is null");
+		if (zone == null)
+			throw new IllegalArgumentException("zone is null");
+		this.time = new Time();
+		this.time.now = start;
+		this.zone = zone;
+	}
+
+	private VirtualClock(Time time, ZoneId zone) {
+		this.time = time;
+		this.zone = zone;
+	}
+
+	@Override
+	public ZoneId getZone() {
+		return this.zone;
+	}
+
+	@Override
+	public VirtualClock withZone(ZoneId zone) {
+		if (zone == null)
+			throw new IllegalArgumentException("zone is null");
+		return new VirtualClock(this.time, zone);
+	}
+
+	@Override
+	public Instant instant() {
+		return this.time.now;
+	}
+
+	/**
+	 * Moves the time of this clock forward.
+	 * 
+	 * @param duration
+	 *            a non-negative duration
+	 * @return the new time
+	 */
+	public Instant advance(Duration duration) {
+		if (duration == null)
+			throw new IllegalArgumentException("duration is null");
+		if (duration.isNegative())
+			throw new IllegalArgumentException("duration is negative");
+		synchronized (this.time) {
+			this.time.now = this.time.now.plus(duration);
+			return this.time.now;
+		}
+	}
+
+	/**
+	 * Sets the time of this clock. Time does not go backwards.
+	 * 
+	 * @param instant
+	 *            a moment not before the current time
+	 */
+	public void set(Instant instant) {
+		if (instant == null)
+			throw new IllegalArgumentException("instant is null");
+		synchronized (this.time) {
+			if (instant.isBefore(this.time.now))
+				throw new IllegalArgumentException("Cannot set the time back from " + this.time.now + " to " + instant);
+			this.time.now = instant;
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "VirtualClock[" + this.time.now + "," + this.zone + "]";
+	}
+
+}
@@ -0,0 +1,357 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+package commons.time;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RunnableScheduledFuture;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A {@link ScheduledExecutorService} running its tasks in virtual time, on the
+ * thread that advances a {@link VirtualClock}. Nothing runs until
+ * {@link #advance(Duration)}, {@link #runDueTasks()} or {@link #runNext()} is
+ * invoked. Tasks due at the same moment run in the order they were scheduled,
+ * which makes runs of time dependent code fully deterministic and independent
+ * of the wall clock, e.g. in unit tests or in discrete-event simulations.
+ * <p>
+ * Tasks take no virtual time to run. Fixed rate and fixed delay schedules are
+ * therefore equivalent, unless a task advances the clock itself.
+ * </p>
+ * <p>
+ * Blocking on a future that is not done with {@link ScheduledFuture#get()}
+ * runs the due tasks and, if the future is still not done, fails with
+ * {@link IllegalStateException} instead of waiting for time that never comes.
+ * </p>
+ * Thread-safe, though tasks are run with the scheduler locked.
+ */
+public class VirtualScheduler extends AbstractExecutorService implements ScheduledExecutorService {
+
+	private final VirtualClock clock;
+	private final PriorityQueue<VirtualTask<?>> queue = new PriorityQueue<>();
+	private long sequence;
+	private boolean shutdown;
+
+	/**
+	 * @param clock
+	 *            the clock this scheduler advances when running tasks
+	 */
+	public VirtualScheduler(VirtualClock clock) {
+		if (clock == null)
+			throw new IllegalArgumentException("clock is null");
+		this.clock = clock;
+	}
+
+	/**
+	 * Creates a scheduler with its own clock starting at the supplied moment.
+	 * 
+	 * @param start
+	 */
+	public VirtualScheduler(Instant start) {
+		this(new VirtualClock(start));
+	}
+
+	public VirtualClock clock() {
+		return this.clock;
+	}
+
+	@Override
+	public ScheduledFuture<?> schedule(Runnable command, long delay, TimeUnit unit) {
+		if (command == null)
+			throw new NullPointerException("command is null");
+		return this.enqueue(new VirtualTask<Void>(Executors.callable(command, null), this.due(delay, unit), 0));
+	}
+
+	@Override
+	public <V> ScheduledFuture<V> schedule(Callable<V> callable, long delay, TimeUnit unit) {
+		if (callable == null)
+			throw new NullPointerException("callable is null");
+		return this.enqueue(new VirtualTask<V>(callable, this.due(delay, unit), 0));
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleAtFixedRate(Runnable command, long initialDelay, long period, TimeUnit unit) {
+		if (command == null)
+			throw new NullPointerException("command is null");
+		if (period <= 0)
+			throw new IllegalArgumentException("period must be positive");
+		return this.enqueue(new VirtualTask<Void>(Executors.callable(command, null), this.due(initialDelay, unit),
+				unit.toNanos(period)));
+	}
+
+	@Override
+	public ScheduledFuture<?> scheduleWithFixedDelay(Runnable command, long initialDelay, long delay, TimeUnit unit) {
+		if (command == null)
+			throw new NullPointerException("command is null");
+		if (delay <= 0)
+			throw new IllegalArgumentException("delay must be positive");
+		return this.enqueue(new VirtualTask<Void>(Executors.callable(command, null), this.due(initialDelay, unit),
+				-unit.toNanos(delay)));
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		this.schedule(command, 0, TimeUnit.NANOSECONDS);
+	}
+
+	/**
+	 * Runs the earliest scheduled task, moving the clock forward to the moment
+	 * it is due if that is in the future.
+	 * 
+	 * @return false if there was no task to run
+	 */
+	public synchronized boolean runNext() {
+		VirtualTask<?> task = this.queue.poll();
+		if (task == null)
+			return false;
+		if (task.due.isAfter(this.clock.instant()))
+			this.clock.set(task.due);
+		task.run();
+		return true;
+	}
+
+	/**
+	 * Runs all tasks that are due at the current time, including those they
+	 * schedule without delay, without moving the clock.
+	 * 
+	 * @return the number of tasks run
+	 */
+	public synchronized int runDueTasks() {
+		int count = 0;
+		VirtualTask<?> task;
+		while ((task = this.queue.peek()) != null && !task.due.isAfter(this.clock.instant())) {
+			this.runNext();
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Moves the clock forward by the supplied duration, running the tasks that
+	 * fall due on the way at the moments they are due.
+	 * 
+	 * @param duration
+	 *            a non-negative duration
+	 * @return the number of tasks run
+	 */
+	public synchronized int advance(Duration duration) {
+		if (duration == null)
+			throw new IllegalArgumentException("duration is null");
+		if (duration.isNegative())
+			throw new IllegalArgumentException("duration is negative");
+		return this.advanceTo(this.clock.instant().plus(duration));
+	}
+
+	public int advance(long duration, TimeUnit unit) {
+		return this.advance(Duration.ofNanos(unit.toNanos(duration)));
+	}
+
+	/**
+	 * Moves the clock forward to the supplied moment, running the tasks that
+	 * fall due on the way at the moments they are due.
+	 * 
+	 * @param instant
+	 *            a moment not before the current time
+	 * @return the number of tasks run
+	 */
+	public synchronized int advanceTo(Instant instant) {
+		if (instant == null)
+			throw new IllegalArgumentException("instant is null");
+		int count = 0;
+		VirtualTask<?> task;
+		while ((task = this.queue.peek()) != null && !task.due.isAfter(instant)) {
+			this.runNext();
+			count++;
+		}
+		this.clock.set(instant);
+		return count;
+	}
+
+	/**
+	 * @return the moment the earliest scheduled task is due, or null if there
+	 *         are no scheduled tasks
+	 */
+	public synchronized Instant nextDue() {
+		VirtualTask<?> task = this.queue.peek();
+		return task != null ? task.due : null;
+	}
+
+	/**
+	 * @return the number of scheduled tasks
+	 */
+	public synchronized int size() {
+		return this.queue.size();
+	}
+
+	/**
+	 * Cancels the periodic tasks. One-shot tasks remain scheduled and run when
+	 * due.
+	 */
+	@Override
+	public synchronized void shutdown() {
+		this.shutdown = true;
+		Iterator<VirtualTask<?>> tasks = this.queue.iterator();
+		while (tasks.hasNext()) {
+			VirtualTask<?> task = tasks.next();
+			if (task.isPeriodic()) {
+				tasks.remove();
+				task.cancelled();
+			}
+		}
+	}
+
+	@Override
+	public synchronized List<Runnable> shutdownNow() {
+		this.shutdown = true;
+		List<Runnable> pending = new ArrayList<>(this.queue);
+		this.queue.clear();
+		for (Runnable task : pending)
+			((VirtualTask<?>) task).cancelled();
+		return pending;
+	}
+
+	@Override
+	public synchronized boolean isShutdown() {
+		return this.shutdown;
+	}
+
+	@Override
+	public synchronized boolean isTerminated() {
+		return this.shutdown && this.queue.isEmpty();
+	}
+
+	/**
+	 * Does not wait. Virtual time passes only when advanced.
+	 */
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) {
+		return this.isTerminated();
+	}
+
+	private Instant due(long delay, TimeUnit unit) {
+		if (unit == null)
+			throw new NullPointerException("unit is null");
+		return this.clock.instant().plusNanos(Math.max(0, unit.toNanos(delay)));
+	}
+
+	private synchronized <V> VirtualTask<V> enqueue(VirtualTask<V> task) {
+		if (this.shutdown)
+			throw new RejectedExecutionException("Scheduler is shut down");
+		task.sequence = this.sequence++;
+		this.queue.add(task);
+		return task;
+	}
+
+	private synchronized void reschedule(VirtualTask<?> task) {
+		if (this.shutdown || task.isCancelled())
+			return;
+		task.due = task.period > 0 ? task.due.plusNanos(task.period) : this.clock.instant().plusNanos(-task.period);
+		task.sequence = this.sequence++;
+		this.queue.add(task);
+	}
+
+	private synchronized void remove(VirtualTask<?> task) {
+		this.queue.remove(task);
+	}
+
+	final class VirtualTask<V> extends FutureTask<V> implements RunnableScheduledFuture<V> {
+
+		/**
+		 * Positive for fixed rate, negative for fixed delay and zero for
+		 * one-shot tasks, in nanoseconds
+		 */
+		final long period;
+		Instant due;
+		long sequence;
+
+		VirtualTask(Callable<V> callable, Instant due, long period) {
+			super(callable);
+			this.due = due;
+			this.period = period;
+		}
+
+		@Override
+		public boolean isPeriodic() {
+			return this.period != 0;
+		}
+
+		@Override
+		public long getDelay(TimeUnit unit) {
+			return unit.convert(Duration.between(VirtualScheduler.this.clock.instant(), this.due).toNanos(),
+					TimeUnit.NANOSECONDS);
+		}
+
+		@Override
+		public int compareTo(Delayed other) {
+			if (other == this)
+				return 0;
+			if (other instanceof VirtualTask) {
+				VirtualTask<?> task = (VirtualTask<?>) other;
+				int c = this.due.compareTo(task.due);
+				return c != 0 ? c : Long.compare(this.sequence, task.sequence);
+			}
+			return Long.compare(this.getDelay(TimeUnit.NANOSECONDS), other.getDelay(TimeUnit.NANOSECONDS));
+		}
+
+		@Override
+		public void run() {
+			if (!this.isPeriodic())
+				super.run();
+			else if (super.runAndReset())
+				VirtualScheduler.this.reschedule(this);
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			boolean cancelled = super.cancel(mayInterruptIfRunning);
+			if (cancelled)
+				VirtualScheduler.this.remove(this);
+			return cancelled;
+		}
+
+		void cancelled() {
+			super.cancel(false);
+		}
+
+		@Override
+		public V get() throws InterruptedException, ExecutionException {
+			this.awaitDue();
+			return super.get();
+		}
+
+		@Override
+		public V get(long timeout, TimeUnit unit) throws InterruptedException, ExecutionException, TimeoutException {
+			this.awaitDue();
+			return super.get(timeout, unit);
+		}
+
+		private void awaitDue() {
+			if (!this.isDone())
+				VirtualScheduler.this.runDueTasks();
+			if (!this.isDone())
+				throw new IllegalStateException("Task due at " + this.due + " has not run by "
+						+ VirtualScheduler.this.clock.instant() + ". Advance the scheduler first");
+		}
+
+	}
+
+}
@@ -0,0 +1,124 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+package commons.http;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringWriter;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class WwwFormUrlEncodedCodecTest {
+
+	@Test
+	public void testPercentEncodeLikeURLEncoder() throws Exception {
+		String[] inputs = { "", "plain", "a b", "a&b=c+d", "50%", "~!*'()", "/?#[]@", "\u00e9\u00fc", "\u20ac",
+				"\ud83d\ude00", "\ud83d", "-._*" };
+		for (String input : inputs) {
+			StringBuilder sb = new StringBuilder();
+			WwwFormUrlEncodedCodec.percentEncode(input, sb);
+			assertEquals(input, URLEncoder.encode(input, "UTF-8"), sb.toString());
+		}
+	}
+
+	@Test
+	public void testEncodeParameters() {
+		WwwFormUrlEncodedCodec codec = new WwwFormUrlEncodedCodec().with("scope",
+				(WwwFormUrlEncodedCodec.Serializer<String[]>) value -> String.join(" ", value));
+		Map<String, Object> parameters = new LinkedHashMap<>();
+		parameters.put("skipped", null);
+		parameters.put("grant_type", "password");
+		parameters.put("pass word", "p&ss=w+rd");
+		parameters.put("scope", new String[] { "read", "write" });
+		parameters.put("expires_in", 3600);
+
+		String encoded = codec.encodeParameters(parameters, null);
+
+		assertEquals("grant_type=password&pass+word=p%26ss%3Dw%2Brd&scope=read+write&expires_in=3600", encoded);
+	}
+
+	@Test
+	public void testEncodeParametersSerializerOverride() throws Exception {
+		WwwFormUrlEncodedCodec codec = new WwwFormUrlEncodedCodec().with("scope",
+				(WwwFormUrlEncodedCodec.Serializer<String[]>) value -> String.join(" ", value));
+		Map<String, Object> parameters = new LinkedHashMap<>();
+		parameters.put("scope", new String[] { "read", "write" });
+		parameters.put("id", 1);
+		@SuppressWarnings("rawtypes")
+		Map<String, WwwFormUrlEncodedCodec.Serializer> overrides = new LinkedHashMap<>();
+		overrides.put("scope", (WwwFormUrlEncodedCodec.Serializer<String[]>) value -> String.join(",", value));
+
+		StringWriter out = new StringWriter();
+		codec.encodeParameters(parameters, overrides, out);
+
+		assertEquals("scope=read%2Cwrite&id=1", out.toString());
+	}
+
+	@Test
+	public void testEncodeStream() {
+		Map<String, Object> parameters = new LinkedHashMap<>();
+		parameters.put("a", "1 2");
+		parameters.put("b", null);
+		parameters.put("c", Arrays.asList("x"));
+
+		String encoded = new WwwFormUrlEncodedCodec().encodeStream(parameters.entrySet().stream(), null);
+
+		assertEquals("a=1+2&c=%5Bx%5D", encoded);
+	}
+
+	@Test
+	public void testDecodeEncodedSeparatorsAndEmptyValues() {
+		List<String> pairs = new ArrayList<>();
+		WwwFormUrlEncodedCodec.decode("a=p%26ss%3Dw%2Brd&&b=&c&d=x=y&e+f=%E2%82%AC+%F0%9F%98%80",
+				(key, value) -> pairs.add(key + "|" + value));
+
+		assertEquals(Arrays.asList("a|p&ss=w+rd", "b|", "c|", "d|x=y", "e f|\u20ac \ud83d\ude00"), pairs);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testDecodeMalformedEscape() {
+		WwwFormUrlEncodedCodec.decode("a=%2", (key, value) -> {
+		});
+	}
+
+	@Test
+	public void testRoundTrip() {
+		WwwFormUrlEncodedCodec codec = new WwwFormUrlEncodedCodec();
+		Map<String, Object> parameters = new HashMap<>();
+		parameters.put("client secret", "a&b=c+d%e \u00e9");
+		parameters.put("empty", "");
+
+		Map<String, ?> decoded = codec.from(codec.encodeParameters(parameters, null), null);
+
+		assertEquals(parameters, decoded);
+	}
+
+	@Test
+	public void testFromWithDeserializerOverride() {
+		WwwFormUrlEncodedCodec codec = new WwwFormUrlEncodedCodec().with("n",
+				(WwwFormUrlEncodedCodec.Deserializer<Integer>) Integer::valueOf);
+		@SuppressWarnings("rawtypes")
+		Map<String, WwwFormUrlEncodedCodec.Deserializer> overrides = new HashMap<>();
+		overrides.put("l", (WwwFormUrlEncodedCodec.Deserializer<Long>) Long::valueOf);
+		Map<String, Object> parameters = new HashMap<>();
+
+		codec.from("n=1&l=2&s=3", overrides, parameters);
+
+		assertEquals(1, parameters.get("n"));
+		assertEquals(2L, parameters.get("l"));
+		assertEquals("3", parameters.get("s"));
+	}
+
+}
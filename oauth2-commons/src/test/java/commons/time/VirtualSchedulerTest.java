@@ -0,0 +1,119 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+package commons.time;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class VirtualSchedulerTest {
+
+	final Instant start = Instant.parse("2017-01-01T00:00:00Z");
+	final VirtualScheduler scheduler = new VirtualScheduler(start);
+
+	@Test
+	public void testTasksRunInOrderOfDueTime() {
+		List<String> runs = new ArrayList<>();
+		scheduler.schedule(() -> runs.add("b"), 2, TimeUnit.SECONDS);
+		scheduler.schedule(() -> runs.add("a"), 1, TimeUnit.SECONDS);
+		scheduler.schedule(() -> runs.add("c"), 2, TimeUnit.SECONDS);
+
+		assertEquals(0, scheduler.advance(999, TimeUnit.MILLISECONDS));
+		assertEquals(1, scheduler.advance(1, TimeUnit.SECONDS));
+		assertEquals(0, scheduler.runDueTasks());
+		assertEquals(2, scheduler.advance(1, TimeUnit.MILLISECONDS));
+
+		assertEquals("[a, b, c]", runs.toString());
+		assertEquals(start.plusSeconds(2), scheduler.clock().instant());
+	}
+
+	@Test
+	public void testClockIsAtDueTimeWhenTaskRuns() {
+		List<Instant> runs = new ArrayList<>();
+		scheduler.scheduleAtFixedRate(() -> runs.add(scheduler.clock().instant()), 1, 3, TimeUnit.SECONDS);
+
+		assertEquals(3, scheduler.advance(Duration.ofSeconds(9)));
+
+		assertEquals("[" + start.plusSeconds(1) + ", " + start.plusSeconds(4) + ", " + start.plusSeconds(7) + "]",
+				runs.toString());
+		assertEquals(start.plusSeconds(9), scheduler.clock().instant());
+	}
+
+	@Test
+	public void testCancel() {
+		List<String> runs = new ArrayList<>();
+		ScheduledFuture<?> future = scheduler.scheduleWithFixedDelay(() -> runs.add("run"), 0, 1, TimeUnit.SECONDS);
+		scheduler.advance(1, TimeUnit.SECONDS);
+
+		assertTrue(future.cancel(false));
+		scheduler.advance(10, TimeUnit.SECONDS);
+
+		assertEquals(2, runs.size());
+		assertEquals(0, scheduler.size());
+	}
+
+	@Test
+	public void testGet() throws InterruptedException, ExecutionException {
+		ScheduledFuture<String> now = scheduler.schedule(() -> "now", 0, TimeUnit.SECONDS);
+		ScheduledFuture<String> later = scheduler.schedule(() -> "later", 1, TimeUnit.SECONDS);
+
+		assertEquals("now", now.get());
+		try {
+			later.get();
+			fail("IllegalStateException expected");
+		} catch (IllegalStateException e) {
+		}
+		assertEquals(1000, later.getDelay(TimeUnit.MILLISECONDS));
+	}
+
+	@Test
+	public void testShutdown() {
+		List<String> runs = new ArrayList<>();
+		scheduler.scheduleAtFixedRate(() -> runs.add("periodic"), 0, 1, TimeUnit.SECONDS);
+		scheduler.schedule(() -> runs.add("once"), 5, TimeUnit.SECONDS);
+		scheduler.runDueTasks();
+
+		scheduler.shutdown();
+		assertFalse(scheduler.isTerminated());
+		scheduler.advance(10, TimeUnit.SECONDS);
+
+		assertEquals("[periodic, once]", runs.toString());
+		assertTrue(scheduler.isTerminated());
+		try {
+			scheduler.execute(() -> runs.add("rejected"));
+			fail("RejectedExecutionException expected");
+		} catch (RejectedExecutionException e) {
+		}
+	}
+
+	@Test
+	public void testClockDoesNotGoBack() {
+		VirtualClock clock = scheduler.clock();
+		clock.advance(Duration.ofSeconds(1));
+		try {
+			clock.set(start);
+			fail("IllegalArgumentException expected");
+		} catch (IllegalArgumentException e) {
+		}
+		assertEquals(start.plusSeconds(1), clock.withZone(ZoneId.of("Europe/Sofia")).instant());
+	}
+
+}
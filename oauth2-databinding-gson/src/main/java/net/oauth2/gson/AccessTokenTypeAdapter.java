@@ -5,55 +5,113 @@
  * this distribution, and is available at 
  * https://github.com/tengia/oauth-2/blob/master/LICENSE
  */
+
 package net.oauth2.gson;
 
-import java.lang.reflect.Type;
-import java.util.Map;
+import java.io.IOException;
+import java.util.Collection;
 
 import com.google.gson.GsonBuilder;
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonParseException;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
-import com.google.gson.reflect.TypeToken;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 
 import net.oauth2.AccessToken;
+import net.oauth2.ScopeSet;
+import net.oauth2.TokenFactories;
+
+/**
+ * Streams access tokens from and to JSON with no intermediate tree or map.
+ * Unknown properties are skipped on read. Custom AccessToken subclasses are
+ * created with their {@link TokenFactories} factory.
+ */
+public class AccessTokenTypeAdapter extends TypeAdapter<AccessToken> {
+
+	private final Class<? extends AccessToken> tokenClass;
 
-public class AccessTokenTypeAdapter implements JsonSerializer<AccessToken>, JsonDeserializer<AccessToken> {
+	public AccessTokenTypeAdapter() {
+		this(AccessToken.class);
+	}
+
+	public AccessTokenTypeAdapter(Class<? extends AccessToken> tokenClass) {
+		if (tokenClass == null)
+			throw new IllegalArgumentException("tokenClass is null");
+		this.tokenClass = tokenClass;
+	}
 
 	public static final GsonBuilder REGISTER(GsonBuilder builder){
 		return builder.registerTypeAdapter(AccessToken.class, new AccessTokenTypeAdapter());
 	}
+
+	/**
+	 * Registers a type adapter for a custom AccessToken subclass.
+	 */
+	public static final GsonBuilder REGISTER(GsonBuilder builder, Class<? extends AccessToken> tokenClass){
+		return builder.registerTypeAdapter(tokenClass, new AccessTokenTypeAdapter(tokenClass));
+	}
 	
 	@Override
-	public AccessToken deserialize(JsonElement el, Type type, JsonDeserializationContext ctx) throws JsonParseException {
-		Type mapType = new TypeToken<Map<String, String>>() {}.getType();
-		Map<String, Object> map = ctx.deserialize(el, mapType);
-		if(map!=null){
-			if("".equals(map.get("scope"))){
-				map.put("scope", null);
+	public AccessToken read(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		String accessToken = null;
+		String tokenType = null;
+		long expiresIn = 0;
+		String refreshToken = null;
+		Collection<String> scopes = null;
+		in.beginObject();
+		while (in.hasNext()) {
+			String name = in.nextName();
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+				continue;
+			}
+			switch (name) {
+			case "access_token":
+				accessToken = in.nextString();
+				break;
+			case "token_type":
+				tokenType = in.nextString();
+				break;
+			case "expires_in":
+				expiresIn = in.nextLong();
+				break;
+			case "refresh_token":
+				refreshToken = in.nextString();
+				break;
+			case "scope":
+				scopes = ScopeSet.of(WhitespaceDelimitedCollectionTypeAdapterFactory.readDelimited(in));
+				break;
+			default:
+				in.skipValue();
 			}
-			return new AccessToken(map);
 		}
-		return null;
+		in.endObject();
+		return TokenFactories.token(this.tokenClass, accessToken, tokenType, expiresIn, refreshToken, scopes);
 	}
 
 	@Override
-	public JsonElement serialize(AccessToken token, Type type, JsonSerializationContext ctx) {
+	public void write(JsonWriter out, AccessToken token) throws IOException {
 		if (token == null) {
-			return null;
+			out.nullValue();
+			return;
 		}
-		Map<String, Object> map = null;
-		try {
-			map = token.map();
-		} catch (Exception e) {
-			throw new RuntimeException(e.getMessage(), e);
+		out.beginObject();
+		if (token.getAccessToken() != null)
+			out.name("access_token").value(token.getAccessToken());
+		if (token.getTokenType() != null)
+			out.name("token_type").value(token.getTokenType());
+		out.name("expires_in").value(token.getExpiresIn());
+		if (token.getRefreshToken() != null)
+			out.name("refresh_token").value(token.getRefreshToken());
+		if (token.getScopes() != null) {
+			out.name("scope");
+			WhitespaceDelimitedCollectionTypeAdapterFactory.writeDelimited(out, token.getScopes());
 		}
-		
-		Type mapType = new TypeToken<Map<String, String>>() {}.getType();
-		return ctx.serialize(map, mapType);
+		out.endObject();
 	}
 
 }
@@ -5,55 +5,94 @@
  * this distribution, and is available at 
  * https://github.com/tengia/oauth-2/blob/master/LICENSE
  */
+
 package net.oauth2.gson;
 
-import java.lang.reflect.Type;
+import java.io.IOException;
+import java.net.URI;
+import java.util.HashMap;
 import java.util.Map;
 
 import com.google.gson.GsonBuilder;
-import com.google.gson.JsonDeserializationContext;
-import com.google.gson.JsonDeserializer;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonParseException;
-import com.google.gson.JsonSerializationContext;
-import com.google.gson.JsonSerializer;
-import com.google.gson.reflect.TypeToken;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 
 import net.oauth2.ProtocolError;
 
-public class ProtocolErrorTypeAdapter implements JsonDeserializer<ProtocolError>, JsonSerializer<ProtocolError> {
+/**
+ * Streams OAuth protocol errors from and to JSON with no intermediate tree or
+ * map. Unknown properties are skipped on read.
+ */
+public class ProtocolErrorTypeAdapter extends TypeAdapter<ProtocolError> {
 
 	public static final GsonBuilder REGISTER(GsonBuilder builder){
 		return builder.registerTypeAdapter(ProtocolError.class, new ProtocolErrorTypeAdapter());
 	}
 	
 	@Override
-	public JsonElement serialize(ProtocolError err, Type type, JsonSerializationContext ctx) {
+	public void write(JsonWriter out, ProtocolError err) throws IOException {
 		if (err == null) {
-			return null;
-		}
-		Map<String, Object> map = null;
-		try {
-			map = err.map();
-		} catch (Exception e) {
-			throw new RuntimeException(e.getMessage(), e);
+			out.nullValue();
+			return;
 		}
-		
-		Type mapType = new TypeToken<Map<String, String>>() {}.getType();
-		return ctx.serialize(map, mapType);
+		out.beginObject();
+		if (err.getError() != null)
+			out.name("error").value(err.getError());
+		if (err.getDescription() != null)
+			out.name("error_description").value(err.getDescription());
+		if (err.getUri() != null)
+			out.name("error_uri").value(err.getUri().toString());
+		if (err.getState() != null)
+			out.name("state").value(err.getState());
+		out.endObject();
 	}
 
 	@Override
-	public ProtocolError deserialize(JsonElement el, Type type, JsonDeserializationContext ctx) throws JsonParseException {
-		Type mapType = new TypeToken<Map<String, String>>() {}.getType();
-		Map<String, Object> map = ctx.deserialize(el, mapType);
-		if(map!=null){
-			if("".equals(map.get("scope"))){
-				map.put("scope", null);
+	public ProtocolError read(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		String error = null;
+		String description = null;
+		URI uri = null;
+		String state = null;
+		in.beginObject();
+		while (in.hasNext()) {
+			String name = in.nextName();
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+				continue;
 			}
-			return new ProtocolError(map);
+			switch (name) {
+			case "error":
+				error = in.nextString();
+				break;
+			case "error_description":
+				description = in.nextString();
+				break;
+			case "error_uri":
+				uri = URI.create(in.nextString());
+				break;
+			case "state":
+				state = in.nextString();
+				break;
+			default:
+				in.skipValue();
+			}
+		}
+		in.endObject();
+		if (error == null) {
+			// tolerate non-compliant error payloads without the required error code
+			Map<String, Object> parameters = new HashMap<>();
+			parameters.put("error_description", description);
+			parameters.put("uri", uri);
+			parameters.put("state", state);
+			return new ProtocolError(parameters);
 		}
-		return null;
+		return new ProtocolError(error, description, uri, state);
 	}
 
 }
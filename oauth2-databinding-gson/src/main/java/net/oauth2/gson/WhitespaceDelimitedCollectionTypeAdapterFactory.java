@@ -5,94 +5,207 @@
  * this distribution, and is available at 
  * https://github.com/tengia/oauth-2/blob/master/LICENSE
  */
+
 package net.oauth2.gson;
 
 import java.io.IOException;
-import java.util.Arrays;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonElement;
 import com.google.gson.TypeAdapter;
 import com.google.gson.TypeAdapterFactory;
 import com.google.gson.reflect.TypeToken;
 import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 import com.google.gson.stream.JsonWriter;
 
-//https://stackoverflow.com/a/11272452
+/**
+ * Streams collections of strings from and to a single whitespace delimited
+ * JSON string, such as the OAuth "scope" property. A JSON array of strings is
+ * accepted on read as well.
+ * <p>
+ * Subclasses overriding the deprecated {@link #beforeWrite} or
+ * {@link #afterRead} hooks are served by a slower adapter going through a
+ * {@link JsonElement} tree, which calls them.
+ * </p>
+ */
 public class WhitespaceDelimitedCollectionTypeAdapterFactory<C extends Collection<String>> implements TypeAdapterFactory {
 
+	private static final char SP = ' ';
+
 	private final Class<?> customizedClass;
+	private final boolean hooked;
 
 	public WhitespaceDelimitedCollectionTypeAdapterFactory(Class<?> customizedClassType) {
 		this.customizedClass = customizedClassType;
+		this.hooked = this.overrides("beforeWrite", Collection.class, JsonElement.class, JsonWriter.class)
+				|| this.overrides("afterRead", JsonElement.class, Collection.class);
+	}
+
+	private boolean overrides(String name, Class<?>... parameterTypes) {
+		for (Class<?> c = this.getClass(); c != WhitespaceDelimitedCollectionTypeAdapterFactory.class; c = c.getSuperclass()) {
+			try {
+				c.getDeclaredMethod(name, parameterTypes);
+				return true;
+			} catch (NoSuchMethodException e) {
+				// not overridden on this level
+			}
+		}
+		return false;
 	}
 
 	@SuppressWarnings("unchecked") // we use a runtime check to guarantee that 'C' and 'T' are equal
 	public final <T> TypeAdapter<T> create(Gson gson, TypeToken<T> type) {
-		return type.getRawType() == customizedClass || customizedClass.isAssignableFrom(type.getRawType())
-				? (TypeAdapter<T>) customizeTypeAdapter(gson, (TypeToken<C>) type) : null;
+		if (type.getRawType() != customizedClass && !customizedClass.isAssignableFrom(type.getRawType()))
+			return null;
+		return (TypeAdapter<T>) (this.hooked ? hookedTypeAdapter(gson) : customizeTypeAdapter());
 	}
 
-	private TypeAdapter<C> customizeTypeAdapter(final Gson gson, TypeToken<C> type) {
-		final TypeAdapter<C> delegate = gson.getDelegateAdapter(this, type);
+	private TypeAdapter<C> customizeTypeAdapter() {
+		return new TypeAdapter<C>() {
+			@Override
+			public void write(JsonWriter out, C value) throws IOException {
+				if (value == null) {
+					out.nullValue();
+					return;
+				}
+				writeDelimited(out, value);
+			}
+
+			@SuppressWarnings("unchecked")
+			@Override
+			public C read(JsonReader in) throws IOException {
+				if (in.peek() == JsonToken.NULL) {
+					in.nextNull();
+					return null;
+				}
+				return (C) Collections.unmodifiableList(readDelimited(in));
+			}
+		};
+	}
+
+	private TypeAdapter<C> hookedTypeAdapter(Gson gson) {
 		final TypeAdapter<JsonElement> elementAdapter = gson.getAdapter(JsonElement.class);
 		return new TypeAdapter<C>() {
 			@Override
 			public void write(JsonWriter out, C value) throws IOException {
-				JsonElement tree = delegate.toJsonTree(value);
-				if(beforeWrite(value, tree, out)){
-					elementAdapter.write(out, tree);	
+				if (value == null) {
+					out.nullValue();
+					return;
 				}
+				JsonArray tree = new JsonArray();
+				for (String e : value)
+					tree.add(e);
+				if (beforeWrite(value, tree, out))
+					elementAdapter.write(out, tree);
 			}
 
+			@SuppressWarnings("unchecked")
 			@Override
 			public C read(JsonReader in) throws IOException {
-				
 				JsonElement tree = elementAdapter.read(in);
-				
-				String enumerationStr = tree.getAsString();
-				String[] enumerationArr = enumerationStr.split("\\s+");
-				@SuppressWarnings("unchecked")
-				C collection = (C) Collections.unmodifiableList(Arrays.asList(enumerationArr));
-				afterRead(tree, collection); 
-				return collection; 
+				if (tree.isJsonNull())
+					return null;
+				List<String> values = new ArrayList<>();
+				if (tree.isJsonArray()) {
+					for (JsonElement e : tree.getAsJsonArray())
+						values.add(e.getAsString());
+				} else
+					split(tree.getAsString(), values);
+				C collection = (C) Collections.unmodifiableList(values);
+				afterRead(tree, collection);
+				return collection;
 			}
 		};
 	}
 
-	private static final String SP = " ";
 	/**
-	 * Override this to muck with {@code toSerialize} before it is written to
-	 * the outgoing JSON stream.
+	 * Called before a collection is written, with the collection as a JSON
+	 * array. The default implementation writes the collection as a whitespace
+	 * delimited string itself.
+	 *
+	 * @return true to have {@code toSerialize} written, false if this method
+	 *         wrote the value
+	 * @deprecated overriding this method forces a slower, tree based adapter.
+	 *             Register a custom {@link TypeAdapter} instead.
 	 */
+	@Deprecated
 	protected boolean beforeWrite(C source, JsonElement toSerialize, JsonWriter out) {
-		final StringBuilder scopesBuilder = new StringBuilder();
-		source.stream().forEach((e) -> {
-			scopesBuilder.append(e).append(SP);
-		});
-		String scopeString = scopesBuilder.toString();
-		scopeString = scopeString.trim();
 		try {
-			out.value(scopeString);
+			writeDelimited(out, source);
 		} catch (IOException e) {
-			throw new RuntimeException(e);
-		}		
+			throw new UncheckedIOException(e);
+		}
 		return false;
 	}
 
 	/**
-	 * Override this to muck with {@code deserialized} before it parsed into the
-	 * application type.
-	 * @param collection 
+	 * Called after a collection is read. The default implementation does
+	 * nothing.
+	 *
+	 * @deprecated overriding this method forces a slower, tree based adapter.
+	 *             Register a custom {@link TypeAdapter} instead.
 	 */
+	@Deprecated
 	protected void afterRead(JsonElement deserialized, C collection) {
 	}
+
+	/**
+	 * Reads a whitespace delimited string, or an array of strings, splitting
+	 * the string by scanning it once.
+	 */
+	static List<String> readDelimited(JsonReader in) throws IOException {
+		List<String> values = new ArrayList<>();
+		if (in.peek() == JsonToken.BEGIN_ARRAY) {
+			in.beginArray();
+			while (in.hasNext())
+				values.add(in.nextString());
+			in.endArray();
+			return values;
+		}
+		split(in.nextString(), values);
+		return values;
+	}
+
+	private static void split(String delimited, List<String> values) {
+		int length = delimited.length();
+		int start = 0;
+		for (int i = 0; i <= length; i++) {
+			if (i == length || Character.isWhitespace(delimited.charAt(i))) {
+				if (i > start)
+					values.add(delimited.substring(start, i));
+				start = i + 1;
+			}
+		}
+	}
+
+	static void writeDelimited(JsonWriter out, Collection<String> values) throws IOException {
+		Iterator<String> it = values.iterator();
+		if (!it.hasNext()) {
+			out.value("");
+			return;
+		}
+		String first = it.next();
+		if (!it.hasNext()) {
+			out.value(first);
+			return;
+		}
+		StringBuilder sb = new StringBuilder(values.size() * 16).append(first);
+		while (it.hasNext())
+			sb.append(SP).append(it.next());
+		out.value(sb.toString());
+	}
 	
 	public static GsonBuilder REGISTER(GsonBuilder builder){
 		return builder.registerTypeAdapterFactory(new WhitespaceDelimitedCollectionTypeAdapterFactory<Collection<String>>(Collection.class));
 	}
 
-}
\ No newline at end of file
+}
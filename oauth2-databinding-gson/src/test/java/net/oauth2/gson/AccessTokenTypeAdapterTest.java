@@ -0,0 +1,75 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+
+package net.oauth2.gson;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.google.gson.Gson;
+
+import net.oauth2.AccessToken;
+import net.oauth2.ProtocolError;
+import net.oauth2.ScopeSet;
+
+public class AccessTokenTypeAdapterTest {
+
+	private final Gson gson = GsonDataBindingProvider.DEFAULT_BUILDER.create();
+
+	@Test
+	public void testRead() throws IOException {
+		String payload = "{\"access_token\": \"token\", \"nested\": {\"a\": [1, {\"b\": null}]}, \"expires_in\": 3600,"
+				+ " \"refresh_token\": null, \"scope\": \" a  b c\"}";
+		AccessToken token = new GsonDataBindingProvider().parseToken(payload, AccessToken.class);
+		assertEquals("token", token.getAccessToken());
+		assertEquals("Bearer", token.getTokenType());
+		assertEquals(3600L, token.getExpiresIn());
+		assertNull(token.getRefreshToken());
+		assertEquals(ScopeSet.of("a", "b", "c"), token.getScopes());
+	}
+
+	@Test
+	public void testReadScopeArrayAndEmptyScope() throws IOException {
+		AccessToken token = this.gson.fromJson("{\"access_token\": \"token\", \"scope\": [\"a\", \"b\"]}", AccessToken.class);
+		assertEquals(ScopeSet.of("a", "b"), token.getScopes());
+		token = this.gson.fromJson("{\"access_token\": \"token\", \"scope\": \"\"}", AccessToken.class);
+		assertEquals(ScopeSet.EMPTY, token.getScopes());
+		token = this.gson.fromJson("{\"access_token\": \"token\"}", AccessToken.class);
+		assertNull(token.getScopes());
+		token = this.gson.fromJson("{\"access_token\": \"token\", \"scope\": null}", AccessToken.class);
+		assertNull(token.getScopes());
+	}
+
+	@Test
+	public void testWrite() {
+		AccessToken token = new AccessToken("token", "bearer", 3600, null, Arrays.asList("a", "b"));
+		String json = this.gson.toJson(token);
+		assertEquals("{\"access_token\":\"token\",\"token_type\":\"bearer\",\"expires_in\":3600,\"scope\":\"a b\"}", json);
+		AccessToken parsed = this.gson.fromJson(json, AccessToken.class);
+		assertEquals(token.getAccessToken(), parsed.getAccessToken());
+		assertEquals(ScopeSet.of(token.getScopes()), parsed.getScopes());
+	}
+
+	@Test
+	public void testProtocolErrorRoundTrip() throws IOException {
+		ProtocolError error = new ProtocolError("invalid_scope", "descr", URI.create("https://example.com/e"), null);
+		String json = this.gson.toJson(error);
+		assertEquals("{\"error\":\"invalid_scope\",\"error_description\":\"descr\",\"error_uri\":\"https://example.com/e\"}", json);
+		ProtocolError parsed = new GsonDataBindingProvider().parseError(json, ProtocolError.class);
+		assertEquals("invalid_scope", parsed.getError());
+		assertEquals("descr", parsed.getDescription());
+		assertEquals(URI.create("https://example.com/e"), parsed.getUri());
+	}
+
+}
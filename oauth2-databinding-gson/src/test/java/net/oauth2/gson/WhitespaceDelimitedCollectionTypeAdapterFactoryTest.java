@@ -11,13 +11,16 @@ import static org.junit.Assert.assertEquals;
 
 import java.util.ArrayList;
 import java.util.Collection;
+import java.util.List;
 
 import org.junit.Before;
 import org.junit.Test;
 
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.JsonElement;
 import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonWriter;
 
 public class WhitespaceDelimitedCollectionTypeAdapterFactoryTest {
 
@@ -46,4 +49,40 @@ public class WhitespaceDelimitedCollectionTypeAdapterFactoryTest {
 		assertEquals(this.scopes, c);
 	} 
 
+	@Test
+	public void testDeserializationArray() {
+		String s = "[\"a\", \"b\", \"c\"]";
+		Collection<String> c = this.g.fromJson(s, new TypeToken<Collection<String>>(){}.getType());		
+		assertEquals(this.scopes, c);
+	} 
+
+	@Test
+	public void testDeserializationRepeatedWhitespace() {
+		String s = "\" a \\t b  c \"";
+		Collection<String> c = this.g.fromJson(s, new TypeToken<Collection<String>>(){}.getType());		
+		assertEquals(this.scopes, c);
+	} 
+
+	@SuppressWarnings("deprecation")
+	@Test
+	public void testDeprecatedHooks() {
+		List<JsonElement> read = new ArrayList<>();
+		Gson g = new GsonBuilder()
+				.registerTypeAdapterFactory(new WhitespaceDelimitedCollectionTypeAdapterFactory<Collection<String>>(Collection.class) {
+					@Override
+					protected boolean beforeWrite(Collection<String> source, JsonElement toSerialize, JsonWriter out) {
+						return true;
+					}
+
+					@Override
+					protected void afterRead(JsonElement deserialized, Collection<String> collection) {
+						read.add(deserialized);
+					}
+				}).create();
+		assertEquals("[\"a\",\"b\",\"c\"]", g.toJson(scopes));
+		Collection<String> c = g.fromJson("\" a \\t b  c \"", new TypeToken<Collection<String>>(){}.getType());
+		assertEquals(this.scopes, c);
+		assertEquals(" a \t b  c ", read.get(0).getAsString());
+	}
+
 }
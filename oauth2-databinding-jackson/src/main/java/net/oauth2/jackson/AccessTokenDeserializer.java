@@ -8,20 +8,35 @@
 package net.oauth2.jackson;
 
 import java.io.IOException;
+import java.nio.CharBuffer;
+import java.util.ArrayList;
 import java.util.Collection;
-import java.util.HashMap;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.JsonDeserializer;
 import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.databind.type.TypeFactory;
 
 import net.oauth2.AccessToken;
+import net.oauth2.ScopeSet;
+import net.oauth2.TokenFactories;
 
+/**
+ * Deserializes an access token directly from the JSON token stream into the
+ * AccessToken constructor, with no intermediate map. The whitespace delimited
+ * "scope" string is split in place from the parser text buffer into a
+ * {@link ScopeSet}. A JSON array of scopes is accepted too. Unknown properties
+ * are skipped. An object or array value of a known property other than scope
+ * is rejected.
+ * <p>
+ * Instances are stateless and thread-safe.
+ * </p>
+ */
 public class AccessTokenDeserializer extends StdDeserializer<AccessToken> {
 
 	private static final long serialVersionUID = 1L;
@@ -40,21 +55,96 @@ public class AccessTokenDeserializer extends StdDeserializer<AccessToken> {
 
 	@Override
 	public AccessToken deserialize(JsonParser p, DeserializationContext ctxt) throws IOException, JsonProcessingException {
-		HashMap<String, Object> map = p.readValueAs(new TypeReference<HashMap<String, Object>>() {});
-		if(map!=null){
-			if("".equals(map.get("scope"))){
-				map.put("scope", null);
+		JsonToken t = p.getCurrentToken();
+		if (t == JsonToken.START_OBJECT)
+			t = p.nextToken();
+		else if (t != JsonToken.FIELD_NAME && t != JsonToken.END_OBJECT)
+			return (AccessToken) ctxt.handleUnexpectedToken(AccessToken.class, p);
+		String accessToken = null;
+		String tokenType = null;
+		long expiresIn = 0;
+		String refreshToken = null;
+		Collection<String> scopes = null;
+		for (; t == JsonToken.FIELD_NAME; t = p.nextToken()) {
+			String name = p.getCurrentName();
+			JsonToken value = p.nextToken();
+			switch (name) {
+			case "access_token":
+				requireScalar(p, value, JsonToken.VALUE_STRING, ctxt);
+				accessToken = value == JsonToken.VALUE_NULL ? null : p.getValueAsString();
+				break;
+			case "token_type":
+				requireScalar(p, value, JsonToken.VALUE_STRING, ctxt);
+				tokenType = value == JsonToken.VALUE_NULL ? null : p.getValueAsString();
+				break;
+			case "expires_in":
+				requireScalar(p, value, JsonToken.VALUE_NUMBER_INT, ctxt);
+				expiresIn = p.getValueAsLong();
+				break;
+			case "refresh_token":
+				requireScalar(p, value, JsonToken.VALUE_STRING, ctxt);
+				refreshToken = value == JsonToken.VALUE_NULL ? null : p.getValueAsString();
+				break;
+			case "scope":
+				scopes = parseScope(p, value, ctxt);
+				break;
+			default:
+				p.skipChildren();
+			}
+		}
+		@SuppressWarnings("unchecked")
+		Class<? extends AccessToken> tokenClass = (Class<? extends AccessToken>) this.handledType();
+		return TokenFactories.token(tokenClass, accessToken, tokenType, expiresIn, refreshToken, scopes);
+	}
+
+	/**
+	 * Fails on an object or array value, which the scalar accessors would
+	 * silently read as a default and leave the parser inside of.
+	 */
+	private static void requireScalar(JsonParser p, JsonToken value, JsonToken expected, DeserializationContext ctxt)
+			throws IOException {
+		if (value.isStructStart())
+			ctxt.reportWrongTokenException(p, expected, "Unexpected %s for property \"%s\"", value,
+					p.getCurrentName());
+	}
+
+	private static Collection<String> parseScope(JsonParser p, JsonToken value, DeserializationContext ctxt) throws IOException {
+		if (value == JsonToken.VALUE_STRING)
+			return ScopeSet.parse(CharBuffer.wrap(p.getTextCharacters(), p.getTextOffset(), p.getTextLength()));
+		if (value == JsonToken.START_ARRAY) {
+			Collection<String> scopes = new ArrayList<>();
+			JsonToken t;
+			while ((t = p.nextToken()) != JsonToken.END_ARRAY) {
+				requireScalar(p, t, JsonToken.VALUE_STRING, ctxt);
+				String scope = p.getValueAsString();
+				if (scope != null)
+					scopes.add(scope);
 			}
-			return new AccessToken(map);
+			return ScopeSet.of(scopes);
 		}
+		if (value == JsonToken.VALUE_NULL)
+			return null;
+		ctxt.handleUnexpectedToken(Collection.class, p);
 		return null;
 	}
 
 	public static final SimpleModule REGISTER(SimpleModule module){
-		JavaType type = TypeFactory.defaultInstance().constructCollectionType(Collection.class, String.class);
+		JavaType type = TypeFactory.defaultInstance().constructSimpleType(AccessToken.class, null);
 		AccessTokenDeserializer deser = new AccessTokenDeserializer(type);		
 		module.addDeserializer(AccessToken.class, deser);
 		return module;
 	}
+
+	/**
+	 * Registers a deserializer for a custom AccessToken subclass, created with its
+	 * {@link TokenFactories} factory from the standard token payload properties.
+	 */
+	@SuppressWarnings("unchecked")
+	public static final <T extends AccessToken> SimpleModule REGISTER(SimpleModule module, Class<T> tokenClass){
+		JavaType type = TypeFactory.defaultInstance().constructSimpleType(tokenClass, null);
+		JsonDeserializer<?> deser = new AccessTokenDeserializer(type);
+		module.addDeserializer(tokenClass, (JsonDeserializer<T>) deser);
+		return module;
+	}
 	
 }
@@ -10,13 +10,14 @@ package net.oauth2.jackson;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Collections;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.DeserializationContext;
 import com.fasterxml.jackson.databind.JsonDeserializer;
 
+import net.oauth2.ScopeSet;
+
 public class CommaDelimitedScopeDeserializer extends JsonDeserializer<Collection<String>>{
 
 	@Override
@@ -27,8 +28,7 @@ public class CommaDelimitedScopeDeserializer extends JsonDeserializer<Collection
 		for (String entry : enumerationArr) {
 			enumList.add(entry.trim());
 		}
-		Collection<String> list = Collections.unmodifiableCollection(enumList);
-		return list;
+		return ScopeSet.of(enumList);
 	}
 	
 }
\ No newline at end of file
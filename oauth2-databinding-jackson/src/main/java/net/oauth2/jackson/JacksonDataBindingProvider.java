@@ -8,11 +8,14 @@
 package net.oauth2.jackson;
 
 import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 
 import net.oauth2.AccessToken;
 import net.oauth2.ProtocolError;
@@ -24,41 +27,78 @@ public class JacksonDataBindingProvider implements DataBindingProvider<ObjectMap
 			new ObjectMapper().configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false)
 					.configure(DeserializationFeature.ACCEPT_EMPTY_STRING_AS_NULL_OBJECT, true));
 	
-	private ObjectMapper mapper;
+	/**
+	 * The current mapper and its readers, replaced together so that a reader
+	 * is never paired with a mapper it was not created by.
+	 */
+	private volatile Binding binding;
 	
 	public JacksonDataBindingProvider() {
 		this(DEFAULT_MAPPER);
 	}
 	
 	public JacksonDataBindingProvider(final ObjectMapper mapper) {
-		this.mapper = mapper;
+		this.with(mapper);
 	}
 
 	@Override
 	public <T extends AccessToken> T parseToken(String payload, Class<T> tokenType) throws JsonParseException, JsonMappingException, IOException {
-		T token = (T) this.mapper.readValue(payload, tokenType);
+		T token = this.reader(tokenType).readValue(payload);
 		return token;
 	}
 
 	@Override
 	public <T extends ProtocolError> T parseError(String payload, Class<T> errorType) throws JsonParseException, JsonMappingException, IOException {
-		T error = (T) this.mapper.readValue(payload, errorType);
+		T error = this.reader(errorType).readValue(payload);
 		return error;
 	}
 
+	ObjectReader reader(Class<?> type) {
+		return this.binding.reader(type);
+	}
 	
 	@Override
 	public ObjectMapper raw() {
-		return this.mapper;
+		return this.binding.mapper;
 	}
 
 	@Override
 	public void with(ObjectMapper mapper) {
-		this.mapper = mapper;
+		if (mapper == null)
+			throw new IllegalArgumentException("mapper is null");
+		this.binding = new Binding(mapper);
 	}
 	
 	protected ObjectMapper getMapper() {
-		return mapper;
+		return this.binding.mapper;
+	}
+
+	/**
+	 * A mapper and the ObjectReaders created by it. ObjectReaders are
+	 * immutable and thread-safe, and resolve their root deserializer once, so
+	 * they are cached per type.
+	 */
+	private static final class Binding {
+
+		final ObjectMapper mapper;
+		final ConcurrentMap<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+
+		Binding(ObjectMapper mapper) {
+			this.mapper = mapper;
+			this.readers.put(AccessToken.class, mapper.readerFor(AccessToken.class));
+			this.readers.put(ProtocolError.class, mapper.readerFor(ProtocolError.class));
+		}
+
+		ObjectReader reader(Class<?> type) {
+			ObjectReader reader = this.readers.get(type);
+			if (reader == null) {
+				reader = this.mapper.readerFor(type);
+				ObjectReader existing = this.readers.putIfAbsent(type, reader);
+				if (existing != null)
+					reader = existing;
+			}
+			return reader;
+		}
 	}
 
 }
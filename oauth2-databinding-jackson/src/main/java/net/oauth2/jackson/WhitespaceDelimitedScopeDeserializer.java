@@ -8,9 +8,7 @@
 package net.oauth2.jackson;
 
 import java.io.IOException;
-import java.util.Arrays;
 import java.util.Collection;
-import java.util.Collections;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonProcessingException;
@@ -20,6 +18,8 @@ import com.fasterxml.jackson.databind.deser.std.StdDeserializer;
 import com.fasterxml.jackson.databind.module.SimpleModule;
 import com.fasterxml.jackson.databind.type.TypeFactory;
 
+import net.oauth2.ScopeSet;
+
 public class WhitespaceDelimitedScopeDeserializer extends StdDeserializer<Collection<String>>{
 	
 	private static final long serialVersionUID = 456504895806428666L;
@@ -34,10 +34,7 @@ public class WhitespaceDelimitedScopeDeserializer extends StdDeserializer<Collec
 
 	@Override
 	public Collection<String> deserialize(JsonParser parser, DeserializationContext ctxt)throws IOException, JsonProcessingException {
-		String enumerationStr = parser.getText();
-		String[] enumerationArr = enumerationStr.split("\\s+");
-		Collection<String> list = Collections.unmodifiableCollection(Arrays.asList(enumerationArr));
-		return list;
+		return ScopeSet.parse(parser.getText());
 	}
 	
 	public static final SimpleModule REGISTER(SimpleModule module){
@@ -7,14 +7,19 @@
  */
 package net.oauth2;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.Mockito.verify;
 
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Map;
 
 import org.junit.After;
 import org.junit.Before;
@@ -26,8 +31,12 @@ import org.mockito.runners.MockitoJUnitRunner;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.module.SimpleModule;
 
+import net.oauth2.jackson.AccessTokenDeserializer;
 import net.oauth2.jackson.CommaDelimitedScopeDeserializer;
+import net.oauth2.jackson.JacksonDataBindingProvider;
 import net.oauth2.jackson.WhitespaceDelimitedScopeDeserializer;
 
 @RunWith(MockitoJUnitRunner.class)
@@ -69,6 +78,69 @@ public class JacksonTest {
 		verify(this.parser).getText();
 	}
 	
+	@Test
+	public void testAccessTokenDeserializer() throws IOException {
+		String payload = "{\"access_token\": \"token\", \"nested\": {\"a\": [1, {\"b\": null}]}, \"expires_in\": 3600,"
+				+ " \"refresh_token\": \"refresh\", \"scope\": \" a  b c\", \"unknown\": [\"x\"]}";
+		AccessToken token = new JacksonDataBindingProvider().parseToken(payload, AccessToken.class);
+		assertEquals("token", token.getAccessToken());
+		assertEquals("Bearer", token.getTokenType());
+		assertEquals(3600L, token.getExpiresIn());
+		assertEquals("refresh", token.getRefreshToken());
+		assertEquals(this.scopes.size(), token.getScopes().size());
+		assertTrue(token.getScopes().containsAll(this.scopes));
+	}
+
+	@Test
+	public void testAccessTokenDeserializerScopeArray() throws IOException {
+		String payload = "{\"access_token\": \"token\", \"token_type\": \"mac\", \"scope\": [\"a\", \"b\"]}";
+		AccessToken token = new JacksonDataBindingProvider().parseToken(payload, AccessToken.class);
+		assertEquals("mac", token.getTokenType());
+		assertEquals(0L, token.getExpiresIn());
+		assertNull(token.getRefreshToken());
+		assertTrue(token.getScopes().containsAll(Arrays.asList("a", "b")));
+	}
+
+	@Test
+	public void testAccessTokenDeserializerEmptyScope() throws IOException {
+		String payload = "{\"access_token\": \"token\", \"scope\": \"\"}";
+		AccessToken token = new JacksonDataBindingProvider().parseToken(payload, AccessToken.class);
+		assertEquals(ScopeSet.EMPTY, token.getScopes());
+		token = new JacksonDataBindingProvider().parseToken("{\"access_token\": \"token\"}", AccessToken.class);
+		assertNull(token.getScopes());
+	}
+
+	@Test
+	public void testAccessTokenDeserializerRejectsNonScalar() {
+		String[] payloads = { "{\"access_token\": {\"token_type\": \"mac\"}, \"token_type\": \"Bearer\"}",
+				"{\"access_token\": \"token\", \"expires_in\": [60]}",
+				"{\"access_token\": \"token\", \"scope\": [\"a\", {\"b\": \"c\"}]}" };
+		for (String payload : payloads) {
+			try {
+				new JacksonDataBindingProvider().parseToken(payload, AccessToken.class);
+				fail("IOException expected for " + payload);
+			} catch (IOException e) {
+			}
+		}
+	}
+
+	public static class CustomToken extends AccessToken {
+		public CustomToken(Map<String, Object> map) {
+			super(map);
+		}
+	}
+
+	@Test
+	public void testAccessTokenDeserializerSubclass() throws IOException {
+		ObjectMapper mapper = new ObjectMapper()
+				.registerModule(AccessTokenDeserializer.REGISTER(new SimpleModule(), CustomToken.class));
+		String payload = "{\"access_token\": \"token\", \"expires_in\": 60, \"scope\": \"a b\"}";
+		CustomToken token = mapper.readValue(payload, CustomToken.class);
+		assertEquals("token", token.getAccessToken());
+		assertEquals(60L, token.getExpiresIn());
+		assertTrue(token.hasScope("b"));
+	}
+
 	@After
 	public void after() {
 		scopes.clear();
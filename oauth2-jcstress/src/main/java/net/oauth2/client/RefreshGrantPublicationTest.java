@@ -0,0 +1,69 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+package net.oauth2.client;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+import java.io.IOException;
+
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.I_Result;
+
+import net.oauth2.AccessToken;
+import net.oauth2.ClientCredentialsGrantRequest;
+import net.oauth2.RefreshTokenGrantRequest;
+
+/**
+ * A refresh replaces the refresh token grant of a
+ * {@link OAuthTokenServiceDelegate}, which the next renewal may read on
+ * another thread of a shared scheduler. It sees either grant, fully
+ * constructed.
+ */
+@JCStressTest
+@Outcome(id = "0", expect = ACCEPTABLE, desc = "The initial grant")
+@Outcome(id = "1", expect = ACCEPTABLE, desc = "The grant of the renewed token")
+@Outcome(expect = FORBIDDEN, desc = "No grant, or a grant not safely published")
+@State
+public class RefreshGrantPublicationTest {
+
+	final ClientCredentialsGrantRequest grant = new ClientCredentialsGrantRequest("client", "secret", null);
+	final OAuthTokenServiceDelegate<AccessToken> delegate = new OAuthTokenServiceDelegate<>(this.grant,
+			new Tokens.Client());
+
+	public RefreshGrantPublicationTest() {
+		this.delegate.setRefreshTokenGrantRequest(
+				RefreshTokenGrantRequest.renew(this.grant, "refresh-" + Tokens.INITIAL, null));
+	}
+
+	@Actor
+	public void refresh() {
+		try {
+			this.delegate.refresh("refresh-" + Tokens.INITIAL);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	@Actor
+	public void read(I_Result r) {
+		RefreshTokenGrantRequest grant = this.delegate.getRefreshTokenGrantRequest();
+		if (grant == null || !"client".equals(grant.getClientId()) || !"secret".equals(grant.getClientSecret()))
+			r.r1 = -2;
+		else if (("refresh-" + Tokens.INITIAL).equals(grant.getRefreshToken()))
+			r.r1 = 0;
+		else if (("refresh-" + Tokens.RENEWED).equals(grant.getRefreshToken()))
+			r.r1 = 1;
+		else
+			r.r1 = -2;
+	}
+
+}
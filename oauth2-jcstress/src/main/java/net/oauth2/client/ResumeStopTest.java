@@ -0,0 +1,61 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+package net.oauth2.client;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+import java.time.Instant;
+
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Arbiter;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.II_Result;
+
+import commons.time.VirtualScheduler;
+import commons.util.ObservableMixin;
+import net.oauth2.AccessToken;
+
+/**
+ * A provider is stopped while it resumes with a persisted token, the same as
+ * {@link StartStopTest}.
+ * <p>
+ * Results: the provider is active, the scheduler is shut down.
+ * </p>
+ */
+@JCStressTest
+@Outcome(id = "1, 0", expect = ACCEPTABLE, desc = "Stopped before resumed")
+@Outcome(id = "0, 1", expect = ACCEPTABLE, desc = "Stopped after resumed")
+@Outcome(expect = FORBIDDEN, desc = "Provider and scheduler disagree")
+@State
+public class ResumeStopTest {
+
+	final VirtualScheduler scheduler = new VirtualScheduler(Instant.EPOCH);
+	final AutoRenewingTokenProvider<AccessToken> provider = new AutoRenewingTokenProvider<AccessToken>(
+			new Tokens.Service(), this.scheduler, new NoRetryPolicy(), new ObservableMixin<>(), false)
+					.clock(this.scheduler.clock());
+
+	@Actor
+	public void resume() {
+		this.provider.resume(Tokens.token(Tokens.INITIAL), this.scheduler.clock().instant(), false);
+	}
+
+	@Actor
+	public void stop() {
+		this.provider.stop(false);
+	}
+
+	@Arbiter
+	public void arbiter(II_Result r) {
+		r.r1 = this.provider.isActive() ? 1 : 0;
+		r.r2 = this.scheduler.isShutdown() ? 1 : 0;
+	}
+
+}
@@ -0,0 +1,72 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+package net.oauth2.client;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+import java.time.Instant;
+
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.Arbiter;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.III_Result;
+
+import commons.time.VirtualScheduler;
+import commons.util.ObservableMixin;
+import net.oauth2.AccessToken;
+
+/**
+ * A provider is started and resumed at the same time. Exactly one of them
+ * succeeds and the other fails as already started, so that the provider has
+ * a single renewal job.
+ * <p>
+ * Results: start succeeded, resume succeeded, the number of scheduled
+ * renewal jobs.
+ * </p>
+ */
+@JCStressTest
+@Outcome(id = "1, 0, 1", expect = ACCEPTABLE, desc = "Started first")
+@Outcome(id = "0, 1, 1", expect = ACCEPTABLE, desc = "Resumed first")
+@Outcome(expect = FORBIDDEN, desc = "Both or none succeeded")
+@State
+public class StartResumeTest {
+
+	final VirtualScheduler scheduler = new VirtualScheduler(Instant.EPOCH);
+	final AutoRenewingTokenProvider<AccessToken> provider = new AutoRenewingTokenProvider<AccessToken>(
+			new Tokens.Service(), this.scheduler, new NoRetryPolicy(), new ObservableMixin<>(), false)
+					.clock(this.scheduler.clock());
+
+	@Actor
+	public void start(III_Result r) {
+		try {
+			this.provider.start(Tokens.token(Tokens.INITIAL), this.scheduler.clock().instant());
+			r.r1 = 1;
+		} catch (IllegalStateException e) {
+			r.r1 = 0;
+		}
+	}
+
+	@Actor
+	public void resume(III_Result r) {
+		try {
+			this.provider.resume(Tokens.token(Tokens.INITIAL), this.scheduler.clock().instant(), false);
+			r.r2 = 1;
+		} catch (IllegalStateException e) {
+			r.r2 = 0;
+		}
+	}
+
+	@Arbiter
+	public void arbiter(III_Result r) {
+		r.r3 = this.scheduler.size();
+	}
+
+}
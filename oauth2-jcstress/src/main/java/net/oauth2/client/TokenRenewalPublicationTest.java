@@ -0,0 +1,56 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+package net.oauth2.client;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+import java.time.Instant;
+
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.I_Result;
+
+import commons.time.VirtualScheduler;
+import commons.util.ObservableMixin;
+import net.oauth2.AccessToken;
+
+/**
+ * A renewal replaces the token of a provider while {@link TokenProvider#get()}
+ * readers use it. Readers see either token, fully constructed.
+ */
+@JCStressTest
+@Outcome(id = "0", expect = ACCEPTABLE, desc = "The initial token")
+@Outcome(id = "1", expect = ACCEPTABLE, desc = "The renewed token")
+@Outcome(expect = FORBIDDEN, desc = "No token, or a renewed token not safely published")
+@State
+public class TokenRenewalPublicationTest {
+
+	final VirtualScheduler scheduler = new VirtualScheduler(Instant.EPOCH);
+	final AutoRenewingTokenProvider<AccessToken> provider = new AutoRenewingTokenProvider<AccessToken>(
+			new Tokens.Service(), this.scheduler, new NoRetryPolicy(), new ObservableMixin<>(), false)
+					.clock(this.scheduler.clock());
+
+	public TokenRenewalPublicationTest() {
+		this.provider.start(Tokens.token(Tokens.INITIAL), this.scheduler.clock().instant());
+	}
+
+	@Actor
+	public void renew() {
+		// the renewal is the only task of the scheduler
+		this.scheduler.runNext();
+	}
+
+	@Actor
+	public void get(I_Result r) {
+		r.r1 = Tokens.observe(this.provider.get());
+	}
+
+}
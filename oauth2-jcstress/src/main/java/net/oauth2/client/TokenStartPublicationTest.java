@@ -0,0 +1,51 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+package net.oauth2.client;
+
+import static org.openjdk.jcstress.annotations.Expect.ACCEPTABLE;
+import static org.openjdk.jcstress.annotations.Expect.FORBIDDEN;
+
+import java.time.Instant;
+
+import org.openjdk.jcstress.annotations.Actor;
+import org.openjdk.jcstress.annotations.JCStressTest;
+import org.openjdk.jcstress.annotations.Outcome;
+import org.openjdk.jcstress.annotations.State;
+import org.openjdk.jcstress.infra.results.I_Result;
+
+import commons.time.VirtualScheduler;
+import commons.util.ObservableMixin;
+import net.oauth2.AccessToken;
+
+/**
+ * Starting a provider publishes its first token to {@link TokenProvider#get()}
+ * readers. Readers see no token before, and the complete token after.
+ */
+@JCStressTest
+@Outcome(id = "-1", expect = ACCEPTABLE, desc = "Not started yet")
+@Outcome(id = "1", expect = ACCEPTABLE, desc = "The first token")
+@Outcome(expect = FORBIDDEN, desc = "A first token not safely published")
+@State
+public class TokenStartPublicationTest {
+
+	final VirtualScheduler scheduler = new VirtualScheduler(Instant.EPOCH);
+	final AutoRenewingTokenProvider<AccessToken> provider = new AutoRenewingTokenProvider<AccessToken>(
+			new Tokens.Service(), this.scheduler, new NoRetryPolicy(), new ObservableMixin<>(), false)
+					.clock(this.scheduler.clock());
+
+	@Actor
+	public void start() {
+		this.provider.start(Tokens.token(Tokens.RENEWED), this.scheduler.clock().instant());
+	}
+
+	@Actor
+	public void get(I_Result r) {
+		r.r1 = Tokens.observe(this.provider.get());
+	}
+
+}
@@ -0,0 +1,82 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+package net.oauth2.client;
+
+import java.io.IOException;
+
+import net.oauth2.AccessToken;
+import net.oauth2.AccessTokenGrantRequest;
+import net.oauth2.client.http.TokenServiceHttpClient;
+
+/**
+ * Tokens, token services and token clients for the concurrency tests. Tokens
+ * are created by the thread that publishes them, so that a reader in another
+ * thread can observe them partially constructed if they are not safely
+ * published.
+ */
+final class Tokens {
+
+	static final String INITIAL = "initial";
+	static final String RENEWED = "renewed";
+
+	private Tokens() {
+	}
+
+	static AccessToken token(String name) {
+		return new AccessToken(name, "Bearer", 3600, "refresh-" + name, null);
+	}
+
+	/**
+	 * @return 0 for the initial token, 1 for a renewed one, -1 for no token
+	 *         and -2 for a token with fields not (yet) visible
+	 */
+	static int observe(AccessToken token) {
+		if (token == null)
+			return -1;
+		if (!"Bearer".equals(token.getTokenType()) || token.getExpiresIn() != 3600
+				|| token.getRefreshToken() == null)
+			return -2;
+		if (INITIAL.equals(token.getAccessToken()))
+			return 0;
+		if (RENEWED.equals(token.getAccessToken()))
+			return 1;
+		return -2;
+	}
+
+	/**
+	 * Issues a new renewed token for every request.
+	 */
+	static final class Service implements TokenService {
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public <T extends AccessToken> T fetch() throws OAuth2ProtocolException, IOException {
+			return (T) token(RENEWED);
+		}
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public <T extends AccessToken> T refresh(String refreshTokenString) throws OAuth2ProtocolException, IOException {
+			return (T) token(RENEWED);
+		}
+	}
+
+	/**
+	 * Answers every token request with a new renewed token.
+	 */
+	static final class Client implements TokenServiceHttpClient {
+
+		@SuppressWarnings("unchecked")
+		@Override
+		public <T extends AccessToken> T post(String path, AccessTokenGrantRequest payload)
+				throws IOException, OAuth2ProtocolException {
+			return (T) token(RENEWED);
+		}
+	}
+
+}
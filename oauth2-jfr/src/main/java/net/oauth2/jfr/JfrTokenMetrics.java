@@ -0,0 +1,275 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+package net.oauth2.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Timespan;
+import net.oauth2.client.TokenMetrics;
+
+/**
+ * A {@link TokenMetrics} implementation emitting JDK Flight Recorder events,
+ * so that token service stalls can be correlated with GC, safepoints and
+ * thread activity in a single recording.
+ * <p>
+ * Events are emitted for token fetches and refreshes, HTTP exchanges with the
+ * token service (with status and payload sizes), renewal retries with their
+ * backoff, observer notifications and the token lookups of resource request
+ * interceptors. They are grouped in the <i>OAuth 2.0</i> category and are
+ * recorded by any running recording unless disabled in its settings, e.g.
+ * with {@code net.oauth2.ResourceRequestAuthorization#enabled=false}. While
+ * no recording is running, {@link #isEnabled()} returns false and
+ * instrumented components take no measurements.
+ * </p>
+ * Token request and HTTP exchange events begin when the operation starts and
+ * are committed when it completes, so that their duration spans it: they line
+ * up with the GC and thread events of the same time, and the {@code threshold}
+ * setting of the recording applies to them. The other events are committed
+ * when an operation completes and carry its duration in their <i>elapsed</i>
+ * field only. Events are allocated only if enabled in a running recording.
+ * Requires a JVM with the {@code jdk.jfr} API (Java 11 or later, or Java 8u272
+ * or later).
+ */
+public class JfrTokenMetrics implements TokenMetrics {
+
+	static final String REFRESH_GRANT_TYPE = "refresh_token";
+
+	private static final EventType TOKEN_FETCH = EventType.getEventType(TokenFetchEvent.class);
+	private static final EventType TOKEN_REFRESH = EventType.getEventType(TokenRefreshEvent.class);
+	private static final EventType HTTP_EXCHANGE = EventType.getEventType(HttpExchangeEvent.class);
+	private static final EventType RENEWAL_RETRY = EventType.getEventType(RenewalRetryEvent.class);
+	private static final EventType OBSERVERS_NOTIFIED = EventType.getEventType(ObserversNotifiedEvent.class);
+	private static final EventType RESOURCE_REQUEST = EventType.getEventType(ResourceRequestEvent.class);
+	private static final EventType[] EVENT_TYPES = { TOKEN_FETCH, TOKEN_REFRESH, HTTP_EXCHANGE, RENEWAL_RETRY,
+			OBSERVERS_NOTIFIED, RESOURCE_REQUEST };
+
+	// the events begun by the started hooks, completed on the same thread
+	private final ThreadLocal<TokenRequestEvent> tokenRequests = new ThreadLocal<>();
+	private final ThreadLocal<HttpExchangeEvent> httpExchanges = new ThreadLocal<>();
+
+	public JfrTokenMetrics() {
+	}
+
+	@Override
+	public boolean isEnabled() {
+		for (EventType eventType : EVENT_TYPES) {
+			if (eventType.isEnabled())
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Token usage is not recorded as events, so providers can skip measuring
+	 * it.
+	 */
+	@Override
+	public boolean isTokenUsageEnabled() {
+		return false;
+	}
+
+	@Override
+	public void tokenRequestStarted(String clientId, String grantType) {
+		TokenRequestEvent event = newTokenRequestEvent(grantType);
+		if (event == null)
+			return;
+		event.begin();
+		this.tokenRequests.set(event);
+	}
+
+	@Override
+	public void tokenRequest(String clientId, String grantType, long durationNanos, Throwable failure) {
+		TokenRequestEvent event = this.tokenRequests.get();
+		if (event != null) {
+			this.tokenRequests.remove();
+			event.end();
+		} else {
+			// not begun by tokenRequestStarted, recorded without duration
+			event = newTokenRequestEvent(grantType);
+			if (event == null)
+				return;
+		}
+		if (!event.shouldCommit())
+			return;
+		event.clientId = clientId;
+		event.grantType = grantType;
+		event.elapsed = durationNanos;
+		event.failure = failure != null ? failure.getClass().getName() : null;
+		event.commit();
+	}
+
+	private static TokenRequestEvent newTokenRequestEvent(String grantType) {
+		if (REFRESH_GRANT_TYPE.equals(grantType))
+			return TOKEN_REFRESH.isEnabled() ? new TokenRefreshEvent() : null;
+		return TOKEN_FETCH.isEnabled() ? new TokenFetchEvent() : null;
+	}
+
+	@Override
+	public void httpExchangeStarted(String clientId, String grantType) {
+		if (!HTTP_EXCHANGE.isEnabled())
+			return;
+		HttpExchangeEvent event = new HttpExchangeEvent();
+		event.begin();
+		this.httpExchanges.set(event);
+	}
+
+	@Override
+	public void httpExchange(String clientId, String grantType, long durationNanos, int status, long requestSize,
+			long responseSize, Throwable failure) {
+		HttpExchangeEvent event = this.httpExchanges.get();
+		if (event != null) {
+			this.httpExchanges.remove();
+			event.end();
+		} else {
+			// not begun by httpExchangeStarted, recorded without duration
+			if (!HTTP_EXCHANGE.isEnabled())
+				return;
+			event = new HttpExchangeEvent();
+		}
+		if (!event.shouldCommit())
+			return;
+		event.clientId = clientId;
+		event.grantType = grantType;
+		event.elapsed = durationNanos;
+		event.status = status;
+		event.requestSize = requestSize;
+		event.responseSize = responseSize;
+		event.failure = failure != null ? failure.getClass().getName() : null;
+		event.commit();
+	}
+
+	@Override
+	public void renewalRetried(String clientId, long backoffNanos) {
+		if (!RENEWAL_RETRY.isEnabled())
+			return;
+		RenewalRetryEvent event = new RenewalRetryEvent();
+		event.clientId = clientId;
+		event.backoff = backoffNanos;
+		event.commit();
+	}
+
+	@Override
+	public void observersNotified(String clientId, long durationNanos) {
+		if (!OBSERVERS_NOTIFIED.isEnabled())
+			return;
+		ObserversNotifiedEvent event = new ObserversNotifiedEvent();
+		event.clientId = clientId;
+		event.elapsed = durationNanos;
+		event.commit();
+	}
+
+	@Override
+	public void resourceRequest(long durationNanos, boolean authorized) {
+		if (!RESOURCE_REQUEST.isEnabled())
+			return;
+		ResourceRequestEvent event = new ResourceRequestEvent();
+		event.elapsed = durationNanos;
+		event.authorized = authorized;
+		event.commit();
+	}
+
+	@Category("OAuth 2.0")
+	@StackTrace(false)
+	abstract static class TokenRequestEvent extends Event {
+		@Label("Client Id")
+		String clientId;
+		@Label("Grant Type")
+		String grantType;
+		@Label("Elapsed")
+		@Timespan
+		long elapsed;
+		@Label("Failure")
+		@Description("The class of the exception the request failed with")
+		String failure;
+	}
+
+	@Name("net.oauth2.TokenFetch")
+	@Label("Token Fetch")
+	@Description("A request for a new access token to the token service")
+	static final class TokenFetchEvent extends TokenRequestEvent {
+	}
+
+	@Name("net.oauth2.TokenRefresh")
+	@Label("Token Refresh")
+	@Description("A refresh token request to the token service")
+	static final class TokenRefreshEvent extends TokenRequestEvent {
+	}
+
+	@Name("net.oauth2.TokenHttpExchange")
+	@Label("Token HTTP Exchange")
+	@Description("A single HTTP exchange with a token service endpoint")
+	@Category("OAuth 2.0")
+	@StackTrace(false)
+	static final class HttpExchangeEvent extends Event {
+		@Label("Client Id")
+		String clientId;
+		@Label("Grant Type")
+		String grantType;
+		@Label("Elapsed")
+		@Timespan
+		long elapsed;
+		@Label("HTTP Status")
+		int status;
+		@Label("Request Size")
+		@Description("The length of the request payload in characters")
+		long requestSize;
+		@Label("Response Size")
+		@Description("The length of the response payload in characters")
+		long responseSize;
+		@Label("Failure")
+		@Description("The class of the exception the exchange failed with")
+		String failure;
+	}
+
+	@Name("net.oauth2.TokenRenewalRetry")
+	@Label("Token Renewal Retry")
+	@Description("A retry of a failed token renewal")
+	@Category("OAuth 2.0")
+	@StackTrace(false)
+	static final class RenewalRetryEvent extends Event {
+		@Label("Client Id")
+		String clientId;
+		@Label("Backoff")
+		@Description("The time waited before the retry")
+		@Timespan
+		long backoff;
+	}
+
+	@Name("net.oauth2.TokenObserversNotified")
+	@Label("Token Observers Notified")
+	@Description("The dispatch of a token change to the observers of a token provider")
+	@Category("OAuth 2.0")
+	@StackTrace(false)
+	static final class ObserversNotifiedEvent extends Event {
+		@Label("Client Id")
+		String clientId;
+		@Label("Elapsed")
+		@Timespan
+		long elapsed;
+	}
+
+	@Name("net.oauth2.ResourceRequestAuthorization")
+	@Label("Resource Request Authorization")
+	@Description("The token lookup of a resource request interceptor to inject the Authorization header")
+	@Category("OAuth 2.0")
+	@StackTrace(false)
+	static final class ResourceRequestEvent extends Event {
+		@Label("Elapsed")
+		@Timespan
+		long elapsed;
+		@Label("Authorized")
+		@Description("False if no token was available and the request was sent without authorization")
+		boolean authorized;
+	}
+
+}
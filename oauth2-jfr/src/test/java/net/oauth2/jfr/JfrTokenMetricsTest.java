@@ -0,0 +1,137 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+package net.oauth2.jfr;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class JfrTokenMetricsTest {
+
+	final JfrTokenMetrics metrics = new JfrTokenMetrics();
+
+	@Test
+	public void testDisabledWithoutRecording() {
+		assertFalse(metrics.isEnabled());
+	}
+
+	@Test
+	public void testEvents() throws IOException {
+		Path file = Files.createTempFile("oauth2", ".jfr");
+		try (Recording recording = new Recording()) {
+			recording.disable("net.oauth2.TokenObserversNotified");
+			recording.start();
+			assertTrue(metrics.isEnabled());
+			// token usage is not recorded as events
+			assertFalse(metrics.isTokenUsageEnabled());
+
+			metrics.tokenRequestStarted("client", "client_credentials");
+			metrics.httpExchangeStarted("client", "client_credentials");
+			sleep(20);
+			metrics.httpExchange("client", "client_credentials", TimeUnit.MILLISECONDS.toNanos(20), 200, 42, 512,
+					null);
+			sleep(10);
+			metrics.tokenRequest("client", "client_credentials", TimeUnit.MILLISECONDS.toNanos(30), null);
+			// without a started hook
+			metrics.tokenRequest("client", "refresh_token", 1, new IOException());
+			metrics.renewalRetried("client", TimeUnit.MILLISECONDS.toNanos(100));
+			// disabled in this recording
+			metrics.observersNotified("client", 1);
+
+			recording.stop();
+			recording.dump(file);
+		}
+		try {
+			List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+			assertEquals(4, events.size());
+
+			RecordedEvent fetch = event(events, "net.oauth2.TokenFetch");
+			assertEquals("client", fetch.getString("clientId"));
+			assertEquals("client_credentials", fetch.getString("grantType"));
+			assertEquals(30, fetch.getDuration("elapsed").toMillis());
+			assertNull(fetch.getString("failure"));
+
+			RecordedEvent refresh = event(events, "net.oauth2.TokenRefresh");
+			assertEquals(IOException.class.getName(), refresh.getString("failure"));
+
+			RecordedEvent exchange = event(events, "net.oauth2.TokenHttpExchange");
+			assertEquals(200, exchange.getInt("status"));
+			assertEquals(42, exchange.getLong("requestSize"));
+			assertEquals(512, exchange.getLong("responseSize"));
+
+			// the events span the operations, the exchange within the fetch
+			assertTrue(fetch.getDuration().toMillis() >= 30);
+			assertTrue(exchange.getDuration().toMillis() >= 20);
+			assertTrue(exchange.getDuration().compareTo(fetch.getDuration()) < 0);
+			assertTrue(!exchange.getStartTime().isBefore(fetch.getStartTime()));
+			assertTrue(!exchange.getEndTime().isAfter(fetch.getEndTime()));
+
+			RecordedEvent retry = event(events, "net.oauth2.TokenRenewalRetry");
+			assertEquals(100, retry.getDuration("backoff").toMillis());
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	@Test
+	public void testThreshold() throws IOException {
+		Path file = Files.createTempFile("oauth2", ".jfr");
+		try (Recording recording = new Recording()) {
+			recording.enable("net.oauth2.TokenFetch").withThreshold(Duration.ofMillis(50));
+			recording.start();
+
+			// below the threshold
+			metrics.tokenRequestStarted("client", "client_credentials");
+			metrics.tokenRequest("client", "client_credentials", 0, null);
+			metrics.tokenRequestStarted("client", "client_credentials");
+			sleep(60);
+			metrics.tokenRequest("client", "client_credentials", TimeUnit.MILLISECONDS.toNanos(60), null);
+
+			recording.stop();
+			recording.dump(file);
+		}
+		try {
+			List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+			assertEquals(1, events.size());
+			assertTrue(events.get(0).getDuration().toMillis() >= 60);
+		} finally {
+			Files.delete(file);
+		}
+	}
+
+	private static void sleep(long millis) {
+		try {
+			TimeUnit.MILLISECONDS.sleep(millis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	private static RecordedEvent event(List<RecordedEvent> events, String name) {
+		for (RecordedEvent event : events) {
+			if (event.getEventType().getName().equals(name))
+				return event;
+		}
+		throw new AssertionError("No event " + name);
+	}
+
+}
@@ -0,0 +1,202 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+package net.oauth2.metrics.micrometer;
+
+import java.time.Instant;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import net.oauth2.client.OAuth2ProtocolException;
+import net.oauth2.client.TokenMetrics;
+
+/**
+ * A {@link TokenMetrics} implementation recording to a Micrometer
+ * {@link MeterRegistry}.
+ * <p>
+ * Token requests and HTTP exchanges are recorded as timers tagged with client
+ * id, grant type and outcome (<i>success</i>, <i>protocol_error</i> or
+ * <i>error</i>). Provider metrics, such as renewal retries, observer dispatch
+ * time, token age at use and the time left until the current token expires,
+ * are tagged with client id. Meters are created on first use and cached.
+ * </p>
+ * <table summary="Meters">
+ * <tr><td>oauth2.token.requests</td><td>timer</td><td>client.id, grant.type, outcome</td></tr>
+ * <tr><td>oauth2.token.http</td><td>timer</td><td>client.id, grant.type, outcome</td></tr>
+ * <tr><td>oauth2.token.hedges</td><td>counter</td><td>client.id, grant.type</td></tr>
+ * <tr><td>oauth2.token.failovers</td><td>counter</td><td>client.id, grant.type</td></tr>
+ * <tr><td>oauth2.token.renewal.retries</td><td>counter</td><td>client.id</td></tr>
+ * <tr><td>oauth2.token.observers</td><td>timer</td><td>client.id</td></tr>
+ * <tr><td>oauth2.token.age</td><td>timer</td><td>client.id</td></tr>
+ * <tr><td>oauth2.token.ttl</td><td>gauge (seconds)</td><td>client.id</td></tr>
+ * <tr><td>oauth2.resource.requests</td><td>timer</td><td>authorized</td></tr>
+ * </table>
+ */
+public class MicrometerTokenMetrics implements TokenMetrics {
+
+	static final String UNKNOWN = "unknown";
+
+	private final MeterRegistry registry;
+	private final ConcurrentMap<String, GrantMeters> grantMeters = new ConcurrentHashMap<>();
+	private final ConcurrentMap<String, ClientMeters> clientMeters = new ConcurrentHashMap<>();
+	private final Timer authorizedResourceRequests;
+	private final Timer unauthorizedResourceRequests;
+
+	public MicrometerTokenMetrics(MeterRegistry registry) {
+		if (registry == null)
+			throw new IllegalArgumentException("registry is null");
+		this.registry = registry;
+		this.authorizedResourceRequests = Timer.builder("oauth2.resource.requests")
+				.description("Token lookups of resource request interceptors").tag("authorized", "true")
+				.register(registry);
+		this.unauthorizedResourceRequests = Timer.builder("oauth2.resource.requests")
+				.description("Token lookups of resource request interceptors").tag("authorized", "false")
+				.register(registry);
+	}
+
+	@Override
+	public void tokenRequest(String clientId, String grantType, long durationNanos, Throwable failure) {
+		GrantMeters meters = this.grantMeters(clientId, grantType);
+		meters.requests[outcome(failure)].record(durationNanos, TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public void httpExchange(String clientId, String grantType, long durationNanos, Throwable failure) {
+		GrantMeters meters = this.grantMeters(clientId, grantType);
+		meters.exchanges[outcome(failure)].record(durationNanos, TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public void hedged(String clientId, String grantType) {
+		this.grantMeters(clientId, grantType).hedges.increment();
+	}
+
+	@Override
+	public void failedOver(String clientId, String grantType) {
+		this.grantMeters(clientId, grantType).failovers.increment();
+	}
+
+	@Override
+	public void renewalRetried(String clientId, long backoffNanos) {
+		this.clientMeters(clientId).retries.increment();
+	}
+
+	@Override
+	public void observersNotified(String clientId, long durationNanos) {
+		this.clientMeters(clientId).observers.record(durationNanos, TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public void tokenChanged(String clientId, Instant expiresAt) {
+		this.clientMeters(clientId).expiresAtMillis = expiresAt != null ? expiresAt.toEpochMilli() : Long.MIN_VALUE;
+	}
+
+	@Override
+	public void tokenUsed(String clientId, long ageNanos, long ttlLeftNanos) {
+		this.clientMeters(clientId).age.record(ageNanos, TimeUnit.NANOSECONDS);
+	}
+
+	@Override
+	public void resourceRequest(long durationNanos, boolean authorized) {
+		(authorized ? this.authorizedResourceRequests : this.unauthorizedResourceRequests).record(durationNanos,
+				TimeUnit.NANOSECONDS);
+	}
+
+	private static int outcome(Throwable failure) {
+		if (failure == null)
+			return 0;
+		return failure instanceof OAuth2ProtocolException ? 1 : 2;
+	}
+
+	GrantMeters grantMeters(String clientId, String grantType) {
+		String client = clientId != null ? clientId : UNKNOWN;
+		String grant = grantType != null ? grantType : UNKNOWN;
+		String key = client + ' ' + grant;
+		GrantMeters meters = this.grantMeters.get(key);
+		if (meters == null)
+			meters = this.grantMeters.computeIfAbsent(key, k -> new GrantMeters(this.registry, client, grant));
+		return meters;
+	}
+
+	ClientMeters clientMeters(String clientId) {
+		String client = clientId != null ? clientId : UNKNOWN;
+		ClientMeters meters = this.clientMeters.get(client);
+		if (meters == null)
+			meters = this.clientMeters.computeIfAbsent(client, k -> new ClientMeters(this.registry, client));
+		return meters;
+	}
+
+	/**
+	 * The meters of the token requests of a client id and grant type.
+	 */
+	static final class GrantMeters {
+
+		private static final String[] OUTCOMES = { "success", "protocol_error", "error" };
+
+		final Timer[] requests = new Timer[OUTCOMES.length];
+		final Timer[] exchanges = new Timer[OUTCOMES.length];
+		final Counter hedges;
+		final Counter failovers;
+
+		GrantMeters(MeterRegistry registry, String clientId, String grantType) {
+			for (int i = 0; i < OUTCOMES.length; i++) {
+				this.requests[i] = Timer.builder("oauth2.token.requests").description("Token service requests")
+						.tag("client.id", clientId).tag("grant.type", grantType).tag("outcome", OUTCOMES[i])
+						.register(registry);
+				this.exchanges[i] = Timer.builder("oauth2.token.http")
+						.description("HTTP exchanges with token service endpoints").tag("client.id", clientId)
+						.tag("grant.type", grantType).tag("outcome", OUTCOMES[i]).register(registry);
+			}
+			this.hedges = Counter.builder("oauth2.token.hedges").description("Hedge token requests sent")
+					.tag("client.id", clientId).tag("grant.type", grantType).register(registry);
+			this.failovers = Counter.builder("oauth2.token.failovers")
+					.description("Token requests failed over to another endpoint").tag("client.id", clientId)
+					.tag("grant.type", grantType).register(registry);
+		}
+	}
+
+	/**
+	 * The meters of the token providers of a client id.
+	 */
+	static final class ClientMeters {
+
+		final Counter retries;
+		final Timer observers;
+		final Timer age;
+		volatile long expiresAtMillis = Long.MIN_VALUE;
+
+		ClientMeters(MeterRegistry registry, String clientId) {
+			this.retries = Counter.builder("oauth2.token.renewal.retries").description("Token renewal retries")
+					.tag("client.id", clientId).register(registry);
+			this.observers = Timer.builder("oauth2.token.observers")
+					.description("Dispatch of token changes to observers").tag("client.id", clientId)
+					.register(registry);
+			this.age = Timer.builder("oauth2.token.age").description("Age of tokens at the point of use")
+					.tag("client.id", clientId).register(registry);
+			Gauge.builder("oauth2.token.ttl", this, meters -> meters.ttlSeconds(registry.config().clock().wallTime()))
+					.description("Time left until the current token expires").tag("client.id", clientId)
+					.baseUnit("seconds").strongReference(true).register(registry);
+		}
+
+		/**
+		 * @return the seconds left until the current token expires, or NaN
+		 *         if there is no current token
+		 */
+		double ttlSeconds(long nowMillis) {
+			long expiresAtMillis = this.expiresAtMillis;
+			if (expiresAtMillis == Long.MIN_VALUE)
+				return Double.NaN;
+			return Math.max(expiresAtMillis - nowMillis, 0L) / 1000.0;
+		}
+	}
+
+}
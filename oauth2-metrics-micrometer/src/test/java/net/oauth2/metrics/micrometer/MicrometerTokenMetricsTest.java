@@ -0,0 +1,91 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+package net.oauth2.metrics.micrometer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.MockClock;
+import io.micrometer.core.instrument.simple.SimpleConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import net.oauth2.ProtocolError;
+import net.oauth2.client.OAuth2ProtocolException;
+
+public class MicrometerTokenMetricsTest {
+
+	final MockClock clock = new MockClock();
+	final MeterRegistry registry = new SimpleMeterRegistry(SimpleConfig.DEFAULT, clock);
+	final MicrometerTokenMetrics metrics = new MicrometerTokenMetrics(registry);
+
+	@Test
+	public void testTokenRequestsTaggedByClientGrantAndOutcome() {
+		metrics.tokenRequest("client", "client_credentials", TimeUnit.MILLISECONDS.toNanos(20), null);
+		metrics.tokenRequest("client", "client_credentials", TimeUnit.MILLISECONDS.toNanos(40), null);
+		metrics.tokenRequest("client", "refresh_token", 1, new IOException());
+		metrics.tokenRequest("client", "refresh_token", 1,
+				new OAuth2ProtocolException(new ProtocolError("invalid_grant", null, null, null)));
+
+		assertEquals(2, registry.get("oauth2.token.requests").tag("client.id", "client")
+				.tag("grant.type", "client_credentials").tag("outcome", "success").timer().count());
+		assertEquals(60, registry.get("oauth2.token.requests").tag("grant.type", "client_credentials")
+				.tag("outcome", "success").timer().totalTime(TimeUnit.MILLISECONDS), 0.001);
+		assertEquals(1, registry.get("oauth2.token.requests").tag("grant.type", "refresh_token")
+				.tag("outcome", "error").timer().count());
+		assertEquals(1, registry.get("oauth2.token.requests").tag("grant.type", "refresh_token")
+				.tag("outcome", "protocol_error").timer().count());
+	}
+
+	@Test
+	public void testUnknownTags() {
+		metrics.httpExchange(null, null, 1, 0, 10, 0, null);
+		metrics.failedOver(null, null);
+		metrics.renewalRetried(null, 0);
+
+		assertEquals(1, registry.get("oauth2.token.http").tag("client.id", MicrometerTokenMetrics.UNKNOWN)
+				.tag("grant.type", MicrometerTokenMetrics.UNKNOWN).tag("outcome", "success").timer().count());
+		assertEquals(1, registry.get("oauth2.token.failovers").counter().count(), 0);
+		assertEquals(1, registry.get("oauth2.token.renewal.retries").counter().count(), 0);
+	}
+
+	@Test
+	public void testTimeLeftGauge() {
+		Instant now = Instant.ofEpochMilli(clock.wallTime());
+		metrics.tokenChanged("client", null);
+		assertTrue(Double.isNaN(registry.get("oauth2.token.ttl").tag("client.id", "client").gauge().value()));
+
+		metrics.tokenChanged("client", now.plusSeconds(60));
+		assertEquals(60, registry.get("oauth2.token.ttl").gauge().value(), 0.001);
+
+		clock.add(45, TimeUnit.SECONDS);
+		assertEquals(15, registry.get("oauth2.token.ttl").gauge().value(), 0.001);
+
+		clock.add(30, TimeUnit.SECONDS);
+		assertEquals(0, registry.get("oauth2.token.ttl").gauge().value(), 0.001);
+	}
+
+	@Test
+	public void testTokenUseAndResourceRequests() {
+		metrics.tokenUsed("client", TimeUnit.SECONDS.toNanos(30), TimeUnit.SECONDS.toNanos(10));
+		metrics.resourceRequest(1, true);
+		metrics.resourceRequest(1, false);
+		metrics.resourceRequest(1, false);
+
+		assertEquals(30, registry.get("oauth2.token.age").tag("client.id", "client").timer()
+				.totalTime(TimeUnit.SECONDS), 0.001);
+		assertEquals(1, registry.get("oauth2.resource.requests").tag("authorized", "true").timer().count());
+		assertEquals(2, registry.get("oauth2.resource.requests").tag("authorized", "false").timer().count());
+	}
+
+}
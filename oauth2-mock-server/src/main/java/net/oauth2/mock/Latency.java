@@ -0,0 +1,91 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+package net.oauth2.mock;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A distribution of the latencies that a {@link MockAuthorizationServer} adds
+ * to its responses.
+ */
+@FunctionalInterface
+public interface Latency {
+
+	/**
+	 * @param random
+	 *            the source of randomness of the server
+	 * @return the next latency to add to a response, in nanoseconds
+	 */
+	long nextNanos(Random random);
+
+	/**
+	 * @return no added latency
+	 */
+	static Latency none() {
+		return random -> 0L;
+	}
+
+	/**
+	 * @param latency
+	 * @param unit
+	 * @return the same latency for every response
+	 */
+	static Latency fixed(long latency, TimeUnit unit) {
+		if (latency < 0 || unit == null)
+			throw new IllegalArgumentException("latency must not be negative and unit not null");
+		long nanos = unit.toNanos(latency);
+		return random -> nanos;
+	}
+
+	/**
+	 * @param min
+	 * @param max
+	 * @param unit
+	 * @return latencies uniformly distributed between min and max
+	 */
+	static Latency uniform(long min, long max, TimeUnit unit) {
+		if (min < 0 || max < min || unit == null)
+			throw new IllegalArgumentException("min must not be negative, max not less than min and unit not null");
+		long minNanos = unit.toNanos(min);
+		long rangeNanos = unit.toNanos(max) - minNanos;
+		return random -> minNanos + (long) (random.nextDouble() * rangeNanos);
+	}
+
+	/**
+	 * @param mean
+	 * @param unit
+	 * @return exponentially distributed latencies with the supplied mean
+	 */
+	static Latency exponential(long mean, TimeUnit unit) {
+		if (mean < 0 || unit == null)
+			throw new IllegalArgumentException("mean must not be negative and unit not null");
+		long meanNanos = unit.toNanos(mean);
+		return random -> (long) (-Math.log(1 - random.nextDouble()) * meanNanos);
+	}
+
+	/**
+	 * Log-normally distributed latencies, the usual shape of service latencies
+	 * with a long tail, parameterized by their median and 99th percentile.
+	 * 
+	 * @param median
+	 * @param p99
+	 * @param unit
+	 * @return log-normally distributed latencies
+	 */
+	static Latency logNormal(long median, long p99, TimeUnit unit) {
+		if (median < 1 || p99 < median || unit == null)
+			throw new IllegalArgumentException("median must be positive, p99 not less than median and unit not null");
+		double mu = Math.log(unit.toNanos(median));
+		// 2.326 is the z-score of the 99th percentile of the standard normal
+		// distribution
+		double sigma = Math.log((double) p99 / median) / 2.326;
+		return random -> (long) Math.exp(mu + sigma * random.nextGaussian());
+	}
+
+}
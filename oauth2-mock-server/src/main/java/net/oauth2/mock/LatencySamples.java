@@ -0,0 +1,44 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+package net.oauth2.mock;
+
+import java.util.Arrays;
+
+/**
+ * A growable array of latency samples in nanoseconds. Not thread-safe.
+ */
+final class LatencySamples {
+
+	private long[] samples = new long[1024];
+	private int size;
+
+	void add(long nanos) {
+		if (this.size == this.samples.length)
+			this.samples = Arrays.copyOf(this.samples, this.size * 2);
+		this.samples[this.size++] = nanos;
+	}
+
+	void addAll(LatencySamples other) {
+		for (int i = 0; i < other.size; i++)
+			this.add(other.samples[i]);
+	}
+
+	int size() {
+		return this.size;
+	}
+
+	/**
+	 * @return the samples in ascending order
+	 */
+	long[] sorted() {
+		long[] sorted = Arrays.copyOf(this.samples, this.size);
+		Arrays.sort(sorted);
+		return sorted;
+	}
+
+}
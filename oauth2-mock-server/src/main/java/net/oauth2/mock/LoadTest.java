@@ -0,0 +1,381 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+package net.oauth2.mock;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+import commons.util.ObservableMixin;
+import net.oauth2.AccessToken;
+import net.oauth2.AccessTokenGrantRequest;
+import net.oauth2.ClientCredentialsGrantRequest;
+import net.oauth2.client.AutoRenewingTokenProvider;
+import net.oauth2.client.NoRetryPolicy;
+import net.oauth2.client.OAuth2ProtocolException;
+import net.oauth2.client.OAuthTokenServiceDelegate;
+import net.oauth2.client.TokenService;
+import net.oauth2.client.http.TokenServiceHttpClient;
+
+/**
+ * A load test driver for {@link TokenServiceHttpClient}s, typically run
+ * against a {@link MockAuthorizationServer}. It runs in one of two modes:
+ * <ul>
+ * <li><b>threads</b>: M threads sending token requests back to back, to
+ * measure the throughput and latency of a transport.</li>
+ * <li><b>providers</b>: N {@link AutoRenewingTokenProvider}s renewing their
+ * tokens on a shared scheduler, to measure the load that a population of
+ * clients puts on a token service. Use a profile with short-lived tokens, e.g.
+ * {@code expiresIn(1)}.</li>
+ * </ul>
+ * Requests are measured after a warm up, during which the counters of the
+ * server are reset.
+ */
+public final class LoadTest {
+
+	static final int MAX_START_ATTEMPTS = 10;
+
+	private final TokenServiceHttpClient client;
+	private final MockAuthorizationServer server;
+	private final AccessTokenGrantRequest grant;
+	private final String tokenPath;
+	private final int threads;
+	private final int providers;
+	private final double delayModifier;
+	private final long warmupNanos;
+	private final long durationNanos;
+
+	LoadTest(Builder builder) {
+		this.client = builder.client;
+		this.server = builder.server;
+		this.grant = builder.grant;
+		this.tokenPath = builder.tokenPath;
+		this.threads = builder.threads;
+		this.providers = builder.providers;
+		this.delayModifier = builder.delayModifier;
+		this.warmupNanos = builder.warmupNanos;
+		this.durationNanos = builder.durationNanos;
+	}
+
+	public static final class Builder {
+
+		TokenServiceHttpClient client;
+		MockAuthorizationServer server;
+		AccessTokenGrantRequest grant = new ClientCredentialsGrantRequest("load-test", "secret", null);
+		String tokenPath;
+		int threads;
+		int providers;
+		double delayModifier = 0.5;
+		long warmupNanos = TimeUnit.SECONDS.toNanos(1);
+		long durationNanos = TimeUnit.SECONDS.toNanos(5);
+
+		public Builder() {
+		}
+
+		/**
+		 * @param client
+		 *            the client under test, configured with the base URL of
+		 *            the token service
+		 * @return this builder for chaining
+		 */
+		public Builder client(TokenServiceHttpClient client) {
+			if (client == null)
+				throw new IllegalArgumentException("client is null");
+			this.client = client;
+			return this;
+		}
+
+		/**
+		 * Reports the endpoint calls counted by the supplied server and takes
+		 * the token path from its profile unless set explicitly.
+		 * 
+		 * @param server
+		 * @return this builder for chaining
+		 */
+		public Builder server(MockAuthorizationServer server) {
+			if (server == null)
+				throw new IllegalArgumentException("server is null");
+			this.server = server;
+			return this;
+		}
+
+		/**
+		 * @param grant
+		 *            the grant to request tokens with. Client credentials of
+		 *            client "load-test" by default.
+		 * @return this builder for chaining
+		 */
+		public Builder grant(AccessTokenGrantRequest grant) {
+			if (grant == null)
+				throw new IllegalArgumentException("grant is null");
+			this.grant = grant;
+			return this;
+		}
+
+		/**
+		 * @param tokenPath
+		 *            the path to the token endpoint relative to the base URL
+		 *            of the client
+		 * @return this builder for chaining
+		 */
+		public Builder tokenPath(String tokenPath) {
+			if (tokenPath == null)
+				throw new IllegalArgumentException("tokenPath is null");
+			this.tokenPath = tokenPath;
+			return this;
+		}
+
+		/**
+		 * Runs the test with M threads sending token requests back to back.
+		 * 
+		 * @param threads
+		 * @return this builder for chaining
+		 */
+		public Builder threads(int threads) {
+			if (threads < 1)
+				throw new IllegalArgumentException("threads must be positive");
+			this.threads = threads;
+			this.providers = 0;
+			return this;
+		}
+
+		/**
+		 * Runs the test with N token providers renewing their tokens.
+		 * 
+		 * @param providers
+		 * @param delayModifier
+		 *            the delay between renewals as percentage of the token TTL
+		 * @return this builder for chaining
+		 */
+		public Builder providers(int providers, double delayModifier) {
+			if (providers < 1)
+				throw new IllegalArgumentException("providers must be positive");
+			if (!(delayModifier > 0) || delayModifier > 1)
+				throw new IllegalArgumentException("delayModifier must be value between (0-1]");
+			this.providers = providers;
+			this.delayModifier = delayModifier;
+			this.threads = 0;
+			return this;
+		}
+
+		public Builder warmup(long warmup, TimeUnit unit) {
+			if (warmup < 0 || unit == null)
+				throw new IllegalArgumentException("warmup must not be negative and unit not null");
+			this.warmupNanos = unit.toNanos(warmup);
+			return this;
+		}
+
+		public Builder duration(long duration, TimeUnit unit) {
+			if (duration < 1 || unit == null)
+				throw new IllegalArgumentException("duration must be positive and unit not null");
+			this.durationNanos = unit.toNanos(duration);
+			return this;
+		}
+
+		public LoadTest build() {
+			if (this.client == null)
+				throw new IllegalStateException("client is required but never invoked");
+			if (this.tokenPath == null)
+				this.tokenPath = this.server != null ? this.server.profile().getTokenPath()
+						: TokenService.DEFAULT_URL_PATH;
+			if (this.threads == 0 && this.providers == 0)
+				this.threads = 1;
+			return new LoadTest(this);
+		}
+	}
+
+	/**
+	 * Runs the test and blocks until it completes.
+	 * 
+	 * @return the report of the measurement
+	 * @throws InterruptedException
+	 */
+	public LoadTestReport run() throws InterruptedException {
+		if (this.providers > 0)
+			return this.runProviders();
+		return this.runThreads();
+	}
+
+	private LoadTestReport runThreads() throws InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(this.threads);
+		LongAdder tokens = new LongAdder();
+		LongAdder failures = new LongAdder();
+		List<Future<LatencySamples>> results = new ArrayList<>(this.threads);
+		long measureStart = System.nanoTime() + this.warmupNanos;
+		long measureEnd = measureStart + this.durationNanos;
+		try {
+			for (int i = 0; i < this.threads; i++) {
+				results.add(executor.submit(() -> {
+					LatencySamples samples = new LatencySamples();
+					long now;
+					while ((now = System.nanoTime()) - measureEnd < 0) {
+						boolean measured = now - measureStart >= 0;
+						try {
+							AccessToken token = this.client.post(this.tokenPath, this.grant);
+							if (measured && token != null)
+								tokens.increment();
+						} catch (IOException | RuntimeException e) {
+							if (measured)
+								failures.increment();
+						}
+						if (measured)
+							samples.add(System.nanoTime() - now);
+					}
+					return samples;
+				}));
+			}
+			this.awaitMeasurement(measureStart);
+			LatencySamples latencies = new LatencySamples();
+			for (Future<LatencySamples> result : results)
+				latencies.addAll(get(result));
+			return new LoadTestReport("threads", this.threads, tokens.sum(), failures.sum(), this.durationNanos,
+					latencies.sorted(), this.server != null ? this.server.stats() : null);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	private LoadTestReport runProviders() throws InterruptedException {
+		// renewals block on the network, one thread per provider up to a cap
+		ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(Math.min(this.providers, 64));
+		TimedTokenService timed = new TimedTokenService();
+		List<AutoRenewingTokenProvider<AccessToken>> providers = new ArrayList<>(this.providers);
+		try {
+			List<Future<?>> started = new ArrayList<>(this.providers);
+			for (int i = 0; i < this.providers; i++) {
+				// each provider has its own delegate to track its refresh token
+				AutoRenewingTokenProvider<AccessToken> provider = new AutoRenewingTokenProvider<AccessToken>(
+						new ProviderTokenService(timed, new OAuthTokenServiceDelegate<>(this.grant, this.client,
+								this.tokenPath)),
+						scheduler, new NoRetryPolicy(), new ObservableMixin<>(), false).schedule(this.delayModifier);
+				providers.add(provider);
+				started.add(scheduler.submit(() -> {
+					// the initial fetch is not retried by the provider
+					for (int attempt = 1;; attempt++) {
+						try {
+							return provider.start();
+						} catch (IOException e) {
+							if (attempt == MAX_START_ATTEMPTS)
+								throw e;
+							TimeUnit.MILLISECONDS.sleep(100);
+						}
+					}
+				}));
+			}
+			for (Future<?> start : started)
+				get(start);
+			// starting many providers may take a while, warm up from then on
+			long measureStart = System.nanoTime() + this.warmupNanos;
+			timed.window(measureStart, measureStart + this.durationNanos);
+			this.awaitMeasurement(measureStart);
+			synchronized (timed) {
+				return new LoadTestReport("providers", this.providers, timed.tokens, timed.failures,
+						this.durationNanos, timed.samples.sorted(), this.server != null ? this.server.stats() : null);
+			}
+		} finally {
+			for (AutoRenewingTokenProvider<AccessToken> provider : providers)
+				provider.stop(false);
+			scheduler.shutdownNow();
+		}
+	}
+
+	/**
+	 * Resets the server counters at the start of the measurement and waits
+	 * for its end.
+	 */
+	private void awaitMeasurement(long measureStart) throws InterruptedException {
+		long warmup = measureStart - System.nanoTime();
+		if (warmup > 0)
+			TimeUnit.NANOSECONDS.sleep(warmup);
+		if (this.server != null)
+			this.server.stats().reset();
+		TimeUnit.NANOSECONDS.sleep(this.durationNanos);
+	}
+
+	private static <V> V get(Future<V> future) throws InterruptedException {
+		try {
+			return future.get();
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Load test failed", e.getCause());
+		}
+	}
+
+	/**
+	 * Records the latency and outcome of the token requests of all providers.
+	 */
+	static final class TimedTokenService {
+
+		final LatencySamples samples = new LatencySamples();
+		boolean windowed;
+		long measureStart;
+		long measureEnd;
+		long tokens;
+		long failures;
+
+		synchronized void window(long measureStart, long measureEnd) {
+			this.windowed = true;
+			this.measureStart = measureStart;
+			this.measureEnd = measureEnd;
+		}
+
+		synchronized void record(long start, boolean success) {
+			if (!this.windowed || start - this.measureStart < 0 || start - this.measureEnd >= 0)
+				return;
+			this.samples.add(System.nanoTime() - start);
+			if (success)
+				this.tokens++;
+			else
+				this.failures++;
+		}
+	}
+
+	static final class ProviderTokenService implements TokenService {
+
+		private final TimedTokenService timed;
+		private final TokenService delegate;
+
+		ProviderTokenService(TimedTokenService timed, TokenService delegate) {
+			this.timed = timed;
+			this.delegate = delegate;
+		}
+
+		@Override
+		public <T extends AccessToken> T fetch() throws OAuth2ProtocolException, IOException {
+			long start = System.nanoTime();
+			boolean success = false;
+			try {
+				T token = this.delegate.fetch();
+				success = token != null;
+				return token;
+			} finally {
+				this.timed.record(start, success);
+			}
+		}
+
+		@Override
+		public <T extends AccessToken> T refresh(String refreshTokenString) throws OAuth2ProtocolException, IOException {
+			long start = System.nanoTime();
+			boolean success = false;
+			try {
+				T token = this.delegate.refresh(refreshTokenString);
+				success = token != null;
+				return token;
+			} finally {
+				this.timed.record(start, success);
+			}
+		}
+	}
+
+}
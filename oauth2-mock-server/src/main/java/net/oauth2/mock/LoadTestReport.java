@@ -0,0 +1,145 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+package net.oauth2.mock;
+
+import java.time.Duration;
+
+/**
+ * The results of a {@link LoadTest} run: the throughput and latency of the
+ * token requests as seen by the client, and the calls to the token endpoint as
+ * seen by the server.
+ */
+public final class LoadTestReport {
+
+	private final String mode;
+	private final int concurrency;
+	private final long tokens;
+	private final long failures;
+	private final long elapsedNanos;
+	private final long[] latencies;
+	private final long endpointCalls;
+	private final long rateLimited;
+	private final long injectedErrors;
+	private final long rejected;
+
+	LoadTestReport(String mode, int concurrency, long tokens, long failures, long elapsedNanos, long[] latencies,
+			ServerStats stats) {
+		this.mode = mode;
+		this.concurrency = concurrency;
+		this.tokens = tokens;
+		this.failures = failures;
+		this.elapsedNanos = elapsedNanos;
+		this.latencies = latencies;
+		this.endpointCalls = stats != null ? stats.getRequests() : -1;
+		this.rateLimited = stats != null ? stats.getRateLimited() : -1;
+		this.injectedErrors = stats != null ? stats.getInjectedErrors() : -1;
+		this.rejected = stats != null ? stats.getRejected() : -1;
+	}
+
+	/**
+	 * @return "threads" or "providers"
+	 */
+	public String getMode() {
+		return this.mode;
+	}
+
+	/**
+	 * @return the number of request threads or token providers
+	 */
+	public int getConcurrency() {
+		return this.concurrency;
+	}
+
+	/**
+	 * @return the number of tokens obtained during the measurement
+	 */
+	public long getTokens() {
+		return this.tokens;
+	}
+
+	/**
+	 * @return the number of token requests that failed during the measurement
+	 */
+	public long getFailures() {
+		return this.failures;
+	}
+
+	public Duration getElapsed() {
+		return Duration.ofNanos(this.elapsedNanos);
+	}
+
+	public double tokensPerSecond() {
+		return this.elapsedNanos > 0 ? this.tokens * 1e9 / this.elapsedNanos : 0;
+	}
+
+	/**
+	 * @param quantile
+	 *            between [0-1]
+	 * @return the latency of the token requests at the supplied quantile, both
+	 *         successful and failed, or zero without samples
+	 */
+	public Duration percentile(double quantile) {
+		if (!(quantile >= 0) || quantile > 1)
+			throw new IllegalArgumentException("quantile must be value between [0-1]");
+		if (this.latencies.length == 0)
+			return Duration.ZERO;
+		// nearest rank
+		int rank = (int) Math.ceil(quantile * this.latencies.length);
+		return Duration.ofNanos(this.latencies[Math.max(rank - 1, 0)]);
+	}
+
+	public Duration getP50() {
+		return this.percentile(0.5);
+	}
+
+	public Duration getP99() {
+		return this.percentile(0.99);
+	}
+
+	/**
+	 * @return the number of calls to the token endpoint during the
+	 *         measurement, including rejected ones and authentication
+	 *         challenges, or -1 if the server was not supplied to the test
+	 */
+	public long getEndpointCalls() {
+		return this.endpointCalls;
+	}
+
+	/**
+	 * @return the number of calls answered with status 429, or -1 if unknown
+	 */
+	public long getRateLimited() {
+		return this.rateLimited;
+	}
+
+	/**
+	 * @return the number of calls failed by the server profile, or -1 if
+	 *         unknown
+	 */
+	public long getInjectedErrors() {
+		return this.injectedErrors;
+	}
+
+	/**
+	 * @return the number of calls answered with an OAuth error, or -1 if
+	 *         unknown
+	 */
+	public long getRejected() {
+		return this.rejected;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+				"%s=%d tokens=%d failures=%d tokens/s=%.1f p50=%.3fms p99=%.3fms calls=%d rateLimited=%d injectedErrors=%d rejected=%d",
+				this.mode, this.concurrency, this.tokens, this.failures, this.tokensPerSecond(),
+				this.getP50().toNanos() / 1e6, this.getP99().toNanos() / 1e6, this.endpointCalls, this.rateLimited,
+				this.injectedErrors, this.rejected);
+	}
+
+}
@@ -0,0 +1,627 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+package net.oauth2.mock;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.util.Base64;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import com.sun.net.httpserver.HttpsConfigurator;
+import com.sun.net.httpserver.HttpsServer;
+
+/**
+ * An embedded OAuth authorization server for tests, based on the JDK
+ * {@code com.sun.net.httpserver} package with no external dependencies.
+ * <p>
+ * The server hosts a single token endpoint that issues access tokens for the
+ * grant types of its {@link ServerProfile}, including refresh token grants.
+ * The profile scripts its behavior: the format of the responses, refresh token
+ * rotation, added latency, injected failures and rate limiting. It can be
+ * swapped while the server is running.
+ * </p>
+ * <p>
+ * By default the server listens on an ephemeral port of the loopback interface
+ * over HTTPS with a bundled self-signed certificate for localhost. Clients
+ * can trust it with {@link #sslContext()}, or in another process with the
+ * trust store file from {@link #trustStoreFile()}.
+ * </p>
+ * <p>
+ * The server can also be run standalone, e.g. to run the samples against it:
+ * </p>
+ * 
+ * <pre>
+ * java -cp oauth2-mock-server.jar net.oauth2.mock.MockAuthorizationServer [profile] [port]
+ * </pre>
+ */
+public class MockAuthorizationServer implements AutoCloseable {
+
+	/**
+	 * The password of the bundled key and trust stores
+	 */
+	public static final String STORE_PASSWORD = "changeit";
+
+	private static final String KEY_STORE = "keystore.jks";
+	private static final String TRUST_STORE = "truststore.jks";
+	private static final String JSON = "application/json;charset=UTF-8";
+	private static final String FORM = "application/x-www-form-urlencoded;charset=UTF-8";
+
+	static {
+		// the JDK server writes headers and body separately, which with Nagle's
+		// algorithm and delayed acks adds ~40ms to each response. Must be set
+		// before the server classes are loaded.
+		if (System.getProperty("sun.net.httpserver.nodelay") == null)
+			System.setProperty("sun.net.httpserver.nodelay", "true");
+	}
+
+	private final HttpServer server;
+	private final ExecutorService executor;
+	private final String scheme;
+	private final Map<String, String> clients;
+	private final Random random;
+	private final ServerStats stats = new ServerStats();
+	private final Map<String, IssuedGrant> refreshTokens = new ConcurrentHashMap<>();
+	private final AtomicLong sequence = new AtomicLong();
+	private volatile ServerProfile profile;
+	// token bucket of the rate limit
+	private double permits;
+	private long refilled;
+
+	MockAuthorizationServer(Builder builder) throws IOException {
+		InetSocketAddress address = new InetSocketAddress(InetAddress.getLoopbackAddress(), builder.port);
+		if (builder.https) {
+			HttpsServer httpsServer = HttpsServer.create(address, 0);
+			httpsServer.setHttpsConfigurator(new HttpsConfigurator(serverSslContext()));
+			this.server = httpsServer;
+			this.scheme = "https";
+		} else {
+			this.server = HttpServer.create(address, 0);
+			this.scheme = "http";
+		}
+		this.executor = Executors.newFixedThreadPool(builder.threads, runnable -> {
+			Thread thread = new Thread(runnable, "mock-authorization-server");
+			thread.setDaemon(true);
+			return thread;
+		});
+		this.server.setExecutor(this.executor);
+		this.server.createContext("/", this::handle);
+		this.clients = new HashMap<>(builder.clients);
+		this.random = builder.seed != null ? new Random(builder.seed) : null;
+		this.profile(builder.profile);
+	}
+
+	public static final class Builder {
+
+		int port;
+		boolean https = true;
+		ServerProfile profile = ServerProfile.standard();
+		final Map<String, String> clients = new HashMap<>();
+		int threads = 32;
+		Long seed;
+
+		public Builder() {
+		}
+
+		/**
+		 * @param port
+		 *            the port to listen on, 0 for an ephemeral one
+		 * @return this builder for chaining
+		 */
+		public Builder port(int port) {
+			if (port < 0 || port > 0xFFFF)
+				throw new IllegalArgumentException("port out of range");
+			this.port = port;
+			return this;
+		}
+
+		/**
+		 * @param https
+		 *            false to serve plain HTTP
+		 * @return this builder for chaining
+		 */
+		public Builder https(boolean https) {
+			this.https = https;
+			return this;
+		}
+
+		public Builder profile(ServerProfile profile) {
+			if (profile == null)
+				throw new IllegalArgumentException("profile is null");
+			this.profile = profile;
+			return this;
+		}
+
+		/**
+		 * Registers a client. If no clients are registered, the server accepts
+		 * any client credentials.
+		 * 
+		 * @param clientId
+		 * @param clientSecret
+		 * @return this builder for chaining
+		 */
+		public Builder client(String clientId, String clientSecret) {
+			if (clientId == null)
+				throw new IllegalArgumentException("clientId is null");
+			if (clientSecret == null)
+				throw new IllegalArgumentException("clientSecret is null");
+			this.clients.put(clientId, clientSecret);
+			return this;
+		}
+
+		/**
+		 * @param threads
+		 *            the number of requests served concurrently, including
+		 *            the ones waiting out their latency
+		 * @return this builder for chaining
+		 */
+		public Builder threads(int threads) {
+			if (threads < 1)
+				throw new IllegalArgumentException("threads must be positive");
+			this.threads = threads;
+			return this;
+		}
+
+		/**
+		 * @param seed
+		 *            the seed of the latencies and failures for reproducible
+		 *            runs
+		 * @return this builder for chaining
+		 */
+		public Builder seed(long seed) {
+			this.seed = seed;
+			return this;
+		}
+
+		/**
+		 * @return a server bound to its port, not yet started
+		 * @throws IOException
+		 *             if the port cannot be bound
+		 */
+		public MockAuthorizationServer build() throws IOException {
+			return new MockAuthorizationServer(this);
+		}
+	}
+
+	/**
+	 * Starts serving requests.
+	 * 
+	 * @return this instance for chaining
+	 */
+	public MockAuthorizationServer start() {
+		this.server.start();
+		return this;
+	}
+
+	/**
+	 * Stops the server immediately, aborting exchanges in progress.
+	 */
+	@Override
+	public void close() {
+		this.server.stop(0);
+		this.executor.shutdownNow();
+	}
+
+	/**
+	 * Swaps the profile of this server. Requests received from now on are
+	 * served with the new profile.
+	 * 
+	 * @param profile
+	 * @return this instance for chaining
+	 */
+	public MockAuthorizationServer profile(ServerProfile profile) {
+		if (profile == null)
+			throw new IllegalArgumentException("profile is null");
+		synchronized (this) {
+			this.profile = profile;
+			this.permits = profile.getBurst();
+			this.refilled = System.nanoTime();
+		}
+		return this;
+	}
+
+	public ServerProfile profile() {
+		return this.profile;
+	}
+
+	public ServerStats stats() {
+		return this.stats;
+	}
+
+	public int getPort() {
+		return this.server.getAddress().getPort();
+	}
+
+	/**
+	 * @return the URL of the token service, to be used as the base URL of
+	 *         token service clients
+	 */
+	public String baseUrl() {
+		return this.scheme + "://localhost:" + this.getPort() + this.profile.getBasePath();
+	}
+
+	/**
+	 * @return the URL of the token endpoint
+	 */
+	public String tokenEndpoint() {
+		return this.baseUrl() + this.profile.getTokenPath();
+	}
+
+	void handle(HttpExchange exchange) throws IOException {
+		try {
+			this.serve(exchange);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch (RuntimeException e) {
+			this.respond(exchange, 500, JSON, "{\"error\":\"server_error\"}", -1);
+		} finally {
+			exchange.close();
+		}
+	}
+
+	private void serve(HttpExchange exchange) throws IOException, InterruptedException {
+		ServerProfile profile = this.profile;
+		Random random = this.random != null ? this.random : ThreadLocalRandom.current();
+		this.stats.request();
+		String path = exchange.getRequestURI().getPath();
+		if (!path.equals(profile.getBasePath() + profile.getTokenPath())) {
+			this.respond(exchange, 404, JSON, "{\"error\":\"not_found\"}", -1);
+			return;
+		}
+		if (!"POST".equals(exchange.getRequestMethod())) {
+			exchange.getResponseHeaders().set("Allow", "POST");
+			this.respond(exchange, 405, JSON, "{\"error\":\"invalid_request\"}", -1);
+			return;
+		}
+		Map<String, String> form = parseForm(read(exchange.getRequestBody()));
+
+		long latency = profile.getLatency().nextNanos(random);
+		if (latency > 0)
+			TimeUnit.NANOSECONDS.sleep(latency);
+
+		long wait = this.acquirePermit(profile);
+		if (wait > 0) {
+			this.stats.rateLimited();
+			long retryAfter = Math.max(1, (wait + TimeUnit.SECONDS.toNanos(1) - 1) / TimeUnit.SECONDS.toNanos(1));
+			this.respond(exchange, 429, JSON, error("temporarily_unavailable", "Rate limit exceeded"), retryAfter);
+			return;
+		}
+		if (profile.getErrorRate() > 0 && random.nextDouble() < profile.getErrorRate()) {
+			this.stats.injectedError();
+			this.respond(exchange, profile.getErrorStatus(), JSON,
+					error("temporarily_unavailable", "Injected failure"), profile.getRetryAfterSeconds());
+			return;
+		}
+
+		// client authentication
+		String clientId = null;
+		String clientSecret = null;
+		String authorization = exchange.getRequestHeaders().getFirst("Authorization");
+		if (authorization != null && authorization.regionMatches(true, 0, "Basic ", 0, 6)) {
+			String credentials = new String(Base64.getDecoder().decode(authorization.substring(6).trim()),
+					StandardCharsets.UTF_8);
+			int idx = credentials.indexOf(':');
+			if (idx > -1) {
+				clientId = credentials.substring(0, idx);
+				clientSecret = credentials.substring(idx + 1);
+			}
+		} else if (!profile.isRequireBasicAuthentication()) {
+			clientId = form.get("client_id");
+			clientSecret = form.get("client_secret");
+		}
+		if (clientId == null) {
+			exchange.getResponseHeaders().set("WWW-Authenticate", "Basic realm=\"mock\"");
+			this.reject(exchange, profile, 401, "invalid_client", "Client authentication required");
+			return;
+		}
+		if (!this.clients.isEmpty() && (clientSecret == null || !clientSecret.equals(this.clients.get(clientId)))) {
+			this.reject(exchange, profile, profile.getAuthenticationErrorStatus(), "invalid_client",
+					"Client authentication failed");
+			return;
+		}
+
+		// grant
+		String grantType = form.get("grant_type");
+		if (grantType == null) {
+			this.reject(exchange, profile, 400, "invalid_request", "Missing grant_type");
+			return;
+		}
+		if (!profile.getGrantTypes().contains(grantType)) {
+			this.reject(exchange, profile, 400, "unsupported_grant_type", "Unsupported grant_type: " + grantType);
+			return;
+		}
+		String scope = form.get("scope");
+		boolean refresh = false;
+		switch (grantType) {
+		case ServerProfile.AUTHORIZATION_CODE:
+			if (form.get("code") == null) {
+				this.reject(exchange, profile, 400, "invalid_request", "Missing code");
+				return;
+			}
+			break;
+		case ServerProfile.PASSWORD:
+			if (form.get("username") == null) {
+				this.reject(exchange, profile, 400, "invalid_request", "Missing username");
+				return;
+			}
+			break;
+		case ServerProfile.REFRESH_TOKEN:
+			String refreshToken = form.get("refresh_token");
+			if (refreshToken == null) {
+				this.reject(exchange, profile, 400, "invalid_request", "Missing refresh_token");
+				return;
+			}
+			// a rotated refresh token is revoked by its first use
+			IssuedGrant grant = profile.isRotateRefreshTokens() ? this.refreshTokens.remove(refreshToken)
+					: this.refreshTokens.get(refreshToken);
+			if (grant == null || !grant.clientId.equals(clientId)) {
+				this.reject(exchange, profile, 400, "invalid_grant", "Invalid refresh_token");
+				return;
+			}
+			if (scope == null)
+				scope = grant.scope;
+			refresh = true;
+			break;
+		default:
+			break;
+		}
+		this.issue(exchange, profile, random, clientId, scope, refresh);
+	}
+
+	private void issue(HttpExchange exchange, ServerProfile profile, Random random, String clientId, String scope,
+			boolean refresh) throws IOException {
+		long id = this.sequence.incrementAndGet();
+		Map<String, Object> token = new LinkedHashMap<>();
+		token.put("access_token", "at-" + Long.toHexString(id) + "-" + Long.toHexString(random.nextLong()));
+		token.put("token_type", profile.getTokenType());
+		if (profile.getExpiresIn() > 0)
+			token.put("expires_in", profile.getExpiresIn());
+		if (profile.isRefreshTokens() && (!refresh || profile.isRotateRefreshTokens())) {
+			String refreshToken = "rt-" + Long.toHexString(id) + "-" + Long.toHexString(random.nextLong());
+			this.refreshTokens.put(refreshToken, new IssuedGrant(clientId, scope));
+			token.put("refresh_token", refreshToken);
+		}
+		if (scope != null)
+			token.put("scope", String.join(profile.getScopeDelimiter(), scope.trim().split("\\s+")));
+		this.stats.issued(refresh);
+		if (profile.getResponseFormat() == ServerProfile.ResponseFormat.FORM)
+			this.respond(exchange, 200, FORM, formEncode(token), -1);
+		else
+			this.respond(exchange, 200, JSON, json(token), -1);
+	}
+
+	private void reject(HttpExchange exchange, ServerProfile profile, int status, String error, String description)
+			throws IOException {
+		this.stats.rejected();
+		if (profile.isErrorsAsOk())
+			status = 200;
+		if (profile.getResponseFormat() == ServerProfile.ResponseFormat.FORM) {
+			Map<String, Object> payload = new LinkedHashMap<>();
+			payload.put("error", error);
+			payload.put("error_description", description);
+			this.respond(exchange, status, FORM, formEncode(payload), -1);
+		} else
+			this.respond(exchange, status, JSON, error(error, description), -1);
+	}
+
+	private void respond(HttpExchange exchange, int status, String contentType, String body, long retryAfterSeconds)
+			throws IOException {
+		byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.getResponseHeaders().set("Cache-Control", "no-store");
+		if (retryAfterSeconds > -1)
+			exchange.getResponseHeaders().set("Retry-After", Long.toString(retryAfterSeconds));
+		exchange.sendResponseHeaders(status, bytes.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(bytes);
+		}
+	}
+
+	/**
+	 * Takes a permit from the token bucket of the rate limit of the profile.
+	 * 
+	 * @return 0 if a permit was taken, otherwise the nanoseconds until the
+	 *         next permit is available
+	 */
+	synchronized long acquirePermit(ServerProfile profile) {
+		double rate = profile.getRateLimit();
+		if (rate <= 0)
+			return 0;
+		long now = System.nanoTime();
+		this.permits = Math.min(profile.getBurst(),
+				this.permits + (now - this.refilled) * rate / TimeUnit.SECONDS.toNanos(1));
+		this.refilled = now;
+		if (this.permits >= 1) {
+			this.permits--;
+			return 0;
+		}
+		return (long) ((1 - this.permits) / rate * TimeUnit.SECONDS.toNanos(1));
+	}
+
+	static final class IssuedGrant {
+
+		final String clientId;
+		final String scope;
+
+		IssuedGrant(String clientId, String scope) {
+			this.clientId = clientId;
+			this.scope = scope;
+		}
+	}
+
+	static String read(InputStream in) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		byte[] buffer = new byte[1024];
+		int read;
+		while ((read = in.read(buffer)) > -1)
+			out.write(buffer, 0, read);
+		return new String(out.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	static Map<String, String> parseForm(String payload) throws UnsupportedEncodingException {
+		Map<String, String> form = new HashMap<>();
+		for (String pair : payload.split("&")) {
+			if (pair.isEmpty())
+				continue;
+			int idx = pair.indexOf('=');
+			String name = URLDecoder.decode(idx > -1 ? pair.substring(0, idx) : pair, "UTF-8");
+			String value = idx > -1 ? URLDecoder.decode(pair.substring(idx + 1), "UTF-8") : "";
+			form.put(name, value);
+		}
+		return form;
+	}
+
+	static String formEncode(Map<String, Object> payload) throws UnsupportedEncodingException {
+		StringBuilder sb = new StringBuilder();
+		for (Map.Entry<String, Object> entry : payload.entrySet()) {
+			if (sb.length() > 0)
+				sb.append('&');
+			sb.append(URLEncoder.encode(entry.getKey(), "UTF-8")).append('=')
+					.append(URLEncoder.encode(String.valueOf(entry.getValue()), "UTF-8"));
+		}
+		return sb.toString();
+	}
+
+	static String json(Map<String, Object> payload) {
+		StringBuilder sb = new StringBuilder("{");
+		for (Map.Entry<String, Object> entry : payload.entrySet()) {
+			if (sb.length() > 1)
+				sb.append(',');
+			quote(sb, entry.getKey()).append(':');
+			if (entry.getValue() instanceof Number)
+				sb.append(entry.getValue());
+			else
+				quote(sb, String.valueOf(entry.getValue()));
+		}
+		return sb.append('}').toString();
+	}
+
+	static String error(String error, String description) {
+		Map<String, Object> payload = new LinkedHashMap<>();
+		payload.put("error", error);
+		payload.put("error_description", description);
+		return json(payload);
+	}
+
+	private static StringBuilder quote(StringBuilder sb, String value) {
+		sb.append('"');
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			if (c == '"' || c == '\\')
+				sb.append('\\').append(c);
+			else if (c < 0x20)
+				sb.append(String.format("\\u%04x", (int) c));
+			else
+				sb.append(c);
+		}
+		return sb.append('"');
+	}
+
+	private static KeyStore load(String name) throws IOException, GeneralSecurityException {
+		KeyStore store = KeyStore.getInstance("JKS");
+		try (InputStream in = MockAuthorizationServer.class.getResourceAsStream(name)) {
+			store.load(in, STORE_PASSWORD.toCharArray());
+		}
+		return store;
+	}
+
+	private static SSLContext serverSslContext() throws IOException {
+		try {
+			KeyManagerFactory kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+			kmf.init(load(KEY_STORE), STORE_PASSWORD.toCharArray());
+			SSLContext context = SSLContext.getInstance("TLS");
+			context.init(kmf.getKeyManagers(), null, null);
+			return context;
+		} catch (GeneralSecurityException e) {
+			throw new IOException("Cannot load the key store of the server", e);
+		}
+	}
+
+	/**
+	 * @return an SSL context for clients that trusts the certificate of the
+	 *         server
+	 * @throws IOException
+	 */
+	public static SSLContext sslContext() throws IOException {
+		try {
+			TrustManagerFactory tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+			tmf.init(load(TRUST_STORE));
+			SSLContext context = SSLContext.getInstance("TLS");
+			context.init(null, tmf.getTrustManagers(), null);
+			return context;
+		} catch (GeneralSecurityException e) {
+			throw new IOException("Cannot load the trust store of the server", e);
+		}
+	}
+
+	/**
+	 * Copies the JKS trust store with the certificate of the server to a
+	 * temporary file, e.g. to supply it as the
+	 * {@code javax.net.ssl.trustStore} of a client. Its password is
+	 * {@link #STORE_PASSWORD}.
+	 * 
+	 * @return the trust store file, deleted on exit
+	 * @throws IOException
+	 */
+	public static Path trustStoreFile() throws IOException {
+		Path file = Files.createTempFile("mock-authorization-server", ".jks");
+		file.toFile().deleteOnExit();
+		try (InputStream in = MockAuthorizationServer.class.getResourceAsStream(TRUST_STORE)) {
+			Files.copy(in, file, StandardCopyOption.REPLACE_EXISTING);
+		}
+		return file;
+	}
+
+	/**
+	 * Runs a server until the process is terminated.
+	 * 
+	 * @param args
+	 *            the name of the profile (standard, github, google or
+	 *            twitter) and the port, 8443 by default
+	 * @throws Exception
+	 */
+	public static void main(String[] args) throws Exception {
+		ServerProfile profile = ServerProfile.named(args.length > 0 ? args[0] : "standard");
+		int port = args.length > 1 ? Integer.parseInt(args[1]) : 8443;
+		MockAuthorizationServer server = new Builder().port(port).profile(profile).build().start();
+		Runtime.getRuntime().addShutdownHook(new Thread(server::close));
+		System.out.println("Token service:  " + server.baseUrl());
+		System.out.println("Token endpoint: " + server.tokenEndpoint());
+		System.out.println("Run clients with -Djavax.net.ssl.trustStore=" + trustStoreFile()
+				+ " -Djavax.net.ssl.trustStorePassword=" + STORE_PASSWORD);
+		Thread.currentThread().join();
+	}
+
+}
@@ -0,0 +1,462 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+package net.oauth2.mock;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import commons.time.VirtualClock;
+import commons.time.VirtualScheduler;
+import commons.util.ObservableMixin;
+import net.oauth2.AccessToken;
+import net.oauth2.TemporalAccessToken;
+import net.oauth2.client.AutoRenewingTokenProvider;
+import net.oauth2.client.OAuth2ProtocolException;
+import net.oauth2.client.RetryPolicy;
+import net.oauth2.client.TokenChangeObserver;
+import net.oauth2.client.TokenService;
+
+/**
+ * A deterministic discrete-event simulation of a population of
+ * {@link AutoRenewingTokenProvider}s renewing their tokens at a simulated
+ * token endpoint, in virtual time. Hours or days of renewals run in a moment
+ * and the same seed always gives the same results, which makes it a tool to
+ * tune the renewal schedule of a fleet of clients before it meets a real
+ * authorization server: the {@code delayModifier} of the providers, the jitter
+ * between them and the ramp in which they start, against the TTL of the tokens
+ * and the failures of the endpoint.
+ * <p>
+ * The providers are the real ones, running on a {@link VirtualScheduler} and
+ * its clock. Each provider fetches its first token when it starts and is
+ * started with {@link AutoRenewingTokenProvider#start(AccessToken, Instant)},
+ * so that its first renewal is due with the token. A failed start is retried
+ * after a second.
+ * </p>
+ * <p>
+ * Requests take no virtual time. Their latency counts only towards the
+ * concurrency at the endpoint, and retries are immediate since the backoff of
+ * a provider does not pass in virtual time.
+ * </p>
+ * 
+ * @see SimulationReport
+ */
+public final class RefreshSimulation {
+
+	static final long START_RETRY_DELAY_MILLIS = 1000;
+
+	private final int providers;
+	private final Latency ttl;
+	private final double delayModifier;
+	private final double jitter;
+	private final long rampNanos;
+	private final Latency latency;
+	private final double errorRate;
+	private final long outageStartNanos;
+	private final long outageNanos;
+	private final int maxRetries;
+	private final long durationNanos;
+	private final long resolutionNanos;
+	private final long seed;
+
+	RefreshSimulation(Builder builder) {
+		this.providers = builder.providers;
+		this.ttl = builder.ttl;
+		this.delayModifier = builder.delayModifier;
+		this.jitter = builder.jitter;
+		this.rampNanos = builder.rampNanos;
+		this.latency = builder.latency;
+		this.errorRate = builder.errorRate;
+		this.outageStartNanos = builder.outageStartNanos;
+		this.outageNanos = builder.outageNanos;
+		this.maxRetries = builder.maxRetries;
+		this.durationNanos = builder.durationNanos;
+		this.resolutionNanos = builder.resolutionNanos;
+		this.seed = builder.seed;
+	}
+
+	public static final class Builder {
+
+		int providers = 1;
+		Latency ttl = Latency.fixed(1, TimeUnit.HOURS);
+		double delayModifier = 0.9;
+		double jitter;
+		long rampNanos;
+		Latency latency = Latency.fixed(100, TimeUnit.MILLISECONDS);
+		double errorRate;
+		long outageStartNanos;
+		long outageNanos;
+		int maxRetries = 1;
+		long durationNanos = TimeUnit.DAYS.toNanos(1);
+		long resolutionNanos = TimeUnit.MINUTES.toNanos(1);
+		long seed = 42;
+
+		public Builder() {
+		}
+
+		/**
+		 * @param providers
+		 *            the number of token providers. One by default.
+		 * @return this builder for chaining
+		 */
+		public Builder providers(int providers) {
+			if (providers < 1)
+				throw new IllegalArgumentException("providers must be positive");
+			this.providers = providers;
+			return this;
+		}
+
+		/**
+		 * @param ttl
+		 *            the distribution of the <i>expires_in</i> of the issued
+		 *            tokens, drawn for each token and truncated to
+		 *            milliseconds. One hour by default.
+		 * @return this builder for chaining
+		 */
+		public Builder ttl(Latency ttl) {
+			if (ttl == null)
+				throw new IllegalArgumentException("ttl is null");
+			this.ttl = ttl;
+			return this;
+		}
+
+		/**
+		 * @param delayModifier
+		 *            the delay between renewals as percentage of the token
+		 *            TTL, as in {@link AutoRenewingTokenProvider#schedule(double)}
+		 * @return this builder for chaining
+		 */
+		public Builder delayModifier(double delayModifier) {
+			if (!(delayModifier > 0) || delayModifier > 1)
+				throw new IllegalArgumentException("delayModifier must be value between (0-1]");
+			this.delayModifier = delayModifier;
+			return this;
+		}
+
+		/**
+		 * Spreads the renewals of the providers by scheduling each with its
+		 * own delay modifier, drawn uniformly from
+		 * {@code [delayModifier * (1 - jitter), delayModifier]}.
+		 * 
+		 * @param jitter
+		 *            between [0-1). None by default.
+		 * @return this builder for chaining
+		 */
+		public Builder jitter(double jitter) {
+			if (!(jitter >= 0) || jitter >= 1)
+				throw new IllegalArgumentException("jitter must be value between [0-1)");
+			this.jitter = jitter;
+			return this;
+		}
+
+		/**
+		 * Starts the providers at moments uniformly distributed in the
+		 * supplied period, instead of all at once.
+		 * 
+		 * @param ramp
+		 * @param unit
+		 * @return this builder for chaining
+		 */
+		public Builder startWithin(long ramp, TimeUnit unit) {
+			if (ramp < 0 || unit == null)
+				throw new IllegalArgumentException("ramp must not be negative and unit not null");
+			this.rampNanos = unit.toNanos(ramp);
+			return this;
+		}
+
+		/**
+		 * @param latency
+		 *            the distribution of the latency of the token endpoint.
+		 *            100ms by default.
+		 * @return this builder for chaining
+		 */
+		public Builder latency(Latency latency) {
+			if (latency == null)
+				throw new IllegalArgumentException("latency is null");
+			this.latency = latency;
+			return this;
+		}
+
+		/**
+		 * @param errorRate
+		 *            the probability between [0-1] of a token request to fail
+		 *            with an I/O error. None by default.
+		 * @return this builder for chaining
+		 */
+		public Builder errorRate(double errorRate) {
+			if (!(errorRate >= 0) || errorRate > 1)
+				throw new IllegalArgumentException("errorRate must be value between [0-1]");
+			this.errorRate = errorRate;
+			return this;
+		}
+
+		/**
+		 * Fails all token requests in a period of the simulation.
+		 * 
+		 * @param start
+		 *            the start of the outage since the start of the
+		 *            simulation
+		 * @param length
+		 * @param unit
+		 * @return this builder for chaining
+		 */
+		public Builder outage(long start, long length, TimeUnit unit) {
+			if (start < 0 || length < 0 || unit == null)
+				throw new IllegalArgumentException("start and length must not be negative and unit not null");
+			this.outageStartNanos = unit.toNanos(start);
+			this.outageNanos = unit.toNanos(length);
+			return this;
+		}
+
+		/**
+		 * @param maxRetries
+		 *            the attempts of a renewal that fails with an I/O error,
+		 *            as in {@link RetryPolicy#maxRetries()}. One by default.
+		 * @return this builder for chaining
+		 */
+		public Builder retries(int maxRetries) {
+			if (maxRetries < 1)
+				throw new IllegalArgumentException("maxRetries must be positive");
+			this.maxRetries = maxRetries;
+			return this;
+		}
+
+		/**
+		 * @param duration
+		 *            the virtual time to simulate. One day by default.
+		 * @param unit
+		 * @return this builder for chaining
+		 */
+		public Builder duration(long duration, TimeUnit unit) {
+			if (duration < 1 || unit == null)
+				throw new IllegalArgumentException("duration must be positive and unit not null");
+			this.durationNanos = unit.toNanos(duration);
+			return this;
+		}
+
+		/**
+		 * @param resolution
+		 *            the length of the intervals in which the requests to the
+		 *            endpoint are counted. One minute by default.
+		 * @param unit
+		 * @return this builder for chaining
+		 */
+		public Builder resolution(long resolution, TimeUnit unit) {
+			if (resolution < 1 || unit == null)
+				throw new IllegalArgumentException("resolution must be positive and unit not null");
+			this.resolutionNanos = unit.toNanos(resolution);
+			return this;
+		}
+
+		public Builder seed(long seed) {
+			this.seed = seed;
+			return this;
+		}
+
+		public RefreshSimulation build() {
+			if (this.resolutionNanos > this.durationNanos)
+				throw new IllegalStateException("resolution must not be longer than the duration");
+			return new RefreshSimulation(this);
+		}
+	}
+
+	/**
+	 * Runs the simulation to its end.
+	 * 
+	 * @return the report of the simulation
+	 */
+	public SimulationReport run() {
+		VirtualScheduler scheduler = new VirtualScheduler(Instant.EPOCH);
+		Random random = new Random(this.seed);
+		SimulatedEndpoint endpoint = new SimulatedEndpoint(scheduler.clock(), random);
+		RetryPolicy retryPolicy = new ImmediateRetryPolicy(this.maxRetries);
+		List<ProviderTrace> traces = new ArrayList<>(this.providers);
+		try {
+			for (int i = 0; i < this.providers; i++) {
+				ProviderTrace trace = new ProviderTrace(scheduler.clock());
+				traces.add(trace);
+				AutoRenewingTokenProvider<AccessToken> provider = new AutoRenewingTokenProvider<AccessToken>(endpoint,
+						scheduler, retryPolicy, new ObservableMixin<>(), false).clock(scheduler.clock())
+								.tokenExpireInTemporalUnit(ChronoUnit.MILLIS)
+								.schedule(this.delayModifier * (1 - this.jitter * random.nextDouble()))
+								.attach(trace);
+				long offset = this.rampNanos > 0 ? (long) (random.nextDouble() * this.rampNanos) : 0L;
+				scheduler.schedule(() -> start(provider, endpoint, scheduler), offset, TimeUnit.NANOSECONDS);
+			}
+			scheduler.advance(this.durationNanos, TimeUnit.NANOSECONDS);
+		} finally {
+			scheduler.shutdownNow();
+		}
+		Instant end = scheduler.clock().instant();
+		long gaps = 0;
+		long gapNanos = 0;
+		long maxGapNanos = 0;
+		long wastedNanos = 0;
+		long validityNanos = 0;
+		for (ProviderTrace trace : traces) {
+			// count the gaps still open at the end
+			trace.renewed(end, null);
+			gaps += trace.gaps;
+			gapNanos += trace.gapNanos;
+			maxGapNanos = Math.max(maxGapNanos, trace.maxGapNanos);
+			wastedNanos += trace.wastedNanos;
+			validityNanos += trace.validityNanos;
+		}
+		return new SimulationReport(this.providers, this.durationNanos, this.resolutionNanos,
+				endpoint.requestsPerInterval, endpoint.requests, endpoint.failures, endpoint.peakConcurrency, gaps,
+				gapNanos, maxGapNanos, wastedNanos, validityNanos);
+	}
+
+	private static void start(AutoRenewingTokenProvider<AccessToken> provider, TokenService endpoint,
+			VirtualScheduler scheduler) {
+		try {
+			AccessToken token = endpoint.fetch();
+			provider.start(token, scheduler.clock().instant());
+		} catch (IOException e) {
+			scheduler.schedule(() -> start(provider, endpoint, scheduler), START_RETRY_DELAY_MILLIS,
+					TimeUnit.MILLISECONDS);
+		}
+	}
+
+	/**
+	 * The token endpoint shared by all providers. Counts the requests in
+	 * intervals and the requests in flight.
+	 */
+	final class SimulatedEndpoint implements TokenService {
+
+		private final VirtualClock clock;
+		private final Random random;
+		// the end times of the requests in flight
+		private final PriorityQueue<Long> inFlight = new PriorityQueue<>();
+		final long[] requestsPerInterval;
+		long requests;
+		long failures;
+		int peakConcurrency;
+
+		SimulatedEndpoint(VirtualClock clock, Random random) {
+			this.clock = clock;
+			this.random = random;
+			this.requestsPerInterval = new long[(int) ((RefreshSimulation.this.durationNanos
+					+ RefreshSimulation.this.resolutionNanos - 1) / RefreshSimulation.this.resolutionNanos)];
+		}
+
+		@Override
+		public <T extends AccessToken> T fetch() throws OAuth2ProtocolException, IOException {
+			return this.request();
+		}
+
+		@Override
+		public <T extends AccessToken> T refresh(String refreshTokenString)
+				throws OAuth2ProtocolException, IOException {
+			return this.request();
+		}
+
+		@SuppressWarnings("unchecked")
+		private <T extends AccessToken> T request() throws IOException {
+			RefreshSimulation simulation = RefreshSimulation.this;
+			long now = Duration.between(Instant.EPOCH, this.clock.instant()).toNanos();
+			this.requests++;
+			int interval = (int) (now / simulation.resolutionNanos);
+			if (interval < this.requestsPerInterval.length)
+				this.requestsPerInterval[interval]++;
+			long end = now + simulation.latency.nextNanos(this.random);
+			while (!this.inFlight.isEmpty() && this.inFlight.peek() <= now)
+				this.inFlight.poll();
+			if (end > now)
+				this.inFlight.add(end);
+			this.peakConcurrency = Math.max(this.peakConcurrency, this.inFlight.size());
+			boolean outage = now >= simulation.outageStartNanos
+					&& now - simulation.outageStartNanos < simulation.outageNanos;
+			if (outage || (simulation.errorRate > 0 && this.random.nextDouble() < simulation.errorRate)) {
+				this.failures++;
+				throw new IOException("Simulated token endpoint failure");
+			}
+			long expiresIn = Math.max(TimeUnit.NANOSECONDS.toMillis(simulation.ttl.nextNanos(this.random)), 1L);
+			return (T) new AccessToken("access-" + this.requests, "Bearer", expiresIn, "refresh-" + this.requests,
+					null);
+		}
+	}
+
+	/**
+	 * Follows the tokens of a single provider, for the time they were expired
+	 * before being renewed and the validity thrown away by renewing early.
+	 */
+	static final class ProviderTrace implements TokenChangeObserver<AccessToken> {
+
+		private final VirtualClock clock;
+		private Instant expiresAt;
+		private long ttlNanos;
+		long gaps;
+		long gapNanos;
+		long maxGapNanos;
+		long wastedNanos;
+		long validityNanos;
+
+		ProviderTrace(VirtualClock clock) {
+			this.clock = clock;
+		}
+
+		@Override
+		public void tokenChanged(TemporalAccessToken<AccessToken> newToken, TemporalAccessToken<AccessToken> oldToken) {
+			if (newToken != null)
+				this.renewed(this.clock.instant(), newToken);
+		}
+
+		void renewed(Instant now, TemporalAccessToken<AccessToken> newToken) {
+			if (this.expiresAt != null) {
+				long ttlLeftNanos = Duration.between(now, this.expiresAt).toNanos();
+				if (ttlLeftNanos < 0) {
+					this.gaps++;
+					this.gapNanos -= ttlLeftNanos;
+					this.maxGapNanos = Math.max(this.maxGapNanos, -ttlLeftNanos);
+				} else if (newToken != null)
+					this.wastedNanos += ttlLeftNanos;
+				if (newToken != null)
+					this.validityNanos += this.ttlNanos;
+			}
+			if (newToken != null) {
+				this.expiresAt = newToken.validSince().plus(newToken.ttl());
+				this.ttlNanos = newToken.ttl().toNanos();
+			}
+		}
+	}
+
+	/**
+	 * Retries renewals failed with I/O errors without backoff.
+	 */
+	static final class ImmediateRetryPolicy implements RetryPolicy {
+
+		private final int maxRetries;
+
+		ImmediateRetryPolicy(int maxRetries) {
+			this.maxRetries = maxRetries;
+		}
+
+		@Override
+		public long periodBetweenRetries() {
+			return 0L;
+		}
+
+		@Override
+		public long maxRetries() {
+			return this.maxRetries;
+		}
+
+		@Override
+		public boolean onException(Throwable t) {
+			return t instanceof IOException;
+		}
+	}
+
+}
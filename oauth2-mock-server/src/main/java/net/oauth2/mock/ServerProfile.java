@@ -0,0 +1,474 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+package net.oauth2.mock;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The behavior of a {@link MockAuthorizationServer}: the location of its token
+ * endpoint, the format of its responses, its latencies, failures and rate
+ * limits. Profiles are immutable and can be swapped on a running server to
+ * script phases of a test, e.g. an outage followed by a recovery.
+ * <p>
+ * Besides the {@link #standard()} profile, there are profiles emulating the
+ * quirks of some well known authorization servers. They are approximations
+ * sufficient to exercise the samples, not specifications of these services.
+ * </p>
+ */
+public final class ServerProfile {
+
+	/**
+	 * The encoding of the token responses
+	 */
+	public enum ResponseFormat {
+		JSON, FORM
+	}
+
+	public static final String CLIENT_CREDENTIALS = "client_credentials";
+	public static final String REFRESH_TOKEN = "refresh_token";
+	public static final String AUTHORIZATION_CODE = "authorization_code";
+	public static final String PASSWORD = "password";
+
+	private final String basePath;
+	private final String tokenPath;
+	private final Set<String> grantTypes;
+	private final ResponseFormat responseFormat;
+	private final String tokenType;
+	private final String scopeDelimiter;
+	private final long expiresIn;
+	private final boolean refreshTokens;
+	private final boolean rotateRefreshTokens;
+	private final boolean requireBasicAuthentication;
+	private final int authenticationErrorStatus;
+	private final boolean errorsAsOk;
+	private final Latency latency;
+	private final double errorRate;
+	private final int errorStatus;
+	private final long retryAfterSeconds;
+	private final double rateLimit;
+	private final int burst;
+
+	ServerProfile(Builder builder) {
+		this.basePath = builder.basePath;
+		this.tokenPath = builder.tokenPath;
+		this.grantTypes = Collections.unmodifiableSet(new LinkedHashSet<>(builder.grantTypes));
+		this.responseFormat = builder.responseFormat;
+		this.tokenType = builder.tokenType;
+		this.scopeDelimiter = builder.scopeDelimiter;
+		this.expiresIn = builder.expiresIn;
+		this.refreshTokens = builder.refreshTokens;
+		this.rotateRefreshTokens = builder.rotateRefreshTokens;
+		this.requireBasicAuthentication = builder.requireBasicAuthentication;
+		this.authenticationErrorStatus = builder.authenticationErrorStatus;
+		this.errorsAsOk = builder.errorsAsOk;
+		this.latency = builder.latency;
+		this.errorRate = builder.errorRate;
+		this.errorStatus = builder.errorStatus;
+		this.retryAfterSeconds = builder.retryAfterSeconds;
+		this.rateLimit = builder.rateLimit;
+		this.burst = builder.burst;
+	}
+
+	/**
+	 * A standard RFC 6749 token endpoint at /token, supporting all grant types
+	 * with JSON responses. Access tokens are valid for an hour and come with
+	 * refresh tokens that are rotated on each use.
+	 * 
+	 * @return the standard profile
+	 */
+	public static ServerProfile standard() {
+		return new Builder().build();
+	}
+
+	/**
+	 * GitHub OAuth Apps: the token endpoint is /login/oauth/access_token and
+	 * answers authorization code grants with form-encoded responses with a
+	 * comma-delimited scope, no expires_in and no refresh token. Errors are
+	 * reported with status 200.
+	 * 
+	 * @return a profile emulating GitHub
+	 */
+	public static ServerProfile github() {
+		return new Builder().basePath("/login/oauth/").tokenPath("access_token").grantTypes(AUTHORIZATION_CODE)
+				.responseFormat(ResponseFormat.FORM).tokenType("bearer").scopeDelimiter(",").expiresIn(0)
+				.refreshTokens(false).errorsAsOk(true).build();
+	}
+
+	/**
+	 * Google: the token endpoint is /oauth2/v4/token and answers authorization
+	 * code and refresh token grants. Access tokens are valid for 3599 seconds.
+	 * Refresh tokens are not rotated and refresh responses do not include one.
+	 * 
+	 * @return a profile emulating Google
+	 */
+	public static ServerProfile google() {
+		return new Builder().basePath("/oauth2/v4/").grantTypes(AUTHORIZATION_CODE, REFRESH_TOKEN).expiresIn(3599)
+				.rotateRefreshTokens(false).build();
+	}
+
+	/**
+	 * Twitter application-only authentication: the token endpoint is
+	 * /oauth2/token and answers client credentials grants authenticated with
+	 * HTTP Basic only, with a lower case bearer token type and no expires_in.
+	 * Authentication failures are reported with status 403.
+	 * 
+	 * @return a profile emulating Twitter
+	 */
+	public static ServerProfile twitter() {
+		return new Builder().basePath("/oauth2/").grantTypes(CLIENT_CREDENTIALS).tokenType("bearer").expiresIn(0)
+				.refreshTokens(false).requireBasicAuthentication(true).authenticationErrorStatus(403).build();
+	}
+
+	/**
+	 * @param name
+	 *            one of standard, github, google or twitter
+	 * @return the profile with that name
+	 */
+	public static ServerProfile named(String name) {
+		if (name == null)
+			throw new IllegalArgumentException("name is null");
+		switch (name) {
+		case "standard":
+			return standard();
+		case "github":
+			return github();
+		case "google":
+			return google();
+		case "twitter":
+			return twitter();
+		default:
+			throw new IllegalArgumentException("Unknown profile: " + name);
+		}
+	}
+
+	/**
+	 * @return a builder initialized with the settings of this profile
+	 */
+	public Builder toBuilder() {
+		return new Builder(this);
+	}
+
+	public static final class Builder {
+
+		String basePath = "/";
+		String tokenPath = "token";
+		Set<String> grantTypes = new LinkedHashSet<>(
+				Arrays.asList(CLIENT_CREDENTIALS, REFRESH_TOKEN, AUTHORIZATION_CODE, PASSWORD));
+		ResponseFormat responseFormat = ResponseFormat.JSON;
+		String tokenType = "Bearer";
+		String scopeDelimiter = " ";
+		long expiresIn = 3600;
+		boolean refreshTokens = true;
+		boolean rotateRefreshTokens = true;
+		boolean requireBasicAuthentication;
+		int authenticationErrorStatus = 401;
+		boolean errorsAsOk;
+		Latency latency = Latency.none();
+		double errorRate;
+		int errorStatus = 503;
+		long retryAfterSeconds = -1;
+		double rateLimit;
+		int burst = 1;
+
+		public Builder() {
+		}
+
+		Builder(ServerProfile profile) {
+			this.basePath = profile.basePath;
+			this.tokenPath = profile.tokenPath;
+			this.grantTypes = new LinkedHashSet<>(profile.grantTypes);
+			this.responseFormat = profile.responseFormat;
+			this.tokenType = profile.tokenType;
+			this.scopeDelimiter = profile.scopeDelimiter;
+			this.expiresIn = profile.expiresIn;
+			this.refreshTokens = profile.refreshTokens;
+			this.rotateRefreshTokens = profile.rotateRefreshTokens;
+			this.requireBasicAuthentication = profile.requireBasicAuthentication;
+			this.authenticationErrorStatus = profile.authenticationErrorStatus;
+			this.errorsAsOk = profile.errorsAsOk;
+			this.latency = profile.latency;
+			this.errorRate = profile.errorRate;
+			this.errorStatus = profile.errorStatus;
+			this.retryAfterSeconds = profile.retryAfterSeconds;
+			this.rateLimit = profile.rateLimit;
+			this.burst = profile.burst;
+		}
+
+		/**
+		 * @param basePath
+		 *            the path of the token service, starting and ending with
+		 *            '/'. Clients use it as their base URL.
+		 * @return this builder for chaining
+		 */
+		public Builder basePath(String basePath) {
+			if (basePath == null)
+				throw new IllegalArgumentException("basePath is null");
+			if (!basePath.startsWith("/") || !basePath.endsWith("/"))
+				throw new IllegalArgumentException("basePath must start and end with '/'");
+			this.basePath = basePath;
+			return this;
+		}
+
+		/**
+		 * @param tokenPath
+		 *            the path of the token endpoint relative to the base path
+		 * @return this builder for chaining
+		 */
+		public Builder tokenPath(String tokenPath) {
+			if (tokenPath == null)
+				throw new IllegalArgumentException("tokenPath is null");
+			this.tokenPath = tokenPath;
+			return this;
+		}
+
+		/**
+		 * @param grantTypes
+		 *            the supported grant types. Others are answered with
+		 *            unsupported_grant_type.
+		 * @return this builder for chaining
+		 */
+		public Builder grantTypes(String... grantTypes) {
+			if (grantTypes == null)
+				throw new IllegalArgumentException("grantTypes is null");
+			this.grantTypes = new LinkedHashSet<>(Arrays.asList(grantTypes));
+			return this;
+		}
+
+		public Builder responseFormat(ResponseFormat responseFormat) {
+			if (responseFormat == null)
+				throw new IllegalArgumentException("responseFormat is null");
+			this.responseFormat = responseFormat;
+			return this;
+		}
+
+		public Builder tokenType(String tokenType) {
+			if (tokenType == null)
+				throw new IllegalArgumentException("tokenType is null");
+			this.tokenType = tokenType;
+			return this;
+		}
+
+		public Builder scopeDelimiter(String scopeDelimiter) {
+			if (scopeDelimiter == null)
+				throw new IllegalArgumentException("scopeDelimiter is null");
+			this.scopeDelimiter = scopeDelimiter;
+			return this;
+		}
+
+		/**
+		 * @param expiresIn
+		 *            the validity of the issued access tokens in seconds, or 0
+		 *            to omit expires_in from the responses
+		 * @return this builder for chaining
+		 */
+		public Builder expiresIn(long expiresIn) {
+			if (expiresIn < 0)
+				throw new IllegalArgumentException("expiresIn must not be negative");
+			this.expiresIn = expiresIn;
+			return this;
+		}
+
+		/**
+		 * @param refreshTokens
+		 *            whether access tokens are issued with refresh tokens
+		 * @return this builder for chaining
+		 */
+		public Builder refreshTokens(boolean refreshTokens) {
+			this.refreshTokens = refreshTokens;
+			return this;
+		}
+
+		/**
+		 * @param rotateRefreshTokens
+		 *            whether each refresh issues a new refresh token and
+		 *            revokes the used one. Otherwise refresh responses do not
+		 *            include a refresh token and the original one remains
+		 *            valid.
+		 * @return this builder for chaining
+		 */
+		public Builder rotateRefreshTokens(boolean rotateRefreshTokens) {
+			this.rotateRefreshTokens = rotateRefreshTokens;
+			return this;
+		}
+
+		/**
+		 * @param requireBasicAuthentication
+		 *            whether client credentials in the request body are
+		 *            rejected
+		 * @return this builder for chaining
+		 */
+		public Builder requireBasicAuthentication(boolean requireBasicAuthentication) {
+			this.requireBasicAuthentication = requireBasicAuthentication;
+			return this;
+		}
+
+		/**
+		 * @param status
+		 *            the HTTP status of invalid_client errors
+		 * @return this builder for chaining
+		 */
+		public Builder authenticationErrorStatus(int status) {
+			if (status < 400 || status > 499)
+				throw new IllegalArgumentException("status must be a client error status");
+			this.authenticationErrorStatus = status;
+			return this;
+		}
+
+		/**
+		 * @param errorsAsOk
+		 *            whether OAuth errors are reported with status 200
+		 * @return this builder for chaining
+		 */
+		public Builder errorsAsOk(boolean errorsAsOk) {
+			this.errorsAsOk = errorsAsOk;
+			return this;
+		}
+
+		/**
+		 * @param latency
+		 *            the distribution of the latency added to each response
+		 * @return this builder for chaining
+		 */
+		public Builder latency(Latency latency) {
+			if (latency == null)
+				throw new IllegalArgumentException("latency is null");
+			this.latency = latency;
+			return this;
+		}
+
+		/**
+		 * Fails a share of the requests with an HTTP error, e.g. to emulate an
+		 * overloaded or partially unavailable service.
+		 * 
+		 * @param errorRate
+		 *            the probability between [0-1] of a request to fail
+		 * @param status
+		 *            the HTTP status of the failures
+		 * @param retryAfterSeconds
+		 *            the Retry-After header value of the failures, or -1 to
+		 *            omit it
+		 * @return this builder for chaining
+		 */
+		public Builder errors(double errorRate, int status, long retryAfterSeconds) {
+			if (!(errorRate >= 0) || errorRate > 1)
+				throw new IllegalArgumentException("errorRate must be value between [0-1]");
+			if (status < 400 || status > 599)
+				throw new IllegalArgumentException("status must be an error status");
+			if (retryAfterSeconds < -1)
+				throw new IllegalArgumentException("retryAfterSeconds must be -1 or not negative");
+			this.errorRate = errorRate;
+			this.errorStatus = status;
+			this.retryAfterSeconds = retryAfterSeconds;
+			return this;
+		}
+
+		/**
+		 * Rate limits the token endpoint with a token bucket. Requests in
+		 * excess are answered with status 429 and a Retry-After header.
+		 * 
+		 * @param permits
+		 *            the sustained rate of requests, or 0 for no limit
+		 * @param unit
+		 *            the unit of time of the rate
+		 * @param burst
+		 *            the number of requests permitted at once
+		 * @return this builder for chaining
+		 */
+		public Builder rateLimit(long permits, TimeUnit unit, int burst) {
+			if (permits < 0 || unit == null || burst < 1)
+				throw new IllegalArgumentException("permits must not be negative, unit not null and burst positive");
+			this.rateLimit = (double) permits / unit.toNanos(1) * TimeUnit.SECONDS.toNanos(1);
+			this.burst = burst;
+			return this;
+		}
+
+		public ServerProfile build() {
+			return new ServerProfile(this);
+		}
+	}
+
+	public String getBasePath() {
+		return this.basePath;
+	}
+
+	public String getTokenPath() {
+		return this.tokenPath;
+	}
+
+	public Set<String> getGrantTypes() {
+		return this.grantTypes;
+	}
+
+	public ResponseFormat getResponseFormat() {
+		return this.responseFormat;
+	}
+
+	public String getTokenType() {
+		return this.tokenType;
+	}
+
+	public String getScopeDelimiter() {
+		return this.scopeDelimiter;
+	}
+
+	public long getExpiresIn() {
+		return this.expiresIn;
+	}
+
+	public boolean isRefreshTokens() {
+		return this.refreshTokens;
+	}
+
+	public boolean isRotateRefreshTokens() {
+		return this.rotateRefreshTokens;
+	}
+
+	public boolean isRequireBasicAuthentication() {
+		return this.requireBasicAuthentication;
+	}
+
+	public int getAuthenticationErrorStatus() {
+		return this.authenticationErrorStatus;
+	}
+
+	public boolean isErrorsAsOk() {
+		return this.errorsAsOk;
+	}
+
+	public Latency getLatency() {
+		return this.latency;
+	}
+
+	public double getErrorRate() {
+		return this.errorRate;
+	}
+
+	public int getErrorStatus() {
+		return this.errorStatus;
+	}
+
+	public long getRetryAfterSeconds() {
+		return this.retryAfterSeconds;
+	}
+
+	/**
+	 * @return the sustained rate limit in requests per second, 0 for no limit
+	 */
+	public double getRateLimit() {
+		return this.rateLimit;
+	}
+
+	public int getBurst() {
+		return this.burst;
+	}
+
+}
@@ -0,0 +1,111 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+package net.oauth2.mock;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counters of the requests served by a {@link MockAuthorizationServer}.
+ */
+public final class ServerStats {
+
+	private final LongAdder requests = new LongAdder();
+	private final LongAdder issued = new LongAdder();
+	private final LongAdder refreshed = new LongAdder();
+	private final LongAdder injectedErrors = new LongAdder();
+	private final LongAdder rateLimited = new LongAdder();
+	private final LongAdder rejected = new LongAdder();
+
+	ServerStats() {
+	}
+
+	void request() {
+		this.requests.increment();
+	}
+
+	void issued(boolean refresh) {
+		this.issued.increment();
+		if (refresh)
+			this.refreshed.increment();
+	}
+
+	void injectedError() {
+		this.injectedErrors.increment();
+	}
+
+	void rateLimited() {
+		this.rateLimited.increment();
+	}
+
+	void rejected() {
+		this.rejected.increment();
+	}
+
+	/**
+	 * Resets all counters, e.g. at the end of a warm up.
+	 */
+	public void reset() {
+		this.requests.reset();
+		this.issued.reset();
+		this.refreshed.reset();
+		this.injectedErrors.reset();
+		this.rateLimited.reset();
+		this.rejected.reset();
+	}
+
+	/**
+	 * @return the number of calls to the token endpoint
+	 */
+	public long getRequests() {
+		return this.requests.sum();
+	}
+
+	/**
+	 * @return the number of access tokens issued, including refreshes
+	 */
+	public long getIssued() {
+		return this.issued.sum();
+	}
+
+	/**
+	 * @return the number of access tokens issued for refresh token grants
+	 */
+	public long getRefreshed() {
+		return this.refreshed.sum();
+	}
+
+	/**
+	 * @return the number of requests failed by the error rate of the profile
+	 */
+	public long getInjectedErrors() {
+		return this.injectedErrors.sum();
+	}
+
+	/**
+	 * @return the number of requests answered with status 429
+	 */
+	public long getRateLimited() {
+		return this.rateLimited.sum();
+	}
+
+	/**
+	 * @return the number of requests answered with an OAuth error, e.g. for
+	 *         invalid client credentials or a revoked refresh token
+	 */
+	public long getRejected() {
+		return this.rejected.sum();
+	}
+
+	@Override
+	public String toString() {
+		return "requests=" + this.getRequests() + ", issued=" + this.getIssued() + ", refreshed="
+				+ this.getRefreshed() + ", injectedErrors=" + this.getInjectedErrors() + ", rateLimited="
+				+ this.getRateLimited() + ", rejected=" + this.getRejected();
+	}
+
+}
@@ -0,0 +1,158 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+package net.oauth2.mock;
+
+import java.time.Duration;
+
+/**
+ * The results of a {@link RefreshSimulation} run: the load on the token
+ * endpoint over time and how well the providers kept their tokens valid.
+ */
+public final class SimulationReport {
+
+	private final int providers;
+	private final long durationNanos;
+	private final long resolutionNanos;
+	private final long[] requestsPerInterval;
+	private final long requests;
+	private final long failures;
+	private final int peakConcurrency;
+	private final long gaps;
+	private final long gapNanos;
+	private final long maxGapNanos;
+	private final long wastedNanos;
+	private final long validityNanos;
+
+	SimulationReport(int providers, long durationNanos, long resolutionNanos, long[] requestsPerInterval,
+			long requests, long failures, int peakConcurrency, long gaps, long gapNanos, long maxGapNanos,
+			long wastedNanos, long validityNanos) {
+		this.providers = providers;
+		this.durationNanos = durationNanos;
+		this.resolutionNanos = resolutionNanos;
+		this.requestsPerInterval = requestsPerInterval;
+		this.requests = requests;
+		this.failures = failures;
+		this.peakConcurrency = peakConcurrency;
+		this.gaps = gaps;
+		this.gapNanos = gapNanos;
+		this.maxGapNanos = maxGapNanos;
+		this.wastedNanos = wastedNanos;
+		this.validityNanos = validityNanos;
+	}
+
+	public int getProviders() {
+		return this.providers;
+	}
+
+	public Duration getDuration() {
+		return Duration.ofNanos(this.durationNanos);
+	}
+
+	/**
+	 * @return the length of the intervals of {@link #getRequestsPerInterval()}
+	 */
+	public Duration getResolution() {
+		return Duration.ofNanos(this.resolutionNanos);
+	}
+
+	/**
+	 * @return the number of requests to the token endpoint in each interval
+	 *         of the simulation
+	 */
+	public long[] getRequestsPerInterval() {
+		return this.requestsPerInterval.clone();
+	}
+
+	/**
+	 * @return the requests per second to the token endpoint in each interval
+	 *         of the simulation
+	 */
+	public double[] qps() {
+		double[] qps = new double[this.requestsPerInterval.length];
+		for (int i = 0; i < qps.length; i++)
+			qps[i] = this.requestsPerInterval[i] * 1e9 / this.resolutionNanos;
+		return qps;
+	}
+
+	/**
+	 * @return the requests per second in the busiest interval
+	 */
+	public double getPeakQps() {
+		long peak = 0;
+		for (long requests : this.requestsPerInterval)
+			peak = Math.max(peak, requests);
+		return peak * 1e9 / this.resolutionNanos;
+	}
+
+	public double getMeanQps() {
+		return this.requests * 1e9 / this.durationNanos;
+	}
+
+	/**
+	 * @return the number of requests to the token endpoint, including failed
+	 *         ones
+	 */
+	public long getRequests() {
+		return this.requests;
+	}
+
+	/**
+	 * @return the number of failed requests to the token endpoint
+	 */
+	public long getFailures() {
+		return this.failures;
+	}
+
+	/**
+	 * @return the maximal number of requests in flight at the token endpoint
+	 */
+	public int getPeakConcurrency() {
+		return this.peakConcurrency;
+	}
+
+	/**
+	 * @return the number of times a provider held an expired token, including
+	 *         those still expired at the end of the simulation
+	 */
+	public long getGaps() {
+		return this.gaps;
+	}
+
+	/**
+	 * @return the total time the providers held expired tokens
+	 */
+	public Duration getGapTime() {
+		return Duration.ofNanos(this.gapNanos);
+	}
+
+	/**
+	 * @return the longest time a provider held an expired token
+	 */
+	public Duration getMaxGap() {
+		return Duration.ofNanos(this.maxGapNanos);
+	}
+
+	/**
+	 * @return the fraction between [0-1] of the validity of the renewed
+	 *         tokens that was left unused by renewing them before they
+	 *         expired
+	 */
+	public double getRefreshWaste() {
+		return this.validityNanos > 0 ? (double) this.wastedNanos / this.validityNanos : 0;
+	}
+
+	@Override
+	public String toString() {
+		return String.format(
+				"providers=%d duration=%s requests=%d failures=%d qps=%.3f peakQps=%.3f peakConcurrency=%d gaps=%d gapTime=%s maxGap=%s waste=%.3f",
+				this.providers, this.getDuration(), this.requests, this.failures, this.getMeanQps(),
+				this.getPeakQps(), this.peakConcurrency, this.gaps, this.getGapTime(), this.getMaxGap(),
+				this.getRefreshWaste());
+	}
+
+}
@@ -0,0 +1,198 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+package net.oauth2.mock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLContext;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import net.oauth2.AccessToken;
+import net.oauth2.ClientCredentialsGrantRequest;
+import net.oauth2.RefreshTokenGrantRequest;
+import net.oauth2.client.OAuth2ProtocolException;
+import net.oauth2.client.http.TokenServiceHttpClient;
+import net.oauth2.client.http.databinding.SimpleDatabindingProvider;
+import net.oauth2.client.http.javase.HttpsURLConnectionClientAdapter;
+import net.oauth2.client.http.javase.conn.BasicAuthenticationAdapter;
+import net.oauth2.client.http.javase.conn.HttpLoggingFormatter;
+
+public class MockAuthorizationServerTest {
+
+	static final String BASIC = "Basic Y2xpZW50OnNlY3JldA==";
+
+	final ClientCredentialsGrantRequest grant = new ClientCredentialsGrantRequest("client", "secret", null);
+	MockAuthorizationServer server;
+	SSLContext sslContext;
+	TokenServiceHttpClient client;
+
+	@Before
+	public void setUp() throws IOException {
+		this.server = new MockAuthorizationServer.Builder().client("client", "secret").seed(1).build().start();
+		this.sslContext = MockAuthorizationServer.sslContext();
+		BasicAuthenticationAdapter authentication = new BasicAuthenticationAdapter("client", "secret");
+		this.client = new HttpsURLConnectionClientAdapter(new URL(this.server.baseUrl()), url -> {
+			HttpsURLConnection connection = this.connection(url);
+			authentication.adapt(connection);
+			return connection;
+		}, new HttpLoggingFormatter(), new SimpleDatabindingProvider(), AccessToken.class);
+	}
+
+	@After
+	public void tearDown() {
+		this.server.close();
+	}
+
+	HttpsURLConnection connection(URL url) throws IOException {
+		HttpsURLConnection connection = (HttpsURLConnection) url.openConnection();
+		connection.setSSLSocketFactory(this.sslContext.getSocketFactory());
+		connection.setRequestMethod("POST");
+		connection.setRequestProperty("Content-Type", "application/x-www-form-urlencoded");
+		connection.setDoOutput(true);
+		return connection;
+	}
+
+	HttpsURLConnection post(String authorization, String form) throws IOException {
+		HttpsURLConnection connection = this.connection(new URL(this.server.tokenEndpoint()));
+		if (authorization != null)
+			connection.setRequestProperty("Authorization", authorization);
+		try (OutputStream out = connection.getOutputStream()) {
+			out.write(form.getBytes(StandardCharsets.UTF_8));
+		}
+		connection.getResponseCode();
+		return connection;
+	}
+
+	@Test
+	public void testClientCredentials() throws IOException {
+		AccessToken token = this.client.post("token", this.grant);
+
+		assertNotNull(token.getAccessToken());
+		assertEquals("Bearer", token.getTokenType());
+		assertEquals(3600, token.getExpiresIn());
+		assertNotNull(token.getRefreshToken());
+		assertEquals(1, this.server.stats().getRequests());
+		assertEquals(1, this.server.stats().getIssued());
+	}
+
+	@Test
+	public void testRefreshTokenRotation() throws IOException {
+		AccessToken token = this.client.post("token", this.grant);
+		RefreshTokenGrantRequest refresh = RefreshTokenGrantRequest.renew(this.grant, token.getRefreshToken(), null);
+
+		AccessToken refreshed = this.client.post("token", refresh);
+
+		assertNotEquals(token.getAccessToken(), refreshed.getAccessToken());
+		assertNotEquals(token.getRefreshToken(), refreshed.getRefreshToken());
+		assertEquals(1, this.server.stats().getRefreshed());
+		try {
+			this.client.post("token", refresh);
+			fail("OAuth2ProtocolException expected");
+		} catch (OAuth2ProtocolException e) {
+			assertEquals("invalid_grant", e.getError().getError());
+		}
+		assertEquals(1, this.server.stats().getRejected());
+	}
+
+	@Test
+	public void testRefreshTokenWithoutRotation() throws IOException {
+		this.server.profile(ServerProfile.standard().toBuilder().rotateRefreshTokens(false).build());
+		AccessToken token = this.client.post("token", this.grant);
+		RefreshTokenGrantRequest refresh = RefreshTokenGrantRequest.renew(this.grant, token.getRefreshToken(), null);
+
+		assertNull(this.client.post("token", refresh).getRefreshToken());
+		assertNotNull(this.client.post("token", refresh).getAccessToken());
+	}
+
+	@Test
+	public void testAuthenticationChallenge() throws IOException {
+		HttpsURLConnection connection = this.post(null, "grant_type=client_credentials");
+
+		assertEquals(401, connection.getResponseCode());
+		assertEquals("Basic realm=\"mock\"", connection.getHeaderField("WWW-Authenticate"));
+
+		connection = this.post(null, "grant_type=client_credentials&client_id=client&client_secret=wrong");
+		assertEquals(401, connection.getResponseCode());
+		assertNull(connection.getHeaderField("WWW-Authenticate"));
+	}
+
+	@Test
+	public void testInjectedErrors() throws IOException {
+		this.server.profile(ServerProfile.standard().toBuilder().errors(1, 503, 2).build());
+
+		HttpsURLConnection connection = this.post(BASIC, "grant_type=client_credentials");
+
+		assertEquals(503, connection.getResponseCode());
+		assertEquals("2", connection.getHeaderField("Retry-After"));
+		assertEquals(1, this.server.stats().getInjectedErrors());
+	}
+
+	@Test
+	public void testRateLimit() throws IOException {
+		this.server.profile(ServerProfile.standard().toBuilder().rateLimit(1, TimeUnit.MINUTES, 2).build());
+
+		assertEquals(200, this.post(BASIC, "grant_type=client_credentials").getResponseCode());
+		assertEquals(200, this.post(BASIC, "grant_type=client_credentials").getResponseCode());
+		HttpsURLConnection connection = this.post(BASIC, "grant_type=client_credentials");
+
+		assertEquals(429, connection.getResponseCode());
+		long retryAfter = Long.parseLong(connection.getHeaderField("Retry-After"));
+		assertTrue(retryAfter > 1 && retryAfter <= 60);
+		assertEquals(1, this.server.stats().getRateLimited());
+	}
+
+	@Test
+	public void testGithubProfile() throws IOException {
+		this.server.profile(ServerProfile.github());
+
+		HttpsURLConnection connection = this.post(BASIC, "grant_type=authorization_code&code=abc&scope=repo+gist");
+		Map<String, String> payload = MockAuthorizationServer
+				.parseForm(MockAuthorizationServer.read(connection.getInputStream()));
+
+		assertEquals(200, connection.getResponseCode());
+		assertTrue(connection.getContentType().startsWith("application/x-www-form-urlencoded"));
+		assertEquals("repo,gist", payload.get("scope"));
+		assertEquals("bearer", payload.get("token_type"));
+		assertFalse(payload.containsKey("expires_in"));
+		assertFalse(payload.containsKey("refresh_token"));
+
+		connection = this.post(BASIC, "grant_type=client_credentials");
+		assertEquals(200, connection.getResponseCode());
+		assertTrue(MockAuthorizationServer.read(connection.getInputStream()).startsWith("error=unsupported_grant_type"));
+	}
+
+	@Test
+	public void testLoadTest() throws InterruptedException {
+		LoadTestReport report = new LoadTest.Builder().client(this.client).server(this.server).grant(this.grant)
+				.threads(2).warmup(100, TimeUnit.MILLISECONDS).duration(300, TimeUnit.MILLISECONDS).build().run();
+
+		assertTrue(report.getTokens() > 0);
+		assertEquals(0, report.getFailures());
+		assertTrue(report.getP50().compareTo(report.getP99()) <= 0);
+		// counters are reset after the warm up, requests in flight may straddle
+		assertTrue(Math.abs(report.getEndpointCalls() - report.getTokens()) <= 2);
+	}
+
+}
@@ -0,0 +1,71 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+package net.oauth2.mock;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class RefreshSimulationTest {
+
+	@Test
+	public void testSynchronizedRenewals() {
+		SimulationReport report = new RefreshSimulation.Builder().providers(100)
+				.ttl(Latency.fixed(1, TimeUnit.HOURS)).delayModifier(0.9).duration(6, TimeUnit.HOURS).build().run();
+
+		// the initial fetch and a renewal every 54 minutes
+		assertEquals(700, report.getRequests());
+		assertEquals(0, report.getFailures());
+		assertEquals(100, report.getPeakConcurrency());
+		assertEquals(100 / 60.0, report.getPeakQps(), 1e-9);
+		assertEquals(0, report.getGaps());
+		assertEquals(0.1, report.getRefreshWaste(), 1e-9);
+	}
+
+	@Test
+	public void testJitterSpreadsRenewals() {
+		RefreshSimulation.Builder builder = new RefreshSimulation.Builder().providers(100)
+				.ttl(Latency.fixed(1, TimeUnit.HOURS)).duration(6, TimeUnit.HOURS);
+		SimulationReport synchronous = builder.build().run();
+		SimulationReport jittered = builder.startWithin(1, TimeUnit.HOURS).jitter(0.2).build().run();
+
+		assertTrue(jittered.toString(), jittered.getPeakQps() * 5 < synchronous.getPeakQps());
+		assertTrue(jittered.toString(), jittered.getPeakConcurrency() * 5 < synchronous.getPeakConcurrency());
+		assertTrue(jittered.toString(), jittered.getRefreshWaste() > synchronous.getRefreshWaste());
+		assertEquals(0, jittered.getGaps());
+	}
+
+	@Test
+	public void testOutageCausesExpiryGaps() {
+		SimulationReport report = new RefreshSimulation.Builder().providers(10)
+				.ttl(Latency.fixed(10, TimeUnit.MINUTES)).delayModifier(0.9).outage(20, 30, TimeUnit.MINUTES)
+				.duration(2, TimeUnit.HOURS).build().run();
+
+		// renewals at 27, 36 and 45 minutes fail, the token fetched at 18
+		// minutes expires at 28 and is renewed at 54
+		assertEquals(30, report.getFailures());
+		assertEquals(10, report.getGaps());
+		assertEquals(Duration.ofMinutes(26), report.getMaxGap());
+		assertEquals(Duration.ofMinutes(260), report.getGapTime());
+	}
+
+	@Test
+	public void testDeterministic() {
+		RefreshSimulation simulation = new RefreshSimulation.Builder().providers(50)
+				.ttl(Latency.uniform(5, 15, TimeUnit.MINUTES)).latency(Latency.logNormal(50, 500, TimeUnit.MILLISECONDS))
+				.errorRate(0.05).retries(3).startWithin(5, TimeUnit.MINUTES).jitter(0.1).duration(3, TimeUnit.HOURS)
+				.seed(7).build();
+
+		assertEquals(simulation.run().toString(), simulation.run().toString());
+	}
+
+}
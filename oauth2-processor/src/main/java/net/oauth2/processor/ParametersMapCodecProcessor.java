@@ -0,0 +1,335 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+
+package net.oauth2.processor;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.AnnotationMirror;
+import javax.lang.model.element.AnnotationValue;
+import javax.lang.model.element.Element;
+import javax.lang.model.element.ElementKind;
+import javax.lang.model.element.ExecutableElement;
+import javax.lang.model.element.Modifier;
+import javax.lang.model.element.NestingKind;
+import javax.lang.model.element.PackageElement;
+import javax.lang.model.element.TypeElement;
+import javax.lang.model.element.VariableElement;
+import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.FileObject;
+import javax.tools.StandardLocation;
+
+/**
+ * Generates a {@code net.oauth2.ParametersMapCodec} implementation for each
+ * concrete class that has properties annotated with
+ * {@code net.oauth2.OAuthPayloadProperty}, declared by itself or inherited from
+ * its superclasses, and registers the generated codecs as services in
+ * {@code META-INF/services/net.oauth2.ParametersMapCodec}.
+ * <p>
+ * The generated encoder reads the annotated properties with plain field
+ * accesses and getter calls. An annotated field that is not accessible from the
+ * generated codec is read through its {@code get}/{@code is} getter. The
+ * generated decoder delegates to a constructor taking a single Map argument,
+ * when the class declares one.
+ * </p>
+ * Classes for which no accessor can be resolved are skipped with a warning and
+ * are mapped by {@code net.oauth2.BeanUtils} at runtime.
+ */
+@SupportedAnnotationTypes("*")
+public class ParametersMapCodecProcessor extends AbstractProcessor {
+
+	static final String ANNOTATION = "net.oauth2.OAuthPayloadProperty";
+	static final String CODEC = "net.oauth2.ParametersMapCodec";
+	static final String SUFFIX = "_ParametersMapCodec";
+
+	private final List<String> codecs = new ArrayList<>();
+
+	@Override
+	public SourceVersion getSupportedSourceVersion() {
+		return SourceVersion.latestSupported();
+	}
+
+	@Override
+	public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+		if (roundEnv.processingOver()) {
+			if (!this.codecs.isEmpty())
+				this.writeServices();
+			return false;
+		}
+		if (this.processingEnv.getElementUtils().getTypeElement(CODEC) == null)
+			return false;
+		for (TypeElement type : ElementFilter.typesIn(roundEnv.getRootElements()))
+			this.process(type);
+		// never claim annotations, other processors may want them too
+		return false;
+	}
+
+	private void process(TypeElement type) {
+		for (TypeElement nested : ElementFilter.typesIn(type.getEnclosedElements()))
+			this.process(nested);
+		if (type.getKind() != ElementKind.CLASS || type.getModifiers().contains(Modifier.PRIVATE)
+				|| !type.getTypeParameters().isEmpty())
+			return;
+		if (type.getNestingKind() == NestingKind.MEMBER && !type.getModifiers().contains(Modifier.STATIC))
+			return;
+		if (type.getQualifiedName().toString().endsWith(SUFFIX))
+			return;
+		Map<String, Property> properties = this.properties(type);
+		if (properties == null || properties.isEmpty())
+			return;
+		try {
+			this.generate(type, properties);
+		} catch (IOException e) {
+			this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+					"Failed to generate ParametersMap codec: " + e.getMessage(), type);
+		}
+	}
+
+	/**
+	 * A payload property and the Java expression that reads it from an
+	 * instance named {@code value}.
+	 */
+	static final class Property {
+		final String expression;
+		final boolean primitive;
+
+		Property(String expression, boolean primitive) {
+			this.expression = expression;
+			this.primitive = primitive;
+		}
+	}
+
+	/**
+	 * Collects the annotated properties of type and its superclasses, mapped
+	 * by payload key. Properties of subclasses take precedence.
+	 *
+	 * @return the properties or null if any of them cannot be accessed
+	 */
+	Map<String, Property> properties(TypeElement type) {
+		PackageElement pkg = this.processingEnv.getElementUtils().getPackageOf(type);
+		Map<String, Property> properties = new LinkedHashMap<>();
+		for (TypeElement t = type; t != null; t = this.superclass(t)) {
+			for (Element member : t.getEnclosedElements()) {
+				String key = this.payloadKey(member);
+				if (key == null || properties.containsKey(key) || member.getModifiers().contains(Modifier.STATIC))
+					continue;
+				Property property = null;
+				if (member.getKind() == ElementKind.METHOD) {
+					ExecutableElement method = (ExecutableElement) member;
+					if (method.getParameters().isEmpty() && method.getReturnType().getKind() != TypeKind.VOID
+							&& this.isAccessible(method, pkg))
+						property = new Property("value." + method.getSimpleName() + "()",
+								method.getReturnType().getKind().isPrimitive());
+				} else if (member.getKind() == ElementKind.FIELD) {
+					VariableElement field = (VariableElement) member;
+					if (this.isAccessible(field, pkg))
+						property = new Property("value." + field.getSimpleName(), field.asType().getKind().isPrimitive());
+					else {
+						ExecutableElement getter = this.getter(type, field.getSimpleName().toString(), pkg);
+						if (getter != null)
+							property = new Property("value." + getter.getSimpleName() + "()",
+									getter.getReturnType().getKind().isPrimitive());
+					}
+				}
+				if (property == null) {
+					this.processingEnv.getMessager().printMessage(Diagnostic.Kind.WARNING, "@OAuthPayloadProperty "
+							+ member.getSimpleName() + " is not accessible to a generated codec. " + type.getQualifiedName()
+							+ " will be mapped by introspection", member);
+					return null;
+				}
+				properties.put(key, property);
+			}
+		}
+		return properties;
+	}
+
+	private String payloadKey(Element member) {
+		for (AnnotationMirror annotation : member.getAnnotationMirrors()) {
+			TypeElement annotationType = (TypeElement) annotation.getAnnotationType().asElement();
+			if (!annotationType.getQualifiedName().contentEquals(ANNOTATION))
+				continue;
+			for (Map.Entry<? extends ExecutableElement, ? extends AnnotationValue> entry : annotation.getElementValues()
+					.entrySet()) {
+				if (entry.getKey().getSimpleName().contentEquals("value"))
+					return String.valueOf(entry.getValue().getValue());
+			}
+		}
+		return null;
+	}
+
+	private ExecutableElement getter(TypeElement type, String fieldName, PackageElement pkg) {
+		String suffix = Character.toUpperCase(fieldName.charAt(0)) + fieldName.substring(1);
+		for (TypeElement t = type; t != null; t = this.superclass(t)) {
+			for (ExecutableElement method : ElementFilter.methodsIn(t.getEnclosedElements())) {
+				String name = method.getSimpleName().toString();
+				if ((name.equals("get" + suffix) || name.equals("is" + suffix)) && method.getParameters().isEmpty()
+						&& !method.getModifiers().contains(Modifier.STATIC) && this.isAccessible(method, pkg))
+					return method;
+			}
+		}
+		return null;
+	}
+
+	private TypeElement superclass(TypeElement type) {
+		TypeMirror superclass = type.getSuperclass();
+		if (superclass.getKind() != TypeKind.DECLARED)
+			return null;
+		TypeElement element = (TypeElement) ((DeclaredType) superclass).asElement();
+		return element.getQualifiedName().contentEquals("java.lang.Object") ? null : element;
+	}
+
+	private boolean isAccessible(Element member, PackageElement pkg) {
+		Set<Modifier> modifiers = member.getModifiers();
+		if (modifiers.contains(Modifier.PRIVATE))
+			return false;
+		TypeElement declaring = (TypeElement) member.getEnclosingElement();
+		if (modifiers.contains(Modifier.PUBLIC) && declaring.getModifiers().contains(Modifier.PUBLIC))
+			return true;
+		return this.processingEnv.getElementUtils().getPackageOf(declaring).equals(pkg);
+	}
+
+	/**
+	 * @return true if type declares a constructor accepting a
+	 *         {@code Map<String, Object>} that the generated codec can invoke.
+	 */
+	private boolean hasMapConstructor(TypeElement type, PackageElement pkg) {
+		if (type.getModifiers().contains(Modifier.ABSTRACT))
+			return false;
+		TypeElement map = this.processingEnv.getElementUtils().getTypeElement("java.util.Map");
+		TypeMirror stringType = this.processingEnv.getElementUtils().getTypeElement("java.lang.String").asType();
+		TypeMirror objectType = this.processingEnv.getElementUtils().getTypeElement("java.lang.Object").asType();
+		DeclaredType argument = this.processingEnv.getTypeUtils().getDeclaredType(map, stringType, objectType);
+		for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+			if (constructor.getParameters().size() == 1 && this.isAccessible(constructor, pkg) && this.processingEnv
+					.getTypeUtils().isAssignable(argument, constructor.getParameters().get(0).asType()))
+				return true;
+		}
+		return false;
+	}
+
+	private void generate(TypeElement type, Map<String, Property> properties) throws IOException {
+		PackageElement pkg = this.processingEnv.getElementUtils().getPackageOf(type);
+		String packageName = pkg.isUnnamed() ? "" : pkg.getQualifiedName().toString();
+		String typeName = type.getQualifiedName().toString();
+		String simpleName = (packageName.isEmpty() ? typeName : typeName.substring(packageName.length() + 1))
+				.replace('.', '_') + SUFFIX;
+		String codecName = packageName.isEmpty() ? simpleName : packageName + "." + simpleName;
+		this.codecs.add(codecName);
+		// sources generated by a previous build can be compiled along again on
+		// incremental builds; recreating them is an error
+		if (this.processingEnv.getElementUtils().getTypeElement(codecName) != null)
+			return;
+
+		try (PrintWriter out = new PrintWriter(
+				this.processingEnv.getFiler().createSourceFile(codecName, type).openWriter())) {
+			if (!packageName.isEmpty()) {
+				out.println("package " + packageName + ";");
+				out.println();
+			}
+			out.println("/**");
+			out.println(" * Generated by " + ParametersMapCodecProcessor.class.getName() + ". Do not edit.");
+			out.println(" */");
+			out.println("public final class " + simpleName + " implements " + CODEC + "<" + typeName + "> {");
+			out.println();
+			out.println("\t@Override");
+			out.println("\tpublic Class<" + typeName + "> type() {");
+			out.println("\t\treturn " + typeName + ".class;");
+			out.println("\t}");
+			out.println();
+			out.println("\t@Override");
+			out.println("\tpublic java.util.Map<String, Object> encode(" + typeName + " value) {");
+			out.println("\t\tjava.util.Map<String, Object> map = new java.util.HashMap<>();");
+			out.println("\t\tObject v;");
+			for (Map.Entry<String, Property> entry : properties.entrySet()) {
+				String key = "\"" + entry.getKey().replace("\\", "\\\\").replace("\"", "\\\"") + "\"";
+				Property property = entry.getValue();
+				if (property.primitive) {
+					out.println("\t\tmap.put(" + key + ", " + property.expression + ");");
+				} else {
+					out.println("\t\tv = " + property.expression + ";");
+					out.println("\t\tif (v != null)");
+					out.println("\t\t\tmap.put(" + key + ", v);");
+				}
+			}
+			out.println("\t\treturn map;");
+			out.println("\t}");
+			out.println();
+			boolean decoding = this.hasMapConstructor(type, pkg);
+			out.println("\t@Override");
+			out.println("\tpublic boolean isDecoding() {");
+			out.println("\t\treturn " + decoding + ";");
+			out.println("\t}");
+			out.println();
+			out.println("\t@Override");
+			out.println("\tpublic " + typeName + " decode(java.util.Map<String, Object> map) {");
+			if (decoding)
+				out.println("\t\treturn new " + typeName + "(map);");
+			else
+				out.println("\t\treturn null;");
+			out.println("\t}");
+			out.println();
+			out.println("}");
+		}
+	}
+
+	/**
+	 * Writes the service registrations of the codecs generated in this
+	 * compilation, merged with those of a previous compilation into the same
+	 * output. Incremental builds compile only some of the sources and must not
+	 * drop the other codecs. Registrations of codecs that no longer exist are
+	 * dropped.
+	 */
+	private void writeServices() {
+		String path = "META-INF/services/" + CODEC;
+		Set<String> codecs = new LinkedHashSet<>();
+		try {
+			FileObject existing = this.processingEnv.getFiler().getResource(StandardLocation.CLASS_OUTPUT, "", path);
+			try (BufferedReader in = new BufferedReader(existing.openReader(true))) {
+				String line;
+				while ((line = in.readLine()) != null) {
+					int comment = line.indexOf('#');
+					String codec = (comment < 0 ? line : line.substring(0, comment)).trim();
+					if (!codec.isEmpty() && this.processingEnv.getElementUtils().getTypeElement(codec) != null)
+						codecs.add(codec);
+				}
+			}
+		} catch (IOException e) {
+			// nothing registered yet
+		}
+		codecs.addAll(this.codecs);
+		try {
+			FileObject services = this.processingEnv.getFiler().createResource(StandardLocation.CLASS_OUTPUT, "",
+					path);
+			try (Writer out = services.openWriter()) {
+				for (String codec : codecs)
+					out.write(codec + "\n");
+			}
+		} catch (IOException e) {
+			this.processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+					"Failed to register ParametersMap codecs: " + e.getMessage());
+		}
+	}
+
+}
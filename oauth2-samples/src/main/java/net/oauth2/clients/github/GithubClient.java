@@ -55,6 +55,9 @@ import net.oauth2.client.http.javase.HttpsURLConnectionClientAdapter;
  * <li><B>GITHUB_API_SCOPES</B>: A space delimited list of scopes.</li>
  * <li><B>GITHUB_API_AUTHORIZATION_CODE</B>: The authorization code for this
  * client if you have already obtained it by some means</li>
+ * <li><B>GITHUB_API_TOKEN_SERVICE_URL</B>: Overrides the token service base URL,
+ * e.g. to run the sample against a MockAuthorizationServer with the github
+ * profile from the oauth2-mock-server module.</li>
  * </ul>
  * Note, that if you do not provide authorization code via environment variable,
  * the sample will prompt you for any missing parameters required to form a
@@ -124,7 +127,8 @@ public class GithubClient {
 		 * augment a little our databinding provider to conform to this. See
 		 * GithubDatabindingProvider
 		 */
-		String tokenServiceBaseUrl = "https://github.com/login/oauth/";
+		String tokenServiceBaseUrl = System.getenv().getOrDefault("GITHUB_API_TOKEN_SERVICE_URL",
+				"https://github.com/login/oauth/");
 		TokenServiceHttpClient client = new HttpsURLConnectionClientAdapter.Builder().baseUrl(tokenServiceBaseUrl)
 				.basicAuthentication(clientId, clientSecret).mapper(new GithubDatabindingProvider()).build();
 		AuthorizationCodeGrantRequest grant = new AuthorizationCodeGrantRequest(code, clientId, clientSecret,
@@ -18,7 +18,7 @@ import net.oauth2.client.http.FormEncodeDataBinding.CollectionDeserializer;
 public class GithubDatabindingProvider implements DataBindingProvider<Object> {
 
 	FormEncodeDataBinding formDataBinding = new FormEncodeDataBinding()
-			.with("scope", new CollectionDeserializer<String>().unmodifiable(true));
+			.with("scope", new CollectionDeserializer<String>().delimiter("[,\\s]+").unmodifiable(true));
 	
 	public GithubDatabindingProvider() {}
 
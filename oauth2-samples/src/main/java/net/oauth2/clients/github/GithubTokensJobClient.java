@@ -82,7 +82,8 @@ public class GithubTokensJobClient {
 		 * augment a little our databinding provider to conform to this. See
 		 * GithubDatabindingProvider
 		 */
-		String tokenServiceBaseUrl = "https://github.com/login/oauth/";
+		String tokenServiceBaseUrl = System.getenv().getOrDefault("GITHUB_API_TOKEN_SERVICE_URL",
+				"https://github.com/login/oauth/");
 		TokenServiceHttpClient client = new HttpsURLConnectionClientAdapter.Builder().baseUrl(tokenServiceBaseUrl)
 				.basicAuthentication(clientId, clientSecret).mapper(new GithubDatabindingProvider()).build();
 		AuthorizationCodeGrantRequest grant = new AuthorizationCodeGrantRequest(code, clientId, clientSecret,
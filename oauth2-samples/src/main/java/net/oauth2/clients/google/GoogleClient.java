@@ -50,6 +50,9 @@ import net.oauth2.client.http.javase.HttpsURLConnectionClientAdapter;
  * <li><B>GOOGLE_API_REDIRECT_URI</B>: One of the redirect URIs listed for your project in the API Console</li>
  * <li><B>GOOGLE_API_SCOPES</B>: A valid scope for the api that you will call</li>
  * <li><B>GOOGLE_API_AUTHORIZATION_CODE</B>: The authorization code for this client if you have already obtained it by some means</li>
+ * <li><B>GOOGLE_API_TOKEN_SERVICE_URL</B>: Overrides the token service base URL,
+ * e.g. to run the sample against a MockAuthorizationServer with the google
+ * profile from the oauth2-mock-server module.</li>
  * </ul>
  * Note, that if you do not provide authorization code via
  * environment variable, the sample will prompt you for any missing parameters
@@ -113,7 +116,8 @@ public class GoogleClient {
 
 		/*Create a TokenProvider and get a token with it.*/
 		/*Experiment with different clients (apache, okhttp3), or object mappers (Gson, Jackson)*/
-		String tokenServiceBaseUrl = "https://www.googleapis.com/oauth2/v4/";
+		String tokenServiceBaseUrl = System.getenv().getOrDefault("GOOGLE_API_TOKEN_SERVICE_URL",
+				"https://www.googleapis.com/oauth2/v4/");
 		TokenServiceHttpClient client = new HttpsURLConnectionClientAdapter.Builder().baseUrl(tokenServiceBaseUrl)
 				.basicAuthentication(clientId, clientSecret).mapper(new SimpleDatabindingProvider()).build();
 		AuthorizationCodeGrantRequest grant = new AuthorizationCodeGrantRequest(code, clientId, clientSecret,
@@ -49,6 +49,9 @@ import net.oauth2.client.http.javase.HttpsURLConnectionClientAdapter;
  * <li><B>GOOGLE_API_CLIENT_ID</B>: The client ID obtained from the API Console.</li>
  * <li><B>GOOGLE_API_CLIENT_SECRET</B>: The client Secret obtained from the API Console</li>
  * <li><B>GOOGLE_API_SCOPES</B>: A valid scope for the api that you will call</li>
+ * <li><B>TWITTER_API_TOKEN_SERVICE_URL</B>: Overrides the token service base URL,
+ * e.g. to run the sample against a MockAuthorizationServer with the twitter
+ * profile from the oauth2-mock-server module.</li>
  * </ul>
  * </div> <div>Note, that if you do not provide authorization code via
  * environment variable, the sample will prompt you for any missing parameters
@@ -92,7 +95,8 @@ public class TwitterClient {
 
 		/*Create a TokenProvider and get a token with it.*/
 		/*Experiment with different clients (apache, okhttp3), or object mappers (Gson, Jackson)*/
-		String tokenServiceBaseUrl = "https://api.twitter.com/oauth2/";
+		String tokenServiceBaseUrl = System.getenv().getOrDefault("TWITTER_API_TOKEN_SERVICE_URL",
+				"https://api.twitter.com/oauth2/");
 		TokenServiceHttpClient client = new HttpsURLConnectionClientAdapter.Builder().baseUrl(tokenServiceBaseUrl)
 				.basicAuthentication(clientId, clientSecret).mapper(new SimpleDatabindingProvider()).build();
 		ClientCredentialsGrantRequest grant = new ClientCredentialsGrantRequest(clientId, clientSecret, scopes);
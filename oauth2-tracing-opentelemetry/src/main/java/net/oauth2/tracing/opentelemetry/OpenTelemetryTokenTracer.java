@@ -0,0 +1,99 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+package net.oauth2.tracing.opentelemetry;
+
+import java.util.function.BiConsumer;
+
+import io.opentelemetry.api.OpenTelemetry;
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.SpanBuilder;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.Tracer;
+import io.opentelemetry.context.Context;
+import io.opentelemetry.context.Scope;
+import io.opentelemetry.context.propagation.TextMapPropagator;
+import io.opentelemetry.context.propagation.TextMapSetter;
+import net.oauth2.client.TokenTracer;
+
+/**
+ * A {@link TokenTracer} implementation based on OpenTelemetry.
+ * <p>
+ * Token operations are traced as spans of the instrumentation scope
+ * {@value #INSTRUMENTATION_NAME}, with the client id and grant type as
+ * attributes. HTTP exchanges with the token service are client spans and
+ * carry the context propagated by the configured propagators (e.g. W3C
+ * {@code traceparent}).
+ * </p>
+ */
+public class OpenTelemetryTokenTracer implements TokenTracer {
+
+	static final String INSTRUMENTATION_NAME = "net.oauth2";
+
+	static final AttributeKey<String> CLIENT_ID = AttributeKey.stringKey("oauth2.client_id");
+	static final AttributeKey<String> GRANT_TYPE = AttributeKey.stringKey("oauth2.grant_type");
+
+	private static final TextMapSetter<BiConsumer<String, String>> SETTER = (headers, name, value) -> headers
+			.accept(name, value);
+
+	private final Tracer tracer;
+	private final TextMapPropagator propagator;
+
+	public OpenTelemetryTokenTracer(OpenTelemetry openTelemetry) {
+		if (openTelemetry == null)
+			throw new IllegalArgumentException("openTelemetry is null");
+		this.tracer = openTelemetry.getTracer(INSTRUMENTATION_NAME);
+		this.propagator = openTelemetry.getPropagators().getTextMapPropagator();
+	}
+
+	@Override
+	public Span start(String name, String clientId, String grantType) {
+		SpanBuilder builder = this.tracer.spanBuilder(name)
+				.setSpanKind(HTTP.equals(name) ? SpanKind.CLIENT : SpanKind.INTERNAL);
+		if (clientId != null)
+			builder.setAttribute(CLIENT_ID, clientId);
+		if (grantType != null)
+			builder.setAttribute(GRANT_TYPE, grantType);
+		io.opentelemetry.api.trace.Span span = builder.startSpan();
+		return new OpenTelemetrySpan(span, span.makeCurrent());
+	}
+
+	@Override
+	public void inject(BiConsumer<String, String> headers) {
+		this.propagator.inject(Context.current(), headers, SETTER);
+	}
+
+	static final class OpenTelemetrySpan implements Span {
+
+		private final io.opentelemetry.api.trace.Span span;
+		private final Scope scope;
+
+		OpenTelemetrySpan(io.opentelemetry.api.trace.Span span, Scope scope) {
+			this.span = span;
+			this.scope = scope;
+		}
+
+		@Override
+		public void error(Throwable failure) {
+			this.span.recordException(failure);
+			this.span.setStatus(StatusCode.ERROR);
+		}
+
+		@Override
+		public void attribute(String key, long value) {
+			this.span.setAttribute(key, value);
+		}
+
+		@Override
+		public void close() {
+			this.scope.close();
+			this.span.end();
+		}
+	}
+
+}
@@ -0,0 +1,88 @@
+/* 
+ * Copyright (c) 2017 Georgi Pavlov (georgi.pavlov@isoft-technology.com).
+ * All rights reserved. This program and the accompanying materials
+ * are made available under the terms of the MIT license which accompanies 
+ * this distribution, and is available at 
+ * https://github.com/tengia/oauth-2/blob/master/LICENSE
+ */
+package net.oauth2.tracing.opentelemetry;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Test;
+
+import io.opentelemetry.api.common.AttributeKey;
+import io.opentelemetry.api.trace.SpanKind;
+import io.opentelemetry.api.trace.StatusCode;
+import io.opentelemetry.api.trace.propagation.W3CTraceContextPropagator;
+import io.opentelemetry.context.propagation.ContextPropagators;
+import io.opentelemetry.sdk.OpenTelemetrySdk;
+import io.opentelemetry.sdk.testing.exporter.InMemorySpanExporter;
+import io.opentelemetry.sdk.trace.SdkTracerProvider;
+import io.opentelemetry.sdk.trace.data.SpanData;
+import io.opentelemetry.sdk.trace.export.SimpleSpanProcessor;
+import net.oauth2.client.TokenTracer;
+
+public class OpenTelemetryTokenTracerTest {
+
+	final InMemorySpanExporter exporter = InMemorySpanExporter.create();
+	final SdkTracerProvider tracerProvider = SdkTracerProvider.builder()
+			.addSpanProcessor(SimpleSpanProcessor.create(exporter)).build();
+	final OpenTelemetryTokenTracer tracer = new OpenTelemetryTokenTracer(OpenTelemetrySdk.builder()
+			.setTracerProvider(tracerProvider)
+			.setPropagators(ContextPropagators.create(W3CTraceContextPropagator.getInstance())).build());
+
+	@After
+	public void tearDown() {
+		this.tracerProvider.close();
+	}
+
+	@Test
+	public void testNestedSpansAndPropagation() {
+		Map<String, String> headers = new HashMap<>();
+		try (TokenTracer.Span fetch = tracer.start(TokenTracer.FETCH, "client", "client_credentials")) {
+			try (TokenTracer.Span http = tracer.start(TokenTracer.HTTP, "client", "client_credentials")) {
+				tracer.inject(headers::put);
+				http.attribute("http.response.status_code", 200);
+			}
+			fetch.attribute("oauth2.attempts", 1);
+		}
+
+		List<SpanData> spans = exporter.getFinishedSpanItems();
+		assertEquals(2, spans.size());
+		SpanData http = spans.get(0);
+		SpanData fetch = spans.get(1);
+		assertEquals(TokenTracer.HTTP, http.getName());
+		assertEquals(SpanKind.CLIENT, http.getKind());
+		assertEquals(fetch.getSpanId(), http.getParentSpanId());
+		assertEquals(TokenTracer.FETCH, fetch.getName());
+		assertEquals(SpanKind.INTERNAL, fetch.getKind());
+		assertEquals("client", fetch.getAttributes().get(OpenTelemetryTokenTracer.CLIENT_ID));
+		assertEquals("client_credentials", fetch.getAttributes().get(OpenTelemetryTokenTracer.GRANT_TYPE));
+		assertEquals(Long.valueOf(1), fetch.getAttributes().get(AttributeKey.longKey("oauth2.attempts")));
+		assertEquals(Long.valueOf(200), http.getAttributes()
+				.get(AttributeKey.longKey("http.response.status_code")));
+		String traceparent = headers.get("traceparent");
+		assertTrue(traceparent, traceparent.contains(http.getTraceId() + "-" + http.getSpanId()));
+	}
+
+	@Test
+	public void testError() {
+		try (TokenTracer.Span span = tracer.start(TokenTracer.REFRESH, null, null)) {
+			span.error(new IOException("unavailable"));
+		}
+
+		SpanData span = exporter.getFinishedSpanItems().get(0);
+		assertEquals(StatusCode.ERROR, span.getStatus().getStatusCode());
+		assertEquals(1, span.getEvents().size());
+		assertTrue(span.getAttributes().isEmpty());
+	}
+
+}